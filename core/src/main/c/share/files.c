@@ -33,13 +33,30 @@
  *
  ******************************************************************************/
 
+#ifdef __linux__
+// required for mremap
+#define _GNU_SOURCE
+#endif
+
 #include <unistd.h>
 #include <sys/stat.h>
 #include <sys/fcntl.h>
 #include <sys/time.h>
+#include <sys/mman.h>
 #include <utime.h>
 #include "files.h"
 
+// advice values as defined in com.questdb.misc.Files
+#define ADVICE_NORMAL 0
+#define ADVICE_SEQUENTIAL 1
+#define ADVICE_RANDOM 2
+#define ADVICE_WILLNEED 3
+#define ADVICE_DONTNEED 4
+
+// mapping modes as defined in com.questdb.misc.Files
+#define MAP_RO 1
+#define MAP_RW 2
+
 JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_write
         (JNIEnv *e, jclass cl,
          jlong fd,
@@ -130,4 +147,135 @@ JNIEXPORT jboolean JNICALL Java_com_questdb_misc_Files_setLastModified
 JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_getStdOutFd
         (JNIEnv *e, jclass cl) {
     return (jlong) 1;
-}
\ No newline at end of file
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_madvise0
+        (JNIEnv *e, jclass cl, jlong address, jlong len, jint advice) {
+    int adv;
+
+    switch (advice) {
+        case ADVICE_SEQUENTIAL:
+            adv = MADV_SEQUENTIAL;
+            break;
+        case ADVICE_RANDOM:
+            adv = MADV_RANDOM;
+            break;
+        case ADVICE_WILLNEED:
+            adv = MADV_WILLNEED;
+            break;
+        case ADVICE_DONTNEED:
+            adv = MADV_DONTNEED;
+            break;
+        default:
+            adv = MADV_NORMAL;
+            break;
+    }
+
+    if (len <= 0) {
+        return 0;
+    }
+
+    // madvise wants page aligned address, mapping itself always starts on page boundary
+    jlong page = sysconf(_SC_PAGESIZE);
+    jlong lo = address & ~(page - 1);
+    return madvise((void *) lo, (size_t) (len + address - lo), adv);
+}
+
+#ifdef __APPLE__
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_fadvise0
+        (JNIEnv *e, jclass cl, jlong fd, jlong offset, jlong len, jint advice) {
+    // no posix_fadvise on OSX, page cache is left to the OS
+    return 0;
+}
+
+#else
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_fadvise0
+        (JNIEnv *e, jclass cl, jlong fd, jlong offset, jlong len, jint advice) {
+    int adv;
+
+    switch (advice) {
+        case ADVICE_SEQUENTIAL:
+            adv = POSIX_FADV_SEQUENTIAL;
+            break;
+        case ADVICE_RANDOM:
+            adv = POSIX_FADV_RANDOM;
+            break;
+        case ADVICE_WILLNEED:
+            adv = POSIX_FADV_WILLNEED;
+            break;
+        case ADVICE_DONTNEED:
+            adv = POSIX_FADV_DONTNEED;
+            break;
+        default:
+            adv = POSIX_FADV_NORMAL;
+            break;
+    }
+    return posix_fadvise((int) fd, (off_t) offset, (off_t) len, adv);
+}
+
+#endif
+
+static void advise_huge_pages(void *address, size_t len, jboolean hugePages) {
+#ifdef MADV_HUGEPAGE
+    if (hugePages) {
+        // best effort, file system may not support huge pages
+        madvise(address, len, MADV_HUGEPAGE);
+    }
+#endif
+}
+
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_mmap0
+        (JNIEnv *e, jclass cl, jlong fd, jlong len, jlong offset, jint mode, jboolean hugePages) {
+    int prot = mode == MAP_RW ? PROT_READ | PROT_WRITE : PROT_READ;
+    void *p = mmap(NULL, (size_t) len, prot, MAP_SHARED, (int) fd, (off_t) offset);
+    if (p == MAP_FAILED) {
+        return -1;
+    }
+    advise_huge_pages(p, (size_t) len, hugePages);
+    return (jlong) p;
+}
+
+#ifdef __linux__
+
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_mremap0
+        (JNIEnv *e, jclass cl, jlong fd, jlong address, jlong previousLen, jlong newLen, jlong offset, jint mode,
+         jboolean hugePages) {
+    void *p = mremap((void *) address, (size_t) previousLen, (size_t) newLen, MREMAP_MAYMOVE);
+    if (p == MAP_FAILED) {
+        return -1;
+    }
+    advise_huge_pages(p, (size_t) newLen, hugePages);
+    return (jlong) p;
+}
+
+#else
+
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_mremap0
+        (JNIEnv *e, jclass cl, jlong fd, jlong address, jlong previousLen, jlong newLen, jlong offset, jint mode,
+         jboolean hugePages) {
+    // no mremap outside of linux, map new region before releasing old one
+    jlong p = Java_com_questdb_misc_Files_mmap0(e, cl, fd, newLen, offset, mode, hugePages);
+    if (p != -1) {
+        munmap((void *) address, (size_t) previousLen);
+    }
+    return p;
+}
+
+#endif
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_munmap0
+        (JNIEnv *e, jclass cl, jlong address, jlong len) {
+    return munmap((void *) address, (size_t) len);
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_msync0
+        (JNIEnv *e, jclass cl, jlong address, jlong len) {
+    return msync((void *) address, (size_t) len, MS_SYNC);
+}
+
+JNIEXPORT jboolean JNICALL Java_com_questdb_misc_Files_truncate
+        (JNIEnv *e, jclass cl, jlong fd, jlong size) {
+    return (jboolean) (ftruncate((int) fd, (off_t) size) == 0);
+}
@@ -95,6 +95,62 @@ JNIEXPORT jboolean JNICALL Java_com_questdb_misc_Files_setLastModified
 JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_getStdOutFd
         (JNIEnv *, jclass);
 
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    madvise0
+ * Signature: (JJI)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_madvise0
+        (JNIEnv *, jclass, jlong, jlong, jint);
+
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    fadvise0
+ * Signature: (JJJI)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_fadvise0
+        (JNIEnv *, jclass, jlong, jlong, jlong, jint);
+
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    mmap0
+ * Signature: (JJJIZ)J
+ */
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_mmap0
+        (JNIEnv *, jclass, jlong, jlong, jlong, jint, jboolean);
+
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    mremap0
+ * Signature: (JJJJJIZ)J
+ */
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_mremap0
+        (JNIEnv *, jclass, jlong, jlong, jlong, jlong, jlong, jint, jboolean);
+
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    munmap0
+ * Signature: (JJ)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_munmap0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    msync0
+ * Signature: (JJ)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_msync0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    truncate
+ * Signature: (JJ)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_questdb_misc_Files_truncate
+        (JNIEnv *, jclass, jlong, jlong);
+
 #ifdef __cplusplus
 }
 #endif
@@ -37,8 +37,7 @@
 #include <src/main/c/share/zlib-1.2.8/zutil.h>
 #include <src/main/c/share/zip.h>
 
-JNIEXPORT jlong JNICALL Java_com_questdb_misc_Zip_deflateInit
-        (JNIEnv *e, jclass cl) {
+static jlong deflateInitRaw(int level) {
     z_streamp strm = calloc(1, sizeof(z_stream));
 
     if (strm == 0) {
@@ -46,7 +45,7 @@ JNIEXPORT jlong JNICALL Java_com_questdb_misc_Zip_deflateInit
     }
 
     int ret;
-    switch (ret = deflateInit2(strm, -1, Z_DEFLATED, -MAX_WBITS, DEF_MEM_LEVEL, Z_DEFAULT_STRATEGY)) {
+    switch (ret = deflateInit2(strm, level, Z_DEFLATED, -MAX_WBITS, DEF_MEM_LEVEL, Z_DEFAULT_STRATEGY)) {
         case Z_OK:
             return (jlong) strm;
         default:
@@ -55,6 +54,16 @@ JNIEXPORT jlong JNICALL Java_com_questdb_misc_Zip_deflateInit
     }
 }
 
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Zip_deflateInit
+        (JNIEnv *e, jclass cl) {
+    return deflateInitRaw(Z_DEFAULT_COMPRESSION);
+}
+
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Zip_deflateInitLevel
+        (JNIEnv *e, jclass cl, jint level) {
+    return deflateInitRaw(level);
+}
+
 JNIEXPORT void JNICALL Java_com_questdb_misc_Zip_setInput
         (JNIEnv *e, jclass cl, jlong ptr, jlong address, jint available) {
     z_streamp strm = (z_streamp) ptr;
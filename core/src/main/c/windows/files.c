@@ -184,3 +184,40 @@ JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_getStdOutFd
     return (jlong) GetStdHandle(STD_OUTPUT_HANDLE);
 }
 
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_madvise0
+        (JNIEnv *e, jclass cl, jlong address, jlong len, jint advice) {
+    // access hints are not supported, leave paging to the OS
+    return 0;
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_fadvise0
+        (JNIEnv *e, jclass cl, jlong fd, jlong offset, jlong len, jint advice) {
+    return 0;
+}
+
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_mmap0
+        (JNIEnv *e, jclass cl, jlong fd, jlong len, jlong offset, jint mode, jboolean hugePages) {
+    // single region mapping is not supported, column files fall back to mapped buffers
+    return -1;
+}
+
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_mremap0
+        (JNIEnv *e, jclass cl, jlong fd, jlong address, jlong previousLen, jlong newLen, jlong offset, jint mode,
+         jboolean hugePages) {
+    return -1;
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_munmap0
+        (JNIEnv *e, jclass cl, jlong address, jlong len) {
+    return -1;
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_msync0
+        (JNIEnv *e, jclass cl, jlong address, jlong len) {
+    return -1;
+}
+
+JNIEXPORT jboolean JNICALL Java_com_questdb_misc_Files_truncate
+        (JNIEnv *e, jclass cl, jlong fd, jlong size) {
+    return (jboolean) (set_file_pos((HANDLE) fd, size) && SetEndOfFile((HANDLE) fd));
+}
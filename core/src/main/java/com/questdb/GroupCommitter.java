@@ -0,0 +1,247 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb;
+
+import com.questdb.ex.JournalException;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.NamedDaemonThreadFactory;
+import com.questdb.mp.RingQueue;
+import com.questdb.mp.SCSequence;
+import com.questdb.mp.SPSequence;
+import com.questdb.mp.Sequence;
+import com.questdb.std.ObjHashSet;
+import com.questdb.std.ObjList;
+import com.questdb.std.ObjectFactory;
+import com.questdb.store.MemoryFile;
+import com.questdb.store.TxListener;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Makes transactions of {@link JournalWriter} durable in background. Writer commits transaction
+ * to memory and queues memory files it has written to since previous transaction. Flusher drains
+ * everything queued since its last pass and syncs each of those files once, so that cost of sync
+ * is shared by all transactions committed while previous sync was in progress.
+ * <p>
+ * Files are synced via their mapped pages, see {@link MemoryFile#force()}, and only when writer
+ * has written to them. Writer queues transaction log after column, index and symbol files and flusher
+ * keeps that order, so transactions are reported durable only after transaction log is synced.
+ * <p>
+ * Single flusher thread is shared by committers of all writers. Thread is started on demand and exits when
+ * there is nothing to sync. Failed sync fails transactions it covers only, files of failed pass are
+ * synced again by next pass.
+ */
+@SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS", "MDM_WAIT_WITHOUT_TIMEOUT", "VO_VOLATILE_INCREMENT"})
+public class GroupCommitter implements Closeable {
+    private static final Log LOG = LogFactory.getLog(GroupCommitter.class);
+    private static final int QUEUE_SIZE = 1024;
+    private static final ExecutorService FLUSHER = newFlusher();
+    private final RingQueue<Entry> queue = new RingQueue<>(Entry.FACTORY, QUEUE_SIZE);
+    private final Sequence pubSeq = new SPSequence(QUEUE_SIZE);
+    private final Sequence subSeq = new SCSequence();
+    private final ObjHashSet<MemoryFile> files = new ObjHashSet<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final File location;
+    private final Object monitor = new Object();
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private volatile TxListener txListener;
+    private volatile long durableSequence = -1;
+    private volatile long failedSequence = -1;
+    private volatile long flushCount = 0;
+    private long lastSequence = -1;
+
+    public GroupCommitter(File location) {
+        this.location = location;
+        this.pubSeq.followedBy(subSeq);
+        this.subSeq.followedBy(pubSeq);
+    }
+
+    /**
+     * Waits for transaction to become durable.
+     *
+     * @param sequence commit sequence returned by {@link #submit(ObjList)}
+     * @throws JournalException if sync covering transaction has failed
+     */
+    public void await(long sequence) throws JournalException {
+        synchronized (monitor) {
+            while (durableSequence < sequence && failedSequence < sequence) {
+                try {
+                    monitor.wait();
+                } catch (InterruptedException e) {
+                    throw new JournalException(e);
+                }
+            }
+        }
+
+        if (durableSequence < sequence) {
+            throw new JournalException("Could not sync %s", location.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Waits for all submitted transactions to become durable.
+     */
+    @Override
+    public void close() {
+        try {
+            await(lastSequence);
+        } catch (JournalException e) {
+            LOG.error().$("Closing with transactions, which are not durable: ").$(location.getAbsolutePath()).$();
+        }
+    }
+
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * @return number of syncs performed so far, each of which covers one or more transactions
+     */
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Listener is notified from flusher thread once per sync, after transactions are durable.
+     */
+    public void setTxListener(TxListener txListener) {
+        this.txListener = txListener;
+    }
+
+    /**
+     * Queues committed transaction. Must be called from writer thread only. Blocks when flusher
+     * is {@link #QUEUE_SIZE} transactions behind.
+     *
+     * @param files files writer has written to, in order they are to be synced
+     * @return commit sequence
+     */
+    public long submit(ObjList<MemoryFile> files) {
+        long cursor = pubSeq.nextBully();
+        ObjList<MemoryFile> entryFiles = queue.get(cursor).files;
+        entryFiles.clear();
+        for (int i = 0, n = files.size(); i < n; i++) {
+            entryFiles.add(files.getQuick(i));
+        }
+        pubSeq.done(cursor);
+        lastSequence = cursor;
+        if (scheduled.compareAndSet(false, true)) {
+            FLUSHER.execute(flushTask);
+        }
+        return cursor;
+    }
+
+    /**
+     * One thread, which exits when idle. Flusher is shared by all writers and is never shut down.
+     */
+    private static ExecutorService newFlusher() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamedDaemonThreadFactory("questdb-journal-committer", true));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private void flush() {
+        // transactions submitted after this point schedule another pass
+        scheduled.set(false);
+
+        long cursor = subSeq.next();
+        if (cursor < 0) {
+            // drained by previous pass
+            return;
+        }
+
+        // drain everything queued so far, file is moved to the end of set when
+        // it is queued again, so that transaction log remains last
+        long last;
+        do {
+            ObjList<MemoryFile> entryFiles = queue.get(cursor).files;
+            for (int i = 0, n = entryFiles.size(); i < n; i++) {
+                MemoryFile file = entryFiles.getQuick(i);
+                files.remove(file);
+                files.add(file);
+            }
+            entryFiles.clear();
+            subSeq.done(last = cursor);
+        } while ((cursor = subSeq.next()) > -1);
+
+        boolean ok;
+        try {
+            for (int i = 0, n = files.size(); i < n; i++) {
+                files.get(i).force();
+            }
+            // files of failed pass are kept for the next one
+            files.clear();
+            ok = true;
+        } catch (Throwable e) {
+            LOG.error().$("Could not sync ").$(location.getAbsolutePath()).$(": ").$(e).$();
+            ok = false;
+        }
+
+        synchronized (monitor) {
+            if (ok) {
+                durableSequence = last;
+                flushCount++;
+            } else {
+                failedSequence = last;
+            }
+            monitor.notifyAll();
+        }
+
+        TxListener listener = txListener;
+        if (listener != null) {
+            try {
+                if (ok) {
+                    listener.onCommit();
+                } else {
+                    listener.onError();
+                }
+            } catch (Throwable e) {
+                LOG.error().$("Error in listener").$(e).$();
+            }
+        }
+    }
+
+    private static class Entry {
+        private static final ObjectFactory<Entry> FACTORY = new ObjectFactory<Entry>() {
+            @Override
+            public Entry newInstance() {
+                return new Entry();
+            }
+        };
+        private final ObjList<MemoryFile> files = new ObjList<>();
+    }
+}
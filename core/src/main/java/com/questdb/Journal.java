@@ -50,6 +50,7 @@ import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 
 @SuppressFBWarnings({"PATH_TRAVERSAL_IN", "LII_LIST_INDEXED_ITERATING", "CD_CIRCULAR_DEPENDENCY"})
 public class Journal<T> implements Iterable<T>, Closeable {
@@ -75,6 +76,7 @@ public class Journal<T> implements Iterable<T>, Closeable {
         }
     };
     private final BitSet inactiveColumns;
+    private final SymbolCache symbolCache;
     TxLog txLog;
     boolean open;
     private volatile Partition<T> irregularPartition;
@@ -82,10 +84,18 @@ public class Journal<T> implements Iterable<T>, Closeable {
     private TxIterator txIterator;
 
 
-    @SuppressFBWarnings({"PCOA_PARTIALLY_CONSTRUCTED_OBJECT_ACCESS"})
     public Journal(JournalMetadata<T> metadata, JournalKey<T> key) throws JournalException {
+        this(metadata, key, null);
+    }
+
+    /**
+     * @param symbolCache cache shared by symbol tables of this and other journals, null for symbol tables to cache on their own
+     */
+    @SuppressFBWarnings({"PCOA_PARTIALLY_CONSTRUCTED_OBJECT_ACCESS"})
+    public Journal(JournalMetadata<T> metadata, JournalKey<T> key, SymbolCache symbolCache) throws JournalException {
         this.metadata = metadata;
         this.key = key;
+        this.symbolCache = symbolCache;
         this.location = new File(metadata.getLocation());
         this.txLog = new TxLog(location, getMode(), metadata.getTxCountHint());
         this.open = true;
@@ -460,15 +470,30 @@ public class Journal<T> implements Iterable<T>, Closeable {
 
     public boolean refresh() {
         if (isOpen() && txLog.head(tx)) {
-            refreshInternal();
-            for (int i = 0, sz = symbolTables.size(); i < sz; i++) {
-                symbolTables.getQuick(i).applyTx(tx.symbolTableSizes[i], tx.symbolTableIndexPointers[i]);
-            }
+            applyTx();
             return true;
         }
         return false;
     }
 
+    /**
+     * Moves this journal to transaction another reader of same journal is on, rather than to the
+     * latest one. Readers pinned to same transaction see same data however many commits writer
+     * makes in the meantime.
+     *
+     * @param txn   transaction number, see {@link #getTxn()}
+     * @param txPin transaction pin, see {@link #getTxPin()}
+     * @throws JournalException when transaction is not in transaction log
+     */
+    public void refresh(long txn, long txPin) throws JournalException {
+        if (isOpen() && (txn != getTxn() || txPin != getTxPin())) {
+            if (!txLog.head(txn, txPin, tx)) {
+                throw new JournalException("Transaction %d not found in %s", txn, getLocation());
+            }
+            applyTx();
+        }
+    }
+
     /**
      * Selects column names to be accessed by this journal. Non-selected columns and their
      * associated files will not be accessed. This method used to improve performance of
@@ -512,6 +537,13 @@ public class Journal<T> implements Iterable<T>, Closeable {
         return txIterator;
     }
 
+    private void applyTx() {
+        refreshInternal();
+        for (int i = 0, sz = symbolTables.size(); i < sz; i++) {
+            symbolTables.getQuick(i).applyTx(tx.symbolTableSizes[i], tx.symbolTableIndexPointers[i]);
+        }
+    }
+
     void closePartitions() {
         if (irregularPartition != null) {
             irregularPartition.close();
@@ -537,7 +569,7 @@ public class Journal<T> implements Iterable<T>, Closeable {
                 int tabIndex = symbolTables.size();
                 int tabSize = tx.symbolTableSizes.length > tabIndex ? tx.symbolTableSizes[tabIndex] : 0;
                 long indexTxAddress = tx.symbolTableIndexPointers.length > tabIndex ? tx.symbolTableIndexPointers[tabIndex] : 0;
-                SymbolTable tab = new SymbolTable(meta.distinctCountHint, meta.avgSize, getMetadata().getTxCountHint(), location, meta.name, getMode(), tabSize, indexTxAddress, meta.noCache);
+                SymbolTable tab = new SymbolTable(meta.distinctCountHint, meta.avgSize, getMetadata().getTxCountHint(), location, meta.name, getMode(), tabSize, indexTxAddress, meta.noCache, symbolCache);
                 symbolTables.add(tab);
                 symbolTableMap.put(meta.name, tab);
                 meta.symbolTable = tab;
@@ -623,6 +655,20 @@ public class Journal<T> implements Iterable<T>, Closeable {
         return inactiveColumns;
     }
 
+    /**
+     * @return executor partitions fan per column work out to, null to do it in current thread
+     */
+    ExecutorService getColumnExecutor() {
+        return null;
+    }
+
+    /**
+     * @return number of column tasks partitions run at once on column executor
+     */
+    int getColumnParallelism() {
+        return 1;
+    }
+
     long getTimestamp(T o) {
         return Unsafe.getUnsafe().getLong(o, timestampOffset);
     }
@@ -25,12 +25,17 @@ package com.questdb;
 
 import com.questdb.ex.JournalException;
 import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.store.SymbolCache;
 
 public class JournalBulkReader<T> extends Journal<T> {
     public JournalBulkReader(JournalMetadata<T> metadata, JournalKey<T> key) throws JournalException {
         super(metadata, key);
     }
 
+    public JournalBulkReader(JournalMetadata<T> metadata, JournalKey<T> key, SymbolCache symbolCache) throws JournalException {
+        super(metadata, key, symbolCache);
+    }
+
     @Override
     public JournalMode getMode() {
         return JournalMode.BULK_READ;
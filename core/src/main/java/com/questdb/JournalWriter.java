@@ -26,6 +26,7 @@ package com.questdb;
 import com.questdb.ex.IncompatibleJournalException;
 import com.questdb.ex.JournalException;
 import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.configuration.ColumnMetadata;
 import com.questdb.factory.configuration.Constants;
 import com.questdb.factory.configuration.JournalConfiguration;
 import com.questdb.factory.configuration.JournalMetadata;
@@ -41,6 +42,8 @@ import com.questdb.mp.SCSequence;
 import com.questdb.mp.SPSequence;
 import com.questdb.mp.Sequence;
 import com.questdb.query.ResultSet;
+import com.questdb.std.IntList;
+import com.questdb.std.ObjList;
 import com.questdb.std.PeekingListIterator;
 import com.questdb.store.*;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -50,18 +53,18 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 @SuppressFBWarnings({"PATH_TRAVERSAL_IN", "EXS_EXCEPTION_SOFTENING_NO_CHECKED"})
 public class JournalWriter<T> extends Journal<T> {
     private static final Log LOG = LogFactory.getLog(JournalWriter.class);
+    // column tasks of all writers share one pool, so that open writers do not hold threads of their own
+    private static final ExecutorService COLUMN_POOL = newColumnPool();
     private final long lagMillis;
     private final long lagSwellMillis;
     private final boolean checkOrder;
@@ -70,12 +73,31 @@ public class JournalWriter<T> extends Journal<T> {
     private final JournalEntryWriterImpl journalEntryWriter;
     // discard.txt related
     private final File discardTxt;
+    // files written to by current transaction, synced by group committer
+    private final ObjList<MemoryFile> txFiles = new ObjList<>();
+    // out-of-order ingest: rows in timestamp order
+    private final List<T> o3Rows = new ArrayList<>();
+    // keys of symbol values of objects appended in one batch, by column index
+    private final ObjList<IntList> symbolKeys = new ObjList<>();
+    private final ObjList<String> symbolValues = new ObjList<>();
+    private TimestampSorter o3Sorter;
+    // scratch partition, which uncommitted lag rows are copied aside to before lag is spliced in place
+    private Partition<T> o3Tail;
+    private long spliceCount = 0;
+    // lag partition of last committed transaction, its rows must not be modified in place
+    private String txLagName;
+    private long txLagSize;
     private Lock writeLock;
     private TxListener txListener;
     private boolean txActive = false;
     private int txPartitionIndex = -1;
     private long appendTimestampLo = -1;
     private PartitionCleaner partitionCleaner;
+    private PartitionCompactor compactor;
+    private GroupCommitter groupCommitter;
+    private int columnParallelism = 1;
+    // partitions below this index have been queued for compaction
+    private int sealedPartitionCount = 0;
     private boolean commitOnClose = true;
     // irregular partition related
     private boolean doDiscard = true;
@@ -96,6 +118,8 @@ public class JournalWriter<T> extends Journal<T> {
         this.checkOrder = key.isOrdered() && getTimestampOffset() != -1;
         this.journalEntryWriter = new JournalEntryWriterImpl(this);
         this.discardTxt = new File(metadata.getLocation(), "discard.txt");
+        this.txLagName = tx.lagName;
+        this.txLagSize = tx.lagSize;
     }
 
     /**
@@ -105,44 +129,26 @@ public class JournalWriter<T> extends Journal<T> {
      * @throws com.questdb.ex.JournalException if there is an error
      */
     public void append(T obj) throws JournalException {
-
-        if (obj == null) {
-            throw new JournalException("Cannot append NULL to %s", this);
-        }
-
-        if (!txActive) {
-            beginTx();
-        }
-
-        if (checkOrder) {
-            long timestamp = getTimestamp(obj);
-
-            if (timestamp > appendTimestampHi) {
-                switchAppendPartition(timestamp);
-            }
-
-            if (timestamp < appendTimestampLo) {
-                throw new JournalException("Cannot insert records out of order. maxHardTimestamp=%d (%s), timestamp=%d (%s): %s"
-                        , appendTimestampLo, Dates.toString(appendTimestampLo), timestamp, Dates.toString(timestamp), this);
-            }
-
-            appendPartition.append(obj);
-            appendTimestampLo = timestamp;
-        } else {
-            getAppendPartition().append(obj);
-        }
+        append0(obj, -1);
     }
 
     /**
-     * Add objects to the end of the Journal.
+     * Add objects to the end of the Journal. Symbol values of all objects are resolved in one batch
+     * per column, see {@link SymbolTable#put(ObjList, IntList)}.
      *
      * @param objects objects to add
      * @throws com.questdb.ex.JournalException if there is an error
      */
     @SafeVarargs
     public final void append(T... objects) throws JournalException {
-        for (int i = 0; i < objects.length; i++) {
-            append(objects[i]);
+        if (objects.length > 1 && resolveSymbols(objects)) {
+            for (int i = 0; i < objects.length; i++) {
+                append0(objects[i], i);
+            }
+        } else {
+            for (int i = 0; i < objects.length; i++) {
+                append0(objects[i], -1);
+            }
         }
     }
 
@@ -170,6 +176,63 @@ public class JournalWriter<T> extends Journal<T> {
         }
     }
 
+    /**
+     * Waits for transaction committed by {@link #commitAsync()} to become durable. Returns immediately
+     * when group commit is disabled, in which case commits are durable on return.
+     *
+     * @param sequence commit sequence
+     * @throws JournalException if journal files could not be synced
+     */
+    public void awaitDurable(long sequence) throws JournalException {
+        if (groupCommitter != null) {
+            groupCommitter.await(sequence);
+        }
+    }
+
+    /**
+     * Appends rows, which do not have to be in timestamp order. Rows are sorted by timestamp off-heap
+     * and merged into lag partition as {@link #mergeAppend(List)} would. When lag would not swell beyond its
+     * limit and nothing has to be discarded, rows are spliced into lag rather than merged with all of it
+     * row by row. Lag rows older than data are kept as they are and rows data overlaps are merged with data,
+     * runs of lag rows are copied column by column between mapped pages without being read into objects.
+     * <p>
+     * When data overlaps only rows appended by current transaction, overlapped rows are copied aside and lag is
+     * spliced in place, so amount of data written is proportional to overlap. Rows of last committed transaction
+     * are never modified in place: lag is then copied on write into new temporary partition, which becomes lag
+     * once transaction log refers to it. Rollback, crash recovery and readers, which have lag partition open,
+     * are unaffected either way.
+     *
+     * @param rows rows in any order
+     * @throws JournalException if rows cannot be appended
+     */
+    public void appendOutOfOrder(List<T> rows) throws JournalException {
+        int n = rows.size();
+        if (o3Sorter == null) {
+            o3Sorter = new TimestampSorter(n);
+        }
+
+        o3Sorter.clear();
+        for (int i = 0; i < n; i++) {
+            o3Sorter.add(getTimestamp(rows.get(i)), i);
+        }
+
+        List<T> sorted = rows;
+        if (o3Sorter.sort()) {
+            o3Rows.clear();
+            for (int i = 0; i < n; i++) {
+                o3Rows.add(rows.get(o3Sorter.getRow(i)));
+            }
+            sorted = o3Rows;
+        }
+
+        try {
+            peekingListIterator.setDelegate(sorted);
+            mergeAppend(peekingListIterator, true);
+        } finally {
+            o3Rows.clear();
+        }
+    }
+
     public void beginTx() {
         if (!txActive) {
             this.txActive = true;
@@ -184,6 +247,16 @@ public class JournalWriter<T> extends Journal<T> {
                 if (isCommitOnClose()) {
                     commit();
                 }
+                if (groupCommitter != null) {
+                    groupCommitter.close();
+                    groupCommitter = null;
+                }
+                if (compactor != null) {
+                    compactor.close();
+                    compactor = null;
+                }
+                // scratch partition is purged together with other temp partitions
+                o3Tail = Misc.free(o3Tail);
                 if (partitionCleaner != null) {
                     purgeTempPartitions();
                     partitionCleaner.halt();
@@ -197,6 +270,7 @@ public class JournalWriter<T> extends Journal<T> {
 
                 Misc.free(discardSink);
                 Misc.free(discardTxtRaf);
+                o3Sorter = Misc.free(o3Sorter);
             } catch (JournalException e) {
                 throw new JournalRuntimeException(e);
             }
@@ -219,6 +293,11 @@ public class JournalWriter<T> extends Journal<T> {
         return this == o || !(o == null || getClass() != o.getClass()) && getKey().equals(((Journal) o).getKey());
     }
 
+    @Override
+    ExecutorService getColumnExecutor() {
+        return columnParallelism > 1 ? COLUMN_POOL : null;
+    }
+
     @Override
     void closePartitions() {
         super.closePartitions();
@@ -267,12 +346,32 @@ public class JournalWriter<T> extends Journal<T> {
     }
 
     public void commit(boolean force, long txn, long txPin) throws JournalException {
-        if (txActive) {
+        if (groupCommitter != null) {
+            long sequence = commitAsync(txn, txPin);
+            if (force) {
+                groupCommitter.await(sequence);
+            }
+        } else if (txActive) {
             commit(force ? Tx.TX_FORCE : Tx.TX_NORMAL, txn, txPin);
             notifyTxListener();
-            expireOpenFiles();
-            txActive = false;
+            endTx();
+        }
+    }
+
+    /**
+     * Commits transaction without waiting for it to reach disk. Transaction is visible to readers
+     * straight away and becomes durable when group committer syncs journal files, see {@link GroupCommitter}.
+     * When group commit is disabled transaction is committed durably.
+     *
+     * @return commit sequence to pass to {@link #awaitDurable(long)}
+     * @throws JournalException if transaction cannot be committed
+     */
+    public long commitAsync() throws JournalException {
+        if (groupCommitter == null) {
+            commitDurable();
+            return -1L;
         }
+        return commitAsync(-1L, -1L);
     }
 
     public void commitDurable() throws JournalException {
@@ -373,6 +472,32 @@ public class JournalWriter<T> extends Journal<T> {
         return appendTimestampLo;
     }
 
+    @Override
+    public int getColumnParallelism() {
+        return columnParallelism;
+    }
+
+    /**
+     * Sets number of column tasks partitions run at once to commit, force and update indexes and zone maps,
+     * and to rebuild indexes, one task per column. Tasks run on pool shared by all writers, which has a thread
+     * per CPU core, so parallelism limits share of the pool this writer takes. Commit and rebuild complete
+     * when all tasks are done. Pays off for journals with many columns, indexed columns in particular.
+     *
+     * @param parallelism number of tasks, 1 to do all work in writer thread
+     * @return this writer
+     */
+    public JournalWriter<T> setColumnParallelism(int parallelism) {
+        columnParallelism = Math.max(parallelism, 1);
+        return this;
+    }
+
+    /**
+     * @return number of out-of-order appends spliced into lag since writer has been opened, see {@link #appendOutOfOrder(List)}
+     */
+    public long getSpliceCount() {
+        return spliceCount;
+    }
+
     public boolean isCommitOnClose() {
         return commitOnClose;
     }
@@ -382,6 +507,59 @@ public class JournalWriter<T> extends Journal<T> {
         return this;
     }
 
+    public boolean isCompressSealedPartitions() {
+        return compactor != null;
+    }
+
+    /**
+     * Enables background compression of sealed partitions, see {@link PartitionCompactor}.
+     * Partitions, which are already sealed, are queued straight away. Disabling compression
+     * waits for queued partitions to be compacted.
+     *
+     * @param compress true to compress partitions after writer moves on to the next one
+     * @return this writer
+     * @throws JournalException if journal is published for replication or partitions cannot be listed
+     */
+    public JournalWriter<T> setCompressSealedPartitions(boolean compress) throws JournalException {
+        if (compress && compactor == null) {
+            if (txListener != null) {
+                throw new JournalException("Journal %s is published and cannot be compressed", getLocation());
+            }
+            compactor = new PartitionCompactor(getMetadata(), true);
+            sealedPartitionCount = 0;
+            compactSealedPartitions();
+        } else if (!compress && compactor != null) {
+            compactor.close();
+            compactor = null;
+        }
+        return this;
+    }
+
+    public boolean isGroupCommit() {
+        return groupCommitter != null;
+    }
+
+    /**
+     * Enables group commit. Commits are made visible to readers on writer thread and synced to disk
+     * by background thread, which coalesces syncs of transactions committed in quick succession.
+     * {@link #commitDurable()} waits for sync and {@link #commitAsync()} returns sequence to wait for.
+     * Transaction listener is notified from background thread once transactions are durable.
+     * Disabling group commit waits for queued transactions to become durable.
+     *
+     * @param groupCommit true to sync commits in background
+     * @return this writer
+     */
+    public JournalWriter<T> setGroupCommit(boolean groupCommit) {
+        if (groupCommit && groupCommitter == null) {
+            groupCommitter = new GroupCommitter(getLocation());
+            groupCommitter.setTxListener(txListener);
+        } else if (!groupCommit && groupCommitter != null) {
+            groupCommitter.close();
+            groupCommitter = null;
+        }
+        return this;
+    }
+
     public boolean isTxActive() {
         return txActive;
     }
@@ -396,126 +574,7 @@ public class JournalWriter<T> extends Journal<T> {
     }
 
     public void mergeAppend(PeekingIterator<T> data) throws JournalException {
-
-        if (lagMillis == 0) {
-            throw new JournalException("This journal is not configured to have lag partition");
-        }
-
-        beginTx();
-
-        if (data == null || data.isEmpty()) {
-            return;
-        }
-
-        long dataMaxTimestamp = getTimestamp(data.peekLast());
-        long hard = getAppendTimestampLo();
-
-        if (dataMaxTimestamp < hard) {
-            return;
-        }
-
-        final Partition<T> lagPartition = openOrCreateLagPartition();
-        this.doDiscard = true;
-        this.doJournal = true;
-
-        long dataMinTimestamp = getTimestamp(data.peekFirst());
-        long lagMaxTimestamp = getMaxTimestamp();
-        long lagMinTimestamp = lagPartition.size() == 0L ? 0 : getTimestamp(lagPartition.read(0));
-        long soft = Math.max(dataMaxTimestamp, lagMaxTimestamp) - lagMillis;
-
-        if (dataMinTimestamp > lagMaxTimestamp) {
-            // this could be as simple as just appending data to lag
-            // the only complication is that after adding records to lag it could swell beyond
-            // the allocated "lagSwellTimestamp"
-            // we should check if this is going to happen and optimise copying of data
-
-            long lagSizeMillis;
-            if (hard > 0L) {
-                lagSizeMillis = dataMaxTimestamp - hard;
-            } else if (lagMinTimestamp > 0L) {
-                lagSizeMillis = dataMaxTimestamp - lagMinTimestamp;
-            } else {
-                lagSizeMillis = 0L;
-            }
-
-            if (lagSizeMillis > lagSwellMillis) {
-                // data would  be too big and would stretch outside of swell timestamp
-                // this is when lag partition should be split, but it is still a straight split without re-order
-
-                Partition<T> tempPartition = createTempPartition().open();
-                splitAppend(lagPartition.bufferedIterator(), hard, soft, tempPartition);
-                splitAppend(data, hard, soft, tempPartition);
-                replaceIrregularPartition(tempPartition);
-            } else {
-                // simplest case, just append to lag
-                lagPartition.append(data);
-            }
-        } else {
-
-            Partition<T> tempPartition = createTempPartition().open();
-            if (dataMinTimestamp > lagMinTimestamp && dataMaxTimestamp < lagMaxTimestamp) {
-                //
-                // overlap scenario 1: data is fully inside of lag
-                //
-
-                // calc boundaries of lag that intersects with data
-                long lagMid1 = lagPartition.indexOf(dataMinTimestamp, BSearchType.OLDER_OR_SAME);
-                long lagMid2 = lagPartition.indexOf(dataMaxTimestamp, BSearchType.NEWER_OR_SAME);
-
-                // copy part of lag above data
-                splitAppend(lagPartition.bufferedIterator(0, lagMid1), hard, soft, tempPartition);
-
-                // merge lag with data and copy result to temp partition
-                splitAppendMerge(data, lagPartition.bufferedIterator(lagMid1 + 1, lagMid2 - 1), hard, soft, tempPartition);
-
-                // copy part of lag below data
-                splitAppend(lagPartition.bufferedIterator(lagMid2, lagPartition.size() - 1), hard, soft, tempPartition);
-
-            } else if (dataMaxTimestamp < lagMinTimestamp && dataMaxTimestamp <= lagMinTimestamp) {
-                //
-                // overlap scenario 2: data sits directly above lag
-                //
-                splitAppend(data, hard, soft, tempPartition);
-                splitAppend(lagPartition.bufferedIterator(), hard, soft, tempPartition);
-            } else if (dataMinTimestamp <= lagMinTimestamp && dataMaxTimestamp < lagMaxTimestamp) {
-                //
-                // overlap scenario 3: bottom part of data overlaps top part of lag
-                //
-
-                // calc overlap line
-                long split = lagPartition.indexOf(dataMaxTimestamp, BSearchType.NEWER_OR_SAME);
-
-                // merge lag with data and copy result to temp partition
-                splitAppendMerge(data, lagPartition.bufferedIterator(0, split - 1), hard, soft, tempPartition);
-
-                // copy part of lag below data
-                splitAppend(lagPartition.bufferedIterator(split, lagPartition.size() - 1), hard, soft, tempPartition);
-            } else if (dataMinTimestamp > lagMinTimestamp && dataMaxTimestamp >= lagMaxTimestamp) {
-                //
-                // overlap scenario 4: top part of data overlaps with bottom part of lag
-                //
-                long split = lagPartition.indexOf(dataMinTimestamp, BSearchType.OLDER_OR_SAME);
-
-                // copy part of lag above overlap
-                splitAppend(lagPartition.bufferedIterator(0, split), hard, soft, tempPartition);
-
-                // merge lag with data and copy result to temp partition
-                splitAppendMerge(data, lagPartition.bufferedIterator(split + 1, lagPartition.size() - 1), hard, soft, tempPartition);
-            } else if (dataMinTimestamp <= lagMinTimestamp && dataMaxTimestamp >= lagMaxTimestamp) {
-                //
-                // overlap scenario 5: lag is fully inside of data
-                //
-
-                // merge lag with data and copy result to temp partition
-                splitAppendMerge(data, lagPartition.bufferedIterator(), hard, soft, tempPartition);
-            } else {
-                throw new JournalRuntimeException("Unsupported overlap type: lag min/max [%s/%s] data min/max: [%s/%s]"
-                        , Dates.toString(lagMinTimestamp), Dates.toString(lagMaxTimestamp)
-                        , Dates.toString(dataMinTimestamp), Dates.toString(dataMaxTimestamp));
-            }
-
-            replaceIrregularPartition(tempPartition);
-        }
+        mergeAppend(data, false);
     }
 
     public void notifyTxError() {
@@ -572,10 +631,19 @@ public class JournalWriter<T> extends Journal<T> {
     }
 
     public void setTxListener(TxListener txListener) {
+        if (txListener != null && (compactor != null || hasCompressedPartitions())) {
+            throw new JournalRuntimeException("Journal %s has compressed partitions and cannot be published", getLocation());
+        }
         this.txListener = txListener;
+        if (groupCommitter != null) {
+            groupCommitter.setTxListener(txListener);
+        }
     }
 
     public void truncate() throws JournalException {
+        if (compactor != null) {
+            compactor.await();
+        }
         beginTx();
         int partitionCount = getPartitionCount();
         for (int i = 0; i < partitionCount; i++) {
@@ -586,6 +654,7 @@ public class JournalWriter<T> extends Journal<T> {
         }
 
         closePartitions();
+        sealedPartitionCount = 0;
 
         for (int i = 0, sz = getSymbolTableCount(); i < sz; i++) {
             getSymbolTable(i).truncate();
@@ -594,6 +663,50 @@ public class JournalWriter<T> extends Journal<T> {
         commitDurable();
     }
 
+    /**
+     * Pool of one thread per CPU core. Idle threads exit, pool is never shut down.
+     */
+    private static ExecutorService newColumnPool() {
+        int n = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamedDaemonThreadFactory("questdb-journal-columns", true));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * @param obj object to add
+     * @param row position of object in batch, symbols of which are resolved by {@link #resolveSymbols(Object[])},
+     *            or -1 to resolve symbols of object one by one
+     */
+    private void append0(T obj, int row) throws JournalException {
+
+        if (obj == null) {
+            throw new JournalException("Cannot append NULL to %s", this);
+        }
+
+        if (!txActive) {
+            beginTx();
+        }
+
+        if (checkOrder) {
+            long timestamp = getTimestamp(obj);
+
+            if (timestamp > appendTimestampHi) {
+                switchAppendPartition(timestamp);
+            }
+
+            if (timestamp < appendTimestampLo) {
+                throw new JournalException("Cannot insert records out of order. maxHardTimestamp=%d (%s), timestamp=%d (%s): %s"
+                        , appendTimestampLo, Dates.toString(appendTimestampLo), timestamp, Dates.toString(timestamp), this);
+            }
+
+            appendPartition.append(obj, symbolKeys, row);
+            appendTimestampLo = timestamp;
+        } else {
+            getAppendPartition().append(obj, symbolKeys, row);
+        }
+    }
+
     private void commit(byte command, long txn, long txPin) throws JournalException {
         boolean force = command == Tx.TX_FORCE;
         Partition<T> partition = lastNonEmptyNonLag();
@@ -657,12 +770,56 @@ public class JournalWriter<T> extends Journal<T> {
         if (force) {
             txLog.force();
         }
+        txLagName = tx.lagName;
+        txLagSize = tx.lagSize;
+    }
+
+    private long commitAsync(long txn, long txPin) throws JournalException {
+        if (!txActive) {
+            return groupCommitter.getLastSequence();
+        }
+
+        commit(Tx.TX_NORMAL, txn, txPin);
+        // tx log refers to everything else, committer syncs it last
+        txFiles.clear();
+        for (int i = Math.max(txPartitionIndex, 0), n = nonLagPartitionCount(); i < n; i++) {
+            getPartition(i, false).collectDirty(txFiles);
+        }
+        Partition<T> lag = getIrregularPartition();
+        if (lag != null) {
+            lag.collectDirty(txFiles);
+        }
+        for (int i = 0, n = getSymbolTableCount(); i < n; i++) {
+            getSymbolTable(i).collectDirty(txFiles);
+        }
+        txLog.collectDirty(txFiles);
+        long sequence = groupCommitter.submit(txFiles);
+        endTx();
+        return sequence;
+    }
+
+    private void compactSealedPartitions() throws JournalException {
+        // last partition is appended to and lag partition is never sealed
+        for (int n = nonLagPartitionCount() - 1; sealedPartitionCount < n; sealedPartitionCount++) {
+            // writer must not hold column files compactor is about to delete
+            Partition<T> partition = getPartition(sealedPartitionCount, false);
+            partition.close();
+            compactor.compactAsync(partition.getPartitionDir());
+        }
     }
 
     private Partition<T> createTempPartition() {
         return createTempPartition(Constants.TEMP_DIRECTORY_PREFIX + '.' + System.currentTimeMillis() + '.' + UUID.randomUUID());
     }
 
+    private void endTx() throws JournalException {
+        expireOpenFiles();
+        txActive = false;
+        if (compactor != null) {
+            compactSealedPartitions();
+        }
+    }
+
     private Partition<T> getAppendPartition() throws JournalException {
         if (this.appendPartition != null) {
             return appendPartition;
@@ -679,6 +836,143 @@ public class JournalWriter<T> extends Journal<T> {
         }
     }
 
+    private boolean hasCompressedPartitions() {
+        for (int i = 0, n = partitions.size(); i < n; i++) {
+            if (PartitionCompactor.isCompressed(metadata, partitions.getQuick(i).getPartitionDir())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void mergeAppend(PeekingIterator<T> data, boolean inPlace) throws JournalException {
+
+        if (lagMillis == 0) {
+            throw new JournalException("This journal is not configured to have lag partition");
+        }
+
+        beginTx();
+
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+
+        long dataMaxTimestamp = getTimestamp(data.peekLast());
+        long hard = getAppendTimestampLo();
+
+        if (dataMaxTimestamp < hard) {
+            return;
+        }
+
+        final Partition<T> lagPartition = openOrCreateLagPartition();
+        this.doDiscard = true;
+        this.doJournal = true;
+
+        long dataMinTimestamp = getTimestamp(data.peekFirst());
+        long lagMaxTimestamp = getMaxTimestamp();
+        long lagMinTimestamp = lagPartition.size() == 0L ? 0 : getTimestamp(lagPartition.read(0));
+        long soft = Math.max(dataMaxTimestamp, lagMaxTimestamp) - lagMillis;
+        long splice;
+
+        if (dataMinTimestamp > lagMaxTimestamp) {
+            // this could be as simple as just appending data to lag
+            // the only complication is that after adding records to lag it could swell beyond
+            // the allocated "lagSwellTimestamp"
+            // we should check if this is going to happen and optimise copying of data
+
+            long lagSizeMillis;
+            if (hard > 0L) {
+                lagSizeMillis = dataMaxTimestamp - hard;
+            } else if (lagMinTimestamp > 0L) {
+                lagSizeMillis = dataMaxTimestamp - lagMinTimestamp;
+            } else {
+                lagSizeMillis = 0L;
+            }
+
+            if (lagSizeMillis > lagSwellMillis) {
+                // data would  be too big and would stretch outside of swell timestamp
+                // this is when lag partition should be split, but it is still a straight split without re-order
+
+                Partition<T> tempPartition = createTempPartition().open();
+                splitAppend(lagPartition.bufferedIterator(), hard, soft, tempPartition);
+                splitAppend(data, hard, soft, tempPartition);
+                replaceIrregularPartition(tempPartition);
+            } else {
+                // simplest case, just append to lag
+                lagPartition.append(data);
+            }
+        } else if (inPlace && (splice = spliceOffset(lagPartition, hard, dataMinTimestamp, dataMaxTimestamp, lagMinTimestamp)) > -1) {
+            // as with simple append, lag does not swell beyond its limit and nothing is discarded,
+            // so only part of lag data overlaps is merged
+            spliceLag(lagPartition, splice, data);
+        } else {
+
+            Partition<T> tempPartition = createTempPartition().open();
+            if (dataMinTimestamp > lagMinTimestamp && dataMaxTimestamp < lagMaxTimestamp) {
+                //
+                // overlap scenario 1: data is fully inside of lag
+                //
+
+                // calc boundaries of lag that intersects with data
+                long lagMid1 = lagPartition.indexOf(dataMinTimestamp, BSearchType.OLDER_OR_SAME);
+                long lagMid2 = lagPartition.indexOf(dataMaxTimestamp, BSearchType.NEWER_OR_SAME);
+
+                // copy part of lag above data
+                splitAppend(lagPartition.bufferedIterator(0, lagMid1), hard, soft, tempPartition);
+
+                // merge lag with data and copy result to temp partition
+                splitAppendMerge(data, lagPartition.bufferedIterator(lagMid1 + 1, lagMid2 - 1), hard, soft, tempPartition);
+
+                // copy part of lag below data
+                splitAppend(lagPartition.bufferedIterator(lagMid2, lagPartition.size() - 1), hard, soft, tempPartition);
+
+            } else if (dataMaxTimestamp < lagMinTimestamp && dataMaxTimestamp <= lagMinTimestamp) {
+                //
+                // overlap scenario 2: data sits directly above lag
+                //
+                splitAppend(data, hard, soft, tempPartition);
+                splitAppend(lagPartition.bufferedIterator(), hard, soft, tempPartition);
+            } else if (dataMinTimestamp <= lagMinTimestamp && dataMaxTimestamp < lagMaxTimestamp) {
+                //
+                // overlap scenario 3: bottom part of data overlaps top part of lag
+                //
+
+                // calc overlap line
+                long split = lagPartition.indexOf(dataMaxTimestamp, BSearchType.NEWER_OR_SAME);
+
+                // merge lag with data and copy result to temp partition
+                splitAppendMerge(data, lagPartition.bufferedIterator(0, split - 1), hard, soft, tempPartition);
+
+                // copy part of lag below data
+                splitAppend(lagPartition.bufferedIterator(split, lagPartition.size() - 1), hard, soft, tempPartition);
+            } else if (dataMinTimestamp > lagMinTimestamp && dataMaxTimestamp >= lagMaxTimestamp) {
+                //
+                // overlap scenario 4: top part of data overlaps with bottom part of lag
+                //
+                long split = lagPartition.indexOf(dataMinTimestamp, BSearchType.OLDER_OR_SAME);
+
+                // copy part of lag above overlap
+                splitAppend(lagPartition.bufferedIterator(0, split), hard, soft, tempPartition);
+
+                // merge lag with data and copy result to temp partition
+                splitAppendMerge(data, lagPartition.bufferedIterator(split + 1, lagPartition.size() - 1), hard, soft, tempPartition);
+            } else if (dataMinTimestamp <= lagMinTimestamp && dataMaxTimestamp >= lagMaxTimestamp) {
+                //
+                // overlap scenario 5: lag is fully inside of data
+                //
+
+                // merge lag with data and copy result to temp partition
+                splitAppendMerge(data, lagPartition.bufferedIterator(), hard, soft, tempPartition);
+            } else {
+                throw new JournalRuntimeException("Unsupported overlap type: lag min/max [%s/%s] data min/max: [%s/%s]"
+                        , Dates.toString(lagMinTimestamp), Dates.toString(lagMaxTimestamp)
+                        , Dates.toString(dataMinTimestamp), Dates.toString(dataMaxTimestamp));
+            }
+
+            replaceIrregularPartition(tempPartition);
+        }
+    }
+
     private void notifyTxListener() {
         if (txListener != null) {
             txListener.onCommit();
@@ -690,6 +984,37 @@ public class JournalWriter<T> extends Journal<T> {
         purgeTempPartitions();
     }
 
+    /**
+     * Resolves keys of symbol values of all objects, one batch per symbol column.
+     *
+     * @return false when journal has no symbol columns to resolve
+     */
+    @SafeVarargs
+    private final boolean resolveSymbols(T... objects) {
+        boolean resolved = false;
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            ColumnMetadata m = metadata.getColumnQuick(i);
+            if (m.type != ColumnType.SYMBOL || m.offset == 0) {
+                continue;
+            }
+
+            symbolValues.clear();
+            for (int k = 0; k < objects.length; k++) {
+                T obj = objects[k];
+                // null object is reported when it is appended
+                symbolValues.add(obj == null ? null : (String) Unsafe.getUnsafe().getObject(obj, m.offset));
+            }
+
+            IntList keys = symbolKeys.getQuiet(i);
+            if (keys == null) {
+                symbolKeys.extendAndSet(i, keys = new IntList());
+            }
+            m.symbolTable.put(symbolValues, keys);
+            resolved = true;
+        }
+        return resolved;
+    }
+
     private void rollback0(long address, boolean writeDiscard) throws JournalException {
 
         if (address == -1L) {
@@ -703,6 +1028,18 @@ public class JournalWriter<T> extends Journal<T> {
             throw new JournalException("Invalid transaction address");
         }
 
+        if (compactor != null) {
+            compactor.await();
+        }
+
+        int partitionIndex = tx.journalMaxRowID == -1 ? -1 : Rows.toPartitionIndex(tx.journalMaxRowID);
+        if (partitionIndex > -1 && partitionIndex < nonLagPartitionCount()) {
+            Partition<T> p = getPartition(partitionIndex, false);
+            if (PartitionCompactor.isCompressed(metadata, p.getPartitionDir()) && Rows.toLocalRowID(tx.journalMaxRowID) < p.open().size()) {
+                throw new JournalException("Cannot roll back compressed partition %s", p.getPartitionDir());
+            }
+        }
+
         if (writeDiscard) {
             LOG.info().$("Journal").$(metadata.getLocation()).$(" is rolling back to transaction ").$(tx.txn).$(", timestamp ").$ts(tx.timestamp).$();
             writeDiscardFile(tx.journalMaxRowID);
@@ -710,6 +1047,7 @@ public class JournalWriter<T> extends Journal<T> {
 
         // partitions need to be dealt with first to make sure new lag is assigned a correct partitionIndex
         rollbackPartitions(tx);
+        sealedPartitionCount = Math.min(sealedPartitionCount, Math.max(nonLagPartitionCount() - 1, 0));
 
         Partition<T> lag = getIrregularPartition();
         if (tx.lagName != null && tx.lagName.length() > 0 && (lag == null || !tx.lagName.equals(lag.getName()))) {
@@ -735,6 +1073,8 @@ public class JournalWriter<T> extends Journal<T> {
         appendTimestampLo = -1;
         appendTimestampHi = -1;
         appendPartition = null;
+        txLagName = tx.lagName;
+        txLagSize = tx.lagSize;
         txLog.writeTxAddress(tx.address);
         txActive = false;
     }
@@ -776,6 +1116,68 @@ public class JournalWriter<T> extends Journal<T> {
         }
     }
 
+    private void spliceLag(Partition<T> lag, long split, Iterator<T> data) throws JournalException {
+        long size = lag.size();
+        if (split < (lag.getName().equals(txLagName) ? txLagSize : 0)) {
+            // data overlaps committed rows, they are copied into new version of lag
+            Partition<T> newLag = createTempPartition().open();
+            newLag.append(lag, 0, split);
+            spliceMerge(lag, split, size, data, newLag);
+            replaceIrregularPartition(newLag);
+        } else {
+            // overlapped rows are not committed, copy them aside before they are overwritten
+            if (o3Tail == null) {
+                o3Tail = createTempPartition().open();
+            } else {
+                o3Tail.open();
+                o3Tail.truncate(0);
+            }
+            o3Tail.append(lag, split, size);
+            o3Tail.commit();
+            lag.truncate(split);
+            spliceMerge(o3Tail, 0, size - split, data, lag);
+        }
+        spliceCount++;
+    }
+
+    /**
+     * Appends rows lo..hi-1 of source partition merged with data to target partition. Runs of source rows
+     * are copied column by column, data rows are appended one by one. Source rows go first when timestamps
+     * are equal, as they do in {@link MergingIterator}.
+     */
+    private void spliceMerge(Partition<T> src, long lo, long hi, Iterator<T> data, Partition<T> dst) throws JournalException {
+        FixedColumn timestamps = src.getTimestampColumn();
+        T obj = data.hasNext() ? data.next() : null;
+        while (obj != null) {
+            long timestamp = getTimestamp(obj);
+            long run = lo;
+            while (run < hi && timestamps.getLong(run) <= timestamp) {
+                run++;
+            }
+            dst.append(src, lo, run);
+            lo = run;
+
+            long next = lo < hi ? timestamps.getLong(lo) : Long.MAX_VALUE;
+            do {
+                dst.append(obj);
+                obj = data.hasNext() ? data.next() : null;
+            } while (obj != null && getTimestamp(obj) < next);
+        }
+        dst.append(src, lo, hi);
+    }
+
+    /**
+     * Finds first row of lag, which data can be spliced at. Lag rows older than data are not affected by splice.
+     *
+     * @return row to split lag at or -1 when data has to be merged with whole of lag
+     */
+    private long spliceOffset(Partition<T> lag, long hard, long dataMinTimestamp, long dataMaxTimestamp, long lagMinTimestamp) throws JournalException {
+        if (dataMinTimestamp < hard || dataMaxTimestamp - (hard > 0L ? hard : lagMinTimestamp) > lagSwellMillis) {
+            return -1;
+        }
+        return dataMinTimestamp < lagMinTimestamp ? 0 : lag.indexOf(dataMinTimestamp, BSearchType.OLDER_OR_SAME) + 1;
+    }
+
     private void splitAppend(Iterator<T> it, long hard, long soft, Partition<T> partition) throws JournalException {
         while (it.hasNext()) {
             T obj = it.next();
@@ -24,6 +24,7 @@
 package com.questdb;
 
 import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalNoSuchFileException;
 import com.questdb.ex.JournalRuntimeException;
 import com.questdb.factory.configuration.ColumnMetadata;
 import com.questdb.factory.configuration.JournalMetadata;
@@ -33,6 +34,7 @@ import com.questdb.log.LogFactory;
 import com.questdb.misc.*;
 import com.questdb.std.CharSink;
 import com.questdb.std.DirectInputStream;
+import com.questdb.std.IntList;
 import com.questdb.std.ObjList;
 import com.questdb.store.*;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -41,12 +43,15 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
+import java.util.concurrent.*;
 
 @SuppressFBWarnings({"PL_PARALLEL_LISTS", "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS"})
 public class Partition<T> implements Closeable {
     private static final Log LOG = LogFactory.getLog(Partition.class);
+    private static final int ZONE_MAP_BIT_HINT = 16;
     private final Journal<T> journal;
     private final ObjList<SymbolIndexProxy<T>> indexProxies = new ObjList<>();
     private final Interval interval;
@@ -59,6 +64,7 @@ public class Partition<T> implements Closeable {
     private long lastAccessed = System.currentTimeMillis();
     private long txLimit;
     private FixedColumn timestampColumn;
+    private ZoneMap[] zoneMaps;
 
     Partition(Journal<T> journal, Interval interval, int partitionIndex, long txLimit, long[] indexTxAddresses) {
         JournalMetadata<T> meta = journal.getMetadata();
@@ -84,6 +90,21 @@ public class Partition<T> implements Closeable {
         }
     }
 
+    /**
+     * Passes access hint to files of all open columns, see {@link com.questdb.store.MemoryFile#advise(int)}.
+     * Index files are left alone, they are always accessed randomly.
+     */
+    public void advise(int advice) {
+        if (isOpen()) {
+            for (int i = 0; i < columns.length; i++) {
+                AbstractColumn col = Unsafe.arrayGet(columns, i);
+                if (col != null) {
+                    col.advise(advice);
+                }
+            }
+        }
+    }
+
     public PartitionBufferedIterator<T> bufferedIterator() {
         return new PartitionBufferedIterator<>(this, 0, size() - 1);
     }
@@ -96,8 +117,10 @@ public class Partition<T> implements Closeable {
         if (isOpen()) {
             for (int i = 0; i < columns.length; i++) {
                 Misc.free(Unsafe.arrayGet(columns, i));
+                Misc.free(Unsafe.arrayGet(zoneMaps, i));
             }
             columns = null;
+            zoneMaps = null;
             LOG.debug().$("Partition").$(partitionDir).$(" is closed").$();
         }
 
@@ -106,15 +129,67 @@ public class Partition<T> implements Closeable {
         }
     }
 
+    /**
+     * Adds column, zone map and index files written to since previous call to list of files to sync.
+     * Files of closed partition cannot be reached and are left out.
+     */
+    public void collectDirty(ObjList<MemoryFile> files) {
+        if (isOpen()) {
+            for (int i = 0; i < columns.length; i++) {
+                AbstractColumn col = Unsafe.arrayGet(columns, i);
+                if (col != null) {
+                    col.collectDirty(files);
+                }
+                ZoneMap zoneMap = Unsafe.arrayGet(zoneMaps, i);
+                if (zoneMap != null) {
+                    zoneMap.collectDirty(files);
+                }
+            }
+        }
+
+        for (int i = 0, k = indexProxies.size(); i < k; i++) {
+            indexProxies.getQuick(i).collectDirty(files);
+        }
+    }
+
     public void commitColumns() {
-        // have to commit columns from first to last
-        // this is because size of partition is calculated by size of
-        // last column. If below loop is to break in the middle partition will assume smallest
-        // column size.
-        for (int i = 0; i < columnCount; i++) {
-            AbstractColumn col = Unsafe.arrayGet(columns, i);
+        // size of partition is calculated by size of last column, so last column is committed
+        // after all others. If commit is to break in the middle partition will assume smallest
+        // column size. Other columns and zone maps of committed columns are independent of each other.
+        int last = columnCount - 1;
+        while (last > -1 && Unsafe.arrayGet(columns, last) == null) {
+            last--;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(columnCount);
+        for (int i = 0; i < last; i++) {
+            final AbstractColumn col = Unsafe.arrayGet(columns, i);
+            final ZoneMap zoneMap = zoneMaps == null ? null : Unsafe.arrayGet(zoneMaps, i);
             if (col != null) {
-                col.commit();
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        col.commit();
+                        if (zoneMap != null) {
+                            zoneMap.update((FixedColumn) col);
+                        }
+                        return null;
+                    }
+                });
+            }
+        }
+
+        try {
+            runColumnTasks(tasks);
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+
+        if (last > -1) {
+            Unsafe.arrayGet(columns, last).commit();
+            ZoneMap zoneMap = zoneMaps == null ? null : Unsafe.arrayGet(zoneMaps, last);
+            if (zoneMap != null) {
+                zoneMap.update(fixCol(last));
             }
         }
     }
@@ -125,9 +200,13 @@ public class Partition<T> implements Closeable {
         }
 
         for (int i = 0; i < columns.length; i++) {
-            if (columns[i] != null) {
+            // column file opened before PartitionCompactor replaced it must not be recreated
+            if (columns[i] != null && !new File(partitionDir, journal.getMetadata().getColumnQuick(i).name + CompressedColumn.FILE_SUFFIX).exists()) {
                 columns[i].compact();
             }
+            if (zoneMaps[i] != null) {
+                zoneMaps[i].compact();
+            }
         }
 
         for (int i = 0, k = indexProxies.size(); i < k; i++) {
@@ -179,11 +258,11 @@ public class Partition<T> implements Closeable {
         return varCol(columnIndex).getFlyweightStrB(localRowID);
     }
 
-    public KVIndex getIndexForColumn(String columnName) throws JournalException {
+    public ColumnIndex getIndexForColumn(String columnName) throws JournalException {
         return getIndexForColumn(journal.getMetadata().getColumnIndex(columnName));
     }
 
-    public KVIndex getIndexForColumn(final int columnIndex) throws JournalException {
+    public ColumnIndex getIndexForColumn(final int columnIndex) throws JournalException {
         SymbolIndexProxy h = sparseIndexProxies[columnIndex];
         if (h == null) {
             throw new JournalException("There is no index for column '%s' in %s", columnMetadata[columnIndex].name, this);
@@ -261,6 +340,16 @@ public class Partition<T> implements Closeable {
         return timestampColumn;
     }
 
+    /**
+     * Min/max summary of column data or null when column is not summarised.
+     *
+     * @param columnIndex column index
+     * @return zone map of column or null
+     */
+    public ZoneMap getZoneMap(int columnIndex) {
+        return zoneMaps == null ? null : Unsafe.arrayGet(zoneMaps, columnIndex);
+    }
+
     public long indexOf(long timestamp, BSearchType type) {
         return getTimestampColumn().bsearchEdge(timestamp, type);
     }
@@ -336,11 +425,22 @@ public class Partition<T> implements Closeable {
         if (!isOpen()) {
             throw new JournalException("Cannot rebuild indexes in closed partition: %s", this);
         }
+        // evaluate size before tasks read it concurrently
+        size();
+        List<Callable<Void>> tasks = new ArrayList<>();
         for (int i = 0; i < columnCount; i++) {
             if (Unsafe.arrayGet(columnMetadata, i).indexed) {
-                rebuildIndex(i);
+                final int columnIndex = i;
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        rebuildIndex(columnIndex);
+                        return null;
+                    }
+                });
             }
         }
+        runColumnTasks(tasks);
     }
 
     public long size() {
@@ -376,18 +476,26 @@ public class Partition<T> implements Closeable {
                 '}';
     }
 
-    public void updateIndexes(long oldSize, long newSize) {
+    public void updateIndexes(final long oldSize, final long newSize) {
         if (oldSize < newSize) {
             try {
+                List<Callable<Void>> tasks = new ArrayList<>(indexProxies.size());
                 for (int n = 0, k = indexProxies.size(); n < k; n++) {
                     SymbolIndexProxy<T> proxy = indexProxies.getQuick(n);
-                    KVIndex index = proxy.getIndex();
-                    FixedColumn col = fixCol(proxy.getColumnIndex());
-                    for (long i = oldSize; i < newSize; i++) {
-                        index.add(col.getInt(i), i);
-                    }
-                    index.commit();
+                    final ColumnIndex index = proxy.getIndex();
+                    final FixedColumn col = fixCol(proxy.getColumnIndex());
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            for (long i = oldSize; i < newSize; i++) {
+                                index.add(col.getInt(i), i);
+                            }
+                            index.commit();
+                            return null;
+                        }
+                    });
                 }
+                runColumnTasks(tasks);
             } catch (JournalException e) {
                 throw new JournalRuntimeException(e);
             }
@@ -418,6 +526,16 @@ public class Partition<T> implements Closeable {
     }
 
     void append(T obj) throws JournalException {
+        append(obj, null, -1);
+    }
+
+    /**
+     * Appends object, symbol keys of which may have been resolved ahead for a batch of objects.
+     *
+     * @param symbolKeys keys of symbol values of batch by column index
+     * @param row        position of object in batch or -1 to resolve symbol values one by one
+     */
+    void append(T obj, ObjList<IntList> symbolKeys, int row) throws JournalException {
 
         try {
             for (int i = 0; i < columnCount; i++) {
@@ -443,11 +561,15 @@ public class Partition<T> implements Closeable {
                         break;
                     case SYMBOL:
                         int key;
-                        String sym = (String) Unsafe.getUnsafe().getObject(obj, m.offset);
-                        if (sym == null) {
-                            key = SymbolTable.VALUE_IS_NULL;
+                        if (row > -1) {
+                            key = symbolKeys.getQuick(i).getQuick(row);
                         } else {
-                            key = m.symbolTable.put(sym);
+                            String sym = (String) Unsafe.getUnsafe().getObject(obj, m.offset);
+                            if (sym == null) {
+                                key = SymbolTable.VALUE_IS_NULL;
+                            } else {
+                                key = m.symbolTable.put(sym);
+                            }
                         }
                         if (m.indexed) {
                             sparseIndexProxies[i].getIndex().add(key, ((FixedColumn) Unsafe.arrayGet(columns, i)).putInt(key));
@@ -473,6 +595,50 @@ public class Partition<T> implements Closeable {
         }
     }
 
+    /**
+     * Appends rows of other partition of the same journal. Column data is copied between mapped pages,
+     * rows are not read into objects. Only indexes are updated row by row.
+     *
+     * @param src partition to copy rows from
+     * @param lo  first row to copy
+     * @param hi  row to copy up to, exclusive
+     */
+    void append(Partition<T> src, long lo, long hi) throws JournalException {
+        if (lo >= hi) {
+            return;
+        }
+
+        long row = size();
+        try {
+            for (int i = 0; i < columnCount; i++) {
+                ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+                switch (m.type) {
+                    case STRING:
+                    case BINARY:
+                        varCol(i).append(src.varCol(i), lo, hi);
+                        break;
+                    default:
+                        fixCol(i).append(src.fixCol(i), lo, hi);
+                        break;
+                }
+
+                if (m.indexed) {
+                    ColumnIndex index = sparseIndexProxies[i].getIndex();
+                    for (long r = lo; r < hi; r++) {
+                        index.add(src.indexKey(i, m, r), row + r - lo);
+                    }
+                }
+
+                Unsafe.arrayGet(columns, i).commit();
+            }
+
+            applyTx(Journal.TX_LIMIT_EVAL, null);
+        } catch (Throwable e) {
+            ((JournalWriter) this.journal).rollback();
+            throw e;
+        }
+    }
+
     private void appendBin(T obj, int i, ColumnMetadata meta) {
         ByteBuffer buf = (ByteBuffer) Unsafe.getUnsafe().getObject(obj, meta.offset);
         if (buf == null) {
@@ -493,13 +659,39 @@ public class Partition<T> implements Closeable {
                 c.close();
                 columns[i] = null;
             }
+            zoneMaps[i] = Misc.free(zoneMaps[i]);
         }
     }
 
     void commit() throws JournalException {
+        List<Callable<Void>> tasks = new ArrayList<>(indexProxies.size() + columnCount);
         for (int i = 0, k = indexProxies.size(); i < k; i++) {
-            indexProxies.getQuick(i).getIndex().commit();
+            final ColumnIndex index = indexProxies.getQuick(i).getIndex();
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    index.commit();
+                    return null;
+                }
+            });
+        }
+
+        if (zoneMaps != null) {
+            for (int i = 0; i < zoneMaps.length; i++) {
+                final ZoneMap zoneMap = Unsafe.arrayGet(zoneMaps, i);
+                if (zoneMap != null) {
+                    final FixedColumn col = fixCol(i);
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            zoneMap.update(col);
+                            return null;
+                        }
+                    });
+                }
+            }
         }
+        runColumnTasks(tasks);
     }
 
     @SuppressWarnings("unchecked")
@@ -521,18 +713,39 @@ public class Partition<T> implements Closeable {
     }
 
     void force() throws JournalException {
+        List<Callable<Void>> tasks = new ArrayList<>();
         for (int i = 0, k = indexProxies.size(); i < k; i++) {
-            indexProxies.getQuick(i).getIndex().force();
+            final ColumnIndex index = indexProxies.getQuick(i).getIndex();
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    index.force();
+                    return null;
+                }
+            });
         }
 
         if (columns != null) {
             for (int i = 0; i < columns.length; i++) {
-                AbstractColumn column = Unsafe.arrayGet(columns, i);
-                if (column != null) {
-                    column.force();
+                final AbstractColumn column = Unsafe.arrayGet(columns, i);
+                final ZoneMap zoneMap = zoneMaps[i];
+                if (column != null || zoneMap != null) {
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            if (column != null) {
+                                column.force();
+                            }
+                            if (zoneMap != null) {
+                                zoneMap.force();
+                            }
+                            return null;
+                        }
+                    });
                 }
             }
         }
+        runColumnTasks(tasks);
     }
 
     void getIndexPointers(long[] pointers) throws JournalException {
@@ -543,8 +756,22 @@ public class Partition<T> implements Closeable {
     }
 
     @SuppressFBWarnings({"PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS"})
+    private int indexKey(int columnIndex, ColumnMetadata m, long localRowID) {
+        switch (m.type) {
+            case STRING:
+                CharSequence s = varCol(columnIndex).getFlyweightStr(localRowID);
+                return s == null ? SymbolTable.VALUE_IS_NULL : Hash.boundedHash(s, m.distinctCountHint);
+            case INT:
+                return fixCol(columnIndex).getInt(localRowID) & m.distinctCountHint;
+            default:
+                return fixCol(columnIndex).getInt(localRowID);
+        }
+    }
+
     private void open0() throws JournalException {
         columns = new AbstractColumn[journal.getMetadata().getColumnCount()];
+        zoneMaps = new ZoneMap[columns.length];
+        int tsIndex = journal.getMetadata().getTimestampIndex();
 
         try {
             for (int i = 0; i < columns.length; i++) {
@@ -566,16 +793,12 @@ public class Partition<T> implements Closeable {
                         );
                         break;
                     default:
-                        Unsafe.arrayPut(columns, i,
-                                new FixedColumn(
-                                        new MemoryFile(
-                                                new File(partitionDir, Unsafe.arrayGet(columnMetadata, i).name + ".d"),
-                                                Unsafe.arrayGet(columnMetadata, i).bitHint,
-                                                journal.getMode()
-                                        ),
-                                        Unsafe.arrayGet(columnMetadata, i).size
-                                )
-                        );
+                        Unsafe.arrayPut(columns, i, openFixedColumn(Unsafe.arrayGet(columnMetadata, i)));
+
+                        // timestamp column is already searchable by interval
+                        if (i != tsIndex && ZoneMap.isSupported(Unsafe.arrayGet(columnMetadata, i).type)) {
+                            Unsafe.arrayPut(zoneMaps, i, openZoneMap(Unsafe.arrayGet(columnMetadata, i)));
+                        }
                         break;
                 }
             }
@@ -584,12 +807,59 @@ public class Partition<T> implements Closeable {
             throw e;
         }
 
-        int tsIndex = journal.getMetadata().getTimestampIndex();
         if (tsIndex > -1) {
             timestampColumn = fixCol(tsIndex);
         }
     }
 
+    private FixedColumn openCompressedColumn(ColumnMetadata m) throws JournalException {
+        try {
+            // column of sealed partition rewritten by PartitionCompactor, it is never appended to
+            return new CompressedColumn(new MemoryFile(new File(partitionDir, m.name + CompressedColumn.FILE_SUFFIX), m.bitHint, JournalMode.READ), m.type, m.size);
+        } catch (JournalNoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private FixedColumn openFixedColumn(ColumnMetadata m) throws JournalException {
+        if (!CompressedColumn.isSupported(m.type)) {
+            return openPlainColumn(m);
+        }
+
+        FixedColumn column = openCompressedColumn(m);
+        if (column != null) {
+            return column;
+        }
+
+        try {
+            return openPlainColumn(m);
+        } catch (JournalNoSuchFileException e) {
+            // PartitionCompactor renames compressed file into place before it deletes column file,
+            // so column file can only be missing here when compressed file has appeared since
+            column = openCompressedColumn(m);
+            if (column == null) {
+                throw e;
+            }
+            return column;
+        }
+    }
+
+    private FixedColumn openPlainColumn(ColumnMetadata m) throws JournalException {
+        // region mapping is opt-in, bulk modes page through file one buffer at a time regardless
+        JournalMode mode = journal.getMode();
+        boolean region = journal.getMetadata().isRegionMapped() && (mode == JournalMode.READ || mode == JournalMode.APPEND);
+        return new FixedColumn(new MemoryFile(new File(partitionDir, m.name + ".d"), m.bitHint, mode, region), m.size);
+    }
+
+    private ZoneMap openZoneMap(ColumnMetadata m) throws JournalException {
+        try {
+            return new ZoneMap(new MemoryFile(new File(partitionDir, m.name + ".zm"), ZONE_MAP_BIT_HINT, journal.getMode()), m.type);
+        } catch (JournalNoSuchFileException e) {
+            // partition was created before zone maps, readers will scan every row
+            return null;
+        }
+    }
+
     private void readBin(long localRowID, T obj, int i, ColumnMetadata m) {
         int size = ((VariableColumn) Unsafe.arrayGet(columns, i)).getBinLen(localRowID);
         ByteBuffer buf = (ByteBuffer) Unsafe.getUnsafe().getObject(obj, m.offset);
@@ -637,12 +907,17 @@ public class Partition<T> implements Closeable {
     private void rebuildIndex(int columnIndex, int keyCountHint, int recordCountHint, int txCountHint) throws JournalException {
         final long time = System.nanoTime();
 
-        getIndexForColumn(columnIndex).close();
+        // close through proxy, so that it reopens rebuilt index rather than handing out closed one
+        SymbolIndexProxy<T> proxy = sparseIndexProxies[columnIndex];
+        if (proxy == null) {
+            throw new JournalException("There is no index for column '%s' in %s", columnMetadata[columnIndex].name, this);
+        }
+        proxy.close();
 
         File base = new File(partitionDir, columnMetadata[columnIndex].name);
-        KVIndex.delete(base);
+        SymbolIndexProxy.deleteIndex(base);
 
-        try (KVIndex index = new KVIndex(base, keyCountHint, recordCountHint, txCountHint, JournalMode.APPEND, 0)) {
+        try (ColumnIndex index = SymbolIndexProxy.newIndex(base, columnMetadata[columnIndex], keyCountHint, recordCountHint, txCountHint, JournalMode.APPEND, 0)) {
             FixedColumn col = fixCol(columnIndex);
             for (long localRowID = 0, sz = size(); localRowID < sz; localRowID++) {
                 index.add(col.getInt(localRowID), localRowID);
@@ -653,6 +928,51 @@ public class Partition<T> implements Closeable {
         LOG.debug().$("REBUILT ").$(base).$(" in ").$(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - time)).$("ms").$();
     }
 
+    /**
+     * Runs tasks, one per column, on journal's column executor and waits for all of them to complete.
+     * Journal runs at most its column parallelism of tasks at once, each batch takes every n-th task.
+     * Tasks run in current thread when journal has no executor.
+     */
+    private void runColumnTasks(final List<Callable<Void>> tasks) throws JournalException {
+        ExecutorService executor = journal.getColumnExecutor();
+        final int parallelism = Math.min(journal.getColumnParallelism(), tasks.size());
+        try {
+            if (executor == null || parallelism < 2) {
+                for (int i = 0, n = tasks.size(); i < n; i++) {
+                    tasks.get(i).call();
+                }
+            } else {
+                List<Callable<Void>> batches = new ArrayList<>(parallelism);
+                for (int b = 0; b < parallelism; b++) {
+                    final int first = b;
+                    batches.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            for (int i = first, n = tasks.size(); i < n; i += parallelism) {
+                                tasks.get(i).call();
+                            }
+                            return null;
+                        }
+                    });
+                }
+                List<Future<Void>> futures = executor.invokeAll(batches);
+                for (int i = 0, n = futures.size(); i < n; i++) {
+                    futures.get(i).get();
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JournalException) {
+                throw (JournalException) cause;
+            }
+            throw new JournalException(cause);
+        } catch (JournalException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new JournalException(e);
+        }
+    }
+
     final void setPartitionDir(File partitionDir, long[] indexTxAddresses) {
         boolean create = partitionDir != null && !partitionDir.equals(this.partitionDir);
         this.partitionDir = partitionDir;
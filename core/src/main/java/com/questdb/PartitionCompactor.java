@@ -0,0 +1,201 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb;
+
+import com.questdb.ex.JournalException;
+import com.questdb.factory.configuration.ColumnMetadata;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Files;
+import com.questdb.misc.NamedDaemonThreadFactory;
+import com.questdb.store.CompressedColumn;
+import com.questdb.store.FixedColumn;
+import com.questdb.store.Lock;
+import com.questdb.store.LockManager;
+import com.questdb.store.MemoryFile;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewrites fixed width columns of sealed partitions in {@link CompressedColumn} format.
+ * Partition is sealed when writer has committed rows to the next partition, its
+ * column files are never appended to again.
+ * <p>
+ * Compressed file is written under temporary name and renamed when complete, after which
+ * column file is deleted. Readers, which have column file open, continue to use it and
+ * readers opening partition afterwards use compressed file. Compressed partitions can be
+ * neither replicated nor rolled back, which is why compaction is opt-in, see
+ * {@link JournalWriter#setCompressSealedPartitions(boolean)}. Writer refuses to publish journal
+ * with compressed partitions and to roll back rows of compressed partition.
+ * <p>
+ * Standalone compactor takes journal lock for the duration of {@link #compact(File)}, so it
+ * refuses journals that are open for writing.
+ */
+public class PartitionCompactor implements Closeable {
+    private static final Log LOG = LogFactory.getLog(PartitionCompactor.class);
+    private final JournalMetadata<?> metadata;
+    private final ExecutorService executor;
+    private final boolean writerOwned;
+
+    public PartitionCompactor(JournalMetadata<?> metadata) {
+        this(metadata, false);
+    }
+
+    PartitionCompactor(JournalMetadata<?> metadata, boolean writerOwned) {
+        this.metadata = metadata;
+        this.writerOwned = writerOwned;
+        this.executor = Executors.newSingleThreadExecutor(new NamedDaemonThreadFactory("questdb-journal-compactor-" + new File(metadata.getLocation()).getName(), true));
+    }
+
+    /**
+     * Waits for queued partitions to be compacted.
+     */
+    public void await() {
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        } catch (InterruptedException | ExecutionException ignore) {
+        }
+    }
+
+    /**
+     * Waits for queued partitions to be compacted and stops background thread.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ignore) {
+        }
+    }
+
+    /**
+     * Compresses supported columns of partition in current thread. Columns, which are
+     * already compressed or empty, are skipped.
+     *
+     * @param partitionDir directory of sealed partition
+     * @return number of compressed columns
+     * @throws JournalException if journal is open for writing or column cannot be compressed
+     */
+    public int compact(File partitionDir) throws JournalException {
+        if (writerOwned) {
+            return compactColumns(partitionDir);
+        }
+
+        File location = new File(metadata.getLocation());
+        Lock lock = LockManager.lockExclusive(location);
+        try {
+            if (lock == null || !lock.isValid()) {
+                throw new JournalException("Journal is open for APPEND at %s", location);
+            }
+            return compactColumns(partitionDir);
+        } finally {
+            LockManager.release(lock);
+        }
+    }
+
+    /**
+     * Queues partition for compaction in background thread.
+     *
+     * @param partitionDir directory of sealed partition
+     */
+    public void compactAsync(final File partitionDir) {
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    LOG.info().$("Compacted ").$(compact(partitionDir)).$(" columns in ").$(partitionDir.getAbsolutePath()).$();
+                } catch (Throwable e) {
+                    LOG.error().$("Could not compact ").$(partitionDir.getAbsolutePath()).$(": ").$(e).$();
+                }
+            }
+        });
+    }
+
+    static boolean isCompressed(JournalMetadata<?> metadata, File partitionDir) {
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (new File(partitionDir, metadata.getColumnQuick(i).name + CompressedColumn.FILE_SUFFIX).exists()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean compact(File partitionDir, ColumnMetadata m) throws JournalException {
+        File file = new File(partitionDir, m.name + ".d");
+        File compressed = new File(partitionDir, m.name + CompressedColumn.FILE_SUFFIX);
+        if (compressed.exists() || !file.exists()) {
+            return false;
+        }
+
+        File tmp = new File(partitionDir, m.name + CompressedColumn.FILE_SUFFIX + ".tmp");
+        try (FixedColumn src = new FixedColumn(new MemoryFile(file, m.bitHint, JournalMode.READ), m.size)) {
+            if (src.size() == 0) {
+                return false;
+            }
+
+            MemoryFile dst = new MemoryFile(tmp, m.bitHint, JournalMode.APPEND);
+            try {
+                CompressedColumn.compress(src, m.type, dst);
+                dst.force();
+                dst.compact();
+            } finally {
+                dst.close();
+            }
+        }
+
+        if (!tmp.renameTo(compressed)) {
+            Files.delete(tmp);
+            throw new JournalException("Could not rename %s to %s", tmp.getAbsolutePath(), compressed.getAbsolutePath());
+        }
+
+        if (!Files.delete(file)) {
+            // readers pick compressed file regardless, space is reclaimed when partition is removed
+            LOG.info().$("Could not delete ").$(file.getAbsolutePath()).$();
+        }
+        return true;
+    }
+
+    private int compactColumns(File partitionDir) throws JournalException {
+        int count = 0;
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            ColumnMetadata m = metadata.getColumnQuick(i);
+            if (CompressedColumn.isSupported(m.type) && compact(partitionDir, m)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
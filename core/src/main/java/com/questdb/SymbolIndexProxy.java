@@ -27,7 +27,11 @@ import com.questdb.ex.JournalException;
 import com.questdb.factory.configuration.ColumnMetadata;
 import com.questdb.factory.configuration.JournalMetadata;
 import com.questdb.misc.Misc;
+import com.questdb.std.ObjList;
+import com.questdb.store.BitmapIndex;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.KVIndex;
+import com.questdb.store.MemoryFile;
 
 import java.io.Closeable;
 import java.io.File;
@@ -36,7 +40,7 @@ class SymbolIndexProxy<T> implements Closeable {
 
     private final Partition<T> partition;
     private final int columnIndex;
-    private KVIndex index;
+    private ColumnIndex index;
     private long txAddress;
 
     SymbolIndexProxy(Partition<T> partition, int columnIndex, long txAddress) {
@@ -45,6 +49,18 @@ class SymbolIndexProxy<T> implements Closeable {
         this.txAddress = txAddress;
     }
 
+    static void deleteIndex(File base) {
+        KVIndex.delete(base);
+        BitmapIndex.delete(base);
+    }
+
+    static ColumnIndex newIndex(File base, ColumnMetadata columnMetadata, int keyCountHint, int recordCountHint, int txCountHint, JournalMode mode, long txAddress) throws JournalException {
+        if (columnMetadata.bitmapIndex) {
+            return new BitmapIndex(base, keyCountHint, txCountHint, mode, txAddress);
+        }
+        return new KVIndex(base, keyCountHint, recordCountHint, txCountHint, mode, txAddress);
+    }
+
     public void close() {
         index = Misc.free(index);
     }
@@ -67,7 +83,13 @@ class SymbolIndexProxy<T> implements Closeable {
                 '}';
     }
 
-    KVIndex getIndex() throws JournalException {
+    void collectDirty(ObjList<MemoryFile> files) {
+        if (index != null) {
+            index.collectDirty(files);
+        }
+    }
+
+    ColumnIndex getIndex() throws JournalException {
         if (index == null) {
             openIndex();
         }
@@ -82,8 +104,9 @@ class SymbolIndexProxy<T> implements Closeable {
             throw new JournalException("There is no index for column: %s", columnMetadata.name);
         }
 
-        index = new KVIndex(
+        index = newIndex(
                 new File(partition.getPartitionDir(), columnMetadata.name),
+                columnMetadata,
                 columnMetadata.distinctCountHint,
                 meta.getRecordHint(),
                 meta.getTxCountHint(),
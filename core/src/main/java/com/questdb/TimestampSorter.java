@@ -0,0 +1,165 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb;
+
+import com.questdb.misc.Unsafe;
+
+import java.io.Closeable;
+
+/**
+ * Stable off-heap sort of (timestamp, row) pairs. Rows of out-of-order batch are sorted
+ * by their positions rather than by moving objects around, so that sort does not touch heap.
+ * Runs of 32 entries are insertion sorted and then merged bottom up between two buffers.
+ */
+final class TimestampSorter implements Closeable {
+    private static final int ENTRY_SIZE = 16;
+    private static final int RUN_LENGTH = 32;
+    private long address;
+    private long scratch;
+    private long capacity;
+    private int size;
+
+    TimestampSorter(int capacity) {
+        this.capacity = Math.max(capacity, RUN_LENGTH);
+        this.address = Unsafe.getUnsafe().allocateMemory(this.capacity * ENTRY_SIZE);
+        this.scratch = Unsafe.getUnsafe().allocateMemory(this.capacity * ENTRY_SIZE);
+    }
+
+    @Override
+    public void close() {
+        if (address != 0) {
+            Unsafe.getUnsafe().freeMemory(address);
+            Unsafe.getUnsafe().freeMemory(scratch);
+            address = scratch = 0;
+        }
+    }
+
+    void add(long timestamp, int row) {
+        if (size == capacity) {
+            capacity <<= 1;
+            address = Unsafe.getUnsafe().reallocateMemory(address, capacity * ENTRY_SIZE);
+            scratch = Unsafe.getUnsafe().reallocateMemory(scratch, capacity * ENTRY_SIZE);
+        }
+        long p = address + (long) size++ * ENTRY_SIZE;
+        Unsafe.getUnsafe().putLong(p, timestamp);
+        Unsafe.getUnsafe().putLong(p + 8, row);
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int getRow(int index) {
+        return (int) Unsafe.getUnsafe().getLong(address + (long) index * ENTRY_SIZE + 8);
+    }
+
+    long getTimestamp(int index) {
+        return Unsafe.getUnsafe().getLong(address + (long) index * ENTRY_SIZE);
+    }
+
+    private void insertionSort(int lo, int hi) {
+        for (int i = lo + 1; i < hi; i++) {
+            long p = address + (long) i * ENTRY_SIZE;
+            long ts = Unsafe.getUnsafe().getLong(p);
+            long row = Unsafe.getUnsafe().getLong(p + 8);
+            int k = i - 1;
+            long q;
+            while (k >= lo && Unsafe.getUnsafe().getLong(q = address + (long) k * ENTRY_SIZE) > ts) {
+                Unsafe.getUnsafe().copyMemory(q, q + ENTRY_SIZE, ENTRY_SIZE);
+                k--;
+            }
+            q = address + (long) (k + 1) * ENTRY_SIZE;
+            Unsafe.getUnsafe().putLong(q, ts);
+            Unsafe.getUnsafe().putLong(q + 8, row);
+        }
+    }
+
+    private boolean isSorted() {
+        long prev = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            long ts = getTimestamp(i);
+            if (ts < prev) {
+                return false;
+            }
+            prev = ts;
+        }
+        return true;
+    }
+
+    private void merge(int lo, int mid, int hi) {
+        // merges [lo, mid) and [mid, hi) of address into scratch
+        int i = lo;
+        int k = mid;
+        long dst = scratch + (long) lo * ENTRY_SIZE;
+        while (i < mid && k < hi) {
+            long a = address + (long) i * ENTRY_SIZE;
+            long b = address + (long) k * ENTRY_SIZE;
+            // left side wins ties to keep sort stable
+            if (Unsafe.getUnsafe().getLong(b) < Unsafe.getUnsafe().getLong(a)) {
+                Unsafe.getUnsafe().copyMemory(b, dst, ENTRY_SIZE);
+                k++;
+            } else {
+                Unsafe.getUnsafe().copyMemory(a, dst, ENTRY_SIZE);
+                i++;
+            }
+            dst += ENTRY_SIZE;
+        }
+
+        if (i < mid) {
+            Unsafe.getUnsafe().copyMemory(address + (long) i * ENTRY_SIZE, dst, (long) (mid - i) * ENTRY_SIZE);
+        } else if (k < hi) {
+            Unsafe.getUnsafe().copyMemory(address + (long) k * ENTRY_SIZE, dst, (long) (hi - k) * ENTRY_SIZE);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sorts entries by timestamp. Entries with equal timestamps keep order in which they were added.
+     *
+     * @return true if entries were out of order
+     */
+    boolean sort() {
+        if (isSorted()) {
+            return false;
+        }
+
+        for (int lo = 0; lo < size; lo += RUN_LENGTH) {
+            insertionSort(lo, Math.min(lo + RUN_LENGTH, size));
+        }
+
+        for (int width = RUN_LENGTH; width < size; width <<= 1) {
+            for (int lo = 0; lo < size; lo += width << 1) {
+                int mid = Math.min(lo + width, size);
+                merge(lo, mid, Math.min(lo + (width << 1), size));
+            }
+            long t = address;
+            address = scratch;
+            scratch = t;
+        }
+        return true;
+    }
+}
@@ -27,15 +27,18 @@ import com.questdb.*;
 import com.questdb.ex.JournalException;
 import com.questdb.factory.configuration.JournalConfiguration;
 import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.misc.NamedDaemonThreadFactory;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.io.Closeable;
 import java.io.File;
+import java.util.concurrent.*;
 
 @SuppressFBWarnings({"PATH_TRAVERSAL_IN"})
 public abstract class AbstractJournalReaderFactory implements JournalReaderFactory, Closeable {
 
     private final JournalConfiguration configuration;
+    private ExecutorService workerPool;
 
     AbstractJournalReaderFactory(JournalConfiguration configuration) {
         this.configuration = configuration;
@@ -63,6 +66,17 @@ public abstract class AbstractJournalReaderFactory implements JournalReaderFacto
         return configuration;
     }
 
+    /**
+     * Lazily creates worker pool, which is shut down when factory is closed.
+     */
+    @Override
+    public synchronized ExecutorService getWorkerPool() {
+        if (workerPool == null) {
+            workerPool = newWorkerPool();
+        }
+        return workerPool;
+    }
+
     public <T> JournalMetadata<T> getOrCreateMetadata(JournalKey<T> key) throws JournalException {
         JournalMetadata<T> metadata = configuration.createMetadata(key);
         File location = new File(metadata.getLocation());
@@ -97,4 +111,27 @@ public abstract class AbstractJournalReaderFactory implements JournalReaderFacto
     public Journal reader(JournalMetadata metadata) throws JournalException {
         return new Journal(metadata, metadata.getKey());
     }
+
+    @Override
+    public <T> Journal<T> workerReader(JournalMetadata<T> metadata) throws JournalException {
+        return new Journal<>(metadata, metadata.getKey());
+    }
+
+    /**
+     * Pool of one thread per CPU core. Idle threads exit, so that pool does not hold on to threads
+     * between queries when it is not shut down.
+     */
+    static ExecutorService newWorkerPool() {
+        int n = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamedDaemonThreadFactory("questdb-query-worker", true));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    synchronized void closeWorkerPool() {
+        if (workerPool != null) {
+            workerPool.shutdown();
+            workerPool = null;
+        }
+    }
 }
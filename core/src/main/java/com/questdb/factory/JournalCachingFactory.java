@@ -29,28 +29,43 @@ import com.questdb.JournalKey;
 import com.questdb.ex.JournalException;
 import com.questdb.factory.configuration.JournalConfiguration;
 import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.std.ObjList;
 import com.questdb.std.ObjObjHashMap;
+import com.questdb.store.SymbolCache;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @SuppressFBWarnings({"LII_LIST_INDEXED_ITERATING"})
 public class JournalCachingFactory extends AbstractJournalReaderFactory implements JournalClosingListener {
+    public static final int DEFAULT_SYMBOL_CACHE_CAPACITY = 1 << 18;
     private final ObjObjHashMap<JournalKey, Journal> readers = new ObjObjHashMap<>();
     private final ObjObjHashMap<JournalKey, JournalBulkReader> bulkReaders = new ObjObjHashMap<>();
+    private final ObjObjHashMap<JournalKey, ObjList<Journal>> idleWorkerReaders = new ObjObjHashMap<>();
+    private final ObjList<Journal> leasedWorkerReaders = new ObjList<>();
     private final List<Journal> journalList = new ArrayList<>();
     private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final SymbolCache symbolCache;
     private JournalFactoryPool pool;
     private boolean inPool = false;
 
     public JournalCachingFactory(JournalConfiguration configuration) {
+        this(configuration, DEFAULT_SYMBOL_CACHE_CAPACITY);
+    }
+
+    /**
+     * @param symbolCacheCapacity maximum number of symbol entries cached for all readers of this factory
+     */
+    public JournalCachingFactory(JournalConfiguration configuration, int symbolCacheCapacity) {
         super(configuration);
+        this.symbolCache = new SymbolCache(symbolCacheCapacity);
     }
 
     public JournalCachingFactory(JournalConfiguration configuration, JournalFactoryPool pool) {
-        super(configuration);
+        this(configuration);
         this.pool = pool;
     }
 
@@ -59,7 +74,7 @@ public class JournalCachingFactory extends AbstractJournalReaderFactory implemen
     public <T> JournalBulkReader<T> bulkReader(JournalKey<T> key) throws JournalException {
         JournalBulkReader<T> result = bulkReaders.get(key);
         if (result == null) {
-            result = new JournalBulkReader<>(getOrCreateMetadata(key), key);
+            result = new JournalBulkReader<>(getOrCreateMetadata(key), key, symbolCache);
             result.setCloseListener(this);
             bulkReaders.put(key, result);
             journalList.add(result);
@@ -72,7 +87,7 @@ public class JournalCachingFactory extends AbstractJournalReaderFactory implemen
     public <T> Journal<T> reader(JournalKey<T> key) throws JournalException {
         Journal<T> result = readers.get(key);
         if (result == null) {
-            result = new Journal<>(getOrCreateMetadata(key), key);
+            result = new Journal<>(getOrCreateMetadata(key), key, symbolCache);
             result.setCloseListener(this);
             readers.put(key, result);
             journalList.add(result);
@@ -86,6 +101,7 @@ public class JournalCachingFactory extends AbstractJournalReaderFactory implemen
             // To not release twice.
             if (!inPool) {
                 inPool = true;
+                releaseWorkerReaders();
                 pool.release(this);
             }
         } else {
@@ -97,6 +113,10 @@ public class JournalCachingFactory extends AbstractJournalReaderFactory implemen
                 }
                 readers.clear();
                 bulkReaders.clear();
+                idleWorkerReaders.clear();
+                leasedWorkerReaders.clear();
+                symbolCache.close();
+                closeWorkerPool();
             }
         }
     }
@@ -107,7 +127,7 @@ public class JournalCachingFactory extends AbstractJournalReaderFactory implemen
         JournalKey key = metadata.getKey();
         Journal result = readers.get(key);
         if (result == null) {
-            result = new Journal<>(metadata, key);
+            result = new Journal<>(metadata, key, symbolCache);
             result.setCloseListener(this);
             readers.put(key, result);
             journalList.add(result);
@@ -117,15 +137,67 @@ public class JournalCachingFactory extends AbstractJournalReaderFactory implemen
 
     @Override
     public boolean closing(Journal journal) {
+        // pooled factory takes worker readers back when it is returned to pool,
+        // closing reader might be stale and come from thread that no longer owns this factory
+        if (pool == null) {
+            // journals are equal by key, look up by identity
+            for (int i = 0, n = leasedWorkerReaders.size(); i < n; i++) {
+                if (leasedWorkerReaders.getQuick(i) == journal) {
+                    leasedWorkerReaders.remove(i);
+                    idleWorkerReaders.get(journal.getKey()).add(journal);
+                    break;
+                }
+            }
+        }
         return false;
     }
 
+    /**
+     * Cache of symbol keys and values shared by all readers of this factory. Hit and miss
+     * counters of the cache tell how well its capacity suits the working set of symbols.
+     */
+    public SymbolCache getSymbolCache() {
+        return symbolCache;
+    }
+
+    @Override
+    public ExecutorService getWorkerPool() {
+        return pool != null ? pool.getWorkerPool() : super.getWorkerPool();
+    }
+
     public void refresh() {
         for (int i = 0, sz = journalList.size(); i < sz; i++) {
             journalList.get(i).refresh();
         }
     }
 
+    /**
+     * Worker readers are leased rather than shared, so that parallel sources reading same journal
+     * never run their workers on same reader. They do not use factory's symbol cache, which is not
+     * thread-safe.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> Journal<T> workerReader(JournalMetadata<T> metadata) throws JournalException {
+        JournalKey<T> key = metadata.getKey();
+        ObjList<Journal> idle = idleWorkerReaders.get(key);
+        if (idle == null) {
+            idleWorkerReaders.put(key, idle = new ObjList<>());
+        }
+
+        Journal<T> result;
+        if (idle.size() > 0) {
+            result = (Journal<T>) idle.getLast();
+            idle.remove(idle.size() - 1);
+        } else {
+            result = new Journal<>(metadata, key);
+            result.setCloseListener(this);
+            journalList.add(result);
+        }
+        leasedWorkerReaders.add(result);
+        return result;
+    }
+
     void clearPool() {
         this.pool = null;
     }
@@ -136,7 +208,17 @@ public class JournalCachingFactory extends AbstractJournalReaderFactory implemen
         }
     }
 
+    private void releaseWorkerReaders() {
+        for (int i = 0, n = leasedWorkerReaders.size(); i < n; i++) {
+            Journal journal = leasedWorkerReaders.getQuick(i);
+            idleWorkerReaders.get(journal.getKey()).add(journal);
+        }
+        leasedWorkerReaders.clear();
+    }
+
     void setInUse() {
         inPool = false;
+        // readers stay on this transaction until factory is back in pool
+        refresh();
     }
 }
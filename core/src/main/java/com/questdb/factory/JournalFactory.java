@@ -121,9 +121,10 @@ public class JournalFactory extends AbstractJournalReaderFactory implements Jour
 
     /**
      * Inherited method, this implementation does not own created journals
-     * and has nothing to close.
+     * and only shuts down worker pool.
      */
     @Override
     public void close() {
+        closeWorkerPool();
     }
 }
@@ -30,6 +30,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.io.Closeable;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -40,6 +41,7 @@ public class JournalFactoryPool implements Closeable {
     private final AtomicBoolean running = new AtomicBoolean(true);
     private final JournalConfiguration configuration;
     private final AtomicInteger openCount = new AtomicInteger();
+    private final ExecutorService workerPool = AbstractJournalReaderFactory.newWorkerPool();
     private final int capacity;
 
     @SuppressWarnings("unchecked")
@@ -61,9 +63,19 @@ public class JournalFactoryPool implements Closeable {
                     LOG.info().$("Error closing JournalCachingFactory. Continuing.").$(ex).$();
                 }
             }
+            workerPool.shutdown();
         }
     }
 
+    /**
+     * Factory readers are refreshed to last committed transaction when factory is taken
+     * from pool and stay on it until factory is closed. Query on a replica then sees
+     * transaction replication has fully applied and does not hold up writer, which
+     * keeps committing underneath.
+     *
+     * @return factory for exclusive use of calling thread
+     * @throws InterruptedException when pool has been closed
+     */
     public JournalCachingFactory get() throws InterruptedException {
         if (running.get()) {
             JournalCachingFactory factory = pool.poll();
@@ -91,6 +103,13 @@ public class JournalFactoryPool implements Closeable {
         return openCount.get();
     }
 
+    /**
+     * Worker pool shared by all factories of this pool.
+     */
+    ExecutorService getWorkerPool() {
+        return workerPool;
+    }
+
     void release(final JournalCachingFactory factory) {
         if (running.get() && openCount.get() < capacity) {
             factory.expireOpenFiles();
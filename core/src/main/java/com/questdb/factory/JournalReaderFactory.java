@@ -31,6 +31,7 @@ import com.questdb.factory.configuration.JournalConfiguration;
 import com.questdb.factory.configuration.JournalMetadata;
 
 import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
 
 public interface JournalReaderFactory extends Closeable {
 
@@ -48,6 +49,11 @@ public interface JournalReaderFactory extends Closeable {
 
     <T> JournalMetadata<T> getOrCreateMetadata(JournalKey<T> key) throws JournalException;
 
+    /**
+     * Executor parallel queries reading through this factory run their workers on.
+     */
+    ExecutorService getWorkerPool();
+
     <T> Journal<T> reader(JournalKey<T> key) throws JournalException;
 
     <T> Journal<T> reader(Class<T> clazz) throws JournalException;
@@ -60,4 +66,13 @@ public interface JournalReaderFactory extends Closeable {
 
     Journal reader(JournalMetadata metadata) throws JournalException;
 
+    /**
+     * Reader for exclusive use of parallel query worker. Worker readers do not share state with
+     * other readers of the factory, so that workers can read concurrently.
+     *
+     * @param metadata journal metadata
+     * @return reader, which caller closes when done, as it does with other readers of the factory
+     */
+    <T> Journal<T> workerReader(JournalMetadata<T> metadata) throws JournalException;
+
 }
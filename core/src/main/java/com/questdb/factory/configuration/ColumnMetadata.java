@@ -36,6 +36,7 @@ public class ColumnMetadata implements RecordColumnMetadata {
     public int size;
     public int avgSize = Constants.DEFAULT_STRING_AVG_SIZE;
     public boolean indexed;
+    public boolean bitmapIndex;
     public int bitHint;
     public int indexBitHint;
     public int distinctCountHint;
@@ -50,6 +51,7 @@ public class ColumnMetadata implements RecordColumnMetadata {
         this.size = from.size;
         this.avgSize = from.avgSize;
         this.indexed = from.indexed;
+        this.bitmapIndex = from.bitmapIndex;
         this.bitHint = from.bitHint;
         this.indexBitHint = from.indexBitHint;
         this.distinctCountHint = from.distinctCountHint;
@@ -100,6 +102,7 @@ public class ColumnMetadata implements RecordColumnMetadata {
         result = 31 * result + size;
         result = 31 * result + avgSize;
         result = 31 * result + (indexed ? 1 : 0);
+        result = 31 * result + (bitmapIndex ? 1 : 0);
         result = 31 * result + bitHint;
         result = 31 * result + indexBitHint;
         result = 31 * result + distinctCountHint;
@@ -119,6 +122,7 @@ public class ColumnMetadata implements RecordColumnMetadata {
                 && distinctCountHint == that.distinctCountHint
                 && indexBitHint == that.indexBitHint
                 && indexed == that.indexed
+                && bitmapIndex == that.bitmapIndex
                 && noCache == that.noCache
                 && size == that.size
                 && name.equals(that.name)
@@ -136,6 +140,7 @@ public class ColumnMetadata implements RecordColumnMetadata {
                 ", size*=" + size +
                 ", avgSize=" + avgSize +
                 ", indexed=" + indexed +
+                ", bitmapIndex=" + bitmapIndex +
                 ", bitHint=" + bitHint +
                 ", indexBitHint=" + indexBitHint +
                 ", distinctCountHint=" + distinctCountHint +
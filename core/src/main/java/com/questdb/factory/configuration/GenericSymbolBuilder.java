@@ -33,6 +33,18 @@ public class GenericSymbolBuilder extends AbstractGenericMetadataBuilder {
         meta.size = 4;
     }
 
+    /**
+     * Indexes column with {@link com.questdb.store.BitmapIndex} rather than KVIndex. Bitmap index is
+     * smaller and faster to combine for columns with few distinct values.
+     *
+     * @return this builder
+     */
+    public GenericSymbolBuilder bitmapIndex() {
+        this.meta.indexed = true;
+        this.meta.bitmapIndex = true;
+        return this;
+    }
+
     public GenericSymbolBuilder index() {
         this.meta.indexed = true;
         return this;
@@ -56,6 +56,7 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
     private final int timestampColumnIndex;
     private final int lag;
     private final boolean partialMapping;
+    private final boolean regionMapping;
     private final JournalKey<T> key;
 
     public JournalMetadata(
@@ -72,6 +73,7 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
             , int ioBlockTxCount
             , int lag
             , boolean partialMapping
+            , boolean regionMapping
     ) {
         this.id = id;
         this.modelClass = modelClass;
@@ -93,6 +95,7 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
         }
         this.lag = lag;
         this.partialMapping = partialMapping;
+        this.regionMapping = regionMapping;
         if (modelClass != null) {
             this.key = new JournalKey<>(modelClass, location);
         } else {
@@ -126,8 +129,15 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
         ioBlockTxCount = buf.getInt();
         keyColumn = buf.getStr();
         lag = buf.getInt();
+        // index types were added after lag, metadata written before that has KVIndex for all indexed columns
+        if (buf.getPos() < buf.getAppendOffset()) {
+            for (int i = 0; i < columnCount; i++) {
+                columnMetadata[i].bitmapIndex = buf.getBool();
+            }
+        }
         constructor = null;
         partialMapping = false;
+        regionMapping = false;
         this.key = new JournalKey<>(id);
     }
 
@@ -262,6 +272,17 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
         return partialMapping;
     }
 
+    /**
+     * Plain fixed columns of READ and APPEND journals with region mapping are mapped as single native region
+     * rather than one buffer at a time. Region moves when it grows, so column addresses are only valid
+     * until next call to addressOf(). Region mapping is not persisted with metadata.
+     *
+     * @return true when fixed columns are region mapped
+     */
+    public boolean isRegionMapped() {
+        return regionMapping;
+    }
+
     @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS"})
     public Object newObject() {
         if (constructor == null) {
@@ -317,6 +338,9 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
         buf.put(ioBlockTxCount);
         buf.put(keyColumn);
         buf.put(lag);
+        for (int i = 0; i < columnMetadata.length; i++) {
+            buf.put(columnMetadata[i].bitmapIndex);
+        }
         buf.setAppendOffset(buf.getPos());
     }
 
@@ -55,6 +55,7 @@ public class JournalMetadataBuilder<T> implements MetadataBuilder<T> {
     private String keyColumn;
     private long openFileTTL = TimeUnit.MINUTES.toMillis(3);
     private int lag = -1;
+    private boolean regionMapping = false;
 
     public JournalMetadataBuilder(Class<T> modelClass) {
         this.modelClass = modelClass;
@@ -72,6 +73,7 @@ public class JournalMetadataBuilder<T> implements MetadataBuilder<T> {
         this.keyColumn = model.getKeyQuiet();
         this.openFileTTL = model.getOpenFileTTL();
         this.lag = model.getLag();
+        this.regionMapping = model.isRegionMapped();
         for (int i = 0, n = model.getColumnCount(); i < n; i++) {
             ColumnMetadata from = model.getColumnQuick(i);
             columnMetadata.get(from.name).copy(from);
@@ -173,6 +175,7 @@ public class JournalMetadataBuilder<T> implements MetadataBuilder<T> {
                 , txCountHint
                 , lag
                 , false
+                , regionMapping
         );
     }
 
@@ -221,6 +224,17 @@ public class JournalMetadataBuilder<T> implements MetadataBuilder<T> {
         return this;
     }
 
+    /**
+     * Maps plain fixed columns as single native region, see {@link JournalMetadata#isRegionMapped()}.
+     *
+     * @param regionMapping true to map fixed columns as region, false for default buffer mapping
+     * @return this builder
+     */
+    public JournalMetadataBuilder<T> regionMapping(boolean regionMapping) {
+        this.regionMapping = regionMapping;
+        return this;
+    }
+
     public JournalMetadataBuilder<T> txCountHint(int count) {
         this.txCountHint = count;
         return this;
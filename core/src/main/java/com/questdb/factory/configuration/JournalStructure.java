@@ -61,6 +61,7 @@ public class JournalStructure implements MetadataBuilder<Object> {
     private Class<Object> modelClass;
     private Constructor<Object> constructor;
     private boolean partialMapping = false;
+    private boolean regionMapping = false;
 
     public JournalStructure(String location) {
         this.location = location;
@@ -84,6 +85,7 @@ public class JournalStructure implements MetadataBuilder<Object> {
         this.key = model.getKeyQuiet();
         this.openFileTTL = model.getOpenFileTTL();
         this.lag = model.getLag();
+        this.regionMapping = model.isRegionMapped();
         for (int i = 0, n = model.getColumnCount(); i < n; i++) {
             ColumnMetadata to = new ColumnMetadata();
             metadata.add(to.copy(model.getColumnQuick(i)));
@@ -206,6 +208,7 @@ public class JournalStructure implements MetadataBuilder<Object> {
                 , txCountHint
                 , lag
                 , partialMapping
+                , regionMapping
         );
     }
 
@@ -292,6 +295,17 @@ public class JournalStructure implements MetadataBuilder<Object> {
         return this;
     }
 
+    /**
+     * Maps plain fixed columns as single native region, see {@link JournalMetadata#isRegionMapped()}.
+     *
+     * @param regionMapping true to map fixed columns as region, false for default buffer mapping
+     * @return this builder
+     */
+    public JournalStructure regionMapping(boolean regionMapping) {
+        this.regionMapping = regionMapping;
+        return this;
+    }
+
     public JournalStructure txCountHint(int count) {
         this.txCountHint = count;
         return this;
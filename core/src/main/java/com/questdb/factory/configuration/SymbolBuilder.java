@@ -37,6 +37,18 @@ public class SymbolBuilder<T> extends AbstractMetadataBuilder<T> {
         meta.size = 4;
     }
 
+    /**
+     * Indexes column with {@link com.questdb.store.BitmapIndex} rather than KVIndex. Bitmap index is
+     * smaller and faster to combine for columns with few distinct values.
+     *
+     * @return this builder
+     */
+    public SymbolBuilder<T> bitmapIndex() {
+        this.meta.indexed = true;
+        this.meta.bitmapIndex = true;
+        return this;
+    }
+
     public SymbolBuilder<T> index() {
         this.meta.indexed = true;
         return this;
@@ -25,6 +25,7 @@ package com.questdb.misc;
 
 import com.questdb.io.sink.AbstractCharSink;
 import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
 import com.questdb.std.Mutable;
 
 import java.io.FileOutputStream;
@@ -35,11 +36,31 @@ import java.nio.ByteOrder;
 public class BytecodeAssembler implements Mutable {
 
     public static final int iload_2 = 28;
+    public static final int lload_2 = 32;
+    public static final int dload_2 = 40;
     public static final int aload_0 = 42;
     public static final int ineg = 0x74;
     public static final int aload_1 = 43;
+    public static final int iaload = 46;
     public static final int istore_2 = 61;
+    public static final int lstore_2 = 65;
+    public static final int dstore_2 = 73;
+    public static final int lcmp = 148;
+    public static final int dcmpl = 151;
+    public static final int dcmpg = 152;
+    public static final int ifeq = 153;
     public static final int ifne = 154;
+    public static final int iflt = 155;
+    public static final int ifge = 156;
+    public static final int ifgt = 157;
+    public static final int ifle = 158;
+    public static final int if_icmpeq = 159;
+    public static final int if_icmpne = 160;
+    public static final int if_icmplt = 161;
+    public static final int if_icmpge = 162;
+    public static final int if_icmpgt = 163;
+    public static final int if_icmple = 164;
+    public static final int goto_ = 167;
     public static final int ireturn = 172;
     public static final int return_ = 177;
     public static final int getfield = 180;
@@ -50,6 +71,8 @@ public class BytecodeAssembler implements Mutable {
     private static final int sipush = 17;
     private static final int invokespecial = 183;
     private static final int invokeinterface = 185;
+    private static final int ldc_w = 19;
+    private static final int ldc2_w = 20;
     private static final int O_POOL_COUNT = 8;
 
     private final Utf8Appender utf8Appender = new Utf8Appender();
@@ -156,14 +179,37 @@ public class BytecodeAssembler implements Mutable {
         return poolCount++;
     }
 
+    public int poolDoubleConst(double value) {
+        put(0x06);
+        putLong(Double.doubleToRawLongBits(value));
+        // 8-byte constants take two pool slots
+        int index = poolCount;
+        poolCount += 2;
+        return index;
+    }
+
     public int poolField(int classIndex, int nameAndTypeIndex) {
         return poolRef(0x09, classIndex, nameAndTypeIndex);
     }
 
+    public int poolIntConst(int value) {
+        put(0x03);
+        putInt(value);
+        return poolCount++;
+    }
+
     public int poolInterfaceMethod(int classIndex, int nameAndTypeIndex) {
         return poolRef(0x0B, classIndex, nameAndTypeIndex);
     }
 
+    public int poolLongConst(long value) {
+        put(0x05);
+        putLong(value);
+        int index = poolCount;
+        poolCount += 2;
+        return index;
+    }
+
     public int poolMethod(int classIndex, int nameAndTypeIndex) {
         return poolRef(0x0A, classIndex, nameAndTypeIndex);
     }
@@ -216,6 +262,16 @@ public class BytecodeAssembler implements Mutable {
         }
     }
 
+    public void putLdc(int poolIndex) {
+        put(ldc_w);
+        putShort(poolIndex);
+    }
+
+    public void putLdc2(int poolIndex) {
+        put(ldc2_w);
+        putShort(poolIndex);
+    }
+
     public void putShort(int v) {
         putShort((short) v);
     }
@@ -241,6 +297,36 @@ public class BytecodeAssembler implements Mutable {
         putInt(lenPos, position() - lenPos - 4);
     }
 
+    /**
+     * Writes StackMapTable attribute, which consists of "same" frames only. Such frames
+     * are valid for branch targets where operand stack is empty and locals are the same as
+     * method arguments.
+     *
+     * @param stackMapTableIndex pool index of "StackMapTable" string
+     * @param offsets            ascending, distinct bytecode offsets of branch targets relative to start of method code
+     */
+    public void putStackMapSameFrames(int stackMapTableIndex, IntList offsets) {
+        putShort(stackMapTableIndex);
+        int lenPos = position();
+        putInt(0);
+        putShort(offsets.size());
+        int prev = -1;
+        for (int i = 0, n = offsets.size(); i < n; i++) {
+            int offset = offsets.getQuick(i);
+            int delta = offset - prev - 1;
+            if (delta < 64) {
+                // same_frame
+                put(delta);
+            } else {
+                // same_frame_extended
+                put(251);
+                putShort(delta);
+            }
+            prev = offset;
+        }
+        putInt(lenPos, position() - lenPos - 4);
+    }
+
     public void setupPool() {
         // magic
         putInt(0xCAFEBABE);
@@ -304,6 +390,11 @@ public class BytecodeAssembler implements Mutable {
         buf.putInt(v);
     }
 
+    private void putLong(long v) {
+        putInt((int) (v >>> 32));
+        putInt((int) v);
+    }
+
     private void putShort(short v) {
         if (buf.remaining() < 2) {
             resize();
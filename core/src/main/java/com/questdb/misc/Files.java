@@ -38,10 +38,55 @@ import java.nio.charset.Charset;
 public final class Files {
 
     public static final Charset UTF_8;
+    // access hints, see madvise(2) and posix_fadvise(2)
+    public static final int ADVICE_NORMAL = 0;
+    public static final int ADVICE_SEQUENTIAL = 1;
+    public static final int ADVICE_RANDOM = 2;
+    public static final int ADVICE_WILLNEED = 3;
+    public static final int ADVICE_DONTNEED = 4;
+    // mapping modes
+    public static final int MAP_RO = 1;
+    public static final int MAP_RW = 2;
+    // native library built before access hints were introduced does not have them
+    private static final boolean ADVICE_SUPPORTED;
+    private static final boolean MMAP_SUPPORTED;
 
     private Files() {
     } // Prevent construction.
 
+    /**
+     * Tells OS how memory mapped region is going to be accessed. Address does not have to be page aligned.
+     *
+     * @return true when hint has been accepted
+     */
+    public static boolean advise(long address, long len, int advice) {
+        return ADVICE_SUPPORTED && madvise0(address, len, advice) == 0;
+    }
+
+    /**
+     * Tells OS how file is going to be accessed. Hints act on page cache of the file, so they are
+     * useful to request read ahead (WILLNEED) or to release cached pages (DONTNEED).
+     *
+     * @param len number of bytes from offset, 0 for everything up to the end of file
+     * @return true when hint has been accepted
+     */
+    public static boolean advise(LPSZ lpsz, long offset, long len, int advice) {
+        if (!ADVICE_SUPPORTED) {
+            return false;
+        }
+
+        long fd = openRO(lpsz);
+        if (fd < 0) {
+            return false;
+        }
+
+        try {
+            return fadvise0(fd, offset, len, advice) == 0;
+        } finally {
+            close(fd);
+        }
+    }
+
     public native static void append(long fd, long address, int len);
 
     public native static int close(long fd);
@@ -89,6 +134,40 @@ public final class Files {
         return length(lpsz.address());
     }
 
+    /**
+     * Maps region of file into memory as one contiguous block. Huge pages are requested on best effort basis.
+     *
+     * @return address of mapped region or -1 when region cannot be mapped or native mapping is not supported
+     */
+    public static long mmap(long fd, long len, long offset, int mode, boolean hugePages) {
+        return MMAP_SUPPORTED ? mmap0(fd, len, offset, mode, hugePages) : -1;
+    }
+
+    /**
+     * Grows or shrinks region previously returned by {@link #mmap(long, long, long, int, boolean)}. Region
+     * may move, in which case old address becomes invalid.
+     *
+     * @return address of remapped region or -1 on failure, in which case old region remains mapped.
+     */
+    public static long mremap(long fd, long address, long previousLen, long newLen, long offset, int mode, boolean hugePages) {
+        return mremap0(fd, address, previousLen, newLen, offset, mode, hugePages);
+    }
+
+    /**
+     * @return false when native library does not support mapping files as single region
+     */
+    public static boolean isMmapSupported() {
+        return MMAP_SUPPORTED;
+    }
+
+    public static boolean msync(long address, long len) {
+        return msync0(address, len) == 0;
+    }
+
+    public static boolean munmap(long address, long len) {
+        return munmap0(address, len) == 0;
+    }
+
     public static File makeTempDir() {
         File result;
         try {
@@ -161,6 +240,8 @@ public final class Files {
         return result;
     }
 
+    public native static boolean truncate(long fd, long size);
+
     public native static long write(long fd, long address, int len, long offset);
 
     public static void writeStringToFile(File file, String s) throws JournalException {
@@ -173,10 +254,22 @@ public final class Files {
         }
     }
 
+    private native static int fadvise0(long fd, long offset, long len, int advice);
+
     private native static long getLastModified(long lpszName);
 
     private native static long length(long lpszName);
 
+    private native static int madvise0(long address, long len, int advice);
+
+    private native static long mmap0(long fd, long len, long offset, int mode, boolean hugePages);
+
+    private native static long mremap0(long fd, long address, long previousLen, long newLen, long offset, int mode, boolean hugePages);
+
+    private native static int msync0(long address, long len);
+
+    private native static int munmap0(long address, long len);
+
     private native static long openRO(long lpszName);
 
     private native static long openRW(long lpszName);
@@ -225,5 +318,21 @@ public final class Files {
 
     static {
         UTF_8 = Charset.forName("UTF-8");
+        Os.init();
+        boolean supported;
+        try {
+            supported = madvise0(0, 0, ADVICE_NORMAL) == 0;
+        } catch (UnsatisfiedLinkError e) {
+            supported = false;
+        }
+        ADVICE_SUPPORTED = supported;
+        try {
+            // probe for symbol only, unmapping nothing is expected to fail
+            munmap0(0, 0);
+            supported = true;
+        } catch (UnsatisfiedLinkError e) {
+            supported = false;
+        }
+        MMAP_SUPPORTED = supported;
     }
 }
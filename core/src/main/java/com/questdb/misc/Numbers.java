@@ -393,7 +393,7 @@ public final class Numbers {
         }
 
         // Cannot use doubleToRawLongBits because of possibility of NaNs.
-        long thisBits = Double.doubleToLongBits(1);
+        long thisBits = Double.doubleToLongBits(a);
         long anotherBits = Double.doubleToLongBits(b);
 
         return (thisBits == anotherBits ? 0 : // Values are equal
@@ -480,6 +480,13 @@ public final class Numbers {
         return parseLong0(sequence, p, lim);
     }
 
+    public static long parseLongSize(CharSequence sequence) throws NumericException {
+        if (sequence == null) {
+            throw NumericException.INSTANCE;
+        }
+        return parseLongSize(sequence, 0, sequence.length());
+    }
+
     public static long parseLongQuiet(CharSequence sequence) {
         if (sequence == null) {
             return Long.MIN_VALUE;
@@ -757,6 +764,57 @@ public final class Numbers {
         return negative ? val : -val;
     }
 
+    private static long parseLongSize(CharSequence sequence, final int p, int lim) throws NumericException {
+
+        if (lim == p) {
+            throw NumericException.INSTANCE;
+        }
+
+        int i = p;
+        int k = lim;
+        int shift = 0;
+        switch (sequence.charAt(lim - 1)) {
+            case 'K':
+            case 'k':
+                shift = 10;
+                k--;
+                break;
+            case 'M':
+            case 'm':
+                shift = 20;
+                k--;
+                break;
+            case 'G':
+            case 'g':
+                shift = 30;
+                k--;
+                break;
+            default:
+                break;
+        }
+
+        if (i >= k) {
+            throw NumericException.INSTANCE;
+        }
+
+        long val = 0;
+        for (; i < k; i++) {
+            int c = sequence.charAt(i);
+            if (c < '0' || c > '9') {
+                throw NumericException.INSTANCE;
+            }
+            if (val > (Long.MAX_VALUE - (c - '0')) / 10) {
+                throw NumericException.INSTANCE;
+            }
+            val = val * 10 + (c - '0');
+        }
+
+        if (val > Long.MAX_VALUE >> shift) {
+            throw NumericException.INSTANCE;
+        }
+        return val << shift;
+    }
+
     private static void appendLong11(CharSink sink, long i) {
         long c;
         sink.put((char) ('0' + i / 10000000000L));
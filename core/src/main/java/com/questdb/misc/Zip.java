@@ -27,7 +27,7 @@ public final class Zip {
     public static final long gzipHeader;
     public static final int gzipHeaderLen = 10;
     private final static int GZIP_MAGIC = 0x8b1f;
-
+    private static final boolean levelSupported;
 
     private Zip() {
     }
@@ -46,6 +46,17 @@ public final class Zip {
 
     public static native long deflateInit();
 
+    /**
+     * Creates raw deflate stream. Native library built without level support
+     * creates stream with zlib default level.
+     *
+     * @param level compression level from 1 (fastest) to 9 (best), or -1 for zlib default
+     * @return stream pointer, negative zlib error code or -1 when out of memory
+     */
+    public static long deflateInit(int level) {
+        return levelSupported ? deflateInitLevel(level) : deflateInit();
+    }
+
     public static native void deflateReset(long z_stream);
 
     public static native int inflate(long z_streamp, long address, int available, boolean flush);
@@ -62,7 +73,23 @@ public final class Zip {
 
     public static native int totalOut(long z_streamp);
 
+    private static native long deflateInitLevel(int level);
+
+    private static boolean isLevelSupported() {
+        try {
+            long z_streamp = deflateInitLevel(-1);
+            if (z_streamp > 0) {
+                deflateEnd(z_streamp);
+            }
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+
     static {
+        Os.init();
+        levelSupported = isLevelSupported();
         gzipHeader = Unsafe.getUnsafe().allocateMemory(Numbers.ceilPow2(gzipHeaderLen));
         long p = gzipHeader;
         Unsafe.getUnsafe().setMemory(gzipHeader, gzipHeaderLen, (byte) 0);
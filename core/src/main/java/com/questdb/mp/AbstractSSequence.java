@@ -75,9 +75,12 @@ abstract class AbstractSSequence implements Sequence {
     }
 
     private long waitForNext0() {
-        long r;
-        while ((r = next()) < 0) {
-            waitStrategy.await();
+        long r = next();
+        if (r < 0) {
+            do {
+                waitStrategy.await();
+            } while ((r = next()) < 0);
+            waitStrategy.reset();
         }
         return r;
     }
@@ -32,5 +32,9 @@ abstract class AbstractWaitStrategy implements WaitStrategy {
         alerted = true;
         signal();
     }
+
+    @Override
+    public void reset() {
+    }
 }
 
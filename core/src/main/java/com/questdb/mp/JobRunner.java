@@ -0,0 +1,237 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.mp;
+
+import com.questdb.std.ObjList;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs jobs on threads of shared executor rather than on threads of its own. Each job is submitted as
+ * a task, which runs job until runner is halted or, for one-off jobs, runs it once.
+ * <p>
+ * Continuous task returns its thread to executor as soon as job has nothing to do, so that idle jobs
+ * do not occupy threads other runners could use. Owner of runner calls {@link #wake()} when there is
+ * new work and tasks, which are not running, are submitted again.
+ * <p>
+ * Executor may be busy serving other runners. Tasks executor has not started by the time runner
+ * is halted are withdrawn, so halt never waits for a thread to become available. Calling thread can
+ * also withdraw task with {@link #claim(int)} and run job itself.
+ */
+public class JobRunner {
+    private static final int IDLE = 0;
+    private static final int QUEUED = 1;
+    private static final int RUNNING = 2;
+    // running task has been woken and has to look for work again before it returns
+    private static final int SIGNALLED = 3;
+    private final ObjList<Task> tasks;
+    private final boolean continuous;
+    private final AtomicInteger active = new AtomicInteger();
+    private volatile boolean running = false;
+    private volatile Thread waiter;
+    private Executor executor;
+
+    /**
+     * @param jobs       jobs to run, one task per job
+     * @param continuous true to run jobs until runner is halted, false to run each job once
+     */
+    public JobRunner(ObjList<? extends Job> jobs, boolean continuous) {
+        this.continuous = continuous;
+        this.tasks = new ObjList<>(jobs.size());
+        for (int i = 0, n = jobs.size(); i < n; i++) {
+            tasks.add(new Task(jobs.getQuick(i)));
+        }
+    }
+
+    /**
+     * Waits for all tasks to finish.
+     *
+     * @param nanos maximum time to wait
+     * @return true when all tasks have finished, false when time is up
+     */
+    public boolean await(long nanos) {
+        if (active.get() == 0) {
+            return true;
+        }
+
+        waiter = Thread.currentThread();
+        try {
+            final long deadline = System.nanoTime() + nanos;
+            while (active.get() > 0) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, left);
+            }
+            return true;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * Withdraws task of job, which executor has not started yet.
+     *
+     * @param index index of job
+     * @return true when task has been withdrawn and job is for caller to run
+     */
+    public boolean claim(int index) {
+        return tasks.getQuick(index).withdraw();
+    }
+
+    /**
+     * Stops tasks and waits for them to finish. Tasks that have not started are withdrawn.
+     */
+    public void halt() {
+        running = false;
+        for (int i = 0, n = tasks.size(); i < n; i++) {
+            tasks.getQuick(i).withdraw();
+        }
+
+        if (active.get() > 0) {
+            waiter = Thread.currentThread();
+            while (active.get() > 0) {
+                LockSupport.park(this);
+            }
+            waiter = null;
+        }
+    }
+
+    public void start(Executor executor) {
+        this.executor = executor;
+        running = true;
+        active.set(tasks.size());
+        for (int i = 0, n = tasks.size(); i < n; i++) {
+            Task task = tasks.getQuick(i);
+            task.state.set(QUEUED);
+            submit(task);
+        }
+    }
+
+    /**
+     * Resubmits continuous tasks, which have returned their threads to executor, and makes running
+     * tasks look for work again. Must be called from thread that starts and halts runner.
+     */
+    public void wake() {
+        if (!running) {
+            return;
+        }
+
+        for (int i = 0, n = tasks.size(); i < n; i++) {
+            Task task = tasks.getQuick(i);
+            while (true) {
+                int state = task.state.get();
+                if (state == IDLE) {
+                    // count task before it can be seen queued, so that halt waits for it
+                    active.incrementAndGet();
+                    if (task.state.compareAndSet(IDLE, QUEUED)) {
+                        submit(task);
+                        break;
+                    }
+                    done();
+                } else if (state == RUNNING) {
+                    if (task.state.compareAndSet(RUNNING, SIGNALLED)) {
+                        break;
+                    }
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void done() {
+        if (active.decrementAndGet() == 0) {
+            Thread w = waiter;
+            if (w != null) {
+                LockSupport.unpark(w);
+            }
+        }
+    }
+
+    private void submit(Task task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ignore) {
+            // executor is shutting down, task stays queued for caller to claim or halt to withdraw
+        }
+    }
+
+    private class Task implements Runnable {
+        private final Job job;
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+
+        private Task(Job job) {
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            // task may have been withdrawn or claimed by an earlier submission
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return;
+            }
+
+            boolean idle = false;
+            try {
+                job.setupThread();
+                if (continuous) {
+                    while (running) {
+                        if (job.run()) {
+                            continue;
+                        }
+
+                        // nothing to do, return thread unless task has been woken meanwhile
+                        if (state.compareAndSet(RUNNING, IDLE)) {
+                            idle = true;
+                            return;
+                        }
+                        state.set(RUNNING);
+                    }
+                } else {
+                    job.run();
+                }
+            } finally {
+                // task that has gone idle may be queued and even running again already
+                if (!idle) {
+                    state.set(IDLE);
+                }
+                done();
+            }
+        }
+
+        private boolean withdraw() {
+            if (state.compareAndSet(QUEUED, IDLE)) {
+                done();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.mp;
+
+import com.questdb.ex.TimeoutException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Busy-spins consumer thread, yielding CPU between attempts, and gives up with
+ * {@link TimeoutException} when nothing is published for given time. Publisher signal is
+ * a volatile write rather than lock and condition, so wake up latency is that of a cache
+ * miss. This costs one CPU core per waiting consumer.
+ */
+public class TimeoutYieldingWaitStrategy extends AbstractWaitStrategy {
+    private final long timeout;
+    private volatile long deadline = 0;
+
+    public TimeoutYieldingWaitStrategy(long time, TimeUnit unit) {
+        this.timeout = unit.toNanos(time);
+    }
+
+    @Override
+    public void await() {
+        if (alerted) {
+            throw AlertedException.INSTANCE;
+        }
+
+        long now = System.nanoTime();
+        long d = deadline;
+        if (d == 0) {
+            deadline = now + timeout;
+        } else if (now > d) {
+            deadline = 0;
+            throw TimeoutException.INSTANCE;
+        }
+        Thread.yield();
+    }
+
+    @Override
+    public void reset() {
+        // wait ended with data, next wait must not inherit this deadline
+        deadline = 0;
+    }
+
+    @Override
+    public void signal() {
+        // something was published, next wait starts its own timeout
+        deadline = 0;
+    }
+}
@@ -28,5 +28,7 @@ interface WaitStrategy {
 
     void await();
 
+    void reset();
+
     void signal();
 }
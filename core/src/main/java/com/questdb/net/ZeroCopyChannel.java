@@ -0,0 +1,42 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.net;
+
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channel decorator that can let file ranges bypass its write() method. Producers hand file
+ * ranges to {@link #getTransferTarget()} with FileChannel.transferTo() and report what was sent
+ * back via {@link #onTransfer(long)}, so that decorator can keep its accounting straight.
+ */
+public interface ZeroCopyChannel extends WritableByteChannel {
+
+    /**
+     * @return underlying channel file ranges can be sent to directly, or null when bytes have to
+     * pass through write(), for example to be encrypted.
+     */
+    WritableByteChannel getTransferTarget();
+
+    void onTransfer(long byteCount);
+}
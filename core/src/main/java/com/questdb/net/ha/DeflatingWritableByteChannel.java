@@ -0,0 +1,142 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.net.ha;
+
+import com.questdb.misc.ByteBuffers;
+import com.questdb.misc.Unsafe;
+import com.questdb.misc.Zip;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Compresses replication stream into self-contained frames of at most {@link #FRAME_SIZE} raw bytes.
+ * Each frame is preceded by 8 byte header: raw length followed by packed length. Frames that
+ * do not compress are sent as is with packed length equal to raw length, which spares client
+ * the inflate call on incompressible columns. Frames never span flush() calls, so receiving
+ * side reads exactly the bytes that were written between flushes.
+ */
+class DeflatingWritableByteChannel implements WritableByteChannel, Closeable {
+    static final int FRAME_SIZE = 64 * 1024;
+    static final int FRAME_HEADER_SIZE = 8;
+
+    private final ByteBuffer in = ByteBuffer.allocateDirect(FRAME_SIZE);
+    private final ByteBuffer out = ByteBuffer.allocateDirect(FRAME_HEADER_SIZE + FRAME_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final long inAddress = ByteBuffers.getAddress(in);
+    private final long outAddress = ByteBuffers.getAddress(out);
+    private long z_streamp;
+    private WritableByteChannel channel;
+    private long rawCount;
+    private long packedCount;
+
+    DeflatingWritableByteChannel(int level) {
+        this.z_streamp = Zip.deflateInit(level);
+        if (z_streamp <= 0) {
+            throw new OutOfMemoryError();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (z_streamp != 0) {
+            Zip.deflateEnd(z_streamp);
+            z_streamp = 0;
+        }
+        ByteBuffers.release(in);
+        ByteBuffers.release(out);
+    }
+
+    public void flush() throws IOException {
+        if (in.position() > 0) {
+            writeFrame();
+        }
+    }
+
+    public long getPackedCount() {
+        return packedCount;
+    }
+
+    public long getRawCount() {
+        return rawCount;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return z_streamp != 0 && channel.isOpen();
+    }
+
+    public DeflatingWritableByteChannel of(WritableByteChannel channel) {
+        this.channel = channel;
+        this.in.clear();
+        return this;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int result = src.remaining();
+        while (src.hasRemaining()) {
+            int limit = src.limit();
+            src.limit(src.position() + Math.min(src.remaining(), in.remaining()));
+            in.put(src);
+            src.limit(limit);
+            if (!in.hasRemaining()) {
+                writeFrame();
+            }
+        }
+        return result;
+    }
+
+    private void writeFrame() throws IOException {
+        int raw = in.position();
+        Zip.deflateReset(z_streamp);
+        Zip.setInput(z_streamp, inAddress, raw);
+        // stream that does not end within raw - 1 bytes is not worth sending compressed
+        int packed = Zip.deflate(z_streamp, outAddress + FRAME_HEADER_SIZE, raw - 1, true) == 1 ? raw - 1 - Zip.availOut(z_streamp) : raw;
+
+        Unsafe.getUnsafe().putInt(outAddress, raw);
+        Unsafe.getUnsafe().putInt(outAddress + 4, packed);
+        out.limit(FRAME_HEADER_SIZE + (packed < raw ? packed : 0)).position(0);
+        write0(out);
+
+        if (packed == raw) {
+            in.flip();
+            write0(in);
+        }
+
+        rawCount += raw;
+        packedCount += FRAME_HEADER_SIZE + packed;
+        in.clear();
+    }
+
+    private void write0(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.write(buf) < 1) {
+                throw new IOException("Write to closed channel");
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.net.ha;
+
+import com.questdb.misc.ByteBuffers;
+import com.questdb.misc.Unsafe;
+import com.questdb.misc.Zip;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads frames written by {@link DeflatingWritableByteChannel}. Next frame is read from underlying
+ * channel only when reader asks for more bytes than current frame has left, so this channel never
+ * reads past the end of compressed batch.
+ */
+class InflatingReadableByteChannel implements ReadableByteChannel, Closeable {
+    private final ByteBuffer header = ByteBuffer.allocateDirect(DeflatingWritableByteChannel.FRAME_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer packed = ByteBuffer.allocateDirect(DeflatingWritableByteChannel.FRAME_SIZE);
+    private final ByteBuffer raw = ByteBuffer.allocateDirect(DeflatingWritableByteChannel.FRAME_SIZE);
+    private final long headerAddress = ByteBuffers.getAddress(header);
+    private final long packedAddress = ByteBuffers.getAddress(packed);
+    private final long rawAddress = ByteBuffers.getAddress(raw);
+    private long z_streamp;
+    private ReadableByteChannel channel;
+
+    InflatingReadableByteChannel() {
+        this.z_streamp = Zip.inflateInit(true);
+        if (z_streamp <= 0) {
+            throw new OutOfMemoryError();
+        }
+        raw.limit(0);
+    }
+
+    @Override
+    public void close() {
+        if (z_streamp != 0) {
+            Zip.inflateEnd(z_streamp);
+            z_streamp = 0;
+        }
+        ByteBuffers.release(header);
+        ByteBuffers.release(packed);
+        ByteBuffers.release(raw);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return z_streamp != 0 && channel.isOpen();
+    }
+
+    public InflatingReadableByteChannel of(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.raw.limit(0);
+        return this;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+
+        if (!raw.hasRemaining() && !readFrame()) {
+            return -1;
+        }
+
+        int result = Math.min(raw.remaining(), dst.remaining());
+        int limit = raw.limit();
+        raw.limit(raw.position() + result);
+        dst.put(raw);
+        raw.limit(limit);
+        return result;
+    }
+
+    private void read0(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) == -1) {
+                throw new IOException("Truncated compressed frame");
+            }
+        }
+    }
+
+    private boolean readFrame() throws IOException {
+        header.clear();
+        if (channel.read(header) == -1) {
+            return false;
+        }
+        read0(header);
+
+        int rawLen = Unsafe.getUnsafe().getInt(headerAddress);
+        int packedLen = Unsafe.getUnsafe().getInt(headerAddress + 4);
+        if (rawLen < 1 || rawLen > DeflatingWritableByteChannel.FRAME_SIZE || packedLen < 1 || packedLen > rawLen) {
+            throw new IOException("Corrupt compressed frame [raw=" + rawLen + ", packed=" + packedLen + ']');
+        }
+
+        raw.clear();
+        if (packedLen == rawLen) {
+            raw.limit(rawLen);
+            read0(raw);
+        } else {
+            packed.clear().limit(packedLen);
+            read0(packed);
+            Zip.inflateReset(z_streamp);
+            Zip.setInput(z_streamp, packedAddress, packedLen);
+            int n = Zip.inflate(z_streamp, rawAddress, rawLen, true);
+            if (n != rawLen) {
+                throw new IOException("Inflater error: " + n);
+            }
+            raw.limit(rawLen);
+        }
+        raw.position(0);
+        return true;
+    }
+}
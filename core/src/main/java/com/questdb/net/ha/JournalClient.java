@@ -36,6 +36,7 @@ import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
 import com.questdb.misc.Chars;
 import com.questdb.misc.Files;
+import com.questdb.misc.Misc;
 import com.questdb.misc.NamedDaemonThreadFactory;
 import com.questdb.net.SecureSocketChannel;
 import com.questdb.net.SslConfig;
@@ -95,9 +96,11 @@ public class JournalClient {
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final CredentialProvider credentialProvider;
     private final DisconnectCallbackImpl disconnectCallback = new DisconnectCallbackImpl();
+    private final ObjList<JournalClient> peers = new ObjList<>();
     private ByteChannel channel;
     private StatsCollectingReadableByteChannel statsChannel;
     private Future handlerFuture;
+    private InflatingReadableByteChannel inflater;
 
     public JournalClient(JournalWriterFactory factory) {
         this(factory, null);
@@ -120,6 +123,7 @@ public class JournalClient {
 
     public void halt() {
         if (running.compareAndSet(true, false)) {
+            haltPeers();
             if (handlerFuture != null) {
                 try {
                     handlerFuture.get();
@@ -137,17 +141,33 @@ public class JournalClient {
     }
 
     public boolean isRunning() {
-        return running.get();
+        if (peers.size() == 0) {
+            return running.get();
+        }
+
+        for (int i = 0, n = peers.size(); i < n; i++) {
+            if (peers.getQuick(i).isRunning()) {
+                return running.get();
+            }
+        }
+        return false;
     }
 
     public void setDisconnectCallback(DisconnectCallback callback) {
         this.disconnectCallback.next = callback;
+        for (int i = 0, n = peers.size(); i < n; i++) {
+            peers.getQuick(i).setDisconnectCallback(callback);
+        }
     }
 
     public void start() throws JournalNetworkException {
         if (running.compareAndSet(false, true)) {
-            handshake();
-            handlerFuture = service.submit(new Handler());
+            int n = Math.min(config.getChannelCount(), remoteKeys.size());
+            if (n > 1) {
+                startPeers(n);
+            } else {
+                start0();
+            }
         }
     }
 
@@ -177,6 +197,13 @@ public class JournalClient {
     }
 
     public <T> void subscribe(JournalKey<T> remoteKey, JournalWriter<T> writer, TxListener txListener) {
+        if (peers.size() > 0) {
+            peers.getQuick(remoteKeys.size() % peers.size()).subscribe(remoteKey, writer, txListener);
+            remoteKeys.add(remoteKey);
+            localKeys.add(writer.getKey());
+            listeners.add(txListener);
+            return;
+        }
         remoteKeys.add(remoteKey);
         localKeys.add(writer.getKey());
         listeners.add(txListener);
@@ -249,6 +276,7 @@ public class JournalClient {
         commandConsumer.free();
         charSequenceResponseConsumer.free();
         intResponseConsumer.free();
+        inflater = Misc.free(inflater);
     }
 
     private byte[] getToken() throws JournalNetworkException {
@@ -260,6 +288,13 @@ public class JournalClient {
         }
     }
 
+    private void haltPeers() {
+        for (int i = 0, n = peers.size(); i < n; i++) {
+            peers.getQuick(i).halt();
+        }
+        peers.clear();
+    }
+
     private void handshake() throws JournalNetworkException {
         openChannel(null);
         sendProtocolVersion();
@@ -269,6 +304,24 @@ public class JournalClient {
         counter.incrementAndGet();
     }
 
+    private void negotiateCompression() throws JournalNetworkException {
+        int level = config.getCompressionLevel();
+        if (level > 0) {
+            commandProducer.write(channel, Command.COMPRESSION);
+            intResponseProducer.write(channel, level);
+            level = intResponseConsumer.getValue(channel);
+        }
+
+        if (level > 0) {
+            if (inflater == null) {
+                inflater = new InflatingReadableByteChannel();
+            }
+        } else {
+            inflater = Misc.free(inflater);
+        }
+        LOG.info().$("Compression level ").$(level).$();
+    }
+
     private void openChannel(ServerNode node) throws JournalNetworkException {
         if (this.channel == null || node != null) {
             if (channel != null) {
@@ -334,7 +387,17 @@ public class JournalClient {
     private void sendProtocolVersion() throws JournalNetworkException {
         commandProducer.write(channel, Command.PROTOCOL_VERSION);
         intResponseProducer.write(channel, Version.PROTOCOL_VERSION);
-        checkAck();
+        CharSequence response = readString();
+        if (Chars.equals("OK", response)) {
+            negotiateCompression();
+        } else {
+            // server predates compression, retry with version it understands
+            LOG.info().$("Server rejected protocol version ").$(Version.PROTOCOL_VERSION).$(": ").$(response).$();
+            commandProducer.write(channel, Command.PROTOCOL_VERSION);
+            intResponseProducer.write(channel, Version.PROTOCOL_VERSION_UNCOMPRESSED);
+            checkAck();
+            inflater = Misc.free(inflater);
+        }
     }
 
     private void sendReady() throws JournalNetworkException {
@@ -363,6 +426,54 @@ public class JournalClient {
         }
     }
 
+    private void start0() throws JournalNetworkException {
+        handshake();
+        handlerFuture = service.submit(new Handler());
+    }
+
+    private void startPeers(int n) throws JournalNetworkException {
+        for (int i = 0; i < n; i++) {
+            JournalClient peer = new JournalClient(config, factory, credentialProvider);
+            peer.disconnectCallback.next = disconnectCallback.next;
+            peers.add(peer);
+        }
+
+        for (int i = 0, k = remoteKeys.size(); i < k; i++) {
+            JournalClient peer = peers.getQuick(i % n);
+            peer.remoteKeys.add(remoteKeys.getQuick(i));
+            peer.localKeys.add(localKeys.getQuick(i));
+            peer.listeners.add(listeners.getQuick(i));
+            JournalWriter writer = writers.getQuiet(i);
+            if (writer != null) {
+                peer.set0(peer.remoteKeys.size() - 1, writer, listeners.getQuick(i));
+            }
+        }
+
+        // peers own subscribed writers from now on
+        for (int i = 0, k = deltaConsumers.size(); i < k; i++) {
+            JournalDeltaConsumer consumer = deltaConsumers.getQuick(i);
+            if (consumer != null) {
+                consumer.free();
+            }
+        }
+        writers.clear();
+        deltaConsumers.clear();
+        statusSentList.clear();
+
+        try {
+            for (int i = 0; i < n; i++) {
+                JournalClient peer = peers.getQuick(i);
+                peer.running.set(true);
+                peer.start0();
+            }
+        } catch (JournalNetworkException e) {
+            running.set(false);
+            haltPeers();
+            throw e;
+        }
+        LOG.info().$("Started ").$(n).$(" replication channels").$();
+    }
+
     /**
      * Configures client to subscribe given journal class when client is started
      * and connected. Journals of given class at default location are opened on
@@ -453,7 +564,7 @@ public class JournalClient {
                         case JOURNAL_DELTA_CMD:
                             statsChannel.setDelegate(channel);
                             int index = intResponseConsumer.getValue(statsChannel);
-                            deltaConsumers.getQuick(index).read(statsChannel);
+                            deltaConsumers.getQuick(index).read(inflater == null ? statsChannel : inflater.of(statsChannel));
                             statusSentList.set(index, 0);
                             statsChannel.logStats();
                             break;
@@ -107,7 +107,7 @@ public class JournalServer {
                 , new SynchronousQueue<Runnable>()
                 , new NamedDaemonThreadFactory("questdb-server-" + instance + "-agent", true)
         );
-        this.bridge = new JournalEventBridge(config.getHeartbeatFrequency(), TimeUnit.MILLISECONDS);
+        this.bridge = new JournalEventBridge(config.getHeartbeatFrequency(), TimeUnit.MILLISECONDS, config.isLowLatency());
         if (config.isMultiCastEnabled()) {
             this.addressSender = new OnDemandAddressSender(config, 230, 235, instance);
         } else {
@@ -121,6 +121,10 @@ public class JournalServer {
         return bridge;
     }
 
+    public ServerConfig getConfig() {
+        return config;
+    }
+
     public int getConnectedClients() {
         return channels.size();
     }
@@ -419,6 +423,9 @@ public class JournalServer {
                     }
                     SocketChannel channel = serverSocketChannel.accept();
                     if (channel != null) {
+                        if (config.isLowLatency()) {
+                            channel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+                        }
                         SocketChannelHolder holder = new SocketChannelHolder(
                                 config.getSslConfig().isSecure() ? new SecureSocketChannel(channel, config.getSslConfig()) : channel
                                 , channel.getRemoteAddress()
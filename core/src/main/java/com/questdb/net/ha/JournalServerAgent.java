@@ -31,6 +31,7 @@ import com.questdb.ex.JournalNetworkException;
 import com.questdb.factory.configuration.JournalConfiguration;
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
+import com.questdb.misc.Misc;
 import com.questdb.net.ha.auth.AuthorizationHandler;
 import com.questdb.net.ha.bridge.JournalEventHandler;
 import com.questdb.net.ha.bridge.JournalEventProcessor;
@@ -51,6 +52,7 @@ import com.questdb.std.ObjList;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.channels.ByteChannel;
 import java.nio.channels.WritableByteChannel;
@@ -81,6 +83,7 @@ public class JournalServerAgent {
     private final ByteArrayResponseConsumer byteArrayResponseConsumer = new ByteArrayResponseConsumer();
     private final SocketAddress socketAddress;
     private boolean authorized;
+    private DeflatingWritableByteChannel deflater;
 
     public JournalServerAgent(JournalServer server, SocketAddress socketAddress, AuthorizationHandler authorizationHandler) {
         this.server = server;
@@ -105,6 +108,7 @@ public class JournalServerAgent {
         for (int i = 0, k = producers.size(); i < k; i++) {
             producers.getQuick(i).free();
         }
+        deflater = Misc.free(deflater);
     }
 
     public void process(ByteChannel channel) throws JournalNetworkException {
@@ -130,6 +134,9 @@ public class JournalServerAgent {
             case PROTOCOL_VERSION:
                 checkProtocolVersion(channel, intResponseConsumer.getValue(channel));
                 break;
+            case COMPRESSION:
+                setCompressionLevel(channel, intResponseConsumer.getValue(channel));
+                break;
             case HANDSHAKE_COMPLETE:
                 if (authorized) {
                     ok(channel);
@@ -183,7 +190,7 @@ public class JournalServerAgent {
     }
 
     private void checkProtocolVersion(ByteChannel channel, int version) throws JournalNetworkException {
-        if (version == Version.PROTOCOL_VERSION) {
+        if (version == Version.PROTOCOL_VERSION || version == Version.PROTOCOL_VERSION_UNCOMPRESSED) {
             ok(channel);
         } else {
             error(channel, "Unsupported protocol version. Client: " + version + ", Server: " + Version.PROTOCOL_VERSION);
@@ -254,7 +261,16 @@ public class JournalServerAgent {
             LOG.debug().$(socketAddress).$(" Sending data").$();
             commandProducer.write(channel, Command.JOURNAL_DELTA_CMD);
             intResponseProducer.write(channel, index);
-            journalDeltaProducer.write(channel);
+            if (deflater == null) {
+                journalDeltaProducer.write(channel);
+            } else {
+                journalDeltaProducer.write(deflater.of(channel));
+                try {
+                    deflater.flush();
+                } catch (IOException e) {
+                    throw new JournalNetworkException(e);
+                }
+            }
             return true;
         }
         return false;
@@ -300,7 +316,10 @@ public class JournalServerAgent {
             if (dataSent) {
                 commandProducer.write(channel, Command.SERVER_READY_CMD);
             } else if (blocking) {
-                LOG.info().$(socketAddress).$(" Client appears to be refusing new data from server, corrupt client").$();
+                // events were for journals this client does not subscribe to on this channel, or client
+                // refused data. Either way client is waiting for reply and will come back with ready command
+                LOG.debug().$(socketAddress).$(" No data sent for journal events").$();
+                commandProducer.write(channel, Command.SERVER_HEARTBEAT);
             }
         } else {
             if (server.isRunning()) {
@@ -343,6 +362,17 @@ public class JournalServerAgent {
         }
     }
 
+    private void setCompressionLevel(WritableByteChannel channel, int requested) throws JournalNetworkException {
+        // server config caps what client may ask for, 0 on either side keeps stream uncompressed
+        int level = Math.max(0, Math.min(requested, server.getConfig().getCompressionLevel()));
+        deflater = Misc.free(deflater);
+        if (level > 0) {
+            deflater = new DeflatingWritableByteChannel(level);
+        }
+        intResponseProducer.write(channel, level);
+        LOG.info().$(socketAddress).$(" Compression level ").$(level).$(" [requested: ").$(requested).$(']').$();
+    }
+
     private void storeDeltaRequest(WritableByteChannel channel, JournalClientState request) throws JournalNetworkException {
         int index = request.getJournalIndex();
 
@@ -25,13 +25,15 @@ package com.questdb.net.ha;
 
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
+import com.questdb.net.ZeroCopyChannel;
 
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
 
-class StatsCollectingWritableByteChannel implements WritableByteChannel {
+class StatsCollectingWritableByteChannel implements ZeroCopyChannel {
 
     private final static Log LOG = LogFactory.getLog(StatsCollectingWritableByteChannel.class);
 
@@ -55,6 +57,12 @@ class StatsCollectingWritableByteChannel implements WritableByteChannel {
         delegate.close();
     }
 
+    @Override
+    public WritableByteChannel getTransferTarget() {
+        // secure channel has to encrypt everything it sends, so only plain socket can take file ranges
+        return delegate instanceof SocketChannel ? delegate : null;
+    }
+
     public void logStats() {
         if (byteCount > 10) {
             long endTime = System.currentTimeMillis();
@@ -62,6 +70,12 @@ class StatsCollectingWritableByteChannel implements WritableByteChannel {
         }
     }
 
+    @Override
+    public void onTransfer(long byteCount) {
+        callCount++;
+        this.byteCount += byteCount;
+    }
+
     public void setDelegate(WritableByteChannel delegate) {
         this.delegate = delegate;
         this.startTime = System.currentTimeMillis();
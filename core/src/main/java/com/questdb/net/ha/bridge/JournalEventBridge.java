@@ -35,18 +35,35 @@ public class JournalEventBridge {
     private final FanOut fanOut;
     private final long time;
     private final TimeUnit unit;
+    private final boolean spin;
 
     public JournalEventBridge(long time, TimeUnit unit) {
+        this(time, unit, false);
+    }
+
+    /**
+     * Agents need a wait strategy that times out, because timeout is what drives heartbeat. Only
+     * two strategies in {@link com.questdb.mp} do, so a flag is enough to choose between them.
+     *
+     * @param time timeout after which waiting agent gives up and sends heartbeat
+     * @param unit unit of timeout
+     * @param spin true to have agents busy-spin on the queue rather than park on a condition
+     */
+    public JournalEventBridge(long time, TimeUnit unit, boolean spin) {
         this.queue = new RingQueue<>(JournalEvent.EVENT_FACTORY, BUFFER_SIZE);
         this.publisher = new MPSequence(BUFFER_SIZE);
         this.fanOut = new FanOut();
         this.publisher.followedBy(fanOut);
         this.time = time;
         this.unit = unit;
+        this.spin = spin;
     }
 
     public Sequence createAgentSequence() {
-        Sequence sequence = new SCSequence(publisher.current(), new TimeoutBlockingWaitStrategy(time, unit));
+        Sequence sequence = new SCSequence(
+                publisher.current(),
+                spin ? new TimeoutYieldingWaitStrategy(time, unit) : new TimeoutBlockingWaitStrategy(time, unit)
+        );
         sequence.followedBy(publisher);
         fanOut.add(sequence);
         return sequence;
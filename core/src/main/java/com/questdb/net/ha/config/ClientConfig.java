@@ -24,6 +24,7 @@
 package com.questdb.net.ha.config;
 
 import com.questdb.ex.JournalNetworkException;
+import com.questdb.ex.JournalRuntimeException;
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
 import com.questdb.net.ha.mcast.OnDemandAddressPoller;
@@ -49,6 +50,7 @@ public class ClientConfig extends NetworkConfig {
     private boolean tcpNoDelay = true;
     private int linger = 0;
     private long connectionTimeout = 500; //millis
+    private int channelCount = 1;
 
     public ClientConfig() {
         this(null);
@@ -62,6 +64,25 @@ public class ClientConfig extends NetworkConfig {
         }
     }
 
+    /**
+     * Number of connections client spreads its subscriptions over. Journals are assigned to
+     * connections round robin in order of subscription, each connection is served by its own
+     * server thread and applies deltas on its own client thread. This keeps small journals from
+     * queueing behind bulk transfer of a large one.
+     *
+     * @return number of connections, 1 by default
+     */
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public void setChannelCount(int channelCount) {
+        if (channelCount < 1) {
+            throw new JournalRuntimeException("Channel count must be positive: %d", channelCount);
+        }
+        this.channelCount = channelCount;
+    }
+
     public long getConnectionTimeout() {
         return connectionTimeout;
     }
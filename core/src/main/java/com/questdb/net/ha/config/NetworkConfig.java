@@ -24,6 +24,7 @@
 package com.questdb.net.ha.config;
 
 import com.questdb.ex.JournalNetworkException;
+import com.questdb.ex.JournalRuntimeException;
 import com.questdb.net.SslConfig;
 import com.questdb.std.IntIntHashMap;
 
@@ -51,6 +52,7 @@ public class NetworkConfig {
     private boolean enableMultiCast = true;
     private String ifName = null;
     private NetworkInterface defaultInterface = null;
+    private int compressionLevel = 0;
 
     public void addNode(ServerNode node) {
         nodes2.add(node);
@@ -62,6 +64,24 @@ public class NetworkConfig {
         nodeLookup.clear();
     }
 
+    /**
+     * Deflate level of replication stream, from 1 (fastest) to 9 (smallest), 0 disables compression.
+     * Client asks for its level during handshake and server grants the lower of the two levels,
+     * so both sides have to enable compression for it to take effect.
+     *
+     * @return compression level
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new JournalRuntimeException("Compression level must be between 0 and 9: %d", compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
     public ServerNode getNodeByPosition(int pos) {
         return nodes2.get(pos);
     }
@@ -41,6 +41,7 @@ public class ServerConfig extends NetworkConfig {
     private static final Log LOG = LogFactory.getLog(ServerConfig.class);
 
     private long heartbeatFrequency = DEFAULT_HEARTBEAT_FREQUENCY;
+    private boolean lowLatency = false;
 
     public long getHeartbeatFrequency() {
         return heartbeatFrequency;
@@ -50,6 +51,21 @@ public class ServerConfig extends NetworkConfig {
         this.heartbeatFrequency = heartbeatFrequency;
     }
 
+    /**
+     * In low latency mode agents busy-spin on commit event queue instead of parking and client
+     * sockets have Nagle's algorithm disabled, so that small commits reach replicas as soon as
+     * they are published. Each connected client then keeps one server core busy.
+     *
+     * @return true when low latency mode is on
+     */
+    public boolean isLowLatency() {
+        return lowLatency;
+    }
+
+    public void setLowLatency(boolean lowLatency) {
+        this.lowLatency = lowLatency;
+    }
+
     public NetworkInterface getMultiCastInterface(int instance) throws JournalNetworkException {
         NetworkInterface ifn = getMultiCastInterface0(instance);
         try {
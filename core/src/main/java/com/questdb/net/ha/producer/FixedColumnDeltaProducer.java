@@ -25,10 +25,14 @@ package com.questdb.net.ha.producer;
 
 import com.questdb.ex.JournalNetworkException;
 import com.questdb.misc.ByteBuffers;
+import com.questdb.net.ZeroCopyChannel;
 import com.questdb.store.AbstractColumn;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
 
 public class FixedColumnDeltaProducer implements ColumnDeltaProducer {
@@ -70,8 +74,13 @@ public class FixedColumnDeltaProducer implements ColumnDeltaProducer {
     public void write(WritableByteChannel channel) throws JournalNetworkException {
         if (hasContent()) {
             ByteBuffers.copy(header, channel);
-            while (offset < targetOffset) {
-                offset += ByteBuffers.copy(column.getBuffer(offset, 1), channel, targetOffset - offset);
+            WritableByteChannel target = getTransferTarget(channel);
+            if (target != null) {
+                transfer(channel, target);
+            } else {
+                while (offset < targetOffset) {
+                    offset += ByteBuffers.copy(column.getBuffer(offset, 1), channel, targetOffset - offset);
+                }
             }
             hasContent = false;
         }
@@ -86,4 +95,34 @@ public class FixedColumnDeltaProducer implements ColumnDeltaProducer {
                 ", column=" + column +
                 '}';
     }
+
+    private static WritableByteChannel getTransferTarget(WritableByteChannel channel) {
+        if (channel instanceof SocketChannel || channel instanceof FileChannel) {
+            return channel;
+        }
+
+        if (channel instanceof ZeroCopyChannel) {
+            return ((ZeroCopyChannel) channel).getTransferTarget();
+        }
+
+        // encrypted and other decorated channels take the copying path
+        return null;
+    }
+
+    private void transfer(WritableByteChannel channel, WritableByteChannel target) throws JournalNetworkException {
+        try {
+            while (offset < targetOffset) {
+                long count = column.transferTo(offset, targetOffset - offset, target);
+                if (count < 1) {
+                    throw new JournalNetworkException("Write to closed channel");
+                }
+                offset += count;
+                if (channel != target) {
+                    ((ZeroCopyChannel) channel).onTransfer(count);
+                }
+            }
+        } catch (IOException e) {
+            throw new JournalNetworkException(e);
+        }
+    }
 }
\ No newline at end of file
@@ -25,7 +25,9 @@ package com.questdb.net.ha.protocol;
 
 public final class Version {
 
-    public static final int PROTOCOL_VERSION = 2;
+    public static final int PROTOCOL_VERSION = 3;
+    // clients of this version do not negotiate stream compression
+    public static final int PROTOCOL_VERSION_UNCOMPRESSED = 2;
 
     private Version() {
     }
@@ -65,6 +65,9 @@ public class ServerConfiguration {
     private int dbCyclesBeforeCancel = 1024 * 1024;
     private int dbAnalyticFuncPage = 2 * 1024 * 1024;
     private int dbAnalyticWindowPage = 4 * 1024 * 1024;
+    private int dbScanWorkers = 0;
+    private long dbMapBudget = 1024 * 1024 * 1024;
+    private long dbSortBudget = 1024 * 1024 * 1024;
     private File dbPath = new File("db");
     private File mimeTypes = new File("conf/mime.types");
     private File httpPublic = new File("public");
@@ -85,6 +88,7 @@ public class ServerConfiguration {
         }
 
         int n;
+        long l;
         String s;
 
         if ((s = props.getProperty("http.ip")) != null) {
@@ -203,6 +207,18 @@ public class ServerConfiguration {
             this.dbAnalyticWindowPage = n;
         }
 
+        if ((n = parseInt(props, "db.scan.workers")) > -1) {
+            this.dbScanWorkers = n;
+        }
+
+        if ((l = parseLongSize(props, "db.map.budget")) > -1) {
+            this.dbMapBudget = l;
+        }
+
+        if ((l = parseLongSize(props, "db.sort.budget")) > -1) {
+            this.dbSortBudget = l;
+        }
+
         if ((s = props.getProperty("mime.types")) != null) {
             this.mimeTypes = normalize(root, new File(s));
         } else {
@@ -302,10 +318,34 @@ public class ServerConfiguration {
         return dbHashRowPage;
     }
 
+    public long getDbMapBudget() {
+        return dbMapBudget;
+    }
+
+    public void setDbMapBudget(long dbMapBudget) {
+        this.dbMapBudget = dbMapBudget;
+    }
+
     public File getDbPath() {
         return dbPath;
     }
 
+    public int getDbScanWorkers() {
+        return dbScanWorkers;
+    }
+
+    public void setDbScanWorkers(int dbScanWorkers) {
+        this.dbScanWorkers = dbScanWorkers;
+    }
+
+    public long getDbSortBudget() {
+        return dbSortBudget;
+    }
+
+    public void setDbSortBudget(long dbSortBudget) {
+        this.dbSortBudget = dbSortBudget;
+    }
+
     public int getDbSortDataPage() {
         return dbSortDataPage;
     }
@@ -427,6 +467,7 @@ public class ServerConfiguration {
                 ", dbSortKeyPage=" + dbSortKeyPage +
                 ", dbSortDataPage=" + dbSortDataPage +
                 ", dbAggregatePage=" + dbAggregatePage +
+                ", dbScanWorkers=" + dbScanWorkers +
                 ", dbPath=" + dbPath +
                 ", mimeTypes=" + mimeTypes +
                 ", httpPublic=" + httpPublic +
@@ -461,6 +502,18 @@ public class ServerConfiguration {
         return -1;
     }
 
+    private long parseLongSize(Properties props, String name) {
+        String val = props.getProperty(name);
+        if (val != null) {
+            try {
+                return Numbers.parseLongSize(val);
+            } catch (NumericException e) {
+                System.out.println(name + ": invalid value");
+            }
+        }
+        return -1;
+    }
+
     private int parseSize(Properties props, String name) {
         String val = props.getProperty(name);
         if (val != null) {
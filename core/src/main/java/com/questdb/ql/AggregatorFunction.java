@@ -31,5 +31,15 @@ public interface AggregatorFunction {
 
     void calculate(Record rec, MapValues values);
 
+    /**
+     * Combines partial aggregate of a key into values of the same key. Partial aggregates
+     * are calculated over disjoint ranges of rows and are merged in row order, i.e. rows
+     * behind "that" follow rows behind "values". New values have to be initialised from "that".
+     *
+     * @param that   partial aggregate
+     * @param values values to merge partial aggregate into
+     */
+    void merge(MapValues that, MapValues values);
+
     void prepare(ObjList<RecordColumnMetadata> columns, int offset);
 }
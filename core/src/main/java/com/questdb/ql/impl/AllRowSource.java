@@ -23,9 +23,12 @@
 
 package com.questdb.ql.impl;
 
+import com.questdb.JournalMode;
+import com.questdb.Partition;
 import com.questdb.ex.JournalException;
 import com.questdb.ex.JournalRuntimeException;
 import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.misc.Files;
 import com.questdb.ql.PartitionSlice;
 import com.questdb.ql.RowCursor;
 import com.questdb.std.CharSink;
@@ -34,6 +37,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 public class AllRowSource extends AbstractRowSource {
     private long lo;
     private long hi;
+    private Partition partition;
 
     @Override
     public void configure(JournalMetadata metadata) {
@@ -45,6 +49,7 @@ public class AllRowSource extends AbstractRowSource {
         try {
             this.lo = slice.lo;
             this.hi = slice.calcHi ? slice.partition.open().size() - 1 : slice.hi;
+            advise(slice.partition);
             return this;
         } catch (JournalException e) {
             throw new JournalRuntimeException(e);
@@ -53,7 +58,7 @@ public class AllRowSource extends AbstractRowSource {
 
     @Override
     public void reset() {
-
+        partition = null;
     }
 
     @Override
@@ -72,4 +77,20 @@ public class AllRowSource extends AbstractRowSource {
         sink.putQuoted("op").put(':').putQuoted("AllRowSource");
         sink.put('}');
     }
+
+    /**
+     * Partitions are scanned front to back, let OS read ahead aggressively and not promote scanned pages.
+     * Bulk readers make one pass over data, so partition they have moved away from is dropped from page cache.
+     */
+    private void advise(Partition p) throws JournalException {
+        if (p == partition) {
+            return;
+        }
+
+        if (partition != null && partition.getJournal().getMode() == JournalMode.BULK_READ) {
+            partition.advise(Files.ADVICE_DONTNEED);
+        }
+        p.open().advise(Files.ADVICE_SEQUENTIAL);
+        partition = p;
+    }
 }
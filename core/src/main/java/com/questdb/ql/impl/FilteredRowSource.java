@@ -26,18 +26,39 @@ package com.questdb.ql.impl;
 import com.questdb.factory.configuration.JournalMetadata;
 import com.questdb.ql.*;
 import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.ql.ops.vector.VectorFilter;
+import com.questdb.ql.ops.vector.VectorFilters;
 import com.questdb.std.CharSink;
 
+/**
+ * Filters rows of delegate row source. When filter can be vectorized rows are
+ * pulled from delegate in blocks of up to {@link VectorFilters#BLOCK_SIZE} and
+ * filter is applied to the whole block at once. Otherwise filter is evaluated
+ * one row at a time.
+ */
 public class FilteredRowSource extends AbstractRowSource {
 
     private final RowSource delegate;
     private final VirtualColumn filter;
+    private final VectorFilter vectorFilter;
+    private final long[] rows;
+    private final long[] bits;
     private RowCursor underlying;
     private JournalRecord rec;
+    private int count;
+    private int pos;
 
     public FilteredRowSource(RowSource delegate, VirtualColumn filter) {
         this.delegate = delegate;
         this.filter = filter;
+        this.vectorFilter = VectorFilters.compile(filter);
+        if (vectorFilter != null) {
+            this.rows = new long[VectorFilters.BLOCK_SIZE];
+            this.bits = new long[VectorFilters.wordCount(VectorFilters.BLOCK_SIZE)];
+        } else {
+            this.rows = null;
+            this.bits = null;
+        }
     }
 
     @Override
@@ -50,16 +71,22 @@ public class FilteredRowSource extends AbstractRowSource {
     public RowCursor prepareCursor(PartitionSlice slice) {
         this.underlying = delegate.prepareCursor(slice);
         this.rec.partition = slice.partition;
+        this.count = this.pos = 0;
         return this;
     }
 
     @Override
     public void reset() {
         delegate.reset();
+        this.count = this.pos = 0;
     }
 
     @Override
     public boolean hasNext() {
+        if (vectorFilter != null) {
+            return hasNextInBlock();
+        }
+
         while (underlying.hasNext()) {
             rec.rowid = underlying.next();
             if (filter.getBool(rec)) {
@@ -78,6 +105,9 @@ public class FilteredRowSource extends AbstractRowSource {
     public void prepare(StorageFacade facade, CancellationHandler cancellationHandler) {
         delegate.prepare(facade, cancellationHandler);
         filter.prepare(facade);
+        if (vectorFilter != null) {
+            vectorFilter.prepare(facade);
+        }
     }
 
     @Override
@@ -93,4 +123,35 @@ public class FilteredRowSource extends AbstractRowSource {
         return "FilteredRowSource{}";
     }
 
+    private boolean hasNextInBlock() {
+        do {
+            while (pos < count) {
+                int i = pos++;
+                if (VectorFilters.isSet(bits, i)) {
+                    rec.rowid = rows[i];
+                    return true;
+                }
+            }
+        } while (nextBlock());
+        return false;
+    }
+
+    private boolean nextBlock() {
+        int n = 0;
+        while (n < VectorFilters.BLOCK_SIZE && underlying.hasNext()) {
+            rows[n++] = underlying.next();
+        }
+
+        count = n;
+        pos = 0;
+
+        if (n == 0) {
+            return false;
+        }
+
+        VectorFilters.setAll(bits, n);
+        vectorFilter.select(rec, rows, n, bits);
+        return true;
+    }
+
 }
@@ -75,8 +75,7 @@ public class JournalPartitionSource extends AbstractImmutableIterator<PartitionS
 
     @Override
     public final void reset() {
-        journal.refresh();
-        partitionCount = journal.getPartitionCount();
+        // rewind only, reader stays on transaction factory lease has pinned
         partitionIndex = 0;
     }
 
@@ -32,6 +32,13 @@ public class MasterStorageFacade implements StorageFacade {
     private Journal journal;
     private JournalReaderFactory factory;
 
+    /**
+     * @return journal behind given facade or null when facade is not backed by a single journal
+     */
+    public static Journal journalOf(StorageFacade facade) {
+        return facade instanceof MasterStorageFacade ? ((MasterStorageFacade) facade).journal : null;
+    }
+
     @Override
     public JournalReaderFactory getFactory() {
         return factory;
@@ -92,6 +92,10 @@ public class RecordList extends AbstractImmutableIterator<Record> implements Clo
         return storageFacade;
     }
 
+    public long getUsedMemory() {
+        return mem.size();
+    }
+
     public void setStorageFacade(StorageFacade storageFacade) {
         record.setStorageFacade(this.storageFacade = storageFacade);
     }
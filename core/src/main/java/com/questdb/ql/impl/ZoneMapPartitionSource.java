@@ -0,0 +1,172 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl;
+
+import com.questdb.Partition;
+import com.questdb.ex.JournalException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.ql.PartitionCursor;
+import com.questdb.ql.PartitionSlice;
+import com.questdb.ql.PartitionSource;
+import com.questdb.ql.StorageFacade;
+import com.questdb.std.AbstractImmutableIterator;
+import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.store.ZoneMap;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Removes partitions and blocks of rows, which cannot satisfy column value ranges, from
+ * slices of delegate partition source. Ranges are checked against column zone maps, blocks
+ * that are not yet summarised are always passed through. Remaining blocks of slice are
+ * merged into contiguous slices.
+ */
+public class ZoneMapPartitionSource extends AbstractImmutableIterator<PartitionSlice> implements PartitionSource, PartitionCursor {
+    private final PartitionSource partitionSource;
+    private final PartitionSlice result = new PartitionSlice();
+    private final IntList columns;
+    private final LongList lo;
+    private final LongList hi;
+    private PartitionCursor partitionCursor;
+    private PartitionSlice slice;
+    private boolean needPartition = true;
+    private long nextRowLo;
+    private long sliceRowHi;
+
+    public ZoneMapPartitionSource(PartitionSource partitionSource, IntList columns, LongList lo, LongList hi) {
+        this.partitionSource = partitionSource;
+        this.columns = new IntList(columns.size());
+        this.columns.addAll(columns);
+        this.lo = new LongList(lo);
+        this.hi = new LongList(hi);
+    }
+
+    @Override
+    public JournalMetadata getMetadata() {
+        return partitionSource.getMetadata();
+    }
+
+    @Override
+    public PartitionCursor prepareCursor(JournalReaderFactory readerFactory) throws JournalException {
+        partitionCursor = partitionSource.prepareCursor(readerFactory);
+        needPartition = true;
+        return this;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return partitionCursor.getStorageFacade();
+    }
+
+    @Override
+    public void reset() {
+        partitionCursor.reset();
+        needPartition = true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (true) {
+            if (needPartition) {
+                if (!partitionCursor.hasNext()) {
+                    return false;
+                }
+
+                slice = partitionCursor.next();
+                nextRowLo = slice.lo;
+                sliceRowHi = slice.calcHi ? slice.partition.size() - 1 : slice.hi;
+
+                if (nextRowLo > sliceRowHi || skipPartition(slice.partition)) {
+                    continue;
+                }
+                needPartition = false;
+            }
+
+            long rowLo = nextRowLo;
+            while (rowLo <= sliceRowHi && skipBlock(rowLo)) {
+                rowLo = blockHi(rowLo) + 1;
+            }
+
+            if (rowLo > sliceRowHi) {
+                needPartition = true;
+                continue;
+            }
+
+            long rowHi = blockHi(rowLo);
+            while (rowHi < sliceRowHi && !skipBlock(rowHi + 1)) {
+                rowHi = blockHi(rowHi + 1);
+            }
+
+            result.partition = slice.partition;
+            result.lo = rowLo;
+            result.hi = rowHi;
+            nextRowLo = rowHi + 1;
+            needPartition = rowHi >= sliceRowHi;
+            return true;
+        }
+    }
+
+    @SuppressFBWarnings({"IT_NO_SUCH_ELEMENT"})
+    @Override
+    public PartitionSlice next() {
+        return result;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("ZoneMapPartitionSource").put(',');
+        sink.putQuoted("psrc").put(':').put(partitionSource);
+        sink.put('}');
+    }
+
+    private long blockHi(long row) {
+        return Math.min(sliceRowHi, row | (ZoneMap.BLOCK_SIZE - 1));
+    }
+
+    private boolean skipBlock(long row) {
+        long rowHi = blockHi(row);
+        long block = row >>> ZoneMap.BLOCK_BITS;
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            ZoneMap zm = slice.partition.getZoneMap(columns.getQuick(i));
+            if (zm != null && !zm.mayContain(block, lo.getQuick(i), hi.getQuick(i), rowHi)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean skipPartition(Partition partition) {
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            ZoneMap zm = partition.getZoneMap(columns.getQuick(i));
+            if (zm != null && !zm.mayContain(-1, lo.getQuick(i), hi.getQuick(i), sliceRowHi)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
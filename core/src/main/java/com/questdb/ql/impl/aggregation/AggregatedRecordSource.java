@@ -34,6 +34,7 @@ import com.questdb.ql.*;
 import com.questdb.ql.impl.map.MapRecordValueInterceptor;
 import com.questdb.ql.impl.map.MapValues;
 import com.questdb.ql.impl.map.MultiMap;
+import com.questdb.ql.impl.map.MultiMapSpill;
 import com.questdb.ql.ops.AbstractCombinedRecordSource;
 import com.questdb.std.*;
 import com.questdb.std.ThreadLocal;
@@ -53,6 +54,7 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
     });
 
     private final MultiMap map;
+    private final MultiMapSpill spill;
     private final RecordSource recordSource;
     private final int[] keyIndices;
     private final ObjList<AggregatorFunction> aggregators;
@@ -64,7 +66,8 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
             RecordSource recordSource,
             @Transient ObjHashSet<String> keyColumns,
             ObjList<AggregatorFunction> aggregators,
-            int pageSize
+            int pageSize,
+            long memoryBudget
     ) {
         int keyColumnsSize = keyColumns.size();
         this.keyIndices = new int[keyColumnsSize];
@@ -93,11 +96,13 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
             }
         }
         this.map = new MultiMap(pageSize, rm, keyColumns, columns, interceptors);
+        this.spill = new MultiMapSpill(map, aggregators, memoryBudget);
         this.recordSource = recordSource;
     }
 
     @Override
     public void close() throws IOException {
+        Misc.free(spill);
         Misc.free(this.map);
         Misc.free(recordSource);
     }
@@ -128,6 +133,7 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
     public void reset() {
         recordSource.reset();
         map.clear();
+        spill.clear();
     }
 
     @Override
@@ -137,7 +143,15 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
 
     @Override
     public boolean hasNext() {
-        return mapCursor.hasNext();
+        if (mapCursor.hasNext()) {
+            return true;
+        }
+
+        if (spill.next()) {
+            mapCursor = map.getCursor();
+            return mapCursor.hasNext();
+        }
+        return false;
     }
 
     @Override
@@ -177,7 +191,9 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
             for (int i = 0, sz = aggregators.size(); i < sz; i++) {
                 aggregators.getQuick(i).calculate(rec, values);
             }
+            spill.check();
         }
+        spill.finish();
         mapCursor = map.getCursor();
     }
 }
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.aggregation;
+
+import com.questdb.Journal;
+import com.questdb.ex.JournalException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.factory.configuration.RecordColumnMetadata;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Unsafe;
+import com.questdb.mp.Job;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.JournalRecord;
+import com.questdb.ql.impl.MasterStorageFacade;
+import com.questdb.ql.impl.map.MapRecordValueInterceptor;
+import com.questdb.ql.impl.map.MapValues;
+import com.questdb.ql.impl.map.MultiMap;
+import com.questdb.ql.impl.map.MultiMapSpill;
+import com.questdb.ql.impl.parallel.WorkerReader;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjHashSet;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnType;
+
+import java.io.Closeable;
+
+/**
+ * Aggregates rows of assigned partition slices into private map. Job reads from its own
+ * journal instance and owns row source and aggregator functions, so that it can run
+ * concurrently with other jobs of the same query. Map is spilled to disk when it outgrows
+ * job's share of memory budget.
+ */
+class AggregationJob implements Job, Closeable {
+    private final RowSource rowSource;
+    private final ObjList<AggregatorFunction> aggregators;
+    private final MultiMap map;
+    private final MultiMapSpill spill;
+    private final int[] keyIndices;
+    private final ColumnType[] keyTypes;
+    private final JournalRecord rec;
+    private final MasterStorageFacade storageFacade = new MasterStorageFacade();
+    private final PartitionSlice slice = new PartitionSlice();
+    // triplets of partition index, lo and hi row
+    private final LongList slices = new LongList();
+    private final WorkerReader reader = new WorkerReader();
+    private CancellationHandler cancellationHandler;
+    private Throwable error;
+    private volatile boolean done = true;
+    private volatile boolean halted = false;
+
+    AggregationJob(
+            JournalMetadata metadata,
+            RowSource rowSource,
+            ObjHashSet<String> keyColumns,
+            ObjList<AggregatorFunction> aggregators,
+            int pageSize,
+            long memoryBudget
+    ) {
+        this.rowSource = rowSource;
+        this.aggregators = aggregators;
+        this.rec = new JournalRecord(metadata);
+        this.keyIndices = new int[keyColumns.size()];
+        this.keyTypes = new ColumnType[keyIndices.length];
+        for (int i = 0; i < keyIndices.length; i++) {
+            int index = metadata.getColumnIndex(keyColumns.get(i));
+            keyIndices[i] = index;
+            keyTypes[i] = metadata.getColumnQuick(index).getType();
+        }
+
+        ObjList<MapRecordValueInterceptor> interceptors = new ObjList<>();
+        ObjList<RecordColumnMetadata> columns = new ObjList<>();
+        int index = 0;
+        for (int i = 0, sz = aggregators.size(); i < sz; i++) {
+            AggregatorFunction func = aggregators.getQuick(i);
+            int n = columns.size();
+            func.prepare(columns, index);
+            index += columns.size() - n;
+
+            if (func instanceof MapRecordValueInterceptor) {
+                interceptors.add((MapRecordValueInterceptor) func);
+            }
+        }
+        this.map = new MultiMap(pageSize, metadata, keyColumns, columns, interceptors);
+        this.spill = new MultiMapSpill(map, aggregators, memoryBudget);
+        rowSource.configure(metadata);
+    }
+
+    @Override
+    public void close() {
+        Misc.free(spill);
+        Misc.free(map);
+        reader.close();
+    }
+
+    @Override
+    public boolean run() {
+        if (done) {
+            return false;
+        }
+        aggregate();
+        return true;
+    }
+
+    @Override
+    public void setupThread() {
+    }
+
+    void addSlice(int partitionIndex, long lo, long hi) {
+        slices.add(partitionIndex);
+        slices.add(lo);
+        slices.add(hi);
+    }
+
+    void aggregate() {
+        try {
+            for (int i = 0, n = slices.size(); i < n && !halted; i += 3) {
+                slice.partition = reader.getJournal().getPartition((int) slices.getQuick(i), true);
+                slice.lo = slices.getQuick(i + 1);
+                slice.hi = slices.getQuick(i + 2);
+                slice.calcHi = false;
+
+                RowCursor cursor = rowSource.prepareCursor(slice);
+                if (cursor == null) {
+                    break;
+                }
+
+                rec.partition = slice.partition;
+                while (cursor.hasNext() && !halted) {
+                    cancellationHandler.check();
+                    rec.rowid = cursor.next();
+
+                    MultiMap.KeyWriter keyWriter = map.keyWriter();
+                    for (int k = 0; k < keyIndices.length; k++) {
+                        keyWriter.put(rec, Unsafe.arrayGet(keyIndices, k), Unsafe.arrayGet(keyTypes, k));
+                    }
+
+                    MapValues values = map.getOrCreateValues(keyWriter);
+                    for (int k = 0, m = aggregators.size(); k < m; k++) {
+                        aggregators.getQuick(k).calculate(rec, values);
+                    }
+                    spill.check();
+                }
+            }
+        } catch (Throwable e) {
+            error = e;
+        } finally {
+            done = true;
+        }
+    }
+
+    Throwable getError() {
+        return error;
+    }
+
+    MultiMap getMap() {
+        return map;
+    }
+
+    MultiMapSpill getSpill() {
+        return spill;
+    }
+
+    void halt() {
+        halted = true;
+    }
+
+    void prepare(JournalReaderFactory factory, JournalMetadata metadata, Journal master, CancellationHandler cancellationHandler) throws JournalException {
+        storageFacade.setJournal(reader.lease(factory, metadata, master));
+        storageFacade.setFactory(factory);
+        rowSource.prepare(storageFacade, cancellationHandler);
+        this.cancellationHandler = cancellationHandler;
+    }
+
+    void reset() {
+        // journal belongs to factory of previous query, it is replaced on prepare
+        rowSource.reset();
+        map.clear();
+        spill.clear();
+        slices.clear();
+        error = null;
+        halted = false;
+        done = true;
+    }
+
+    /**
+     * Makes job runnable. Slices have to be assigned before job is started.
+     */
+    void start() {
+        done = false;
+    }
+}
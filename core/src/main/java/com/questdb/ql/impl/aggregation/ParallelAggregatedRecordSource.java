@@ -0,0 +1,286 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.aggregation;
+
+import com.questdb.Journal;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Misc;
+import com.questdb.mp.JobRunner;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.MasterStorageFacade;
+import com.questdb.ql.impl.NoOpCancellationHandler;
+import com.questdb.ql.impl.map.MultiMapSpill;
+import com.questdb.ql.ops.AbstractCombinedRecordSource;
+import com.questdb.std.*;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.Closeable;
+import java.util.concurrent.Executor;
+
+/**
+ * Two-phase group-by over journal partitions. Rows of partition source are split into
+ * contiguous ranges of roughly equal size, one range per worker. Each worker aggregates its
+ * range into private map using its own copy of row source and aggregator functions. Calling
+ * thread aggregates first range and then merges partial maps of other workers into its own
+ * map in row order, which keeps first() and last() consistent with sequential aggregation.
+ * <p>
+ * Workers run on worker pool of reader factory. Memory budget is shared equally by partial
+ * maps, each of which is spilled to disk when it outgrows its share.
+ */
+public class ParallelAggregatedRecordSource extends AbstractCombinedRecordSource implements Closeable {
+    private static final long AWAIT_NANOS = 10000000L;
+    private final PartitionSource partitionSource;
+    private final ObjList<AggregationJob> jobs;
+    private final JobRunner runner;
+    private final JournalMetadata journalMetadata;
+    private final LongList slices = new LongList();
+    private PartitionCursor partitionCursor;
+    private RecordCursor mapCursor;
+    private Executor executor;
+
+    /**
+     * @param partitionSource partitions to aggregate
+     * @param rowSources      row source per worker
+     * @param keyColumns      group-by key columns
+     * @param aggregators     aggregator functions per worker, all lists must produce identical values
+     * @param pageSize        page size of aggregation maps
+     * @param memoryBudget    memory budget of all aggregation maps, 0 for unlimited
+     */
+    public ParallelAggregatedRecordSource(
+            PartitionSource partitionSource,
+            ObjList<RowSource> rowSources,
+            @Transient ObjHashSet<String> keyColumns,
+            ObjList<ObjList<AggregatorFunction>> aggregators,
+            int pageSize,
+            long memoryBudget
+    ) {
+        this.partitionSource = partitionSource;
+        this.journalMetadata = partitionSource.getMetadata();
+        this.jobs = new ObjList<>(rowSources.size());
+        int n = rowSources.size();
+        long jobBudget = memoryBudget > 0 ? Math.max(1, memoryBudget / n) : 0;
+        ObjList<AggregationJob> pooled = new ObjList<>(n - 1);
+        for (int i = 0; i < n; i++) {
+            AggregationJob job = new AggregationJob(journalMetadata, rowSources.getQuick(i), keyColumns, aggregators.getQuick(i), pageSize, jobBudget);
+            jobs.add(job);
+            // first job runs on calling thread
+            if (i > 0) {
+                pooled.add(job);
+            }
+        }
+        this.runner = new JobRunner(pooled, false);
+    }
+
+    @Override
+    public void close() {
+        halt();
+        for (int i = 0, n = jobs.size(); i < n; i++) {
+            jobs.getQuick(i).close();
+        }
+    }
+
+    @Override
+    public Record getByRowId(long rowId) {
+        return null;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return partitionCursor.getStorageFacade();
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return jobs.getQuick(0).getMap().getMetadata();
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) throws JournalException {
+        halt();
+        this.partitionCursor = partitionSource.prepareCursor(factory);
+        Journal master = MasterStorageFacade.journalOf(partitionCursor.getStorageFacade());
+        for (int i = 0, n = jobs.size(); i < n; i++) {
+            AggregationJob job = jobs.getQuick(i);
+            job.reset();
+            job.prepare(factory, journalMetadata, master, i == 0 ? cancellationHandler : NoOpCancellationHandler.INSTANCE);
+        }
+        this.executor = factory.getWorkerPool();
+        buildMap(cancellationHandler);
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        halt();
+        if (partitionCursor != null) {
+            partitionCursor.reset();
+        }
+        for (int i = 0, n = jobs.size(); i < n; i++) {
+            jobs.getQuick(i).reset();
+        }
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (mapCursor.hasNext()) {
+            return true;
+        }
+
+        AggregationJob first = jobs.getQuick(0);
+        if (first.getSpill().next()) {
+            mapCursor = first.getMap().getCursor();
+            return mapCursor.hasNext();
+        }
+        return false;
+    }
+
+    @Override
+    public Record next() {
+        return mapCursor.next();
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("ParallelAggregatedRecordSource").put(',');
+        sink.putQuoted("workers").put(':').put(jobs.size()).put(',');
+        sink.putQuoted("psrc").put(':').put(partitionSource);
+        sink.put('}');
+    }
+
+    /**
+     * Splits partition slices into contiguous ranges of about the same number of rows
+     * and assigns one range to each job.
+     */
+    @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS"})
+    private void assignSlices() {
+        slices.clear();
+        long total = 0;
+        while (partitionCursor.hasNext()) {
+            PartitionSlice slice = partitionCursor.next();
+            long hi;
+            try {
+                hi = slice.calcHi ? slice.partition.open().size() - 1 : slice.hi;
+            } catch (JournalException e) {
+                throw new JournalRuntimeException(e);
+            }
+
+            if (hi < slice.lo) {
+                continue;
+            }
+            slices.add(slice.partition.getPartitionIndex());
+            slices.add(slice.lo);
+            slices.add(hi);
+            total += hi - slice.lo + 1;
+        }
+
+        int n = jobs.size();
+        long quota = total / n + 1;
+        int job = 0;
+        long assigned = 0;
+
+        for (int i = 0, sz = slices.size(); i < sz; i += 3) {
+            int partitionIndex = (int) slices.getQuick(i);
+            long lo = slices.getQuick(i + 1);
+            long hi = slices.getQuick(i + 2);
+
+            while (lo <= hi) {
+                long len = Math.min(hi - lo + 1, quota - assigned);
+                jobs.getQuick(job).addSlice(partitionIndex, lo, lo + len - 1);
+                lo += len;
+                assigned += len;
+                if (assigned == quota && job < n - 1) {
+                    job++;
+                    assigned = 0;
+                }
+            }
+        }
+    }
+
+    private void buildMap(CancellationHandler cancellationHandler) {
+        assignSlices();
+
+        for (int i = 0, n = jobs.size(); i < n; i++) {
+            jobs.getQuick(i).start();
+        }
+
+        AggregationJob first = jobs.getQuick(0);
+        runner.start(executor);
+        try {
+            first.aggregate();
+            checkError(first);
+
+            // run jobs pool has not got round to on this thread
+            for (int i = 1, n = jobs.size(); i < n; i++) {
+                if (runner.claim(i - 1)) {
+                    jobs.getQuick(i).aggregate();
+                }
+            }
+
+            while (!runner.await(AWAIT_NANOS)) {
+                cancellationHandler.check();
+            }
+
+            for (int i = 1, n = jobs.size(); i < n; i++) {
+                checkError(jobs.getQuick(i));
+            }
+        } finally {
+            halt();
+        }
+
+        MultiMapSpill spill = first.getSpill();
+        for (int i = 1, n = jobs.size(); i < n; i++) {
+            spill.merge(jobs.getQuick(i).getSpill());
+        }
+        spill.finish();
+        mapCursor = first.getMap().getCursor();
+    }
+
+    private void checkError(AggregationJob job) {
+        Throwable e = job.getError();
+        if (e != null) {
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new JournalRuntimeException("Aggregation failed", e);
+        }
+    }
+
+    private void halt() {
+        for (int i = 0, n = jobs.size(); i < n; i++) {
+            jobs.getQuick(i).halt();
+        }
+        runner.halt();
+    }
+}
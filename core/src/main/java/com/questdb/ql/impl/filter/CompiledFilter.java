@@ -0,0 +1,78 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.filter;
+
+import com.questdb.misc.Numbers;
+import com.questdb.ql.Record;
+import com.questdb.ql.StorageFacade;
+import com.questdb.ql.ops.AbstractVirtualColumn;
+import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnType;
+import com.questdb.store.SymbolTable;
+
+/**
+ * Boolean virtual column backed by generated filter. Original filter is kept to
+ * be prepared as usual and to resolve symbol keys that generated code compares
+ * symbol columns with.
+ */
+public class CompiledFilter extends AbstractVirtualColumn {
+    private final VirtualColumn filter;
+    private final RecordFilter compiled;
+    private final ObjList<VirtualColumn> symColumns;
+    private final ObjList<VirtualColumn> symConstants;
+    private final int[] keys;
+
+    CompiledFilter(VirtualColumn filter, RecordFilter compiled, ObjList<VirtualColumn> symColumns, ObjList<VirtualColumn> symConstants) {
+        super(ColumnType.BOOLEAN);
+        this.filter = filter;
+        this.compiled = compiled;
+        this.symColumns = symColumns;
+        this.symConstants = symConstants;
+        this.keys = new int[symColumns.size() * 2];
+        compiled.setKeys(keys);
+    }
+
+    @Override
+    public boolean getBool(Record rec) {
+        return compiled.accept(rec);
+    }
+
+    @Override
+    public boolean isConstant() {
+        return false;
+    }
+
+    @Override
+    public void prepare(StorageFacade facade) {
+        filter.prepare(facade);
+        for (int i = 0, n = symColumns.size(); i < n; i++) {
+            int key = symColumns.getQuick(i).getSymbolTable().getQuick(symConstants.getQuick(i).getFlyweightStr(null));
+            keys[2 * i] = key;
+            // null symbol value can be stored either way
+            keys[2 * i + 1] = key == SymbolTable.VALUE_IS_NULL ? Numbers.INT_NaN : key;
+        }
+    }
+}
@@ -0,0 +1,564 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.filter;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.misc.BytecodeAssembler;
+import com.questdb.ql.ops.*;
+import com.questdb.ql.ops.col.*;
+import com.questdb.ql.ops.constant.DoubleConstant;
+import com.questdb.ql.ops.constant.IntConstant;
+import com.questdb.ql.ops.constant.LongConstant;
+import com.questdb.std.IntList;
+import com.questdb.std.ObjList;
+
+/**
+ * Generates class that evaluates filter in a single method. Column values are read
+ * from record by constant indexes and compared to constants inline, AND, OR and NOT
+ * are translated into branches. Filters that use anything other than comparison of
+ * INT, LONG, DATE, DOUBLE or SYMBOL column with constant are left to interpreter.
+ */
+public class FilterCompiler {
+    private static final int LEAF_NEVER = -1;
+    private final BytecodeAssembler asm = new BytecodeAssembler();
+    private final IntList leafDomains = new IntList();
+    private final IntList leafKinds = new IntList();
+    private final IntList leafColumns = new IntList();
+    private final IntList leafConstants = new IntList();
+    private final IntList getterIndices = new IntList();
+    private final IntList labels = new IntList();
+    private final IntList jumps = new IntList();
+    private final IntList jumpLabels = new IntList();
+    private final IntList frames = new IntList();
+    private ObjList<VirtualColumn> symColumns;
+    private ObjList<VirtualColumn> symConstants;
+    private int recordClassIndex;
+    private int thisClassIndex;
+    private int keysFieldIndex;
+    private int intNullIndex;
+    private int longNullIndex;
+    private int leafIndex;
+    private int codeStart;
+
+    public VirtualColumn compile(Class host, VirtualColumn filter) {
+        asm.clear();
+        asm.setupPool();
+        leafDomains.clear();
+        leafKinds.clear();
+        leafColumns.clear();
+        leafConstants.clear();
+        getterIndices.clear();
+        symColumns = new ObjList<>();
+        symConstants = new ObjList<>();
+
+        int stackMapTableIndex = asm.poolUtf8("StackMapTable");
+        thisClassIndex = asm.poolClass(asm.poolUtf8("questdbasm"));
+        int interfaceClassIndex = asm.poolClass(asm.poolUtf8("com/questdb/ql/impl/filter/RecordFilter"));
+        recordClassIndex = asm.poolClass(asm.poolUtf8("com/questdb/ql/Record"));
+        int acceptNameIndex = asm.poolUtf8("accept");
+        int acceptDescIndex = asm.poolUtf8("(Lcom/questdb/ql/Record;)Z");
+        int setKeysNameIndex = asm.poolUtf8("setKeys");
+        int setKeysDescIndex = asm.poolUtf8("([I)V");
+        int keysNameIndex = asm.poolUtf8("keys");
+        int keysTypeIndex = asm.poolUtf8("[I");
+        keysFieldIndex = asm.poolField(thisClassIndex, asm.poolNameAndType(keysNameIndex, keysTypeIndex));
+        intNullIndex = asm.poolIntConst(Integer.MIN_VALUE);
+        longNullIndex = asm.poolLongConst(Long.MIN_VALUE);
+        for (int i = 0; i < 4; i++) {
+            getterIndices.add(-1);
+        }
+
+        if (!poolArtifacts(filter)) {
+            return filter;
+        }
+
+        asm.finishPool();
+        asm.defineClass(1, thisClassIndex);
+        // interface count
+        asm.putShort(1);
+        asm.putShort(interfaceClassIndex);
+        // field count
+        asm.putShort(1);
+        asm.defineField(0x02, keysNameIndex, keysTypeIndex);
+        // method count
+        asm.putShort(3);
+        asm.defineDefaultConstructor();
+        instrumentSetKeysMethod(setKeysNameIndex, setKeysDescIndex);
+        instrumentAcceptMethod(stackMapTableIndex, acceptNameIndex, acceptDescIndex, filter);
+        // class attribute count
+        asm.putShort(0);
+
+        try {
+            RecordFilter f = (RecordFilter) asm.loadClass(host).newInstance();
+            return new CompiledFilter(filter, f, symColumns, symConstants);
+        } catch (Exception e) {
+            throw new JournalRuntimeException("Cannot instantiate filter: ", e);
+        }
+    }
+
+    private static int columnIndex(int domain, VirtualColumn column) {
+        switch (domain) {
+            case Comparisons.DOMAIN_INT:
+                return column instanceof IntRecordSourceColumn ? ((IntRecordSourceColumn) column).getIndex() : -1;
+            case Comparisons.DOMAIN_LONG:
+                if (column instanceof LongRecordSourceColumn) {
+                    return ((LongRecordSourceColumn) column).getIndex();
+                }
+                return column instanceof DateRecordSourceColumn ? ((DateRecordSourceColumn) column).getIndex() : -1;
+            case Comparisons.DOMAIN_DOUBLE:
+                return column instanceof DoubleRecordSourceColumn ? ((DoubleRecordSourceColumn) column).getIndex() : -1;
+            default:
+                return column instanceof SymRecordSourceColumn ? ((SymRecordSourceColumn) column).getIndex() : -1;
+        }
+    }
+
+    private static boolean isNeverTrue(int domain, int kind, int constantValue, long constantLongValue) {
+        // INT and LONG comparisons with null constant are never true
+        switch (kind) {
+            case Comparisons.NEQ:
+            case Comparisons.IS_NULL:
+            case Comparisons.NOT_NULL:
+                return false;
+            default:
+                switch (domain) {
+                    case Comparisons.DOMAIN_INT:
+                        return constantValue == Integer.MIN_VALUE;
+                    case Comparisons.DOMAIN_LONG:
+                        return constantLongValue == Long.MIN_VALUE;
+                    default:
+                        return false;
+                }
+        }
+    }
+
+    private void addFrame() {
+        int offset = asm.position() - codeStart;
+        int n = frames.size();
+        if (n == 0 || frames.getQuick(n - 1) != offset) {
+            frames.add(offset);
+        }
+    }
+
+    private void emitDoubleCompare(int constant, int cmp, int branch, int label) {
+        asm.putLdc2(constant);
+        asm.put(cmp);
+        jump(branch, label);
+    }
+
+    private void emitDoubleLeaf(int kind, int constant, int falseLabel) {
+        // dcmpl and dcmpg are picked so that NaN fails comparison
+        switch (kind) {
+            case Comparisons.EQ:
+                emitDoubleCompare(constant, BytecodeAssembler.dcmpl, BytecodeAssembler.ifne, falseLabel);
+                break;
+            case Comparisons.NEQ:
+                emitDoubleCompare(constant, BytecodeAssembler.dcmpl, BytecodeAssembler.ifeq, falseLabel);
+                break;
+            case Comparisons.GT:
+                emitDoubleCompare(constant, BytecodeAssembler.dcmpl, BytecodeAssembler.ifle, falseLabel);
+                break;
+            case Comparisons.GTE:
+                emitDoubleCompare(constant, BytecodeAssembler.dcmpl, BytecodeAssembler.iflt, falseLabel);
+                break;
+            case Comparisons.LT:
+                emitDoubleCompare(constant, BytecodeAssembler.dcmpg, BytecodeAssembler.ifge, falseLabel);
+                break;
+            case Comparisons.LTE:
+                emitDoubleCompare(constant, BytecodeAssembler.dcmpg, BytecodeAssembler.ifgt, falseLabel);
+                break;
+            default:
+                // value is NaN when it is not equal to itself
+                asm.put(BytecodeAssembler.dstore_2);
+                asm.put(BytecodeAssembler.dload_2);
+                asm.put(BytecodeAssembler.dload_2);
+                asm.put(BytecodeAssembler.dcmpl);
+                jump(kind == Comparisons.IS_NULL ? BytecodeAssembler.ifeq : BytecodeAssembler.ifne, falseLabel);
+                break;
+        }
+    }
+
+    private void emitFalseJump(VirtualColumn vc, int falseLabel) {
+        if (vc instanceof AndOperator) {
+            emitFalseJump(((AndOperator) vc).getLhs(), falseLabel);
+            emitFalseJump(((AndOperator) vc).getRhs(), falseLabel);
+        } else if (vc instanceof OrOperator) {
+            int trueLabel = newLabel();
+            emitTrueJump(((OrOperator) vc).getLhs(), trueLabel);
+            emitFalseJump(((OrOperator) vc).getRhs(), falseLabel);
+            placeLabel(trueLabel);
+        } else if (vc instanceof NotOperator) {
+            emitTrueJump(((NotOperator) vc).getValue(), falseLabel);
+        } else {
+            emitLeaf(leafIndex++, falseLabel);
+        }
+    }
+
+    private void emitIntLeaf(int kind, int constant, int falseLabel) {
+        switch (kind) {
+            case Comparisons.EQ:
+                asm.putLdc(constant);
+                jump(BytecodeAssembler.if_icmpne, falseLabel);
+                break;
+            case Comparisons.NEQ:
+                asm.putLdc(constant);
+                jump(BytecodeAssembler.if_icmpeq, falseLabel);
+                break;
+            case Comparisons.GT:
+                asm.putLdc(constant);
+                jump(BytecodeAssembler.if_icmple, falseLabel);
+                break;
+            case Comparisons.GTE:
+                asm.putLdc(constant);
+                jump(BytecodeAssembler.if_icmplt, falseLabel);
+                break;
+            case Comparisons.LT:
+            case Comparisons.LTE:
+                asm.put(BytecodeAssembler.istore_2);
+                asm.put(BytecodeAssembler.iload_2);
+                asm.putLdc(constant);
+                jump(kind == Comparisons.LT ? BytecodeAssembler.if_icmpge : BytecodeAssembler.if_icmpgt, falseLabel);
+                asm.put(BytecodeAssembler.iload_2);
+                asm.putLdc(intNullIndex);
+                jump(BytecodeAssembler.if_icmpeq, falseLabel);
+                break;
+            case Comparisons.IS_NULL:
+                asm.putLdc(intNullIndex);
+                jump(BytecodeAssembler.if_icmpne, falseLabel);
+                break;
+            default:
+                asm.putLdc(intNullIndex);
+                jump(BytecodeAssembler.if_icmpeq, falseLabel);
+                break;
+        }
+    }
+
+    private void emitKeyLoad(int keyIndex) {
+        asm.put(BytecodeAssembler.iload_2);
+        asm.put(BytecodeAssembler.aload_0);
+        asm.put(BytecodeAssembler.getfield);
+        asm.putShort(keysFieldIndex);
+        asm.putConstant(keyIndex);
+        asm.put(BytecodeAssembler.iaload);
+    }
+
+    /*
+     * Leaf code jumps to falseLabel when comparison does not hold and falls through otherwise.
+     * Null semantics follow interpreted operators, see Comparisons.
+     */
+    private void emitLeaf(int index, int falseLabel) {
+        int domain = leafDomains.getQuick(index);
+        int kind = leafKinds.getQuick(index);
+        int constant = leafConstants.getQuick(index);
+
+        if (constant == LEAF_NEVER) {
+            // branch rather than goto keeps code that follows reachable for verifier
+            asm.putConstant(0);
+            jump(BytecodeAssembler.ifeq, falseLabel);
+            return;
+        }
+
+        asm.put(BytecodeAssembler.aload_1);
+        asm.putConstant(leafColumns.getQuick(index));
+        asm.invokeInterface(getterIndices.getQuick(domain));
+
+        switch (domain) {
+            case Comparisons.DOMAIN_INT:
+                emitIntLeaf(kind, constant, falseLabel);
+                break;
+            case Comparisons.DOMAIN_LONG:
+                emitLongLeaf(kind, constant, falseLabel);
+                break;
+            case Comparisons.DOMAIN_DOUBLE:
+                emitDoubleLeaf(kind, constant, falseLabel);
+                break;
+            default:
+                emitSymLeaf(kind, constant, falseLabel);
+                break;
+        }
+    }
+
+    private void emitLongCompare(int constant, int branch, int label) {
+        asm.putLdc2(constant);
+        asm.put(BytecodeAssembler.lcmp);
+        jump(branch, label);
+    }
+
+    private void emitLongLeaf(int kind, int constant, int falseLabel) {
+        switch (kind) {
+            case Comparisons.EQ:
+                emitLongCompare(constant, BytecodeAssembler.ifne, falseLabel);
+                break;
+            case Comparisons.NEQ:
+                emitLongCompare(constant, BytecodeAssembler.ifeq, falseLabel);
+                break;
+            case Comparisons.GT:
+                emitLongCompare(constant, BytecodeAssembler.ifle, falseLabel);
+                break;
+            case Comparisons.GTE:
+                emitLongCompare(constant, BytecodeAssembler.iflt, falseLabel);
+                break;
+            case Comparisons.LT:
+            case Comparisons.LTE:
+                asm.put(BytecodeAssembler.lstore_2);
+                asm.put(BytecodeAssembler.lload_2);
+                emitLongCompare(constant, kind == Comparisons.LT ? BytecodeAssembler.ifge : BytecodeAssembler.ifgt, falseLabel);
+                asm.put(BytecodeAssembler.lload_2);
+                emitLongCompare(longNullIndex, BytecodeAssembler.ifeq, falseLabel);
+                break;
+            case Comparisons.IS_NULL:
+                emitLongCompare(longNullIndex, BytecodeAssembler.ifne, falseLabel);
+                break;
+            default:
+                emitLongCompare(longNullIndex, BytecodeAssembler.ifeq, falseLabel);
+                break;
+        }
+    }
+
+    private void emitSymLeaf(int kind, int slot, int falseLabel) {
+        asm.put(BytecodeAssembler.istore_2);
+        if (kind == Comparisons.EQ) {
+            int trueLabel = newLabel();
+            emitKeyLoad(2 * slot);
+            jump(BytecodeAssembler.if_icmpeq, trueLabel);
+            emitKeyLoad(2 * slot + 1);
+            jump(BytecodeAssembler.if_icmpne, falseLabel);
+            placeLabel(trueLabel);
+        } else {
+            emitKeyLoad(2 * slot);
+            jump(BytecodeAssembler.if_icmpeq, falseLabel);
+            emitKeyLoad(2 * slot + 1);
+            jump(BytecodeAssembler.if_icmpeq, falseLabel);
+        }
+    }
+
+    private void emitTrueJump(VirtualColumn vc, int trueLabel) {
+        if (vc instanceof AndOperator) {
+            int skipLabel = newLabel();
+            emitFalseJump(((AndOperator) vc).getLhs(), skipLabel);
+            emitTrueJump(((AndOperator) vc).getRhs(), trueLabel);
+            placeLabel(skipLabel);
+        } else if (vc instanceof OrOperator) {
+            emitTrueJump(((OrOperator) vc).getLhs(), trueLabel);
+            emitTrueJump(((OrOperator) vc).getRhs(), trueLabel);
+        } else if (vc instanceof NotOperator) {
+            emitFalseJump(((NotOperator) vc).getValue(), trueLabel);
+        } else {
+            int skipLabel = newLabel();
+            emitLeaf(leafIndex++, skipLabel);
+            jump(BytecodeAssembler.goto_, trueLabel);
+            placeLabel(skipLabel);
+        }
+    }
+
+    private int getterIndex(int domain) {
+        int index = getterIndices.getQuick(domain);
+        if (index == -1) {
+            String name;
+            String desc;
+            switch (domain) {
+                case Comparisons.DOMAIN_LONG:
+                    name = "getLong";
+                    desc = "(I)J";
+                    break;
+                case Comparisons.DOMAIN_DOUBLE:
+                    name = "getDouble";
+                    desc = "(I)D";
+                    break;
+                default:
+                    // symbol columns are compared by key
+                    name = "getInt";
+                    desc = "(I)I";
+                    break;
+            }
+            index = asm.poolInterfaceMethod(recordClassIndex, asm.poolNameAndType(asm.poolUtf8(name), asm.poolUtf8(desc)));
+            // INT and SYMBOL share the getter
+            if (domain == Comparisons.DOMAIN_INT || domain == Comparisons.DOMAIN_SYMBOL) {
+                getterIndices.setQuick(Comparisons.DOMAIN_INT, index);
+                getterIndices.setQuick(Comparisons.DOMAIN_SYMBOL, index);
+            } else {
+                getterIndices.setQuick(domain, index);
+            }
+        }
+        return index;
+    }
+
+    /*
+     * accept(Record)
+     *
+     * Generated method follows the shape of filter tree. For "a > 10 and b < 0.5" it is
+     * equivalent to:
+     *
+     * if (!(record.getInt(0) > 10)) return false;
+     * if (!(record.getDouble(1) < 0.5)) return false;
+     * return true;
+     *
+     * Branch targets are only ever placed where operand stack is empty, which lets us
+     * describe all of them with "same" stack map frames.
+     */
+    private void instrumentAcceptMethod(int stackMapTableIndex, int nameIndex, int descIndex, VirtualColumn filter) {
+        labels.clear();
+        jumps.clear();
+        jumpLabels.clear();
+        frames.clear();
+        leafIndex = 0;
+
+        // locals: this, record and 2 slots for column value
+        asm.startMethod(0x01, nameIndex, descIndex, 4, 4);
+        codeStart = asm.position();
+
+        int falseLabel = newLabel();
+        emitFalseJump(filter, falseLabel);
+        asm.putConstant(1);
+        asm.put(BytecodeAssembler.ireturn);
+        placeLabel(falseLabel);
+        asm.putConstant(0);
+        asm.put(BytecodeAssembler.ireturn);
+
+        for (int i = 0, n = jumps.size(); i < n; i++) {
+            int p = jumps.getQuick(i);
+            asm.putShort(p + 1, labels.getQuick(jumpLabels.getQuick(i)) - p);
+        }
+
+        asm.endMethodCode();
+        // exceptions
+        asm.putShort(0);
+        // attributes: 1 - StackMapTable
+        asm.putShort(1);
+        asm.putStackMapSameFrames(stackMapTableIndex, frames);
+        asm.endMethod();
+    }
+
+    private void instrumentSetKeysMethod(int nameIndex, int descIndex) {
+        asm.startMethod(0x01, nameIndex, descIndex, 2, 2);
+        asm.put(BytecodeAssembler.aload_0);
+        asm.put(BytecodeAssembler.aload_1);
+        asm.put(BytecodeAssembler.putfield);
+        asm.putShort(keysFieldIndex);
+        asm.put(BytecodeAssembler.return_);
+        asm.endMethodCode();
+        // exceptions
+        asm.putShort(0);
+        // attributes
+        asm.putShort(0);
+        asm.endMethod();
+    }
+
+    private void jump(int branch, int label) {
+        jumps.add(asm.position());
+        jumpLabels.add(label);
+        asm.put(branch);
+        asm.putShort(0);
+    }
+
+    private int newLabel() {
+        labels.add(-1);
+        return labels.size() - 1;
+    }
+
+    private void placeLabel(int label) {
+        labels.setQuick(label, asm.position());
+        addFrame();
+    }
+
+    /*
+     * Walks filter tree in the same order as code generator and adds constants and
+     * record getters to constant pool.
+     */
+    private boolean poolArtifacts(VirtualColumn vc) {
+        if (vc instanceof AndOperator || vc instanceof OrOperator) {
+            AbstractBinaryOperator op = (AbstractBinaryOperator) vc;
+            return poolArtifacts(op.getLhs()) && poolArtifacts(op.getRhs());
+        }
+
+        if (vc instanceof NotOperator) {
+            return poolArtifacts(((NotOperator) vc).getValue());
+        }
+
+        int code = Comparisons.classify(vc);
+        if (code == -1) {
+            return false;
+        }
+
+        int domain = Comparisons.domainOf(code);
+        int kind = Comparisons.kindOf(code);
+        VirtualColumn lhs = ((AbstractBinaryOperator) vc).getLhs();
+        VirtualColumn rhs = ((AbstractBinaryOperator) vc).getRhs();
+        VirtualColumn column;
+        VirtualColumn constant;
+
+        if (kind == Comparisons.IS_NULL || kind == Comparisons.NOT_NULL) {
+            column = lhs;
+            constant = null;
+        } else if (rhs.isConstant() && !lhs.isConstant()) {
+            column = lhs;
+            constant = rhs;
+        } else if (lhs.isConstant() && !rhs.isConstant()) {
+            column = rhs;
+            constant = lhs;
+            kind = Comparisons.flip(kind);
+        } else {
+            return false;
+        }
+
+        int columnIndex = columnIndex(domain, column);
+        if (columnIndex == -1) {
+            return false;
+        }
+
+        int constantIndex;
+        if (constant == null) {
+            constantIndex = 0;
+        } else if (domain == Comparisons.DOMAIN_SYMBOL) {
+            // symbol keys are resolved when filter is prepared
+            constantIndex = symColumns.size();
+            symColumns.add(column);
+            symConstants.add(constant);
+        } else if (constant instanceof IntConstant || constant instanceof LongConstant || constant instanceof DoubleConstant) {
+            // parameters also claim to be constant, but their values are not known yet
+            switch (domain) {
+                case Comparisons.DOMAIN_INT:
+                    int v = constant.getInt(null);
+                    constantIndex = isNeverTrue(domain, kind, v, 0) ? LEAF_NEVER : asm.poolIntConst(v);
+                    break;
+                case Comparisons.DOMAIN_LONG:
+                    long l = constant.getLong(null);
+                    constantIndex = isNeverTrue(domain, kind, 0, l) ? LEAF_NEVER : asm.poolLongConst(l);
+                    break;
+                default:
+                    constantIndex = asm.poolDoubleConst(constant.getDouble(null));
+                    break;
+            }
+        } else {
+            return false;
+        }
+
+        getterIndex(domain);
+        leafDomains.add(domain);
+        leafKinds.add(kind);
+        leafColumns.add(columnIndex);
+        leafConstants.add(constantIndex);
+        return true;
+    }
+}
@@ -27,6 +27,7 @@ import com.questdb.ex.JournalException;
 import com.questdb.factory.JournalReaderFactory;
 import com.questdb.factory.configuration.RecordColumnMetadata;
 import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Files;
 import com.questdb.misc.Misc;
 import com.questdb.ql.*;
 import com.questdb.ql.impl.NullRecord;
@@ -34,7 +35,10 @@ import com.questdb.ql.impl.SplitRecordMetadata;
 import com.questdb.ql.impl.join.hash.FakeRecord;
 import com.questdb.ql.impl.join.hash.MultiRecordMap;
 import com.questdb.ql.impl.map.MultiMap;
+import com.questdb.ql.impl.map.MultiMapSpill;
+import com.questdb.ql.impl.sort.RecordRun;
 import com.questdb.ql.ops.AbstractCombinedRecordSource;
+import com.questdb.std.BloomFilter;
 import com.questdb.std.CharSink;
 import com.questdb.std.IntList;
 import com.questdb.std.ObjHashSet;
@@ -42,8 +46,22 @@ import com.questdb.std.ObjList;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 
+/**
+ * Joins master records to slave records with equal keys using hash table of slave records.
+ * <p>
+ * When hash table outgrows memory budget, both sources are read once and their records are written
+ * to temporary files, one file per partition of key hash. Partitions are then joined one at a time,
+ * each in a single pass over its files. Partition whose hash table still does not fit budget is split
+ * again using next bits of key hash. Partitioned join serves master records grouped by partition,
+ * so it does not preserve their order, see {@link #isOrderPreserving()}.
+ * <p>
+ * Ordered join tags master records with their sequence number when it partitions them. Joined records
+ * of each partition are written out with tag of their master record and, since every partition is
+ * probed in master order, runs of partitions are merged back in order of master records.
+ */
 public class HashJoinRecordSource extends AbstractCombinedRecordSource implements Closeable {
     private final RecordSource master;
     private final RecordSource slave;
@@ -58,9 +76,25 @@ public class HashJoinRecordSource extends AbstractCombinedRecordSource implement
     private final boolean byRowId;
     private final boolean outer;
     private final MultiRecordMap recordMap;
+    private final BloomFilter keyFilter = new BloomFilter();
+    private final long memoryBudget;
+    private final boolean ordered;
+    private final ObjList<RecordRun> resultRuns = new ObjList<>();
+    private final ObjList<RecordRun> pendingMasterRuns = new ObjList<>();
+    private final ObjList<RecordRun> pendingSlaveRuns = new ObjList<>();
+    private final IntList pendingLevels = new IntList();
+    private final ObjList<RecordRun> masterRuns = new ObjList<>(MultiMapSpill.PARTITION_COUNT);
+    private final ObjList<RecordRun> slaveRuns = new ObjList<>(MultiMapSpill.PARTITION_COUNT);
     private RecordCursor slaveCursor;
     private RecordCursor masterCursor;
     private RecordCursor hashTableCursor;
+    private CancellationHandler cancellationHandler;
+    private RecordRun masterRun;
+    private File dir;
+    private int fileCount;
+    private int resultIndex = -1;
+    private Record resultRecord;
+    private boolean merging;
 
     @SuppressFBWarnings({"PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS"})
     public HashJoinRecordSource(
@@ -71,7 +105,9 @@ public class HashJoinRecordSource extends AbstractCombinedRecordSource implement
             boolean outer,
             int keyPageSize,
             int dataPageSize,
-            int rowIdPageSize
+            int rowIdPageSize,
+            long memoryBudget,
+            boolean ordered
     ) {
         this.master = master;
         this.slave = slave;
@@ -82,12 +118,16 @@ public class HashJoinRecordSource extends AbstractCombinedRecordSource implement
         this.slaveColIndex = slaveColIndices;
         this.recordMap = createRecordMap(master, slave, keyPageSize, dataPageSize, rowIdPageSize);
         this.outer = outer;
+        this.memoryBudget = memoryBudget;
+        this.ordered = ordered;
         this.storageFacade = new SplitRecordStorageFacade(metadata, master.getMetadata().getColumnCount());
     }
 
     @Override
     public void close() throws IOException {
+        clearRuns();
         Misc.free(recordMap);
+        Misc.free(keyFilter);
         Misc.free(master);
         Misc.free(slave);
     }
@@ -107,13 +147,30 @@ public class HashJoinRecordSource extends AbstractCombinedRecordSource implement
         return metadata;
     }
 
+    /**
+     * Unordered join with memory budget partitions its input once hash table outgrows the budget,
+     * after which master records are no longer served in their original order.
+     *
+     * @return true when join is guaranteed to serve master records in order
+     */
+    public boolean isOrderPreserving() {
+        return ordered || memoryBudget == 0;
+    }
+
     @Override
     public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) throws JournalException {
+        this.cancellationHandler = cancellationHandler;
         this.slaveCursor = slave.prepareCursor(factory, cancellationHandler);
         this.masterCursor = master.prepareCursor(factory, cancellationHandler);
-        buildHashTable(cancellationHandler);
         recordMap.setStorageFacade(slaveCursor.getStorageFacade());
         storageFacade.prepare(factory, masterCursor.getStorageFacade(), slaveCursor.getStorageFacade());
+        if (buildHashTable()) {
+            // most master keys of selective joins are missing from hash table,
+            // filter rules them out without probing the table
+            recordMap.addKeyHashes(keyFilter);
+        } else {
+            partition();
+        }
         return this;
     }
 
@@ -122,6 +179,7 @@ public class HashJoinRecordSource extends AbstractCombinedRecordSource implement
         hashTableCursor = null;
         master.reset();
         recordMap.clear();
+        clearRuns();
     }
 
     @Override
@@ -131,6 +189,10 @@ public class HashJoinRecordSource extends AbstractCombinedRecordSource implement
 
     @Override
     public boolean hasNext() {
+        if (merging) {
+            return nextResult();
+        }
+
         if (hashTableCursor != null && hashTableCursor.hasNext()) {
             Record rec = hashTableCursor.next();
             currentRecord.setB(byRowId ? slaveCursor.getByRowId(rec.getLong(0)) : rec);
@@ -141,8 +203,8 @@ public class HashJoinRecordSource extends AbstractCombinedRecordSource implement
 
     @SuppressFBWarnings({"IT_NO_SUCH_ELEMENT"})
     @Override
-    public SplitRecord next() {
-        return currentRecord;
+    public Record next() {
+        return merging ? resultRecord : currentRecord;
     }
 
     @Override
@@ -170,19 +232,74 @@ public class HashJoinRecordSource extends AbstractCombinedRecordSource implement
         sink.put("]]}");
     }
 
-    private void buildHashTable(CancellationHandler cancellationHandler) {
+    private void addSlave(Record r) {
+        MultiMap.KeyWriter key = slaveKey(r);
+        if (byRowId) {
+            recordMap.add(key, fakeRecord.of(r.getRowId()));
+        } else {
+            recordMap.add(key, r);
+        }
+    }
+
+    private boolean buildHashTable() {
         for (Record r : slaveCursor) {
             cancellationHandler.check();
-            MultiMap.KeyWriter key = recordMap.claimKey();
-            for (int i = 0, k = slaveColumns.size(); i < k; i++) {
-                key.put(r, slaveColIndex.getQuick(i), slaveColumns.getQuick(i).getType());
+            addSlave(r);
+            if (memoryBudget > 0 && recordMap.getUsedMemory() > memoryBudget) {
+                return false;
             }
+        }
+        return true;
+    }
+
+    /**
+     * Builds hash table from slave records of partition.
+     *
+     * @param run   slave records of partition
+     * @param split true when partition can be split further
+     * @return false when hash table outgrows memory budget and partition has to be split
+     */
+    private boolean buildHashTable(RecordRun run, boolean split) {
+        recordMap.clear();
+        run.toTop();
+        while (run.hasNext()) {
+            cancellationHandler.check();
+            Record r = run.next();
             if (byRowId) {
-                recordMap.add(key, fakeRecord.of(r.getRowId()));
+                long rowId = r.getLong(0);
+                recordMap.add(slaveKey(slaveCursor.getByRowId(rowId)), fakeRecord.of(rowId));
             } else {
-                recordMap.add(key, r);
+                addSlave(r);
+            }
+
+            if (split && recordMap.getUsedMemory() > memoryBudget) {
+                return false;
             }
         }
+        recordMap.addKeyHashes(keyFilter);
+        return true;
+    }
+
+    private void clearRuns() {
+        masterRun = Misc.free(masterRun);
+        freeRuns(resultRuns);
+        resultIndex = -1;
+        resultRecord = null;
+        merging = false;
+        for (int i = 0, n = pendingMasterRuns.size(); i < n; i++) {
+            Misc.free(pendingMasterRuns.getQuick(i));
+            Misc.free(pendingSlaveRuns.getQuick(i));
+        }
+        pendingMasterRuns.clear();
+        pendingSlaveRuns.clear();
+        pendingLevels.clear();
+        freeRuns(masterRuns);
+        freeRuns(slaveRuns);
+
+        if (dir != null) {
+            Files.delete(dir);
+            dir = null;
+        }
     }
 
     private MultiRecordMap createRecordMap(RecordSource masterSource,
@@ -206,32 +323,259 @@ public class HashJoinRecordSource extends AbstractCombinedRecordSource implement
                 new MultiRecordMap(sm, keyCols, slaveSource.getMetadata(), keyPageSize, dataPageSize);
     }
 
-    private boolean hasNext0() {
-        while (masterCursor.hasNext()) {
-            Record r = masterCursor.next();
-            currentRecord.setA(r);
+    private void freeRuns(ObjList<RecordRun> runs) {
+        for (int i = 0, n = runs.size(); i < n; i++) {
+            Misc.free(runs.getQuick(i));
+        }
+        runs.clear();
+    }
 
-            MultiMap.KeyWriter key = recordMap.claimKey();
+    private boolean hasNext0() {
+        do {
+            while (masterRun == null ? masterCursor.hasNext() : masterRun.hasNext()) {
+                Record r = masterRun == null ? masterCursor.next() : masterRun.next();
+                currentRecord.setA(r);
 
-            for (int i = 0, k = masterColumns.size(); i < k; i++) {
-                key.put(r, masterColIndex.getQuick(i), masterColumns.getQuick(i).getType());
+                MultiMap.KeyWriter key = masterKey(r);
+                int hash = recordMap.hash(key);
+                if (keyFilter.mightContain(hash) && (hashTableCursor = recordMap.get(key, hash)).hasNext()) {
+                    if (byRowId) {
+                        currentRecord.setB(slaveCursor.getByRowId(hashTableCursor.next().getLong(0)));
+                    } else {
+                        currentRecord.setB(hashTableCursor.next());
+                    }
+                    return true;
+                } else if (outer) {
+                    hashTableCursor = null;
+                    currentRecord.setB(NullRecord.INSTANCE);
+                    return true;
+                }
             }
+        } while (nextPass());
+        return false;
+    }
 
-            hashTableCursor = recordMap.get(key);
+    /**
+     * Joins all partitions, one at a time, and writes joined records to result run of partition,
+     * each tagged with sequence number of its master record. Result runs are then positioned
+     * at their first record for {@link #nextResult()} to merge them.
+     */
+    private void joinOrdered() {
+        while (nextPass()) {
+            RecordRun out = openRun(metadata, true);
+            while (masterRun.hasNext()) {
+                cancellationHandler.check();
+                Record r = masterRun.next();
+                long tag = masterRun.getTag();
+                currentRecord.setA(r);
 
-            if (hashTableCursor.hasNext()) {
-                if (byRowId) {
-                    currentRecord.setB(slaveCursor.getByRowId(hashTableCursor.next().getLong(0)));
-                } else {
-                    currentRecord.setB(hashTableCursor.next());
+                MultiMap.KeyWriter key = masterKey(r);
+                int hash = recordMap.hash(key);
+                if (keyFilter.mightContain(hash) && (hashTableCursor = recordMap.get(key, hash)).hasNext()) {
+                    do {
+                        Record s = hashTableCursor.next();
+                        currentRecord.setB(byRowId ? slaveCursor.getByRowId(s.getLong(0)) : s);
+                        out.append(currentRecord, tag);
+                    } while (hashTableCursor.hasNext());
+                } else if (outer) {
+                    currentRecord.setB(NullRecord.INSTANCE);
+                    out.append(currentRecord, tag);
                 }
+            }
+
+            out.toTop();
+            if (out.hasNext()) {
+                out.setStorageFacade(storageFacade);
+                out.next();
+                resultRuns.add(out);
+            } else {
+                out.close();
+            }
+        }
+        hashTableCursor = null;
+        recordMap.clear();
+        resultIndex = -1;
+        merging = true;
+    }
+
+    private MultiMap.KeyWriter masterKey(Record r) {
+        MultiMap.KeyWriter key = recordMap.claimKey();
+        for (int i = 0, k = masterColumns.size(); i < k; i++) {
+            key.put(r, masterColIndex.getQuick(i), masterColumns.getQuick(i).getType());
+        }
+        return key;
+    }
+
+    /**
+     * Joins next pending partition. Partition, whose hash table does not fit budget, is split
+     * into partitions of next level, which are joined first.
+     *
+     * @return false when there are no more partitions
+     */
+    private boolean nextPass() {
+        masterRun = Misc.free(masterRun);
+        while (pendingLevels.size() > 0) {
+            int last = pendingLevels.size() - 1;
+            RecordRun m = pendingMasterRuns.getQuick(last);
+            RecordRun s = pendingSlaveRuns.getQuick(last);
+            int level = pendingLevels.getQuick(last);
+            pendingMasterRuns.remove(last);
+            pendingSlaveRuns.remove(last);
+            pendingLevels.removeIndex(last);
+
+            if (buildHashTable(s, level < MultiMapSpill.MAX_LEVEL - 1)) {
+                s.close();
+                masterRun = m;
+                masterRun.setStorageFacade(masterCursor.getStorageFacade());
+                masterRun.toTop();
                 return true;
-            } else if (outer) {
-                hashTableCursor = null;
-                currentRecord.setB(NullRecord.INSTANCE);
-                return true;
             }
+
+            recordMap.clear();
+            int next = level + 1;
+            s.toTop();
+            while (s.hasNext()) {
+                Record r = s.next();
+                writeRun(slaveRuns, r, slaveMetadata(), recordMap.hash(slaveKey(byRowId ? slaveCursor.getByRowId(r.getLong(0)) : r)), next, 0);
+            }
+            m.toTop();
+            while (m.hasNext()) {
+                Record r = m.next();
+                writeRun(masterRuns, r, master.getMetadata(), recordMap.hash(masterKey(r)), next, m.getTag());
+            }
+            s.close();
+            m.close();
+            pushRuns(next);
         }
         return false;
     }
+
+    /**
+     * Switches join to partitioned mode when hash table of slave does not fit memory budget.
+     * Slave records already in hash table are written out by partition of key hash, followed by
+     * the rest of slave and then master. Slave is not read again, so join sees the same slave
+     * records it started with.
+     */
+    private void partition() {
+        RecordCursor keys = recordMap.getKeys();
+        while (keys.hasNext()) {
+            Record key = keys.next();
+            int hash = recordMap.getHash(key);
+            RecordCursor records = recordMap.get(key);
+            while (records.hasNext()) {
+                writeRun(slaveRuns, records.next(), slaveMetadata(), hash, 0, 0);
+            }
+        }
+        recordMap.clear();
+
+        for (Record r : slaveCursor) {
+            cancellationHandler.check();
+            int hash = recordMap.hash(slaveKey(r));
+            writeRun(slaveRuns, byRowId ? fakeRecord.of(r.getRowId()) : r, slaveMetadata(), hash, 0, 0);
+        }
+
+        long seq = 0;
+        while (masterCursor.hasNext()) {
+            cancellationHandler.check();
+            Record r = masterCursor.next();
+            writeRun(masterRuns, r, master.getMetadata(), recordMap.hash(masterKey(r)), 0, seq++);
+        }
+        pushRuns(0);
+        if (ordered) {
+            joinOrdered();
+        } else {
+            nextPass();
+        }
+    }
+
+    /**
+     * Serves record with lowest tag among current records of result runs. Partitions do not share
+     * master records, so records with equal tag all come from the same run in their join order.
+     *
+     * @return false when all result runs are exhausted
+     */
+    private boolean nextResult() {
+        if (resultIndex > -1) {
+            RecordRun run = resultRuns.getQuick(resultIndex);
+            if (run.hasNext()) {
+                run.next();
+            } else {
+                run.close();
+                resultRuns.remove(resultIndex);
+            }
+        }
+
+        resultIndex = -1;
+        long min = Long.MAX_VALUE;
+        for (int i = 0, n = resultRuns.size(); i < n; i++) {
+            long tag = resultRuns.getQuick(i).getTag();
+            if (tag < min) {
+                min = tag;
+                resultIndex = i;
+            }
+        }
+
+        if (resultIndex == -1) {
+            return false;
+        }
+        resultRecord = resultRuns.getQuick(resultIndex).getRecord();
+        return true;
+    }
+
+    /**
+     * Moves runs of partitions just written to pending partitions. Partitions that cannot produce
+     * records are dropped.
+     *
+     * @param level level of partitions
+     */
+    private void pushRuns(int level) {
+        // partitions are taken from the end of pending list, push them in reverse to join them in order
+        for (int i = MultiMapSpill.PARTITION_COUNT - 1; i > -1; i--) {
+            RecordRun m = masterRuns.getQuiet(i);
+            RecordRun s = slaveRuns.getQuiet(i);
+            if (m == null || (s == null && !outer)) {
+                Misc.free(m);
+                Misc.free(s);
+                continue;
+            }
+
+            if (s == null) {
+                s = openRun(slaveMetadata(), false);
+            }
+            pendingMasterRuns.add(m);
+            pendingSlaveRuns.add(s);
+            pendingLevels.add(level);
+        }
+        masterRuns.clear();
+        slaveRuns.clear();
+    }
+
+    private RecordRun openRun(RecordMetadata metadata, boolean tagged) {
+        if (dir == null) {
+            dir = Files.makeTempDir();
+        }
+        return new RecordRun(new File(dir, "join-" + (fileCount++) + ".d"), metadata, tagged);
+    }
+
+    private MultiMap.KeyWriter slaveKey(Record r) {
+        MultiMap.KeyWriter key = recordMap.claimKey();
+        for (int i = 0, k = slaveColumns.size(); i < k; i++) {
+            key.put(r, slaveColIndex.getQuick(i), slaveColumns.getQuick(i).getType());
+        }
+        return key;
+    }
+
+    private RecordMetadata slaveMetadata() {
+        return byRowId ? fakeRecord.getMetadata() : slave.getMetadata();
+    }
+
+    private void writeRun(ObjList<RecordRun> runs, Record record, RecordMetadata metadata, int hash, int level, long tag) {
+        int partition = MultiMapSpill.partitionOf(hash, level);
+        RecordRun run = runs.getQuiet(partition);
+        if (run == null) {
+            // only master records are tagged with their sequence number
+            runs.extendAndSet(partition, run = openRun(metadata, ordered && runs == masterRuns));
+        }
+        run.append(record, tag);
+    }
 }
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.impl.join;
+
+import com.questdb.ex.JournalException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Misc;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.NullRecord;
+import com.questdb.ql.impl.RecordList;
+import com.questdb.ql.impl.SplitRecordMetadata;
+import com.questdb.ql.impl.join.hash.FakeRecord;
+import com.questdb.ql.ops.AbstractCombinedRecordSource;
+import com.questdb.std.CharSink;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Joins records of master and slave that have equal timestamps. Both sources must be ordered
+ * by their timestamps, which lets join stream both of them in a single pass. Only slave records
+ * that share timestamp of current master record are kept in memory.
+ */
+public class MergeJoinRecordSource extends AbstractCombinedRecordSource implements Closeable {
+    private final RecordSource master;
+    private final RecordSource slave;
+    private final int masterTimestampIndex;
+    private final int slaveTimestampIndex;
+    private final SplitRecordMetadata metadata;
+    private final SplitRecord currentRecord;
+    private final SplitRecordStorageFacade storageFacade;
+    private final FakeRecord fakeRecord = new FakeRecord();
+    private final RecordList group;
+    private final boolean byRowId;
+    private final boolean outer;
+    private RecordCursor masterCursor;
+    private RecordCursor slaveCursor;
+    private long groupTimestamp;
+    private long groupHead;
+    private boolean groupIteration;
+    // first slave record past current group, its row id is kept when slave supports row id access
+    private Record pending;
+    private long pendingRowId;
+    private long pendingTimestamp;
+    private boolean hasPending;
+
+    public MergeJoinRecordSource(
+            RecordSource master,
+            int masterTimestampIndex,
+            RecordSource slave,
+            int slaveTimestampIndex,
+            boolean outer,
+            int dataPageSize,
+            int rowIdPageSize
+    ) {
+        this.master = master;
+        this.masterTimestampIndex = masterTimestampIndex;
+        this.slave = slave;
+        this.slaveTimestampIndex = slaveTimestampIndex;
+        this.outer = outer;
+        this.metadata = new SplitRecordMetadata(master.getMetadata(), slave.getMetadata());
+        this.currentRecord = new SplitRecord(metadata, master.getMetadata().getColumnCount());
+        this.byRowId = slave.supportsRowIdAccess();
+        this.group = byRowId ? new RecordList(fakeRecord.getMetadata(), rowIdPageSize) : new RecordList(slave.getMetadata(), dataPageSize);
+        this.storageFacade = new SplitRecordStorageFacade(metadata, master.getMetadata().getColumnCount());
+    }
+
+    @Override
+    public void close() throws IOException {
+        Misc.free(group);
+        Misc.free(master);
+        Misc.free(slave);
+    }
+
+    @Override
+    public Record getByRowId(long rowId) {
+        return null;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return storageFacade;
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) throws JournalException {
+        this.masterCursor = master.prepareCursor(factory, cancellationHandler);
+        this.slaveCursor = slave.prepareCursor(factory, cancellationHandler);
+        group.setStorageFacade(slaveCursor.getStorageFacade());
+        storageFacade.prepare(factory, masterCursor.getStorageFacade(), slaveCursor.getStorageFacade());
+        clearState();
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        master.reset();
+        slave.reset();
+        clearState();
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (groupIteration && group.hasNext()) {
+            Record rec = group.next();
+            currentRecord.setB(byRowId ? slaveCursor.getByRowId(rec.getLong(0)) : rec);
+            return true;
+        }
+
+        while (masterCursor.hasNext()) {
+            Record rec = masterCursor.next();
+            currentRecord.setA(rec);
+
+            long timestamp = rec.getDate(masterTimestampIndex);
+            if (timestamp > groupTimestamp) {
+                nextGroup(timestamp);
+            }
+
+            if (timestamp == groupTimestamp && groupHead != -1) {
+                group.of(groupHead);
+                Record r = group.next();
+                currentRecord.setB(byRowId ? slaveCursor.getByRowId(r.getLong(0)) : r);
+                groupIteration = true;
+                return true;
+            }
+
+            groupIteration = false;
+            if (outer) {
+                currentRecord.setB(NullRecord.INSTANCE);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressFBWarnings({"IT_NO_SUCH_ELEMENT"})
+    @Override
+    public SplitRecord next() {
+        return currentRecord;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("MergeJoinRecordSource").put(',');
+        sink.putQuoted("master").put(':').put(master).put(',');
+        sink.putQuoted("slave").put(':').put(slave).put(',');
+        sink.putQuoted("masterTsIndex").put(':').put(masterTimestampIndex).put(',');
+        sink.putQuoted("slaveTsIndex").put(':').put(slaveTimestampIndex);
+        sink.put('}');
+    }
+
+    private long appendPending(long prev) {
+        return group.append(byRowId ? fakeRecord.of(pendingRowId) : pending, prev);
+    }
+
+    private void clearState() {
+        group.clear();
+        groupTimestamp = Long.MIN_VALUE;
+        groupHead = -1;
+        groupIteration = false;
+        pending = null;
+        hasPending = false;
+    }
+
+    /**
+     * Replaces current group with slave records that have the smallest timestamp not less than given one.
+     * Group timestamp is set to Long.MAX_VALUE when slave is exhausted.
+     *
+     * @param timestamp timestamp of master record
+     */
+    private void nextGroup(long timestamp) {
+        group.clear();
+        groupHead = -1;
+
+        // skip slave records master has no match for
+        while (!hasPending || pendingTimestamp < timestamp) {
+            if (!readPending()) {
+                groupTimestamp = Long.MAX_VALUE;
+                return;
+            }
+        }
+
+        groupTimestamp = pendingTimestamp;
+        groupHead = appendPending(-1L);
+        long tail = groupHead;
+        while (readPending() && pendingTimestamp == groupTimestamp) {
+            tail = appendPending(tail);
+        }
+    }
+
+    private boolean readPending() {
+        if (slaveCursor.hasNext()) {
+            Record rec = slaveCursor.next();
+            pendingTimestamp = rec.getDate(slaveTimestampIndex);
+            if (byRowId) {
+                pendingRowId = rec.getRowId();
+            } else {
+                pending = rec;
+            }
+            return hasPending = true;
+        }
+        return hasPending = false;
+    }
+}
@@ -32,6 +32,7 @@ import com.questdb.ql.impl.RecordColumnMetadataImpl;
 import com.questdb.ql.impl.RecordList;
 import com.questdb.ql.impl.map.MapValues;
 import com.questdb.ql.impl.map.MultiMap;
+import com.questdb.std.BloomFilter;
 import com.questdb.std.Mutable;
 import com.questdb.std.ObjHashSet;
 import com.questdb.std.ObjList;
@@ -68,6 +69,10 @@ public class MultiRecordMap implements Closeable, Mutable {
         }
     }
 
+    public void addKeyHashes(BloomFilter filter) {
+        map.addKeyHashes(filter);
+    }
+
     public MultiMap.KeyWriter claimKey() {
         return map.keyWriter();
     }
@@ -84,11 +89,42 @@ public class MultiRecordMap implements Closeable, Mutable {
     }
 
     public RecordCursor get(MultiMap.KeyWriter key) {
-        MapValues values = map.getValues(key);
+        return get(key, map.hash(key));
+    }
+
+    public RecordCursor get(MultiMap.KeyWriter key, int hash) {
+        MapValues values = map.getValues(key, hash);
         records.of(values == null ? -1 : values.getLong(0));
         return records;
     }
 
+    /**
+     * Positions cursor at records of key served by {@link #getKeys()}.
+     *
+     * @param key record of key cursor
+     * @return records of key in order they were added
+     */
+    public RecordCursor get(Record key) {
+        records.of(key.getLong(0));
+        return records;
+    }
+
+    public int getHash(Record key) {
+        return map.getHash(key);
+    }
+
+    public RecordCursor getKeys() {
+        return map.getCursor();
+    }
+
+    public long getUsedMemory() {
+        return map.getUsedMemory() + records.getUsedMemory();
+    }
+
+    public int hash(MultiMap.KeyWriter key) {
+        return map.hash(key);
+    }
+
     public void setStorageFacade(StorageFacade storageFacade) {
         records.setStorageFacade(storageFacade);
     }
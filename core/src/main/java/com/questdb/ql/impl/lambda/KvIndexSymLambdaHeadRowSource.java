@@ -33,8 +33,8 @@ import com.questdb.ql.impl.JournalRecord;
 import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.std.IntHashSet;
 import com.questdb.std.LongList;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.IndexCursor;
-import com.questdb.store.KVIndex;
 import com.questdb.store.SymbolTable;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -65,7 +65,7 @@ abstract class KvIndexSymLambdaHeadRowSource extends AbstractRowSource {
     public RowCursor prepareCursor(PartitionSlice slice) {
         try {
             Partition partition = rec.partition = slice.partition.open();
-            KVIndex index = partition.getIndexForColumn(column);
+            ColumnIndex index = partition.getIndexForColumn(column);
             long lo = slice.lo - 1;
             long hi = slice.calcHi ? partition.size() : slice.hi + 1;
             rows.clear();
@@ -30,9 +30,9 @@ import com.questdb.ql.PartitionSlice;
 import com.questdb.ql.RowCursor;
 import com.questdb.ql.impl.AbstractRowSource;
 import com.questdb.std.CharSink;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.FixedColumn;
 import com.questdb.store.IndexCursor;
-import com.questdb.store.KVIndex;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CHECKED"})
@@ -70,7 +70,7 @@ public class KvIndexIntLookupRowSource extends AbstractRowSource {
     public RowCursor prepareCursor(PartitionSlice slice) {
         try {
             column = slice.partition.fixCol(columnIndex);
-            KVIndex index = slice.partition.getIndexForColumn(columnIndex);
+            ColumnIndex index = slice.partition.getIndexForColumn(columnIndex);
             this.indexCursor = newCursor ? index.newFwdCursor(key) : index.fwdCursor(key);
             this.lo = slice.lo - 1;
             this.hi = slice.calcHi ? slice.partition.open().size() : slice.hi + 1;
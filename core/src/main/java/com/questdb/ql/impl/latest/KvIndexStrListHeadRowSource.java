@@ -38,8 +38,8 @@ import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.std.CharSequenceHashSet;
 import com.questdb.std.CharSink;
 import com.questdb.std.LongList;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.IndexCursor;
-import com.questdb.store.KVIndex;
 import com.questdb.store.VariableColumn;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -72,7 +72,7 @@ public class KvIndexStrListHeadRowSource extends AbstractRowSource {
     public RowCursor prepareCursor(PartitionSlice slice) {
         try {
             Partition partition = rec.partition = slice.partition.open();
-            KVIndex index = partition.getIndexForColumn(columnIndex);
+            ColumnIndex index = partition.getIndexForColumn(columnIndex);
             VariableColumn col = partition.varCol(columnIndex);
 
             long lo = slice.lo - 1;
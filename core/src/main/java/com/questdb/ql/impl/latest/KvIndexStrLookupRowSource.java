@@ -31,8 +31,8 @@ import com.questdb.ql.PartitionSlice;
 import com.questdb.ql.RowCursor;
 import com.questdb.ql.impl.AbstractRowSource;
 import com.questdb.std.CharSink;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.IndexCursor;
-import com.questdb.store.KVIndex;
 import com.questdb.store.VariableColumn;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -71,7 +71,7 @@ public class KvIndexStrLookupRowSource extends AbstractRowSource {
     public RowCursor prepareCursor(PartitionSlice slice) {
         try {
             this.column = slice.partition.varCol(columnIndex);
-            KVIndex index = slice.partition.getIndexForColumn(columnIndex);
+            ColumnIndex index = slice.partition.getIndexForColumn(columnIndex);
             this.indexCursor = newCursor ? index.newFwdCursor(hash) : index.fwdCursor(hash);
             this.lo = slice.lo - 1;
             this.hi = slice.calcHi ? slice.partition.open().size() : slice.hi + 1;
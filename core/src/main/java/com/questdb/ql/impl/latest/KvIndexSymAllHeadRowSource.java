@@ -36,8 +36,8 @@ import com.questdb.ql.impl.JournalRecord;
 import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.std.CharSink;
 import com.questdb.std.LongList;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.IndexCursor;
-import com.questdb.store.KVIndex;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 public class KvIndexSymAllHeadRowSource extends AbstractRowSource {
@@ -66,7 +66,7 @@ public class KvIndexSymAllHeadRowSource extends AbstractRowSource {
     public RowCursor prepareCursor(PartitionSlice slice) {
         try {
             Partition partition = rec.partition = slice.partition.open();
-            KVIndex index = partition.getIndexForColumn(columnIndex);
+            ColumnIndex index = partition.getIndexForColumn(columnIndex);
             long lo = slice.lo - 1;
             long hi = slice.calcHi ? partition.size() : slice.hi + 1;
             rows.clear();
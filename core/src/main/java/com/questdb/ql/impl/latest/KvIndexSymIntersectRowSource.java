@@ -0,0 +1,292 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.latest;
+
+import com.questdb.Partition;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.ql.CancellationHandler;
+import com.questdb.ql.PartitionSlice;
+import com.questdb.ql.RowCursor;
+import com.questdb.ql.StorageFacade;
+import com.questdb.ql.impl.AbstractRowSource;
+import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+import com.questdb.store.*;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Rows matching one value of each of several indexed symbol columns. Row ids of the shortest value list are
+ * looked up in other lists by galloping over their index row blocks, so that only matching rows reach the rest
+ * of the query. When all columns have bitmap indexes intersection is done by the indexes a chunk at a time.
+ */
+@SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CHECKED"})
+public class KvIndexSymIntersectRowSource extends AbstractRowSource {
+
+    private final ObjList<String> symbols;
+    private final ObjList<String> values;
+    private final IntList columnIndexes = new IntList();
+    private final IntList keys = new IntList();
+    private final ObjList<ColumnIndex> indexes = new ObjList<>();
+    private final ObjList<LongList> blocks = new ObjList<>();
+    private final ObjList<IndexCursor> cursors = new ObjList<>();
+    private final LongList candidates = new LongList();
+    private final ObjList<IntList> bitmapKeys = new ObjList<>();
+    private final BitmapIndexCursor bitmapCursor = new BitmapIndexCursor();
+    private final LongList result = new LongList();
+    private final int positions[];
+    private final int counts[];
+    private final long heads[];
+    private int pos;
+
+    public KvIndexSymIntersectRowSource(ObjList<String> symbols, ObjList<String> values) {
+        this.symbols = symbols;
+        this.values = values;
+        this.positions = new int[symbols.size()];
+        this.counts = new int[symbols.size()];
+        this.heads = new long[symbols.size()];
+        for (int i = 0, n = symbols.size(); i < n; i++) {
+            blocks.add(new LongList());
+            bitmapKeys.add(new IntList());
+        }
+    }
+
+    @Override
+    public void configure(JournalMetadata metadata) {
+        columnIndexes.clear();
+        for (int i = 0, n = symbols.size(); i < n; i++) {
+            columnIndexes.add(metadata.getColumnIndex(symbols.getQuick(i)));
+        }
+    }
+
+    @Override
+    public RowCursor prepareCursor(PartitionSlice slice) {
+        result.clear();
+        pos = 0;
+
+        for (int i = 0, n = keys.size(); i < n; i++) {
+            if (keys.getQuick(i) == SymbolTable.VALUE_NOT_FOUND) {
+                return this;
+            }
+        }
+
+        try {
+            Partition partition = slice.partition.open();
+            long lo = slice.lo;
+            long hi = slice.calcHi ? partition.size() : slice.hi + 1;
+
+            boolean bitmap = true;
+            for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+                ColumnIndex index = partition.getIndexForColumn(columnIndexes.getQuick(i));
+                indexes.extendAndSet(i, index);
+                bitmap &= index instanceof BitmapIndex;
+            }
+
+            if (bitmap) {
+                intersectBitmaps(lo, hi);
+            } else {
+                intersectRows(lo, hi);
+            }
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        result.clear();
+        pos = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pos < result.size();
+    }
+
+    @Override
+    public long next() {
+        return result.getQuick(pos++);
+    }
+
+    @Override
+    public void prepare(StorageFacade facade, CancellationHandler cancellationHandler) {
+        keys.clear();
+        for (int i = 0, n = symbols.size(); i < n; i++) {
+            keys.add(facade.getSymbolTable(symbols.getQuick(i)).getQuick(values.getQuick(i)));
+        }
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("KvIndexSymIntersectRowSource").put(',');
+        sink.putQuoted("symbols").put(':').put('[');
+        for (int i = 0, n = symbols.size(); i < n; i++) {
+            if (i > 0) {
+                sink.put(',');
+            }
+            sink.putQuoted(symbols.getQuick(i));
+        }
+        sink.put(']');
+        sink.put('}');
+    }
+
+    /**
+     * Finds position of first value of key that is not less than v. Search starts at "from" and probes
+     * positions at growing distance before binary search of the last step.
+     */
+    private static int gallop(KVIndex index, LongList blocks, int count, int from, long v) {
+        int lo = from;
+        int hi = from;
+        int step = 1;
+        while (hi < count && index.getValueAt(blocks, hi) < v) {
+            lo = hi + 1;
+            hi += step;
+            step <<= 1;
+        }
+
+        if (hi > count) {
+            hi = count;
+        }
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (index.getValueAt(blocks, mid) < v) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void intersectBitmaps(long lo, long hi) {
+        for (int i = 0, n = indexes.size(); i < n; i++) {
+            IntList k = bitmapKeys.getQuick(i);
+            k.clear();
+            k.add(keys.getQuick(i));
+            if (i == 0) {
+                bitmapCursor.of((BitmapIndex) indexes.getQuick(i), k);
+            } else {
+                bitmapCursor.and((BitmapIndex) indexes.getQuick(i), k);
+            }
+        }
+
+        while (bitmapCursor.hasNext()) {
+            long r = bitmapCursor.next();
+            if (r >= hi) {
+                break;
+            }
+            if (r >= lo) {
+                result.add(r);
+            }
+        }
+    }
+
+    private void intersectRows(long lo, long hi) {
+        int n = indexes.size();
+        int shortest = 0;
+        long shortestCount = Long.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            int count = indexes.getQuick(i).getValueCount(keys.getQuick(i));
+            if (count == 0) {
+                return;
+            }
+            if (count < shortestCount) {
+                shortestCount = count;
+                shortest = i;
+            }
+        }
+
+        // only shortest list is copied, others are searched in place
+        candidates.clear();
+        IndexCursor cursor = indexes.getQuick(shortest).fwdCursor(keys.getQuick(shortest));
+        while (cursor.hasNext()) {
+            long r = cursor.next();
+            if (r >= hi) {
+                break;
+            }
+            if (r >= lo) {
+                candidates.add(r);
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            ColumnIndex index = indexes.getQuick(i);
+            positions[i] = 0;
+            heads[i] = -1;
+            if (i == shortest) {
+                cursors.extendAndSet(i, null);
+            } else if (index instanceof KVIndex) {
+                counts[i] = ((KVIndex) index).getValueBlocks(keys.getQuick(i), blocks.getQuick(i));
+                cursors.extendAndSet(i, null);
+            } else {
+                cursors.extendAndSet(i, index.fwdCursor(keys.getQuick(i)));
+            }
+        }
+
+        for (int c = 0, m = candidates.size(); c < m; c++) {
+            long r = candidates.getQuick(c);
+            boolean found = true;
+            for (int i = 0; i < n; i++) {
+                if (i == shortest) {
+                    continue;
+                }
+
+                long v;
+                IndexCursor ic = cursors.getQuick(i);
+                if (ic == null) {
+                    int p = positions[i] = gallop((KVIndex) indexes.getQuick(i), blocks.getQuick(i), counts[i], positions[i], r);
+                    if (p == counts[i]) {
+                        return;
+                    }
+                    v = ((KVIndex) indexes.getQuick(i)).getValueAt(blocks.getQuick(i), p);
+                } else {
+                    // bitmap index of mixed intersection is stepped through
+                    v = heads[i];
+                    while (v < r) {
+                        if (!ic.hasNext()) {
+                            return;
+                        }
+                        v = heads[i] = ic.next();
+                    }
+                }
+
+                if (v != r) {
+                    found = false;
+                    break;
+                }
+            }
+
+            if (found) {
+                result.add(r);
+            }
+        }
+    }
+}
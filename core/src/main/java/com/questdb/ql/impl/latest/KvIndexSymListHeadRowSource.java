@@ -38,8 +38,8 @@ import com.questdb.std.CharSequenceHashSet;
 import com.questdb.std.CharSink;
 import com.questdb.std.IntList;
 import com.questdb.std.LongList;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.IndexCursor;
-import com.questdb.store.KVIndex;
 import com.questdb.store.SymbolTable;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -69,7 +69,7 @@ public class KvIndexSymListHeadRowSource extends AbstractRowSource {
     public RowCursor prepareCursor(PartitionSlice slice) {
         try {
             Partition partition = rec.partition = slice.partition.open();
-            KVIndex index = partition.getIndexForColumn(column);
+            ColumnIndex index = partition.getIndexForColumn(column);
             long lo = slice.lo - 1;
             long hi = slice.calcHi ? partition.size() : slice.hi + 1;
             rows.clear();
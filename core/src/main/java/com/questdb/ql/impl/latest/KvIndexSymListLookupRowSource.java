@@ -0,0 +1,212 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.latest;
+
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.ql.CancellationHandler;
+import com.questdb.ql.PartitionSlice;
+import com.questdb.ql.RowCursor;
+import com.questdb.ql.StorageFacade;
+import com.questdb.ql.impl.AbstractRowSource;
+import com.questdb.std.CharSequenceHashSet;
+import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+import com.questdb.store.BitmapIndex;
+import com.questdb.store.BitmapIndexCursor;
+import com.questdb.store.ColumnIndex;
+import com.questdb.store.IndexCursor;
+import com.questdb.store.KVIndex;
+import com.questdb.store.SymbolTable;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Rows matching any of the symbol values in ascending order. Values are combined by bitmap index a chunk
+ * at a time, which saves merging per-value cursors. Partitions indexed with {@link com.questdb.store.KVIndex}
+ * fall back to merging forward cursors of values.
+ */
+@SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CHECKED"})
+public class KvIndexSymListLookupRowSource extends AbstractRowSource {
+
+    private final String symbol;
+    private final CharSequenceHashSet values;
+    private final IntList keys = new IntList();
+    private final BitmapIndexCursor indexCursor = new BitmapIndexCursor();
+    private final ObjList<KVIndex.FwdIndexCursor> keyCursors = new ObjList<>();
+    private final ObjList<IndexCursor> cursors = new ObjList<>();
+    private final LongList heads = new LongList();
+    private IndexCursor cursor;
+    private int columnIndex;
+    private long lo;
+    private long hi;
+    private boolean full;
+    private long rowid;
+    private boolean hasNext = false;
+
+    public KvIndexSymListLookupRowSource(String symbol, CharSequenceHashSet values) {
+        this.symbol = symbol;
+        this.values = values;
+    }
+
+    @Override
+    public void configure(JournalMetadata metadata) {
+        this.columnIndex = metadata.getColumnIndex(symbol);
+    }
+
+    @Override
+    public RowCursor prepareCursor(PartitionSlice slice) {
+        try {
+            ColumnIndex index = slice.partition.getIndexForColumn(columnIndex);
+            if (index instanceof BitmapIndex) {
+                cursor = indexCursor.of((BitmapIndex) index, keys);
+            } else {
+                cursor = null;
+                cursors.clear();
+                heads.clear();
+                for (int i = 0, n = keys.size(); i < n; i++) {
+                    IndexCursor c = keyCursor(i).of((KVIndex) index, keys.getQuick(i));
+                    if (c.hasNext()) {
+                        cursors.add(c);
+                        heads.add(c.next());
+                    }
+                }
+            }
+            this.full = slice.lo == 0 && slice.calcHi;
+            this.lo = slice.lo - 1;
+            this.hi = slice.calcHi ? slice.partition.open().size() : slice.hi + 1;
+            this.hasNext = false;
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        cursor = null;
+        cursors.clear();
+        heads.clear();
+        hasNext = false;
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        if (hasNext) {
+            return true;
+        }
+
+        long rowid;
+        while ((rowid = nextRowId()) > -1) {
+            if (full || (rowid > lo && rowid < hi)) {
+                this.rowid = rowid;
+                return hasNext = true;
+            }
+
+            if (rowid >= hi) {
+                break;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public long next() {
+        hasNext = false;
+        return rowid;
+    }
+
+    @Override
+    public void prepare(StorageFacade facade, CancellationHandler cancellationHandler) {
+        SymbolTable tab = facade.getSymbolTable(symbol);
+        keys.clear();
+
+        for (int i = 0, n = values.size(); i < n; i++) {
+            int k = tab.getQuick(values.get(i));
+            if (k != SymbolTable.VALUE_NOT_FOUND) {
+                keys.add(k);
+            }
+        }
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("KvIndexSymListLookupRowSource").put(',');
+        sink.putQuoted("symbol").put(':').putQuoted(symbol);
+        sink.put('}');
+    }
+
+    /**
+     * Cursor of i-th key, which is repositioned on index of every partition rather than created anew.
+     */
+    private KVIndex.FwdIndexCursor keyCursor(int i) {
+        KVIndex.FwdIndexCursor c = keyCursors.getQuiet(i);
+        if (c == null) {
+            c = new KVIndex.FwdIndexCursor();
+            keyCursors.extendAndSet(i, c);
+        }
+        return c;
+    }
+
+    /**
+     * Takes lowest row id off cursor heads and advances its cursor.
+     *
+     * @return row id or -1 when cursors are exhausted
+     */
+    private long nextRowId() {
+        if (cursor != null) {
+            return cursor.hasNext() ? cursor.next() : -1;
+        }
+
+        int n = heads.size();
+        if (n == 0) {
+            return -1;
+        }
+
+        int min = 0;
+        for (int i = 1; i < n; i++) {
+            if (heads.getQuick(i) < heads.getQuick(min)) {
+                min = i;
+            }
+        }
+
+        long rowid = heads.getQuick(min);
+        IndexCursor c = cursors.getQuick(min);
+        if (c.hasNext()) {
+            heads.setQuick(min, c.next());
+        } else {
+            cursors.setQuick(min, cursors.getQuick(n - 1));
+            cursors.remove(n - 1);
+            heads.setQuick(min, heads.getQuick(n - 1));
+            heads.setPos(n - 1);
+        }
+        return rowid;
+    }
+}
@@ -32,8 +32,8 @@ import com.questdb.ql.RowCursor;
 import com.questdb.ql.StorageFacade;
 import com.questdb.ql.impl.AbstractRowSource;
 import com.questdb.std.CharSink;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.IndexCursor;
-import com.questdb.store.KVIndex;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CHECKED"})
@@ -69,7 +69,7 @@ public class KvIndexSymLookupRowSource extends AbstractRowSource {
     @Override
     public RowCursor prepareCursor(PartitionSlice slice) {
         try {
-            KVIndex index = slice.partition.getIndexForColumn(columnIndex);
+            ColumnIndex index = slice.partition.getIndexForColumn(columnIndex);
             this.indexCursor = newCursor ? index.newFwdCursor(symbolKey) : index.fwdCursor(symbolKey);
             this.full = slice.lo == 0 && slice.calcHi;
             this.lo = slice.lo - 1;
@@ -28,6 +28,7 @@ import com.questdb.factory.configuration.RecordMetadata;
 import com.questdb.misc.Hash;
 import com.questdb.misc.Numbers;
 import com.questdb.misc.Unsafe;
+import com.questdb.ql.AggregatorFunction;
 import com.questdb.ql.Record;
 import com.questdb.ql.RecordCursor;
 import com.questdb.std.*;
@@ -41,6 +42,7 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
     private final KeyWriter keyWriter = new KeyWriter();
     private final MapRecordSource recordSource;
     private final MapValues values;
+    private final MapValues mergeValues;
     private final MapMetadata metadata;
     private int keyBlockOffset;
     private int keyDataOffset;
@@ -114,6 +116,7 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
         }
 
         this.values = new MapValues(valueOffsets);
+        this.mergeValues = new MapValues(valueOffsets);
         this.metadata = new MapMetadata(keySourceMetadata, keyNames, valueColumns);
         this.keyBlockOffset = offset;
         this.keyDataOffset = this.keyBlockOffset + 4 * keyNames.size();
@@ -121,6 +124,21 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
         this.recordSource = new MapRecordSource(record, this.values, interceptors);
     }
 
+    /**
+     * Sizes filter for keys of this map and adds their hash codes to it. Hash codes are the same as
+     * calculated by {@link #hash(KeyWriter)}, which makes filter usable to rule out missing keys.
+     *
+     * @param filter filter to populate
+     */
+    public void addKeyHashes(BloomFilter filter) {
+        filter.of(size);
+        long address = kStart;
+        for (int i = 0; i < size; i++) {
+            filter.add(entryHash(address));
+            address += Unsafe.getUnsafe().getInt(address);
+        }
+    }
+
     public void clear() {
         kPos = kStart;
         free = (int) (keyCapacity * loadFactor);
@@ -138,10 +156,31 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
         return recordSource.init(kStart, size);
     }
 
+    /**
+     * Hash code of key of entry served by {@link #getCursor()}. Hash code is the same as
+     * calculated by {@link #hash(KeyWriter)} for equal key.
+     *
+     * @param entry record of map cursor
+     * @return positive hash code of key data
+     */
+    public int getHash(Record entry) {
+        return entryHash(entry.getRowId());
+    }
+
     public RecordMetadata getMetadata() {
         return metadata;
     }
 
+    /**
+     * Estimates amount of memory taken by keys and values of this map. Unlike allocated memory
+     * this estimate goes down when map is cleared.
+     *
+     * @return number of bytes
+     */
+    public long getUsedMemory() {
+        return kPos - kStart + ((long) size << 4);
+    }
+
     public MapValues getOrCreateValues(KeyWriter keyWriter) {
         keyWriter.commit();
         // calculate hash remembering "key" structure
@@ -166,10 +205,21 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
     }
 
     public MapValues getValues(KeyWriter keyWriter) {
+        return getValues(keyWriter, hash(keyWriter));
+    }
+
+    /**
+     * Looks up key, hash code of which caller already has from {@link #hash(KeyWriter)}.
+     *
+     * @param keyWriter key writer obtained from {@link #keyWriter()}
+     * @param hash      hash code of key
+     * @return values of key or null when key is not in the map
+     */
+    public MapValues getValues(KeyWriter keyWriter, int hash) {
         keyWriter.commit();
         // rollback key right away
         kPos = keyWriter.startAddr;
-        int index = Hash.hashMem(keyWriter.startAddr + keyBlockOffset, keyWriter.len - keyBlockOffset) & mask;
+        int index = hash & mask;
         long offset = offsets.get(index);
 
         if (offset == -1) {
@@ -181,14 +231,72 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
         }
     }
 
+    /**
+     * Calculates hash code of key without adding key to the map.
+     *
+     * @param keyWriter key writer obtained from {@link #keyWriter()}
+     * @return positive hash code of key data
+     */
+    public int hash(KeyWriter keyWriter) {
+        keyWriter.commit();
+        kPos = keyWriter.startAddr;
+        return Hash.hashMem(keyWriter.startAddr + keyBlockOffset, keyWriter.len - keyBlockOffset);
+    }
+
     public KeyWriter keyWriter() {
         return keyWriter.init();
     }
 
+    /**
+     * Merges entries of map with identical key and value structure into this map.
+     * Keys are copied as is, values of every key are combined by aggregators.
+     *
+     * @param that        map to merge from
+     * @param aggregators functions that have calculated values of both maps
+     */
+    public void merge(MultiMap that, ObjList<AggregatorFunction> aggregators) {
+        long address = that.kStart;
+        for (int i = 0, n = that.size; i < n; i++) {
+            merge(address, aggregators);
+            address += Unsafe.getUnsafe().getInt(address);
+        }
+    }
+
+    /**
+     * Merges single entry of map with identical key and value structure into this map.
+     * Entry can reside outside of map memory, for example in a file spilled by {@link MultiMapSpill}.
+     *
+     * @param address     address of entry
+     * @param aggregators functions that have calculated values of both entries
+     */
+    public void merge(long address, ObjList<AggregatorFunction> aggregators) {
+        int len = Unsafe.getUnsafe().getInt(address);
+        KeyWriter kw = keyWriter.init();
+        while (kw.startAddr + len > kLimit) {
+            resize();
+        }
+        Unsafe.getUnsafe().copyMemory(address + keyBlockOffset, kw.startAddr + keyBlockOffset, len - keyBlockOffset);
+        kw.appendAddr = kw.startAddr + len;
+
+        MapValues values = getOrCreateValues(kw);
+        MapValues thatValues = mergeValues.of(address, false);
+        for (int k = 0, m = aggregators.size(); k < m; k++) {
+            aggregators.getQuick(k).merge(thatValues, values);
+        }
+    }
+
     public int size() {
         return size;
     }
 
+    int entryHash(long address) {
+        return Hash.hashMem(address + keyBlockOffset, Unsafe.getUnsafe().getInt(address) - keyBlockOffset);
+    }
+
+    long getEntryStart() {
+        return kStart;
+    }
+
     private boolean eq(KeyWriter keyWriter, long offset) {
         long a = kStart + offset;
         long b = keyWriter.startAddr;
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.map;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.misc.Files;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.AggregatorFunction;
+import com.questdb.ql.impl.sort.RecordRun;
+import com.questdb.std.IntList;
+import com.questdb.std.Mutable;
+import com.questdb.std.ObjList;
+import com.questdb.store.MemoryFile;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * Keeps memory footprint of aggregating {@link MultiMap} within budget. When map outgrows budget
+ * its entries are written out to temporary files, one file per partition of key hash, and map is cleared.
+ * Once input is exhausted partitions are merged back into map one at a time. Partition that does not fit
+ * budget on its own is split again using next bits of key hash.
+ * <p>
+ * Entries are written and read in the order they were spilled, which keeps order-dependent aggregates,
+ * such as first() and last(), correct.
+ */
+public class MultiMapSpill implements Closeable, Mutable {
+    public static final int PARTITION_BITS = 4;
+    public static final int PARTITION_COUNT = 1 << PARTITION_BITS;
+    public static final int MAX_LEVEL = 4;
+    private final MultiMap map;
+    private final ObjList<AggregatorFunction> aggregators;
+    private final long budget;
+    private final ObjList<MemoryFile> partitions = new ObjList<>(PARTITION_COUNT);
+    private final ObjList<MemoryFile> pending = new ObjList<>();
+    private final IntList pendingLevels = new IntList();
+    private File dir;
+    private int fileCount;
+    private int level;
+
+    public MultiMapSpill(MultiMap map, ObjList<AggregatorFunction> aggregators, long budget) {
+        this.map = map;
+        this.aggregators = aggregators;
+        this.budget = budget;
+    }
+
+    /**
+     * Partition of key hash at given level of recursion. Hash is mixed before its bits are taken because
+     * map hash is poorly distributed in high bits.
+     *
+     * @param hash  key hash as calculated by {@link MultiMap#hash(MultiMap.KeyWriter)}
+     * @param level recursion level, 0 to MAX_LEVEL - 1
+     * @return partition number, 0 to PARTITION_COUNT - 1
+     */
+    public static int partitionOf(int hash, int level) {
+        int h = hash * 0x9E3779B1;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return (h >>> (level * PARTITION_BITS)) & (PARTITION_COUNT - 1);
+    }
+
+    /**
+     * Spills map when it outgrows budget. To be called after every update of map.
+     */
+    public void check() {
+        if (budget > 0 && map.getUsedMemory() > budget) {
+            spill();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0, n = partitions.size(); i < n; i++) {
+            delete(partitions.getQuick(i));
+        }
+        partitions.clear();
+
+        for (int i = 0, n = pending.size(); i < n; i++) {
+            delete(pending.getQuick(i));
+        }
+        pending.clear();
+        pendingLevels.clear();
+        level = 0;
+
+        if (dir != null) {
+            Files.delete(dir);
+            dir = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    /**
+     * Completes spilling once input is exhausted. If map has been spilled before, its remaining
+     * entries are spilled too, map is left empty and partitions can be loaded with {@link #next()}.
+     */
+    public void finish() {
+        if (partitions.size() > 0) {
+            spill();
+            pushPartitions();
+        }
+    }
+
+    public boolean isSpilled() {
+        return pending.size() > 0;
+    }
+
+    /**
+     * Merges spilled and in-memory entries of another spill into map of this spill, keeping map within
+     * budget. Entries of that spill are taken to follow entries of this spill, as they would in sequential
+     * aggregation. Neither spill can be finished, that spill is cleared.
+     *
+     * @param that spill of map with identical key and value structure
+     */
+    public void merge(MultiMapSpill that) {
+        for (int i = 0, n = that.partitions.size(); i < n; i++) {
+            MemoryFile file = that.partitions.getQuick(i);
+            if (file == null) {
+                continue;
+            }
+
+            for (long offset = 0, hi = file.getAppendOffset(); offset < hi; ) {
+                int len = Unsafe.getUnsafe().getInt(file.addressOf(offset, 4));
+                map.merge(file.addressOf(offset, len), aggregators);
+                offset += len;
+                check();
+            }
+        }
+        map.merge(that.map, aggregators);
+        check();
+        that.clear();
+    }
+
+    /**
+     * Loads next non-empty partition into map.
+     *
+     * @return false when there are no more partitions
+     */
+    public boolean next() {
+        while (pending.size() > 0) {
+            int last = pending.size() - 1;
+            MemoryFile file = pending.getQuick(last);
+            level = pendingLevels.getQuick(last) + 1;
+            pending.remove(last);
+            pendingLevels.removeIndex(last);
+
+            map.clear();
+            boolean split = level < MAX_LEVEL;
+            for (long offset = 0, hi = file.getAppendOffset(); offset < hi; ) {
+                int len = Unsafe.getUnsafe().getInt(file.addressOf(offset, 4));
+                map.merge(file.addressOf(offset, len), aggregators);
+                offset += len;
+
+                if (split && map.getUsedMemory() > budget) {
+                    spill();
+                }
+            }
+            delete(file);
+
+            if (partitions.size() > 0) {
+                spill();
+                pushPartitions();
+                continue;
+            }
+
+            if (map.size() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void delete(MemoryFile file) {
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    private MemoryFile openPartition(int index) {
+        MemoryFile file = partitions.getQuiet(index);
+        if (file == null) {
+            if (dir == null) {
+                dir = Files.makeTempDir();
+            }
+            try {
+                file = new MemoryFile(new File(dir, "spill-" + (fileCount++) + ".d"), RecordRun.FILE_BIT_HINT, JournalMode.APPEND);
+            } catch (JournalException e) {
+                throw new JournalRuntimeException("Cannot create spill file", e);
+            }
+            partitions.extendAndSet(index, file);
+        }
+        return file;
+    }
+
+    private void pushPartitions() {
+        for (int i = 0, n = partitions.size(); i < n; i++) {
+            MemoryFile file = partitions.getQuick(i);
+            if (file != null) {
+                pending.add(file);
+                pendingLevels.add(level);
+            }
+        }
+        partitions.clear();
+    }
+
+    private void spill() {
+        long address = map.getEntryStart();
+        for (int i = 0, n = map.size(); i < n; i++) {
+            int len = Unsafe.getUnsafe().getInt(address);
+            MemoryFile file = openPartition(partitionOf(map.entryHash(address), level));
+            long offset = file.getAppendOffset();
+            Unsafe.getUnsafe().copyMemory(address, file.addressOf(offset, len), len);
+            file.setAppendOffset(offset + len);
+            address += len;
+        }
+        map.clear();
+    }
+}
@@ -0,0 +1,374 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.parallel;
+
+import com.questdb.Journal;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Numbers;
+import com.questdb.mp.*;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.JournalRecord;
+import com.questdb.ql.impl.MasterStorageFacade;
+import com.questdb.ql.ops.AbstractCombinedRecordSource;
+import com.questdb.std.CharSink;
+import com.questdb.std.ObjList;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.Closeable;
+import java.util.concurrent.Executor;
+
+/**
+ * Scans partition slices on worker pool of reader factory. Each job owns a row source
+ * and a journal reader of its own, and collects matching row ids of one slice at a time.
+ * Calling thread publishes slices, serves results and scans slices itself when results
+ * are not ready. Workers return their threads to pool when there are no slices to scan
+ * and are woken up when calling thread publishes more.
+ * <p>
+ * In ordered mode results are served in slice order, which preserves row id order
+ * of the underlying partition source. Unordered mode serves results as soon as they
+ * are ready and should only be used when the consumer does not rely on row order.
+ */
+public class ParallelJournalSource extends AbstractCombinedRecordSource implements Closeable {
+    private final PartitionSource partitionSource;
+    private final ObjList<RowSource> rowSources;
+    private final ObjList<ScanJob> jobs;
+    private final JobRunner runner;
+    private final boolean ordered;
+    private final int queueLen;
+    private final JournalMetadata metadata;
+    private final JournalRecord rec;
+    private final ScanTask local = new ScanTask();
+    private PartitionCursor partitionCursor;
+    private RingQueue<ScanTask> tasks;
+    private RingQueue<ScanTask> results;
+    private Sequence pubSeq;
+    private Sequence subSeq;
+    private Sequence outSeq;
+    private Executor executor;
+    private ScanTask current;
+    private long outCursor = -1;
+    private int row;
+    private long published;
+    private long consumed;
+    private boolean started = false;
+    private boolean finished = false;
+    private boolean exhausted;
+
+    public ParallelJournalSource(PartitionSource partitionSource, ObjList<RowSource> rowSources, boolean ordered) {
+        this.metadata = partitionSource.getMetadata();
+        this.rec = new JournalRecord(this.metadata);
+        this.partitionSource = partitionSource;
+        this.rowSources = rowSources;
+        this.ordered = ordered;
+        this.queueLen = Numbers.ceilPow2(rowSources.size() * 2);
+        this.jobs = new ObjList<>(rowSources.size());
+        ObjList<ScanJob> pooled = new ObjList<>(rowSources.size() - 1);
+        for (int i = 0, n = rowSources.size(); i < n; i++) {
+            RowSource rs = rowSources.getQuick(i);
+            rs.configure(metadata);
+            ScanJob job = new ScanJob(rs);
+            jobs.add(job);
+            // first job runs on calling thread
+            if (i > 0) {
+                pooled.add(job);
+            }
+        }
+        this.runner = new JobRunner(pooled, true);
+    }
+
+    @Override
+    public void close() {
+        halt();
+        for (int i = 0, n = jobs.size(); i < n; i++) {
+            jobs.getQuick(i).close();
+        }
+    }
+
+    @Override
+    public JournalRecord getByRowId(long rowId) {
+        rec.rowid = rowId;
+        return rec;
+    }
+
+    public PartitionSource getPartitionSource() {
+        return partitionSource;
+    }
+
+    public ObjList<RowSource> getRowSources() {
+        return rowSources;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return partitionCursor.getStorageFacade();
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return true when rows are served in row id order of partition source
+     */
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) throws JournalException {
+        halt();
+        this.partitionCursor = partitionSource.prepareCursor(factory);
+        Journal master = MasterStorageFacade.journalOf(partitionCursor.getStorageFacade());
+        for (int i = 0, n = jobs.size(); i < n; i++) {
+            jobs.getQuick(i).prepare(factory, metadata, master, cancellationHandler);
+        }
+        this.executor = factory.getWorkerPool();
+        started = false;
+        finished = false;
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        halt();
+        if (partitionCursor != null) {
+            partitionCursor.reset();
+        }
+        for (int i = 0, n = jobs.size(); i < n; i++) {
+            jobs.getQuick(i).reset();
+        }
+        started = false;
+        finished = false;
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (current != null && row < current.rows.size()) {
+            return true;
+        }
+
+        if (finished) {
+            return false;
+        }
+
+        if (!started) {
+            start();
+        }
+        return nextTask();
+    }
+
+    @Override
+    public JournalRecord next() {
+        rec.rowid = current.rows.getQuick(row++);
+        return rec;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("ParallelJournalSource").put(',');
+        sink.putQuoted("workers").put(':').put(jobs.size()).put(',');
+        sink.putQuoted("ordered").put(':').put(ordered).put(',');
+        sink.putQuoted("psrc").put(':').put(partitionSource).put(',');
+        sink.putQuoted("rsrc").put(':').put(rowSources.getQuick(0));
+        sink.put('}');
+    }
+
+    private boolean accept(ScanTask task) {
+        if (task.error != null) {
+            halt();
+            throw new JournalRuntimeException("Partition scan failed", task.error);
+        }
+
+        if (task.rows.size() == 0) {
+            return false;
+        }
+
+        current = task;
+        row = 0;
+        rec.partition = task.partition;
+        return true;
+    }
+
+    @SuppressFBWarnings({"MDM_THREAD_YIELD"})
+    private boolean nextTask() {
+        release();
+        final ScanJob job = jobs.getQuick(0);
+        while (true) {
+            publish();
+
+            if (exhausted && consumed == published) {
+                halt();
+                return false;
+            }
+
+            long cursor = outSeq.next();
+            if (cursor > -1) {
+                consumed++;
+                ScanTask task = ordered ? tasks.get(cursor) : results.get(cursor);
+                if (accept(task)) {
+                    outCursor = cursor;
+                    return true;
+                }
+                outSeq.done(cursor);
+                if (task.stop) {
+                    halt();
+                    return false;
+                }
+                continue;
+            }
+
+            // results are not ready yet, scan next slice on this thread
+            cursor = subSeq.next();
+            if (cursor > -1) {
+                if (ordered) {
+                    job.scan(tasks.get(cursor));
+                    subSeq.done(cursor);
+                } else {
+                    local.of(tasks.get(cursor));
+                    subSeq.done(cursor);
+                    job.scan(local);
+                    consumed++;
+                    if (accept(local)) {
+                        return true;
+                    }
+
+                    if (local.stop) {
+                        halt();
+                        return false;
+                    }
+                }
+            } else if (cursor == -1) {
+                Thread.yield();
+            }
+        }
+    }
+
+    @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CHECKED"})
+    private void publish() {
+        long before = published;
+        // unordered results are queued for consumer, slices in flight must not outnumber free results
+        while (!exhausted && (ordered || published - consumed < queueLen)) {
+            long cursor = pubSeq.next();
+            if (cursor < 0) {
+                break;
+            }
+
+            ScanTask task = tasks.get(cursor);
+            task.clear();
+            if (partitionCursor.hasNext()) {
+                PartitionSlice slice = partitionCursor.next();
+                task.partition = slice.partition;
+                task.partitionIndex = slice.partition.getPartitionIndex();
+                task.lo = slice.lo;
+                try {
+                    task.hi = slice.calcHi ? slice.partition.open().size() - 1 : slice.hi;
+                } catch (JournalException e) {
+                    throw new JournalRuntimeException(e);
+                }
+            } else {
+                // empty task tells consumer there is nothing else to wait for
+                exhausted = true;
+            }
+            pubSeq.done(cursor);
+            published++;
+        }
+
+        if (published > before) {
+            runner.wake();
+        }
+    }
+
+    private void release() {
+        if (outCursor > -1) {
+            outSeq.done(outCursor);
+            outCursor = -1;
+        }
+        current = null;
+    }
+
+    private void halt() {
+        finished = true;
+        current = null;
+        outCursor = -1;
+
+        if (!started) {
+            return;
+        }
+
+        for (int i = 0, n = jobs.size(); i < n; i++) {
+            jobs.getQuick(i).halt();
+        }
+        runner.halt();
+        started = false;
+    }
+
+    private void start() {
+        tasks = new RingQueue<>(ScanTask.FACTORY, queueLen);
+        pubSeq = new SPSequence(queueLen);
+        subSeq = new MCSequence(queueLen, null);
+        outSeq = new SCSequence();
+
+        Sequence resultPubSeq;
+        if (ordered) {
+            // workers complete slices in any order, but consumer sequence
+            // will only see them in the order they were published
+            results = null;
+            resultPubSeq = null;
+            pubSeq.followedBy(outSeq);
+            subSeq.followedBy(pubSeq);
+            outSeq.followedBy(subSeq);
+        } else {
+            results = new RingQueue<>(ScanTask.FACTORY, queueLen);
+            resultPubSeq = new MPSequence(queueLen);
+            pubSeq.followedBy(subSeq);
+            subSeq.followedBy(pubSeq);
+            resultPubSeq.followedBy(outSeq);
+            outSeq.followedBy(resultPubSeq);
+        }
+
+        for (int i = 0, n = jobs.size(); i < n; i++) {
+            jobs.getQuick(i).of(tasks, subSeq, results, resultPubSeq);
+        }
+
+        published = 0;
+        consumed = 0;
+        exhausted = false;
+        current = null;
+        outCursor = -1;
+        started = true;
+        runner.start(executor);
+    }
+}
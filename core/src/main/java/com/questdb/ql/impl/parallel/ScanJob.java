@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.parallel;
+
+import com.questdb.Journal;
+import com.questdb.ex.JournalException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.mp.Job;
+import com.questdb.mp.RingQueue;
+import com.questdb.mp.Sequence;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.MasterStorageFacade;
+import com.questdb.std.LongList;
+
+import java.io.Closeable;
+import java.util.concurrent.locks.LockSupport;
+
+class ScanJob implements Job, Closeable {
+    private final RowSource rowSource;
+    private final MasterStorageFacade storageFacade = new MasterStorageFacade();
+    private final PartitionSlice slice = new PartitionSlice();
+    private final ScanTask local = new ScanTask();
+    private final WorkerReader reader = new WorkerReader();
+    private RingQueue<ScanTask> tasks;
+    private Sequence subSeq;
+    private RingQueue<ScanTask> results;
+    private Sequence resultPubSeq;
+    private volatile boolean halted = false;
+
+    ScanJob(RowSource rowSource) {
+        this.rowSource = rowSource;
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+
+    @Override
+    public boolean run() {
+        long cursor = subSeq.next();
+        if (cursor < 0) {
+            return false;
+        }
+
+        ScanTask task = tasks.get(cursor);
+        if (results == null) {
+            scan(task);
+            subSeq.done(cursor);
+        } else {
+            local.of(task);
+            subSeq.done(cursor);
+            scan(local);
+            publish(local);
+        }
+        return true;
+    }
+
+    @Override
+    public void setupThread() {
+    }
+
+    void halt() {
+        halted = true;
+    }
+
+    void of(RingQueue<ScanTask> tasks, Sequence subSeq, RingQueue<ScanTask> results, Sequence resultPubSeq) {
+        this.tasks = tasks;
+        this.subSeq = subSeq;
+        this.results = results;
+        this.resultPubSeq = resultPubSeq;
+        this.halted = false;
+    }
+
+    void prepare(JournalReaderFactory factory, JournalMetadata metadata, Journal master, CancellationHandler cancellationHandler) throws JournalException {
+        storageFacade.setJournal(reader.lease(factory, metadata, master));
+        storageFacade.setFactory(factory);
+        rowSource.prepare(storageFacade, cancellationHandler);
+    }
+
+    void reset() {
+        // journal belongs to factory of previous query, it is replaced on prepare
+        rowSource.reset();
+    }
+
+    void scan(ScanTask task) {
+        if (task.partitionIndex < 0) {
+            return;
+        }
+
+        try {
+            slice.partition = reader.getJournal().getPartition(task.partitionIndex, true);
+            slice.lo = task.lo;
+            slice.hi = task.hi;
+            slice.calcHi = false;
+
+            RowCursor cursor = rowSource.prepareCursor(slice);
+            if (cursor == null) {
+                task.stop = true;
+                return;
+            }
+
+            LongList rows = task.rows;
+            while (cursor.hasNext()) {
+                rows.add(cursor.next());
+            }
+        } catch (Throwable e) {
+            task.error = e;
+        }
+    }
+
+    private void publish(ScanTask task) {
+        long cursor;
+        while ((cursor = resultPubSeq.next()) < 0) {
+            if (halted) {
+                return;
+            }
+            LockSupport.parkNanos(1);
+        }
+        results.get(cursor).swap(task);
+        resultPubSeq.done(cursor);
+    }
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.parallel;
+
+import com.questdb.Partition;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjectFactory;
+
+final class ScanTask {
+    static final ObjectFactory<ScanTask> FACTORY = new ObjectFactory<ScanTask>() {
+        @Override
+        public ScanTask newInstance() {
+            return new ScanTask();
+        }
+    };
+
+    // partition of consumer journal, workers must not access it
+    Partition partition;
+    int partitionIndex = -1;
+    long lo;
+    long hi;
+    LongList rows = new LongList();
+    boolean stop;
+    Throwable error;
+
+    void clear() {
+        this.partition = null;
+        this.partitionIndex = -1;
+        this.rows.clear();
+        this.stop = false;
+        this.error = null;
+    }
+
+    void of(ScanTask that) {
+        this.partition = that.partition;
+        this.partitionIndex = that.partitionIndex;
+        this.lo = that.lo;
+        this.hi = that.hi;
+        this.rows.clear();
+        this.stop = false;
+        this.error = null;
+    }
+
+    void swap(ScanTask that) {
+        LongList rows = this.rows;
+        this.partition = that.partition;
+        this.partitionIndex = that.partitionIndex;
+        this.lo = that.lo;
+        this.hi = that.hi;
+        this.rows = that.rows;
+        this.stop = that.stop;
+        this.error = that.error;
+        that.rows = rows;
+    }
+}
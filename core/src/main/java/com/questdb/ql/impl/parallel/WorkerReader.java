@@ -0,0 +1,76 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.impl.parallel;
+
+import com.questdb.Journal;
+import com.questdb.ex.JournalException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+
+import java.io.Closeable;
+
+/**
+ * Reader of parallel query job. Each job reads from its own journal instance, which has its own
+ * partitions, columns and symbol tables, none of which are thread-safe. Reader is leased from
+ * factory of query on every prepare and returned to it when job is prepared again or closed.
+ */
+public class WorkerReader implements Closeable {
+    private Journal<?> journal;
+
+    @Override
+    public void close() {
+        // factory may have closed its readers already, closing open reader returns it to factory
+        if (journal != null) {
+            if (journal.isOpen()) {
+                journal.close();
+            }
+            journal = null;
+        }
+    }
+
+    public Journal<?> getJournal() {
+        return journal;
+    }
+
+    /**
+     * Returns previously leased reader and leases new one from factory.
+     *
+     * @param factory  factory of query
+     * @param metadata metadata of journal query reads
+     * @param master   reader of query, transaction of which worker reader is refreshed to, or null to read last transaction
+     * @return leased reader
+     * @throws JournalException when reader cannot be opened
+     */
+    public Journal<?> lease(JournalReaderFactory factory, JournalMetadata<?> metadata, Journal<?> master) throws JournalException {
+        close();
+        journal = factory.workerReader(factory.getOrCreateMetadata(metadata.getKey()));
+        if (master != null) {
+            // stay on the transaction master reader is on, writer may have committed since
+            journal.refresh(master.getTxn(), master.getTxPin());
+        } else {
+            journal.refresh();
+        }
+        return journal;
+    }
+}
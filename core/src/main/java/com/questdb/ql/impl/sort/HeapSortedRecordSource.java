@@ -0,0 +1,295 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.ex.JournalException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.RecordList;
+import com.questdb.ql.impl.RecordListRecord;
+import com.questdb.ql.ops.AbstractRecordSource;
+import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.std.AbstractImmutableIterator;
+import com.questdb.std.CharSink;
+import com.questdb.std.LongList;
+import com.questdb.std.Mutable;
+
+import java.io.Closeable;
+
+/**
+ * Sorts top N records of source, where N is the upper bound of "limit" clause. Records are kept in
+ * a binary heap, which root is the worst of records retained so far. Records that are not better
+ * than root are discarded without being copied, so memory footprint is proportional to N rather than
+ * to number of source records.
+ * <p>
+ * Records of equal sort key retain source order, which is consistent with {@link RBTreeSortedRecordSource}.
+ * Likewise, when source supports access by row id heap keeps row ids rather than copies of records.
+ */
+public class HeapSortedRecordSource extends AbstractRecordSource implements Mutable, RecordSource, Closeable {
+    // number of records that can be appended on top of heap size before storage is compacted
+    private static final int COMPACT_SLACK = 1024;
+    private final RecordSource recordSource;
+    private final RecordComparator comparator;
+    private final VirtualColumn limit;
+    // pairs of record address or row id and sequence number, latter breaks ties between equal records
+    private final LongList heap = new LongList();
+    private final HeapCursor cursor = new HeapCursor();
+    private final boolean byRowId;
+    private RecordList records;
+    private RecordList spare;
+    private RecordListRecord left;
+    private RecordListRecord spareLeft;
+    private RecordCursor sourceCursor;
+    private long sequence;
+    private int appended;
+
+    public HeapSortedRecordSource(RecordSource recordSource, RecordComparator comparator, VirtualColumn limit, int pageSize) {
+        this.recordSource = recordSource;
+        this.comparator = comparator;
+        this.limit = limit;
+        this.byRowId = recordSource.supportsRowIdAccess();
+        this.records = new RecordList(recordSource.getMetadata(), pageSize);
+        this.spare = new RecordList(recordSource.getMetadata(), pageSize);
+        this.left = records.newRecord();
+        this.spareLeft = spare.newRecord();
+    }
+
+    @Override
+    public void clear() {
+        heap.clear();
+        records.clear();
+        spare.clear();
+        sequence = 0;
+        appended = 0;
+    }
+
+    @Override
+    public void close() {
+        records.close();
+        spare.close();
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return recordSource.getMetadata();
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) throws JournalException {
+        sourceCursor = recordSource.prepareCursor(factory, cancellationHandler);
+        StorageFacade storageFacade = sourceCursor.getStorageFacade();
+        records.setStorageFacade(storageFacade);
+        spare.setStorageFacade(storageFacade);
+        left.setStorageFacade(storageFacade);
+        spareLeft.setStorageFacade(storageFacade);
+        buildHeap(limit.getLong(null), cancellationHandler);
+        sortHeap();
+        cursor.index = 0;
+        return cursor;
+    }
+
+    @Override
+    public void reset() {
+        recordSource.reset();
+        clear();
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return true;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("HeapSortedRecordSource").put(',');
+        sink.putQuoted("limit").put(':').put(limit.getLong(null)).put(',');
+        sink.putQuoted("src").put(':').put(recordSource);
+        sink.put('}');
+    }
+
+    private long append(Record record) {
+        if (byRowId) {
+            return record.getRowId();
+        }
+
+        if (appended > (size() << 1) + COMPACT_SLACK) {
+            compact();
+        }
+        appended++;
+        return records.append(record, -1L);
+    }
+
+    private void buildHeap(long n, CancellationHandler cancellationHandler) {
+        if (n < 1) {
+            return;
+        }
+
+        while (sourceCursor.hasNext()) {
+            cancellationHandler.check();
+            Record record = sourceCursor.next();
+            if (size() < n) {
+                heap.add(append(record));
+                heap.add(sequence++);
+                siftUp(size() - 1);
+            } else {
+                // source record can be repositioned by lookup of root, take row id first
+                long rowId = record.getRowId();
+                comparator.setLeft(record);
+                // equal record is worse than root because it comes later in source
+                if (comparator.compare(recordOf(heap.getQuick(0))) < 0) {
+                    heap.setQuick(0, byRowId ? rowId : append(record));
+                    heap.setQuick(1, sequence++);
+                    siftDown(0, size());
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies records that are still in heap to spare storage and swaps storage around.
+     */
+    private void compact() {
+        for (int i = 0, n = heap.size(); i < n; i += 2) {
+            heap.setQuick(i, spare.append(records.getByRowId(heap.getQuick(i)), -1L));
+        }
+
+        RecordList tmp = records;
+        records = spare;
+        spare = tmp;
+        spare.clear();
+
+        RecordListRecord tmpLeft = left;
+        left = spareLeft;
+        spareLeft = tmpLeft;
+
+        appended = size();
+    }
+
+    private boolean greater(int a, int b) {
+        if (byRowId) {
+            comparator.setLeft(sourceCursor.getByRowId(heap.getQuick(a << 1)));
+        } else {
+            left.of(heap.getQuick(a << 1));
+            comparator.setLeft(left);
+        }
+        int cmp = comparator.compare(recordOf(heap.getQuick(b << 1)));
+        return cmp > 0 || (cmp == 0 && heap.getQuick((a << 1) + 1) > heap.getQuick((b << 1) + 1));
+    }
+
+    private Record recordOf(long ref) {
+        return byRowId ? sourceCursor.getByRowId(ref) : records.getByRowId(ref);
+    }
+
+    private void siftDown(int index, int size) {
+        int i = index;
+        while (true) {
+            int child = (i << 1) + 1;
+            if (child >= size) {
+                break;
+            }
+
+            if (child + 1 < size && greater(child + 1, child)) {
+                child++;
+            }
+
+            if (greater(child, i)) {
+                swap(child, i);
+                i = child;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private void siftUp(int index) {
+        int i = index;
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (greater(i, parent)) {
+                swap(i, parent);
+                i = parent;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private int size() {
+        return heap.size() >> 1;
+    }
+
+    /**
+     * Sorts heap in place in ascending order by moving root to the end of shrinking heap.
+     */
+    private void sortHeap() {
+        for (int end = size() - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    private void swap(int a, int b) {
+        int ia = a << 1;
+        int ib = b << 1;
+        long ref = heap.getQuick(ia);
+        long seq = heap.getQuick(ia + 1);
+        heap.setQuick(ia, heap.getQuick(ib));
+        heap.setQuick(ia + 1, heap.getQuick(ib + 1));
+        heap.setQuick(ib, ref);
+        heap.setQuick(ib + 1, seq);
+    }
+
+    private class HeapCursor extends AbstractImmutableIterator<Record> implements RecordCursor {
+
+        private int index;
+
+        @Override
+        public Record getByRowId(long rowId) {
+            return recordOf(rowId);
+        }
+
+        @Override
+        public RecordMetadata getMetadata() {
+            return HeapSortedRecordSource.this.getMetadata();
+        }
+
+        @Override
+        public StorageFacade getStorageFacade() {
+            return sourceCursor.getStorageFacade();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < size();
+        }
+
+        @Override
+        public Record next() {
+            return recordOf(heap.getQuick((index++) << 1));
+        }
+    }
+}
@@ -26,6 +26,7 @@ package com.questdb.ql.impl.sort;
 import com.questdb.ex.JournalException;
 import com.questdb.factory.JournalReaderFactory;
 import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Files;
 import com.questdb.misc.Unsafe;
 import com.questdb.ql.*;
 import com.questdb.ql.impl.RecordList;
@@ -34,10 +35,18 @@ import com.questdb.ql.ops.AbstractRecordSource;
 import com.questdb.std.AbstractImmutableIterator;
 import com.questdb.std.CharSink;
 import com.questdb.std.Mutable;
+import com.questdb.std.ObjList;
 import com.questdb.store.MemoryPages;
 
 import java.io.Closeable;
-
+import java.io.File;
+
+/**
+ * Sorts records of source in red-black tree. When memory budget is set and tree outgrows it, tree is written
+ * out to temporary file as sorted run and cleared. Once source is exhausted runs are merged on a heap, which
+ * is ordered by the same comparator as tree. Heap breaks ties in favour of older run and tree keeps equal
+ * records in order they were added, so both modes keep order of source for equal keys.
+ */
 public class RBTreeSortedRecordSource extends AbstractRecordSource implements Mutable, RecordSource, Closeable {
     // P(8) + L + R + C(1) + REF + TOP
     private static final int BLOCK_SIZE = 8 + 8 + 8 + 1 + 8 + 8;
@@ -56,26 +65,41 @@ public class RBTreeSortedRecordSource extends AbstractRecordSource implements Mu
     private final TreeCursor cursor = new TreeCursor();
     private final FakeRecord fakeRecord = new FakeRecord();
     private final boolean byRowId;
+    private final long memoryBudget;
+    private final ObjList<RecordRun> runs = new ObjList<>();
+    private final MergeCursor mergeCursor = new MergeCursor();
+    private final RecordRunRecord runRecord;
     private long root = -1;
     private RecordCursor sourceCursor;
+    private File runDir;
 
-    public RBTreeSortedRecordSource(RecordSource recordSource, RecordComparator comparator, int keyPageSize, int valuePageSize) {
+    public RBTreeSortedRecordSource(RecordSource recordSource, RecordComparator comparator, int keyPageSize, int valuePageSize, long memoryBudget) {
         this.recordSource = recordSource;
         this.comparator = comparator;
         this.mem = new MemoryPages(keyPageSize);
         this.byRowId = recordSource.supportsRowIdAccess();
         this.records = new RecordList(byRowId ? fakeRecord.getMetadata() : recordSource.getMetadata(), valuePageSize);
+        this.runRecord = new RecordRunRecord(records.getMetadata());
+        this.memoryBudget = memoryBudget;
     }
 
     @Override
     public void clear() {
-        root = -1;
-        this.mem.clear();
-        records.clear();
+        clearTree();
+        for (int i = 0, n = runs.size(); i < n; i++) {
+            runs.getQuick(i).close();
+        }
+        runs.clear();
+
+        if (runDir != null) {
+            Files.delete(runDir);
+            runDir = null;
+        }
     }
 
     @Override
     public void close() {
+        clear();
         records.close();
         mem.close();
     }
@@ -89,11 +113,19 @@ public class RBTreeSortedRecordSource extends AbstractRecordSource implements Mu
     public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) throws JournalException {
         sourceCursor = recordSource.prepareCursor(factory, cancellationHandler);
         records.setStorageFacade(sourceCursor.getStorageFacade());
+        runRecord.setStorageFacade(sourceCursor.getStorageFacade());
         if (byRowId) {
             buildMapByRowId(sourceCursor, cancellationHandler);
         } else {
             buildMap(sourceCursor, cancellationHandler);
         }
+
+        if (runs.size() > 0) {
+            spill();
+            mergeCursor.setup();
+            return mergeCursor;
+        }
+
         cursor.setup();
         return cursor;
     }
@@ -207,6 +239,7 @@ public class RBTreeSortedRecordSource extends AbstractRecordSource implements Mu
         while (cursor.hasNext()) {
             cancellationHandler.check();
             put(cursor.next());
+            checkBudget();
         }
     }
 
@@ -214,9 +247,22 @@ public class RBTreeSortedRecordSource extends AbstractRecordSource implements Mu
         while (cursor.hasNext()) {
             cancellationHandler.check();
             put(cursor.next().getRowId());
+            checkBudget();
         }
     }
 
+    private void checkBudget() {
+        if (memoryBudget > 0 && mem.size() + records.getUsedMemory() > memoryBudget) {
+            spill();
+        }
+    }
+
+    private void clearTree() {
+        root = -1;
+        mem.clear();
+        records.clear();
+    }
+
     private void fix(long x) {
         setColor(x, RED);
 
@@ -346,6 +392,10 @@ public class RBTreeSortedRecordSource extends AbstractRecordSource implements Mu
         setRight(root, -1);
     }
 
+    private Record resolve(Record record) {
+        return byRowId ? sourceCursor.getByRowId(record.getLong(0)) : record;
+    }
+
     private void rotateLeft(long p) {
         if (p != -1) {
             long r = rightOf(p);
@@ -386,6 +436,130 @@ public class RBTreeSortedRecordSource extends AbstractRecordSource implements Mu
         }
     }
 
+    private void spill() {
+        if (root == -1) {
+            return;
+        }
+
+        if (runDir == null) {
+            runDir = Files.makeTempDir();
+        }
+
+        RecordRun run = new RecordRun(new File(runDir, "run-" + runs.size() + ".d"), records.getMetadata());
+        run.setStorageFacade(records.getStorageFacade());
+        runs.add(run);
+
+        cursor.setup();
+        while (cursor.hasNext()) {
+            run.append(records.next());
+        }
+        clearTree();
+    }
+
+    private class MergeCursor extends AbstractImmutableIterator<Record> implements RecordCursor {
+        // indexes of runs ordered as binary heap by their current records
+        private int[] heap = new int[0];
+        private int size;
+        private boolean advance;
+
+        @Override
+        public Record getByRowId(long rowId) {
+            if (byRowId) {
+                return sourceCursor.getByRowId(rowId);
+            }
+            runRecord.of(rowId);
+            return runRecord;
+        }
+
+        @Override
+        public RecordMetadata getMetadata() {
+            return RBTreeSortedRecordSource.this.getMetadata();
+        }
+
+        @Override
+        public StorageFacade getStorageFacade() {
+            return records.getStorageFacade();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (advance) {
+                advance = false;
+                RecordRun run = runs.getQuick(heap[0]);
+                if (run.hasNext()) {
+                    run.next();
+                } else {
+                    heap[0] = heap[--size];
+                }
+                siftDown();
+            }
+            return size > 0;
+        }
+
+        @Override
+        public Record next() {
+            advance = true;
+            return resolve(runs.getQuick(heap[0]).getRecord());
+        }
+
+        private boolean less(int a, int b) {
+            comparator.setLeft(resolve(runs.getQuick(a).getRecord()));
+            int cmp = comparator.compare(resolve(runs.getQuick(b).getRecord()));
+            return cmp < 0 || (cmp == 0 && a < b);
+        }
+
+        private void setup() {
+            int n = runs.size();
+            if (heap.length < n) {
+                heap = new int[n];
+            }
+            size = 0;
+            advance = false;
+
+            for (int i = 0; i < n; i++) {
+                RecordRun run = runs.getQuick(i);
+                run.toTop();
+                if (run.hasNext()) {
+                    run.next();
+                    siftUp(i);
+                }
+            }
+        }
+
+        private void siftDown() {
+            int p = 0;
+            int v = heap[0];
+            while (true) {
+                int c = 2 * p + 1;
+                if (c >= size) {
+                    break;
+                }
+                if (c + 1 < size && less(heap[c + 1], heap[c])) {
+                    c++;
+                }
+                if (!less(heap[c], v)) {
+                    break;
+                }
+                heap[p] = heap[c];
+                p = c;
+            }
+            heap[p] = v;
+        }
+
+        private void siftUp(int run) {
+            int c = size++;
+            while (c > 0) {
+                int p = (c - 1) / 2;
+                if (!less(run, heap[p])) {
+                    break;
+                }
+                heap[c] = heap[p];
+                c = p;
+            }
+            heap[c] = run;
+        }
+    }
+
     private class TreeCursor extends AbstractImmutableIterator<Record> implements RecordCursor {
 
         private long current;
@@ -424,8 +598,7 @@ public class RBTreeSortedRecordSource extends AbstractRecordSource implements Mu
 
         @Override
         public Record next() {
-            final Record underlying = records.next();
-            return byRowId ? sourceCursor.getByRowId(underlying.getLong(0)) : underlying;
+            return resolve(records.next());
         }
 
         private void setup() {
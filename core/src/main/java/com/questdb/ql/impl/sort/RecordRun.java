@@ -0,0 +1,201 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Chars;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.Record;
+import com.questdb.ql.StorageFacade;
+import com.questdb.std.DirectInputStream;
+import com.questdb.store.MemoryFile;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * Sequence of records written to temporary file and read back in the order they were written.
+ * Tagged run stores long tag after each record, see {@link #append(Record, long)}.
+ * File is deleted when run is closed.
+ */
+public class RecordRun implements Closeable {
+    // page size of temporary files queries spill to
+    public static final int FILE_BIT_HINT = 22;
+    private final MemoryFile file;
+    private final RecordMetadata metadata;
+    private final RecordRunRecord record;
+    private final int columnCount;
+    private final int fixedSize;
+    private final boolean tagged;
+    private long readOffset;
+    private long tag;
+    private long readLimit;
+
+    public RecordRun(File file, RecordMetadata metadata) {
+        this(file, metadata, false);
+    }
+
+    public RecordRun(File file, RecordMetadata metadata, boolean tagged) {
+        try {
+            this.file = new MemoryFile(file, FILE_BIT_HINT, JournalMode.APPEND);
+        } catch (JournalException e) {
+            throw new JournalRuntimeException("Cannot create sort run file", e);
+        }
+        this.metadata = metadata;
+        this.record = new RecordRunRecord(metadata);
+        this.columnCount = metadata.getColumnCount();
+        this.fixedSize = record.getFixedSize();
+        this.tagged = tagged;
+    }
+
+    public void append(Record record) {
+        append(record, 0);
+    }
+
+    public void append(Record record, long tag) {
+        int len = tagged ? 12 + fixedSize : 4 + fixedSize;
+        for (int i = 0; i < columnCount; i++) {
+            switch (metadata.getColumnQuick(i).getType()) {
+                case STRING:
+                    CharSequence s = record.getFlyweightStr(i);
+                    len += s == null ? 4 : 4 + s.length() * 2;
+                    break;
+                case BINARY:
+                    DirectInputStream b = record.getBin(i);
+                    // journal columns report null value as negative size
+                    len += b == null || b.size() < 0 ? 8 : 8 + (int) b.size();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        long offset = file.getAppendOffset();
+        long address = file.addressOf(offset, len);
+        Unsafe.getUnsafe().putInt(address, len);
+
+        long fixedAddress = address + 4;
+        long varAddress = fixedAddress + fixedSize;
+        for (int i = 0; i < columnCount; i++) {
+            long p = fixedAddress + this.record.offsetOf(i);
+            switch (metadata.getColumnQuick(i).getType()) {
+                case BOOLEAN:
+                    Unsafe.getUnsafe().putByte(p, (byte) (record.getBool(i) ? 1 : 0));
+                    break;
+                case BYTE:
+                    Unsafe.getUnsafe().putByte(p, record.get(i));
+                    break;
+                case DOUBLE:
+                    Unsafe.getUnsafe().putDouble(p, record.getDouble(i));
+                    break;
+                case INT:
+                case SYMBOL:
+                    Unsafe.getUnsafe().putInt(p, record.getInt(i));
+                    break;
+                case LONG:
+                    Unsafe.getUnsafe().putLong(p, record.getLong(i));
+                    break;
+                case SHORT:
+                    Unsafe.getUnsafe().putShort(p, record.getShort(i));
+                    break;
+                case DATE:
+                    Unsafe.getUnsafe().putLong(p, record.getDate(i));
+                    break;
+                case FLOAT:
+                    Unsafe.getUnsafe().putFloat(p, record.getFloat(i));
+                    break;
+                case STRING:
+                    CharSequence s = record.getFlyweightStr(i);
+                    if (s == null) {
+                        Unsafe.getUnsafe().putInt(varAddress, -1);
+                        varAddress += 4;
+                    } else {
+                        varAddress += Chars.put(varAddress, s);
+                    }
+                    break;
+                case BINARY:
+                    DirectInputStream b = record.getBin(i);
+                    if (b == null || b.size() < 0) {
+                        Unsafe.getUnsafe().putLong(varAddress, -1L);
+                        varAddress += 8;
+                    } else {
+                        long size = b.size();
+                        Unsafe.getUnsafe().putLong(varAddress, size);
+                        b.copyTo(varAddress + 8, 0, size);
+                        varAddress += 8 + size;
+                    }
+                    break;
+                default:
+                    throw new JournalRuntimeException("Unsupported type: " + metadata.getColumnQuick(i).getType());
+            }
+        }
+        if (tagged) {
+            Unsafe.getUnsafe().putLong(address + len - 8, tag);
+        }
+        file.setAppendOffset(offset + len);
+    }
+
+    @Override
+    public void close() {
+        file.delete();
+    }
+
+    public RecordRunRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * @return tag of record last returned by {@link #next()}, tag of untagged run is always 0
+     */
+    public long getTag() {
+        return tag;
+    }
+
+    public boolean hasNext() {
+        return readOffset < readLimit;
+    }
+
+    public Record next() {
+        int len = Unsafe.getUnsafe().getInt(file.addressOf(readOffset, 4));
+        long address = file.addressOf(readOffset, len);
+        record.of(address);
+        if (tagged) {
+            tag = Unsafe.getUnsafe().getLong(address + len - 8);
+        }
+        readOffset += len;
+        return record;
+    }
+
+    public void setStorageFacade(StorageFacade storageFacade) {
+        record.setStorageFacade(storageFacade);
+    }
+
+    public void toTop() {
+        readOffset = 0;
+        readLimit = file.getAppendOffset();
+    }
+}
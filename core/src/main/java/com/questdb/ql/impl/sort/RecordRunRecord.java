@@ -0,0 +1,268 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.AbstractRecord;
+import com.questdb.ql.StorageFacade;
+import com.questdb.std.CharSink;
+import com.questdb.std.DirectCharSequence;
+import com.questdb.std.DirectInputStream;
+import com.questdb.store.ColumnType;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Flyweight over record written to {@link RecordRun}. Record is laid out in contiguous memory as
+ * length of record, values of fixed size columns and then values of strings and binaries in order
+ * of their columns. Row id of record is its address, which stays valid for as long as run is open.
+ */
+public class RecordRunRecord extends AbstractRecord {
+    private final DirectCharSequence csA = new DirectCharSequence();
+    private final DirectCharSequence csB = new DirectCharSequence();
+    private final int[] offsets;
+    private final boolean[] varStr;
+    private final long[] varAddresses;
+    private final int fixedSize;
+    private long address;
+    private StorageFacade storageFacade;
+
+    public RecordRunRecord(RecordMetadata metadata) {
+        super(metadata);
+        this.offsets = new int[metadata.getColumnCount()];
+
+        int fixedSize = 0;
+        int varCount = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            ColumnType ct = metadata.getColumnQuick(i).getType();
+            if (ct.size() != 0) {
+                offsets[i] = fixedSize;
+                fixedSize += ct.size();
+            } else {
+                offsets[i] = -(++varCount);
+            }
+        }
+        this.fixedSize = fixedSize;
+        this.varStr = new boolean[varCount];
+        this.varAddresses = new long[varCount];
+
+        for (int i = 0, k = 0; i < offsets.length; i++) {
+            if (offsets[i] < 0) {
+                varStr[k++] = metadata.getColumnQuick(i).getType() == ColumnType.STRING;
+            }
+        }
+    }
+
+    @Override
+    public byte get(int col) {
+        return Unsafe.getUnsafe().getByte(fixedAddressOf(col));
+    }
+
+    @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CHECKED"})
+    @Override
+    public void getBin(int col, OutputStream s) {
+        long readAddress = varAddressOf(col);
+        long len = Unsafe.getUnsafe().getLong(readAddress);
+        try {
+            for (long p = readAddress + 8, hi = p + len; p < hi; p++) {
+                s.write(Unsafe.getUnsafe().getByte(p));
+            }
+        } catch (IOException e) {
+            throw new JournalRuntimeException("Reading binary column failed", e);
+        }
+    }
+
+    @Override
+    public DirectInputStream getBin(int col) {
+        long readAddress = varAddressOf(col);
+        long len = Unsafe.getUnsafe().getLong(readAddress);
+        if (len < 0) {
+            return null;
+        }
+        return new DirectMemoryStream(readAddress + 8, len);
+    }
+
+    @Override
+    public long getBinLen(int col) {
+        return Unsafe.getUnsafe().getLong(varAddressOf(col));
+    }
+
+    @Override
+    public boolean getBool(int col) {
+        return Unsafe.getBool(fixedAddressOf(col));
+    }
+
+    @Override
+    public long getDate(int col) {
+        return Unsafe.getUnsafe().getLong(fixedAddressOf(col));
+    }
+
+    @Override
+    public double getDouble(int col) {
+        return Unsafe.getUnsafe().getDouble(fixedAddressOf(col));
+    }
+
+    @Override
+    public float getFloat(int col) {
+        return Unsafe.getUnsafe().getFloat(fixedAddressOf(col));
+    }
+
+    @Override
+    public CharSequence getFlyweightStr(int col) {
+        return str(col, csA);
+    }
+
+    @Override
+    public CharSequence getFlyweightStrB(int col) {
+        return str(col, csB);
+    }
+
+    @Override
+    public int getInt(int col) {
+        return Unsafe.getUnsafe().getInt(fixedAddressOf(col));
+    }
+
+    @Override
+    public long getLong(int col) {
+        return Unsafe.getUnsafe().getLong(fixedAddressOf(col));
+    }
+
+    @Override
+    public long getRowId() {
+        return address;
+    }
+
+    @Override
+    public short getShort(int col) {
+        return Unsafe.getUnsafe().getShort(fixedAddressOf(col));
+    }
+
+    @Override
+    public CharSequence getStr(int col) {
+        return str(col, new DirectCharSequence());
+    }
+
+    @Override
+    public void getStr(int col, CharSink sink) {
+        long readAddress = varAddressOf(col);
+        int len = Unsafe.getUnsafe().getInt(readAddress);
+        for (long p = readAddress + 4, hi = p + len * 2; p < hi; p += 2) {
+            sink.put(Unsafe.getUnsafe().getChar(p));
+        }
+    }
+
+    @Override
+    public int getStrLen(int col) {
+        return Unsafe.getUnsafe().getInt(varAddressOf(col));
+    }
+
+    @Override
+    public String getSym(int col) {
+        return storageFacade.getSymbolTable(col).value(getInt(col));
+    }
+
+    public int getFixedSize() {
+        return fixedSize;
+    }
+
+    public void of(long address) {
+        this.address = address;
+        long p = address + 4 + fixedSize;
+        for (int i = 0, n = varAddresses.length; i < n; i++) {
+            varAddresses[i] = p;
+            if (varStr[i]) {
+                int len = Unsafe.getUnsafe().getInt(p);
+                p += len < 0 ? 4 : 4 + len * 2;
+            } else {
+                long len = Unsafe.getUnsafe().getLong(p);
+                p += len < 0 ? 8 : 8 + len;
+            }
+        }
+    }
+
+    public void setStorageFacade(StorageFacade storageFacade) {
+        this.storageFacade = storageFacade;
+    }
+
+    int offsetOf(int col) {
+        return offsets[col];
+    }
+
+    private long fixedAddressOf(int col) {
+        assert offsets[col] >= 0;
+        return address + 4 + Unsafe.arrayGet(offsets, col);
+    }
+
+    private CharSequence str(int col, DirectCharSequence cs) {
+        long readAddress = varAddressOf(col);
+        int len = Unsafe.getUnsafe().getInt(readAddress);
+        if (len < 0) {
+            return null;
+        }
+        return cs.of(readAddress + 4, readAddress + 4 + len * 2);
+    }
+
+    private long varAddressOf(int col) {
+        assert offsets[col] < 0;
+        return Unsafe.arrayGet(varAddresses, -Unsafe.arrayGet(offsets, col) - 1);
+    }
+
+    private static class DirectMemoryStream extends DirectInputStream {
+        private final long address;
+        private final long length;
+        private long position;
+
+        private DirectMemoryStream(long address, long length) {
+            this.address = address;
+            this.length = length;
+        }
+
+        @Override
+        public long copyTo(long address, long start, long length) {
+            if (start < 0 || length < 0) {
+                throw new IndexOutOfBoundsException();
+            }
+            long rem = this.length - start;
+            long size = length > rem ? rem : length;
+            if (size > 0) {
+                Unsafe.getUnsafe().copyMemory(this.address + start, address, size);
+            }
+            return size;
+        }
+
+        @Override
+        public long size() {
+            return length - position;
+        }
+
+        @Override
+        public int read() {
+            return position < length ? Unsafe.getUnsafe().getByte(address + position++) & 0xff : -1;
+        }
+    }
+}
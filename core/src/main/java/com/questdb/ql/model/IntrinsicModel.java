@@ -27,13 +27,28 @@ import com.questdb.misc.Dates;
 import com.questdb.ql.impl.interval.IntervalSource;
 import com.questdb.std.CharSequenceHashSet;
 import com.questdb.std.IntList;
+import com.questdb.std.LongList;
 import com.questdb.std.Mutable;
+import com.questdb.std.ObjList;
 import com.questdb.std.ObjectFactory;
 
 public class IntrinsicModel implements Mutable {
     public static final IntrinsicModelFactory FACTORY = new IntrinsicModelFactory();
     public final CharSequenceHashSet keyValues = new CharSequenceHashSet();
     public final IntList keyValuePositions = new IntList();
+    /**
+     * Value ranges of numeric columns implied by filter. Ranges do not replace filter,
+     * they are used to skip partition blocks by zone map.
+     */
+    public final IntList zoneColumns = new IntList();
+    public final LongList zoneLo = new LongList();
+    public final LongList zoneHi = new LongList();
+    /**
+     * Single values of further indexed symbol columns. Rows of key column value are intersected
+     * with rows of these values by index.
+     */
+    public final ObjList<String> extraKeyColumns = new ObjList<>();
+    public final ObjList<String> extraKeyValues = new ObjList<>();
     public String keyColumn;
     public long intervalLo = Long.MIN_VALUE;
     public long intervalHi = Long.MAX_VALUE;
@@ -57,6 +72,11 @@ public class IntrinsicModel implements Mutable {
         intervalSource = null;
         intrinsicValue = IntrinsicValue.UNDEFINED;
         keyValuesIsLambda = false;
+        zoneColumns.clear();
+        zoneLo.clear();
+        zoneHi.clear();
+        extraKeyColumns.clear();
+        extraKeyValues.clear();
     }
 
     public void clearInterval() {
@@ -78,6 +98,25 @@ public class IntrinsicModel implements Mutable {
         }
     }
 
+    public void overlapZone(int columnIndex, long lo, long hi) {
+        for (int i = 0, n = zoneColumns.size(); i < n; i++) {
+            if (zoneColumns.getQuick(i) == columnIndex) {
+                long l = Math.max(lo, zoneLo.getQuick(i));
+                long h = Math.min(hi, zoneHi.getQuick(i));
+                if (l > h) {
+                    intrinsicValue = IntrinsicValue.FALSE;
+                } else {
+                    zoneLo.setQuick(i, l);
+                    zoneHi.setQuick(i, h);
+                }
+                return;
+            }
+        }
+        zoneColumns.add(columnIndex);
+        zoneLo.add(lo);
+        zoneHi.add(hi);
+    }
+
     @Override
     public String toString() {
         return "IntrinsicModel{" +
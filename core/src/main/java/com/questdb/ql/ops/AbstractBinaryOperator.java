@@ -36,6 +36,14 @@ public abstract class AbstractBinaryOperator extends AbstractVirtualColumn imple
         super(type);
     }
 
+    public VirtualColumn getLhs() {
+        return lhs;
+    }
+
+    public VirtualColumn getRhs() {
+        return rhs;
+    }
+
     @Override
     public boolean isConstant() {
         return lhs.isConstant() && rhs.isConstant();
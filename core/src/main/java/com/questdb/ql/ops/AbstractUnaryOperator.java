@@ -35,6 +35,10 @@ public abstract class AbstractUnaryOperator extends AbstractVirtualColumn implem
         super(type);
     }
 
+    public VirtualColumn getValue() {
+        return value;
+    }
+
     @Override
     public boolean isConstant() {
         return value.isConstant();
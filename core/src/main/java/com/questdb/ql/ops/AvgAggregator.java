@@ -69,6 +69,17 @@ public final class AvgAggregator extends AbstractUnaryOperator implements Aggreg
         }
     }
 
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        if (values.isNew()) {
+            values.putLong(countIdx, that.getLong(countIdx));
+            values.putDouble(sumIdx, that.getDouble(sumIdx));
+        } else {
+            values.putLong(countIdx, values.getLong(countIdx) + that.getLong(countIdx));
+            values.putDouble(sumIdx, values.getDouble(sumIdx) + that.getDouble(sumIdx));
+        }
+    }
+
     @Override
     public void prepare(ObjList<RecordColumnMetadata> columns, int offset) {
         columns.add(INTERNAL_COL_COUNT);
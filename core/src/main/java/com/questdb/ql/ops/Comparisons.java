@@ -0,0 +1,165 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.ops;
+
+import com.questdb.ql.ops.eq.*;
+import com.questdb.ql.ops.gt.DoubleGreaterThanOperator;
+import com.questdb.ql.ops.gt.IntGreaterThanOperator;
+import com.questdb.ql.ops.gt.LongGreaterThanOperator;
+import com.questdb.ql.ops.gte.DoubleGreaterOrEqualOperator;
+import com.questdb.ql.ops.gte.IntGreaterOrEqualOperator;
+import com.questdb.ql.ops.gte.LongGreaterOrEqualOperator;
+import com.questdb.ql.ops.lt.DoubleLessThanOperator;
+import com.questdb.ql.ops.lt.IntLessThanOperator;
+import com.questdb.ql.ops.lt.LongLessThanOperator;
+import com.questdb.ql.ops.lte.DoubleLessOrEqualOperator;
+import com.questdb.ql.ops.lte.IntLessOrEqualOperator;
+import com.questdb.ql.ops.lte.LongLessOrEqualOperator;
+import com.questdb.ql.ops.neq.*;
+
+/**
+ * Classifies comparison operators by value domain and kind of comparison. This lets
+ * filter evaluators other than virtual columns reproduce operator semantics, including
+ * treatment of nulls:
+ * <ul>
+ * <li>INT and LONG comparisons, except for "not equal", are never true when either side is null;</li>
+ * <li>DOUBLE comparisons follow IEEE rules for NaN;</li>
+ * <li>null checks (IS_NULL, NOT_NULL) have column on the left and null constant on the right.</li>
+ * </ul>
+ */
+public final class Comparisons {
+
+    public static final int EQ = 0;
+    public static final int NEQ = 1;
+    public static final int GT = 2;
+    public static final int GTE = 3;
+    public static final int LT = 4;
+    public static final int LTE = 5;
+    public static final int IS_NULL = 6;
+    public static final int NOT_NULL = 7;
+
+    public static final int DOMAIN_INT = 0;
+    public static final int DOMAIN_LONG = 1;
+    public static final int DOMAIN_DOUBLE = 2;
+    public static final int DOMAIN_SYMBOL = 3;
+
+    private Comparisons() {
+    }
+
+    /**
+     * @param vc virtual column
+     * @return code to be decoded with {@link #domainOf(int)} and {@link #kindOf(int)} or -1 when
+     * virtual column is not a known comparison operator.
+     */
+    public static int classify(VirtualColumn vc) {
+        if (vc instanceof IntEqualsOperator) {
+            return code(DOMAIN_INT, EQ);
+        } else if (vc instanceof IntNotEqualsOperator) {
+            return code(DOMAIN_INT, NEQ);
+        } else if (vc instanceof IntGreaterThanOperator) {
+            return code(DOMAIN_INT, GT);
+        } else if (vc instanceof IntGreaterOrEqualOperator) {
+            return code(DOMAIN_INT, GTE);
+        } else if (vc instanceof IntLessThanOperator) {
+            return code(DOMAIN_INT, LT);
+        } else if (vc instanceof IntLessOrEqualOperator) {
+            return code(DOMAIN_INT, LTE);
+        } else if (vc instanceof IntEqualsNaNOperator) {
+            return code(DOMAIN_INT, IS_NULL);
+        } else if (vc instanceof IntNotEqualsNaNOperator) {
+            return code(DOMAIN_INT, NOT_NULL);
+        } else if (vc instanceof LongEqualsOperator) {
+            return code(DOMAIN_LONG, EQ);
+        } else if (vc instanceof LongNotEqualsOperator) {
+            return code(DOMAIN_LONG, NEQ);
+        } else if (vc instanceof LongGreaterThanOperator) {
+            return code(DOMAIN_LONG, GT);
+        } else if (vc instanceof LongGreaterOrEqualOperator) {
+            return code(DOMAIN_LONG, GTE);
+        } else if (vc instanceof LongLessThanOperator) {
+            return code(DOMAIN_LONG, LT);
+        } else if (vc instanceof LongLessOrEqualOperator) {
+            return code(DOMAIN_LONG, LTE);
+        } else if (vc instanceof LongEqualsNaNOperator) {
+            return code(DOMAIN_LONG, IS_NULL);
+        } else if (vc instanceof LongNotEqualsNaNOperator) {
+            return code(DOMAIN_LONG, NOT_NULL);
+        } else if (vc instanceof DoubleEqualsOperator) {
+            return code(DOMAIN_DOUBLE, EQ);
+        } else if (vc instanceof DoubleNotEqualsOperator) {
+            return code(DOMAIN_DOUBLE, NEQ);
+        } else if (vc instanceof DoubleGreaterThanOperator) {
+            return code(DOMAIN_DOUBLE, GT);
+        } else if (vc instanceof DoubleGreaterOrEqualOperator) {
+            return code(DOMAIN_DOUBLE, GTE);
+        } else if (vc instanceof DoubleLessThanOperator) {
+            return code(DOMAIN_DOUBLE, LT);
+        } else if (vc instanceof DoubleLessOrEqualOperator) {
+            return code(DOMAIN_DOUBLE, LTE);
+        } else if (vc instanceof DoubleEqualsNanOperator) {
+            return code(DOMAIN_DOUBLE, IS_NULL);
+        } else if (vc instanceof DoubleNotEqualsNanOperator) {
+            return code(DOMAIN_DOUBLE, NOT_NULL);
+        } else if (vc instanceof SymEqualsOperator || vc instanceof SymEqualsROperator) {
+            return code(DOMAIN_SYMBOL, EQ);
+        } else if (vc instanceof SymNotEqualsOperator || vc instanceof SymNotEqualsROperator) {
+            return code(DOMAIN_SYMBOL, NEQ);
+        }
+        return -1;
+    }
+
+    public static int domainOf(int code) {
+        return code >>> 3;
+    }
+
+    /**
+     * Kind of comparison, which holds when operands are swapped.
+     *
+     * @param kind comparison kind
+     * @return kind with operands swapped
+     */
+    public static int flip(int kind) {
+        switch (kind) {
+            case GT:
+                return LT;
+            case GTE:
+                return LTE;
+            case LT:
+                return GT;
+            case LTE:
+                return GTE;
+            default:
+                return kind;
+        }
+    }
+
+    public static int kindOf(int code) {
+        return code & 7;
+    }
+
+    private static int code(int domain, int kind) {
+        return domain << 3 | kind;
+    }
+}
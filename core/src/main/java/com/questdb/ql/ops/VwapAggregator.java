@@ -71,6 +71,17 @@ public final class VwapAggregator extends AbstractBinaryOperator implements Aggr
         }
     }
 
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        if (values.isNew()) {
+            values.putDouble(sumAmtIdx, that.getDouble(sumAmtIdx));
+            values.putDouble(sumQtyIdx, that.getDouble(sumQtyIdx));
+        } else {
+            values.putDouble(sumAmtIdx, values.getDouble(sumAmtIdx) + that.getDouble(sumAmtIdx));
+            values.putDouble(sumQtyIdx, values.getDouble(sumQtyIdx) + that.getDouble(sumQtyIdx));
+        }
+    }
+
     @Override
     public void prepare(ObjList<RecordColumnMetadata> columns, int offset) {
         columns.add(INTERNAL_COL_AMOUNT);
@@ -41,6 +41,10 @@ public class DateRecordSourceColumn extends AbstractVirtualColumn {
         return rec.getDate(index);
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public long getLong(Record rec) {
         return rec.getLong(index);
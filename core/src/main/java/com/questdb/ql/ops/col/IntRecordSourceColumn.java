@@ -48,6 +48,10 @@ public class IntRecordSourceColumn extends AbstractVirtualColumn {
         return v != Integer.MIN_VALUE ? v : Float.NaN;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public int getInt(Record rec) {
         return rec.getInt(index);
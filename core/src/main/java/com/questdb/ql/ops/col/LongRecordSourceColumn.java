@@ -42,6 +42,10 @@ public class LongRecordSourceColumn extends AbstractVirtualColumn {
         return v != Long.MIN_VALUE ? v : Double.NaN;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public long getLong(Record rec) {
         return rec.getLong(index);
@@ -50,6 +50,10 @@ public class SymRecordSourceColumn extends AbstractVirtualColumn {
         return rec.getSym(index);
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public int getInt(Record rec) {
         return rec.getInt(index);
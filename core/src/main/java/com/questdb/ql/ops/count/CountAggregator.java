@@ -59,6 +59,15 @@ public final class CountAggregator extends AbstractVirtualColumn implements Aggr
         }
     }
 
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        if (values.isNew()) {
+            values.putLong(index, that.getLong(index));
+        } else {
+            values.putLong(index, values.getLong(index) + that.getLong(index));
+        }
+    }
+
     @Override
     public void prepare(ObjList<RecordColumnMetadata> columns, int offset) {
         columns.add(this);
@@ -52,4 +52,13 @@ public final class CountDoubleAggregator extends AbstractUnaryAggregator {
             values.putLong(valueIndex, values.getLong(valueIndex) + 1);
         }
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        if (values.isNew()) {
+            values.putLong(valueIndex, that.getLong(valueIndex));
+        } else {
+            values.putLong(valueIndex, values.getLong(valueIndex) + that.getLong(valueIndex));
+        }
+    }
 }
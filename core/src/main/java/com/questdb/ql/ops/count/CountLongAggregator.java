@@ -53,4 +53,13 @@ public final class CountLongAggregator extends AbstractUnaryAggregator {
             values.putLong(valueIndex, values.getLong(valueIndex) + 1);
         }
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        if (values.isNew()) {
+            values.putLong(valueIndex, that.getLong(valueIndex));
+        } else {
+            values.putLong(valueIndex, values.getLong(valueIndex) + that.getLong(valueIndex));
+        }
+    }
 }
@@ -49,4 +49,11 @@ public final class FirstDoubleAggregator extends AbstractUnaryAggregator {
             values.putDouble(valueIndex, value.getDouble(rec));
         }
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        if (values.isNew()) {
+            values.putDouble(valueIndex, that.getDouble(valueIndex));
+        }
+    }
 }
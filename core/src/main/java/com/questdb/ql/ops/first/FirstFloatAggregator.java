@@ -49,4 +49,11 @@ public final class FirstFloatAggregator extends AbstractUnaryAggregator {
             values.putFloat(valueIndex, value.getFloat(rec));
         }
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        if (values.isNew()) {
+            values.putFloat(valueIndex, that.getFloat(valueIndex));
+        }
+    }
 }
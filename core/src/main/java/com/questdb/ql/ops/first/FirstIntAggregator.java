@@ -49,4 +49,11 @@ public final class FirstIntAggregator extends AbstractUnaryAggregator {
             values.putInt(valueIndex, value.getInt(rec));
         }
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        if (values.isNew()) {
+            values.putInt(valueIndex, that.getInt(valueIndex));
+        }
+    }
 }
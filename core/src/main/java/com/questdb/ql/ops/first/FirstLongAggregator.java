@@ -49,4 +49,11 @@ public final class FirstLongAggregator extends AbstractUnaryAggregator {
             values.putLong(valueIndex, value.getLong(rec));
         }
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        if (values.isNew()) {
+            values.putLong(valueIndex, that.getLong(valueIndex));
+        }
+    }
 }
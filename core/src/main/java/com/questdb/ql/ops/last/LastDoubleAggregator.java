@@ -47,4 +47,9 @@ public final class LastDoubleAggregator extends AbstractUnaryAggregator {
     public void calculate(Record rec, MapValues values) {
         values.putDouble(valueIndex, value.getDouble(rec));
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        values.putDouble(valueIndex, that.getDouble(valueIndex));
+    }
 }
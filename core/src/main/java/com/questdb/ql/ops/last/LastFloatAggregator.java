@@ -47,4 +47,9 @@ public final class LastFloatAggregator extends AbstractUnaryAggregator {
     public void calculate(Record rec, MapValues values) {
         values.putFloat(valueIndex, value.getFloat(rec));
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        values.putFloat(valueIndex, that.getFloat(valueIndex));
+    }
 }
@@ -47,4 +47,9 @@ public final class LastIntAggregator extends AbstractUnaryAggregator {
     public void calculate(Record rec, MapValues values) {
         values.putInt(valueIndex, value.getInt(rec));
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        values.putInt(valueIndex, that.getInt(valueIndex));
+    }
 }
@@ -47,4 +47,9 @@ public final class LastLongAggregator extends AbstractUnaryAggregator {
     public void calculate(Record rec, MapValues values) {
         values.putLong(valueIndex, value.getLong(rec));
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        values.putLong(valueIndex, that.getLong(valueIndex));
+    }
 }
@@ -49,4 +49,12 @@ public final class MinDateAggregator extends AbstractUnaryAggregator {
             values.putLong(valueIndex, v);
         }
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        long v = that.getLong(valueIndex);
+        if (values.isNew() || v < values.getLong(valueIndex)) {
+            values.putLong(valueIndex, v);
+        }
+    }
 }
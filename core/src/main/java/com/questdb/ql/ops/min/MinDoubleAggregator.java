@@ -50,4 +50,12 @@ public final class MinDoubleAggregator extends AbstractUnaryAggregator {
             values.putDouble(valueIndex, v);
         }
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        double v = that.getDouble(valueIndex);
+        if (values.isNew() || v < values.getDouble(valueIndex)) {
+            values.putDouble(valueIndex, v);
+        }
+    }
 }
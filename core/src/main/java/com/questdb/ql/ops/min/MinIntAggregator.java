@@ -49,4 +49,12 @@ public final class MinIntAggregator extends AbstractUnaryAggregator {
             values.putInt(valueIndex, v);
         }
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        int v = that.getInt(valueIndex);
+        if (values.isNew() || v < values.getInt(valueIndex)) {
+            values.putInt(valueIndex, v);
+        }
+    }
 }
@@ -51,4 +51,13 @@ public final class SumDoubleAggregator extends AbstractUnaryAggregator {
             values.putDouble(valueIndex, values.getDouble(valueIndex) + value.getDouble(rec));
         }
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        if (values.isNew()) {
+            values.putDouble(valueIndex, that.getDouble(valueIndex));
+        } else {
+            values.putDouble(valueIndex, values.getDouble(valueIndex) + that.getDouble(valueIndex));
+        }
+    }
 }
@@ -50,4 +50,13 @@ public final class SumIntAggregator extends AbstractUnaryAggregator {
             values.putInt(valueIndex, values.getInt(valueIndex) + value.getInt(rec));
         }
     }
+
+    @Override
+    public void merge(MapValues that, MapValues values) {
+        if (values.isNew()) {
+            values.putInt(valueIndex, that.getInt(valueIndex));
+        } else {
+            values.putInt(valueIndex, values.getInt(valueIndex) + that.getInt(valueIndex));
+        }
+    }
 }
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.ops.vector;
+
+import com.questdb.ql.StorageFacade;
+import com.questdb.ql.impl.JournalRecord;
+import com.questdb.ql.ops.Comparisons;
+import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.store.ColumnType;
+import com.questdb.store.FixedColumn;
+
+/**
+ * Compares DOUBLE, INT or LONG column against constant. Integer nulls are
+ * converted to NaN same way record source columns do it.
+ */
+class DoubleVectorFilter implements VectorFilter {
+    private final int columnIndex;
+    private final ColumnType columnType;
+    private final int op;
+    private final VirtualColumn constant;
+    private final double[] values = new double[VectorFilters.BLOCK_SIZE];
+    private double value;
+
+    DoubleVectorFilter(int columnIndex, ColumnType columnType, int op, VirtualColumn constant) {
+        this.columnIndex = columnIndex;
+        this.columnType = columnType;
+        this.op = op;
+        this.constant = constant;
+    }
+
+    @Override
+    public void prepare(StorageFacade facade) {
+        value = constant == null ? Double.NaN : constant.getDouble(null);
+    }
+
+    @Override
+    public void select(JournalRecord rec, long[] rows, int count, long[] bits) {
+        final FixedColumn column = rec.partition.fixCol(columnIndex);
+        final double[] values = this.values;
+        final double value = this.value;
+
+        switch (columnType) {
+            case INT:
+                for (int i = 0; i < count; i++) {
+                    int v = column.getInt(rows[i]);
+                    values[i] = v != Integer.MIN_VALUE ? v : Double.NaN;
+                }
+                break;
+            case LONG:
+                for (int i = 0; i < count; i++) {
+                    long v = column.getLong(rows[i]);
+                    values[i] = v != Long.MIN_VALUE ? v : Double.NaN;
+                }
+                break;
+            default:
+                for (int i = 0; i < count; i++) {
+                    values[i] = column.getDouble(rows[i]);
+                }
+                break;
+        }
+
+        // comparisons are written so that NaN fails them the same way it fails interpreted operators
+        switch (op) {
+            case Comparisons.EQ:
+                for (int i = 0; i < count; i++) {
+                    if (!(values[i] == value)) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+            case Comparisons.NEQ:
+                for (int i = 0; i < count; i++) {
+                    if (!(values[i] != value)) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+            case Comparisons.GT:
+                for (int i = 0; i < count; i++) {
+                    if (!(values[i] > value)) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+            case Comparisons.GTE:
+                for (int i = 0; i < count; i++) {
+                    if (!(values[i] >= value)) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+            case Comparisons.LT:
+                for (int i = 0; i < count; i++) {
+                    if (!(values[i] < value)) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+            case Comparisons.LTE:
+                for (int i = 0; i < count; i++) {
+                    if (!(values[i] <= value)) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+            case Comparisons.IS_NULL:
+                for (int i = 0; i < count; i++) {
+                    double v = values[i];
+                    if (v == v) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+            default:
+                for (int i = 0; i < count; i++) {
+                    double v = values[i];
+                    if (v != v) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+        }
+    }
+}
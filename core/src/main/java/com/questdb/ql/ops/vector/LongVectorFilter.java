@@ -0,0 +1,155 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.ops.vector;
+
+import com.questdb.ql.StorageFacade;
+import com.questdb.ql.impl.JournalRecord;
+import com.questdb.ql.ops.Comparisons;
+import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.store.FixedColumn;
+
+/**
+ * Compares INT, LONG or DATE column against constant. INT values are widened
+ * before comparison with INT null becoming LONG null, which preserves null semantics
+ * of both INT and LONG operators.
+ */
+class LongVectorFilter implements VectorFilter {
+    private final int columnIndex;
+    private final boolean intColumn;
+    private final int op;
+    private final VirtualColumn constant;
+    private final boolean intConstant;
+    private final long[] values = new long[VectorFilters.BLOCK_SIZE];
+    private long value;
+
+    LongVectorFilter(int columnIndex, boolean intColumn, int op, VirtualColumn constant, boolean intConstant) {
+        this.columnIndex = columnIndex;
+        this.intColumn = intColumn;
+        this.op = op;
+        this.constant = constant;
+        this.intConstant = intConstant;
+    }
+
+    @Override
+    public void prepare(StorageFacade facade) {
+        // constant can be a parameter, so its value is only known at this point
+        if (constant == null) {
+            value = Long.MIN_VALUE;
+        } else if (intConstant) {
+            int v = constant.getInt(null);
+            value = v == Integer.MIN_VALUE ? Long.MIN_VALUE : v;
+        } else {
+            value = constant.getLong(null);
+        }
+    }
+
+    @Override
+    public void select(JournalRecord rec, long[] rows, int count, long[] bits) {
+        final FixedColumn column = rec.partition.fixCol(columnIndex);
+        final long[] values = this.values;
+        final long value = this.value;
+
+        if (intColumn) {
+            for (int i = 0; i < count; i++) {
+                int v = column.getInt(rows[i]);
+                values[i] = v == Integer.MIN_VALUE ? Long.MIN_VALUE : v;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                values[i] = column.getLong(rows[i]);
+            }
+        }
+
+        switch (op) {
+            case Comparisons.EQ:
+                for (int i = 0; i < count; i++) {
+                    long v = values[i];
+                    if (v != value || v == Long.MIN_VALUE) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+            case Comparisons.NEQ:
+                for (int i = 0; i < count; i++) {
+                    if (values[i] == value) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+            case Comparisons.GT:
+                if (value == Long.MIN_VALUE) {
+                    VectorFilters.clearAll(bits, count);
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        if (values[i] <= value) {
+                            VectorFilters.clear(bits, i);
+                        }
+                    }
+                }
+                break;
+            case Comparisons.GTE:
+                if (value == Long.MIN_VALUE) {
+                    VectorFilters.clearAll(bits, count);
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        if (values[i] < value) {
+                            VectorFilters.clear(bits, i);
+                        }
+                    }
+                }
+                break;
+            case Comparisons.LT:
+                for (int i = 0; i < count; i++) {
+                    long v = values[i];
+                    if (v >= value || v == Long.MIN_VALUE) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+            case Comparisons.LTE:
+                for (int i = 0; i < count; i++) {
+                    long v = values[i];
+                    if (v > value || v == Long.MIN_VALUE) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+            case Comparisons.IS_NULL:
+                for (int i = 0; i < count; i++) {
+                    if (values[i] != Long.MIN_VALUE) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+            default:
+                for (int i = 0; i < count; i++) {
+                    if (values[i] == Long.MIN_VALUE) {
+                        VectorFilters.clear(bits, i);
+                    }
+                }
+                break;
+        }
+    }
+}
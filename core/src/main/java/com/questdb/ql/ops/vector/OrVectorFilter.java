@@ -0,0 +1,65 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.ops.vector;
+
+import com.questdb.ql.StorageFacade;
+import com.questdb.ql.impl.JournalRecord;
+
+class OrVectorFilter implements VectorFilter {
+    private final VectorFilter lhs;
+    private final VectorFilter rhs;
+    private final long[] rest = new long[VectorFilters.wordCount(VectorFilters.BLOCK_SIZE)];
+
+    OrVectorFilter(VectorFilter lhs, VectorFilter rhs) {
+        this.lhs = lhs;
+        this.rhs = rhs;
+    }
+
+    @Override
+    public void prepare(StorageFacade facade) {
+        lhs.prepare(facade);
+        rhs.prepare(facade);
+    }
+
+    @Override
+    public void select(JournalRecord rec, long[] rows, int count, long[] bits) {
+        int n = VectorFilters.wordCount(count);
+        System.arraycopy(bits, 0, rest, 0, n);
+        lhs.select(rec, rows, count, bits);
+
+        // rhs only needs to look at candidates lhs has rejected
+        boolean any = false;
+        for (int i = 0; i < n; i++) {
+            any |= (rest[i] &= ~bits[i]) != 0;
+        }
+
+        if (any) {
+            rhs.select(rec, rows, count, rest);
+            for (int i = 0; i < n; i++) {
+                bits[i] |= rest[i];
+            }
+        }
+    }
+}
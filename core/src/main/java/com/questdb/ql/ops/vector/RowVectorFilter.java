@@ -0,0 +1,58 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.ops.vector;
+
+import com.questdb.ql.StorageFacade;
+import com.questdb.ql.impl.JournalRecord;
+import com.questdb.ql.ops.VirtualColumn;
+
+/**
+ * Fallback for expressions that have no vector implementation. Evaluates
+ * underlying virtual column one candidate row at a time.
+ */
+class RowVectorFilter implements VectorFilter {
+    private final VirtualColumn filter;
+
+    RowVectorFilter(VirtualColumn filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public void prepare(StorageFacade facade) {
+        // virtual column is prepared by the owner of the filter
+    }
+
+    @Override
+    public void select(JournalRecord rec, long[] rows, int count, long[] bits) {
+        for (int i = 0; i < count; i++) {
+            if (VectorFilters.isSet(bits, i)) {
+                rec.rowid = rows[i];
+                if (!filter.getBool(rec)) {
+                    VectorFilters.clear(bits, i);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.ops.vector;
+
+import com.questdb.misc.Numbers;
+import com.questdb.ql.StorageFacade;
+import com.questdb.ql.impl.JournalRecord;
+import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.store.FixedColumn;
+import com.questdb.store.SymbolTable;
+
+/**
+ * Matches symbol column against constant by comparing symbol keys, which are
+ * stored in fixed column. Key is resolved when filter is prepared.
+ */
+class SymVectorFilter implements VectorFilter {
+    private final int columnIndex;
+    private final VirtualColumn column;
+    private final VirtualColumn constant;
+    private final boolean equals;
+    private int key = SymbolTable.VALUE_NOT_FOUND;
+
+    SymVectorFilter(int columnIndex, VirtualColumn column, VirtualColumn constant, boolean equals) {
+        this.columnIndex = columnIndex;
+        this.column = column;
+        this.constant = constant;
+        this.equals = equals;
+    }
+
+    @Override
+    public void prepare(StorageFacade facade) {
+        this.key = column.getSymbolTable().getQuick(constant.getFlyweightStr(null));
+    }
+
+    @Override
+    public void select(JournalRecord rec, long[] rows, int count, long[] bits) {
+        final FixedColumn fixCol = rec.partition.fixCol(columnIndex);
+        final int key = this.key;
+        final int alt = key == SymbolTable.VALUE_IS_NULL ? Numbers.INT_NaN : key;
+        final boolean equals = this.equals;
+
+        for (int i = 0; i < count; i++) {
+            int k = fixCol.getInt(rows[i]);
+            if ((k == key || k == alt) != equals) {
+                VectorFilters.clear(bits, i);
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.ops.vector;
+
+import com.questdb.ql.ops.*;
+import com.questdb.ql.ops.col.*;
+import com.questdb.store.ColumnType;
+
+/**
+ * Translates boolean virtual column tree into vector filter. Comparisons of
+ * fixed width columns against constants are evaluated by kernels that read column
+ * memory directly. AND, OR and NOT are mapped onto selection bitmap operations and
+ * any other expression is evaluated row by row for the candidates that reach it.
+ */
+public final class VectorFilters {
+
+    public static final int BLOCK_SIZE = 1024;
+
+    private VectorFilters() {
+    }
+
+    /**
+     * Creates vector filter for given boolean virtual column.
+     *
+     * @param filter boolean virtual column
+     * @return vector filter or null when no part of filter can be vectorized, in which case
+     * filter is best evaluated one row at a time.
+     */
+    public static VectorFilter compile(VirtualColumn filter) {
+        VectorFilter f = compile0(filter);
+        return f instanceof RowVectorFilter ? null : f;
+    }
+
+    public static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public static void setAll(long[] bits, int count) {
+        int n = count >>> 6;
+        for (int i = 0; i < n; i++) {
+            bits[i] = -1L;
+        }
+        if ((count & 63) != 0) {
+            bits[n] = (1L << count) - 1;
+        }
+    }
+
+    public static int wordCount(int count) {
+        return (count + 63) >>> 6;
+    }
+
+    static boolean any(long[] bits, int count) {
+        for (int i = 0, n = wordCount(count); i < n; i++) {
+            if (bits[i] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static void clear(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    static void clearAll(long[] bits, int count) {
+        for (int i = 0, n = wordCount(count); i < n; i++) {
+            bits[i] = 0;
+        }
+    }
+
+    private static VectorFilter compile0(VirtualColumn vc) {
+        if (vc instanceof AndOperator) {
+            AndOperator and = (AndOperator) vc;
+            VectorFilter lhs = compile0(and.getLhs());
+            VectorFilter rhs = compile0(and.getRhs());
+            return lhs instanceof RowVectorFilter && rhs instanceof RowVectorFilter ? new RowVectorFilter(vc) : new AndVectorFilter(lhs, rhs);
+        }
+
+        if (vc instanceof OrOperator) {
+            OrOperator or = (OrOperator) vc;
+            VectorFilter lhs = compile0(or.getLhs());
+            VectorFilter rhs = compile0(or.getRhs());
+            return lhs instanceof RowVectorFilter && rhs instanceof RowVectorFilter ? new RowVectorFilter(vc) : new OrVectorFilter(lhs, rhs);
+        }
+
+        if (vc instanceof NotOperator) {
+            VectorFilter value = compile0(((NotOperator) vc).getValue());
+            return value instanceof RowVectorFilter ? new RowVectorFilter(vc) : new NotVectorFilter(value);
+        }
+
+        if (vc instanceof AbstractBinaryOperator) {
+            VectorFilter f = compileComparison((AbstractBinaryOperator) vc);
+            if (f != null) {
+                return f;
+            }
+        }
+        return new RowVectorFilter(vc);
+    }
+
+    private static VectorFilter compileComparison(AbstractBinaryOperator op) {
+        int code = Comparisons.classify(op);
+        if (code == -1) {
+            return null;
+        }
+
+        int domain = Comparisons.domainOf(code);
+        int kind = Comparisons.kindOf(code);
+        VirtualColumn lhs = op.getLhs();
+        VirtualColumn rhs = op.getRhs();
+
+        switch (kind) {
+            case Comparisons.IS_NULL:
+            case Comparisons.NOT_NULL:
+                return createKernel(domain, lhs, kind, null);
+            default:
+                break;
+        }
+
+        if (rhs.isConstant() && !lhs.isConstant()) {
+            return createKernel(domain, lhs, kind, rhs);
+        }
+
+        if (lhs.isConstant() && !rhs.isConstant()) {
+            return createKernel(domain, rhs, Comparisons.flip(kind), lhs);
+        }
+        return null;
+    }
+
+    private static VectorFilter createKernel(int domain, VirtualColumn column, int op, VirtualColumn constant) {
+        switch (domain) {
+            case Comparisons.DOMAIN_SYMBOL:
+                if (column instanceof SymRecordSourceColumn) {
+                    return new SymVectorFilter(((SymRecordSourceColumn) column).getIndex(), column, constant, op == Comparisons.EQ);
+                }
+                break;
+            case Comparisons.DOMAIN_INT:
+                if (column instanceof IntRecordSourceColumn) {
+                    return new LongVectorFilter(((IntRecordSourceColumn) column).getIndex(), true, op, constant, true);
+                }
+                break;
+            case Comparisons.DOMAIN_LONG:
+                if (column instanceof IntRecordSourceColumn) {
+                    return new LongVectorFilter(((IntRecordSourceColumn) column).getIndex(), true, op, constant, false);
+                }
+
+                if (column instanceof LongRecordSourceColumn) {
+                    return new LongVectorFilter(((LongRecordSourceColumn) column).getIndex(), false, op, constant, false);
+                }
+
+                if (column instanceof DateRecordSourceColumn) {
+                    return new LongVectorFilter(((DateRecordSourceColumn) column).getIndex(), false, op, constant, false);
+                }
+                break;
+            default:
+                if (column instanceof IntRecordSourceColumn) {
+                    return new DoubleVectorFilter(((IntRecordSourceColumn) column).getIndex(), ColumnType.INT, op, constant);
+                }
+
+                if (column instanceof LongRecordSourceColumn) {
+                    return new DoubleVectorFilter(((LongRecordSourceColumn) column).getIndex(), ColumnType.LONG, op, constant);
+                }
+
+                if (column instanceof DoubleRecordSourceColumn) {
+                    return new DoubleVectorFilter(((DoubleRecordSourceColumn) column).getIndex(), ColumnType.DOUBLE, op, constant);
+                }
+                break;
+        }
+        return null;
+    }
+}
@@ -40,6 +40,7 @@ import com.questdb.ql.*;
 import com.questdb.ql.impl.*;
 import com.questdb.ql.impl.aggregation.*;
 import com.questdb.ql.impl.analytic.*;
+import com.questdb.ql.impl.filter.FilterCompiler;
 import com.questdb.ql.impl.interval.IntervalRecordSource;
 import com.questdb.ql.impl.interval.MultiIntervalPartitionSource;
 import com.questdb.ql.impl.interval.SingleIntervalSource;
@@ -47,10 +48,13 @@ import com.questdb.ql.impl.join.AsOfJoinRecordSource;
 import com.questdb.ql.impl.join.AsOfPartitionedJoinRecordSource;
 import com.questdb.ql.impl.join.CrossJoinRecordSource;
 import com.questdb.ql.impl.join.HashJoinRecordSource;
+import com.questdb.ql.impl.join.MergeJoinRecordSource;
 import com.questdb.ql.impl.lambda.*;
 import com.questdb.ql.impl.latest.*;
+import com.questdb.ql.impl.parallel.ParallelJournalSource;
 import com.questdb.ql.impl.select.SelectedColumnsRecordSource;
 import com.questdb.ql.impl.sort.ComparatorCompiler;
+import com.questdb.ql.impl.sort.HeapSortedRecordSource;
 import com.questdb.ql.impl.sort.RBTreeSortedRecordSource;
 import com.questdb.ql.impl.virtual.VirtualColumnRecordSource;
 import com.questdb.ql.model.*;
@@ -116,6 +120,7 @@ public class QueryCompiler {
     private final ObjList<QueryColumn> outerVirtualColumns = new ObjList<>();
     private final ObjHashSet<String> groupKeyColumns = new ObjHashSet<>();
     private final ComparatorCompiler cc = new ComparatorCompiler();
+    private final FilterCompiler fc = new FilterCompiler();
     private final LiteralMatcher literalMatcher = new LiteralMatcher(traversalAlgo);
     private final ServerConfiguration configuration;
 
@@ -484,6 +489,46 @@ public class QueryCompiler {
         assert postFilterRemoved.size() == pc;
     }
 
+    private RowSource buildIntersectRowSource(IntrinsicModel im) {
+        ObjList<String> symbols = new ObjList<>();
+        ObjList<String> values = new ObjList<>();
+        symbols.add(im.keyColumn);
+        values.add(Chars.toString(im.keyValues.getLast()));
+        for (int i = 0, n = im.extraKeyColumns.size(); i < n; i++) {
+            symbols.add(im.extraKeyColumns.getQuick(i));
+            values.add(im.extraKeyValues.getQuick(i));
+        }
+        return new KvIndexSymIntersectRowSource(symbols, values);
+    }
+
+    private RowSource buildRowSource(IntrinsicModel im, JournalMetadata metadata, VirtualColumn filter) throws ParserException {
+        RowSource rs = null;
+        if (im.keyColumn != null) {
+            switch (metadata.getColumn(im.keyColumn).getType()) {
+                case SYMBOL:
+                    if (im.extraKeyColumns.size() > 0) {
+                        rs = buildIntersectRowSource(im);
+                    } else {
+                        rs = buildRowSourceForSym(im, metadata.getColumnQuick(metadata.getColumnIndex(im.keyColumn)).bitmapIndex);
+                    }
+                    break;
+                case STRING:
+                    rs = buildRowSourceForStr(im);
+                    break;
+                case INT:
+                    rs = buildRowSourceForInt(im);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (filter != null) {
+            rs = new FilteredRowSource(rs == null ? new AllRowSource() : rs, filter);
+        }
+        return rs;
+    }
+
     private RowSource buildRowSourceForInt(IntrinsicModel im) throws ParserException {
         int nSrc = im.keyValues.size();
         switch (nSrc) {
@@ -522,8 +567,11 @@ public class QueryCompiler {
         }
     }
 
-    private RowSource buildRowSourceForSym(IntrinsicModel im) {
+    private RowSource buildRowSourceForSym(IntrinsicModel im, boolean bitmapIndex) {
         int nSrc = im.keyValues.size();
+        if (nSrc > 1 && bitmapIndex) {
+            return new KvIndexSymListLookupRowSource(im.keyColumn, new CharSequenceHashSet(im.keyValues));
+        }
         switch (nSrc) {
             case 1:
                 return new KvIndexSymLookupRowSource(im.keyColumn, Chars.toString(im.keyValues.getLast()));
@@ -564,6 +612,7 @@ public class QueryCompiler {
         ObjList<QueryModel> joinModels = model.getJoinModels();
         IntList ordered = model.getOrderedJoinModels();
         RecordSource master = null;
+        CharSequence masterTimestamp = null;
 
         boolean needColumnNameHistogram = model.getColumns().size() > 0;
 
@@ -589,6 +638,8 @@ public class QueryCompiler {
             // check if this is the root of joins
             if (master == null) {
                 master = slave;
+                // joins below stream master in order, so order of root records is kept
+                masterTimestamp = getOrderingTimestamp(m, master);
             } else {
                 // not the root, join to "master"
                 switch (m.getJoinType()) {
@@ -600,7 +651,16 @@ public class QueryCompiler {
                         master = createAsOfJoin(model.getTimestamp(), m, master, slave);
                         break;
                     default:
-                        master = createHashJoin(m, master, slave);
+                        // merge join relies on master records being in ascending timestamp order
+                        if (isOrderPreserving(master) && isMergeJoin(m, ordered.getQuick(0), masterTimestamp, getOrderingTimestamp(m, slave))) {
+                            master = createMergeJoin(m, master, slave);
+                        } else {
+                            HashJoinRecordSource hj = createHashJoin(m, master, slave, isOrderDependent(model) || hasAsOfJoin(model, i + 1));
+                            if (!hj.isOrderPreserving()) {
+                                masterTimestamp = null;
+                            }
+                            master = hj;
+                        }
                         break;
                 }
             }
@@ -608,7 +668,7 @@ public class QueryCompiler {
             // check if there are post-filters
             ExprNode filter = m.getPostJoinWhereClause();
             if (filter != null) {
-                master = new FilteredJournalRecordSource(master, virtualColumnBuilder.createVirtualColumn(model, filter, master.getMetadata()), filter);
+                master = new FilteredJournalRecordSource(master, fc.compile(FilteredJournalRecordSource.class, virtualColumnBuilder.createVirtualColumn(model, filter, master.getMetadata())), filter);
             }
         }
 
@@ -643,6 +703,7 @@ public class QueryCompiler {
 
         PartitionSource ps = new JournalPartitionSource(journalMetadata, true);
         RowSource rs = null;
+        ObjList<RowSource> parallelRowSources = null;
 
         String latestByCol = null;
         RecordColumnMetadata latestByMetadata = null;
@@ -712,26 +773,22 @@ public class QueryCompiler {
                     ps = new MultiIntervalPartitionSource(ps, im.intervalSource);
                 }
 
+                if (latestByCol == null && im.zoneColumns.size() > 0) {
+                    ps = new ZoneMapPartitionSource(ps, im.zoneColumns, im.zoneLo, im.zoneHi);
+                }
+
                 if (latestByCol == null) {
-                    if (im.keyColumn != null) {
-                        switch (journalMetadata.getColumn(im.keyColumn).getType()) {
-                            case SYMBOL:
-                                rs = buildRowSourceForSym(im);
-                                break;
-                            case STRING:
-                                rs = buildRowSourceForStr(im);
-                                break;
-                            case INT:
-                                rs = buildRowSourceForInt(im);
-                                break;
-                            default:
-                                break;
+                    rs = buildRowSource(im, journalMetadata, filter);
+
+                    int workers = configuration.getDbScanWorkers();
+                    if (workers > 1 && (filter != null || isParallelAggregate(model))) {
+                        // row sources and filters are stateful, each worker gets its own copy
+                        parallelRowSources = new ObjList<>(workers);
+                        parallelRowSources.add(rs);
+                        for (int i = 1; i < workers; i++) {
+                            parallelRowSources.add(buildRowSource(im, journalMetadata, filter == null ? null : virtualColumnBuilder.createVirtualColumn(model, im.filter, journalMetadata)));
                         }
                     }
-
-                    if (filter != null) {
-                        rs = new FilteredRowSource(rs == null ? new AllRowSource() : rs, filter);
-                    }
                 } else {
                     if (im.keyColumn != null && im.keyValuesIsLambda) {
                         int lambdaColIndex;
@@ -810,6 +867,18 @@ public class QueryCompiler {
                 return new CountRecordSource(qc.getAlias() == null ? "count" : qc.getAlias(), ps);
             }
         }
+
+        if (rs == null && latestByCol == null && configuration.getDbScanWorkers() > 1 && isParallelAggregate(model)) {
+            int workers = configuration.getDbScanWorkers();
+            parallelRowSources = new ObjList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                parallelRowSources.add(new AllRowSource());
+            }
+        }
+
+        if (parallelRowSources != null) {
+            return new ParallelJournalSource(ps, parallelRowSources, isOrderDependent(model));
+        }
         return new JournalSource(ps, rs == null ? new AllRowSource() : rs);
     }
 
@@ -863,7 +932,7 @@ public class QueryCompiler {
                             return new NoOpJournalRecordSource(rs);
                         }
                     }
-                    return new FilteredJournalRecordSource(rs, vc, im.filter);
+                    return new FilteredJournalRecordSource(rs, fc.compile(FilteredJournalRecordSource.class, vc), im.filter);
                 } else {
                     return rs;
                 }
@@ -931,7 +1000,18 @@ public class QueryCompiler {
         }
     }
 
-    private RecordSource createHashJoin(QueryModel model, RecordSource master, RecordSource slave) throws ParserException {
+    /**
+     * Creates hash join with memory budget, which join keeps to by partitioning its input.
+     * Ordered join merges partitions back in order of master records.
+     *
+     * @param model   join model
+     * @param master  master source
+     * @param slave   slave source
+     * @param ordered true when records are consumed in order
+     * @return hash join record source
+     * @throws ParserException when types of join columns do not match
+     */
+    private HashJoinRecordSource createHashJoin(QueryModel model, RecordSource master, RecordSource slave, boolean ordered) throws ParserException {
         JoinContext jc = model.getContext();
         RecordMetadata bm = master.getMetadata();
         RecordMetadata am = slave.getMetadata();
@@ -967,6 +1047,20 @@ public class QueryCompiler {
                 model.getJoinType() == QueryModel.JoinType.OUTER,
                 configuration.getDbHashKeyPage(),
                 configuration.getDbHashDataPage(),
+                configuration.getDbHashRowPage(),
+                configuration.getDbMapBudget(),
+                ordered
+        );
+    }
+
+    private RecordSource createMergeJoin(QueryModel model, RecordSource master, RecordSource slave) {
+        JoinContext jc = model.getContext();
+        return new MergeJoinRecordSource(master,
+                master.getMetadata().getColumnIndex(jc.bNames.getQuick(0)),
+                slave,
+                slave.getMetadata().getColumnIndex(jc.aNames.getQuick(0)),
+                model.getJoinType() == QueryModel.JoinType.OUTER,
+                configuration.getDbHashDataPage(),
                 configuration.getDbHashRowPage()
         );
     }
@@ -1000,6 +1094,23 @@ public class QueryCompiler {
         return dot == -1 ? token : csPool.next().of(token, dot + 1, token.length() - dot - 1);
     }
 
+    /**
+     * Name of timestamp column that orders records of joined journal. Subqueries and "latest by" queries
+     * do not guarantee order of their records.
+     *
+     * @param model join model
+     * @param rs    record source compiled for join model
+     * @return column name or null when record order is unknown
+     */
+    private CharSequence getOrderingTimestamp(QueryModel model, RecordSource rs) {
+        if (model.getJournalName() == null || model.getLatestBy() != null || !isOrderPreserving(rs)) {
+            return null;
+        }
+        RecordMetadata m = rs.getMetadata();
+        int index = m.getTimestampIndex();
+        return index == -1 ? null : m.getColumnQuick(index).getName();
+    }
+
     private int getTimestampIndex(QueryModel model, ExprNode node, RecordMetadata m) throws ParserException {
         int pos = model.getJournalName() != null ? model.getJournalName().position : 0;
         if (node != null) {
@@ -1068,6 +1179,24 @@ public class QueryCompiler {
         return false;
     }
 
+    /**
+     * Checks if any of joins from given position onwards is as-of join, which needs its master in timestamp order.
+     *
+     * @param parent model of joins
+     * @param from   position in ordered list of join models
+     * @return true when there is as-of join
+     */
+    private boolean hasAsOfJoin(QueryModel parent, int from) {
+        ObjList<QueryModel> joinModels = parent.getJoinModels();
+        IntList ordered = parent.getOrderedJoinModels();
+        for (int i = from, n = ordered.size(); i < n; i++) {
+            if (joinModels.getQuick(ordered.getQuick(i)).getJoinType() == QueryModel.JoinType.ASOF) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void homogenizeCrossJoins(QueryModel parent) {
         ObjList<QueryModel> joinModels = parent.getJoinModels();
         for (int i = 0, n = joinModels.size(); i < n; i++) {
@@ -1084,6 +1213,88 @@ public class QueryCompiler {
         }
     }
 
+    /**
+     * Checks if join can merge master and slave instead of hashing slave. This is the case when both
+     * are ordered by their timestamps and they are joined on these timestamps alone.
+     *
+     * @param model           join model
+     * @param rootIndex       index of join model that master records are ordered by
+     * @param masterTimestamp ordering timestamp of master, null when master records are not in timestamp order
+     * @param slaveTimestamp  ordering timestamp of slave or null
+     * @return true when join can be merged
+     */
+    private boolean isMergeJoin(QueryModel model, int rootIndex, CharSequence masterTimestamp, CharSequence slaveTimestamp) {
+        JoinContext jc = model.getContext();
+        return masterTimestamp != null
+                && slaveTimestamp != null
+                && jc != null
+                && jc.aNames.size() == 1
+                && jc.bIndexes.getQuick(0) == rootIndex
+                && Chars.equals(jc.bNames.getQuick(0), masterTimestamp)
+                && Chars.equals(jc.aNames.getQuick(0), slaveTimestamp);
+    }
+
+    /**
+     * Checks if output of model depends on order of rows coming from journal.
+     * Model is order independent when it sorts rows and does not have
+     * aggregate, sampling or analytic functions in front of the sort.
+     *
+     * @param model query model
+     * @return true if rows must be served in row id order
+     */
+    private boolean isOrderDependent(QueryModel model) {
+        if (model.getOrderBy().size() == 0 || model.getSampleBy() != null || model.getAnalyticColumns().size() > 0) {
+            return true;
+        }
+
+        ObjList<QueryColumn> columns = model.getColumns();
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            if (hasAggregates(columns.getQuick(i).getAst())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if record source serves records in the order it reads them from journal.
+     * Unordered parallel scan and hash join partitioning its input to stay within memory
+     * budget serve records out of order.
+     *
+     * @param rs record source
+     * @return true when records are served in order
+     */
+    private boolean isOrderPreserving(RecordSource rs) {
+        if (rs instanceof ParallelJournalSource) {
+            return ((ParallelJournalSource) rs).isOrdered();
+        }
+
+        if (rs instanceof HashJoinRecordSource) {
+            return ((HashJoinRecordSource) rs).isOrderPreserving();
+        }
+        return true;
+    }
+
+    /**
+     * Checks if model is plain group-by, which can be aggregated by partition in parallel.
+     *
+     * @param model query model
+     * @return true when model has aggregate functions and no sampling or analytic functions
+     */
+    private boolean isParallelAggregate(QueryModel model) {
+        if (model.getSampleBy() != null || model.getAnalyticColumns().size() > 0) {
+            return false;
+        }
+
+        ObjList<QueryColumn> columns = model.getColumns();
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            if (hasAggregates(columns.getQuick(i).getAst())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean joinModelIsFalse(QueryModel model) throws ParserException {
         ExprNode current = null;
         IntHashSet constants = model.getParsedWhereConsts();
@@ -1463,10 +1674,20 @@ public class QueryCompiler {
 
                 indices.add(index);
             }
+
+            // when output is limited only top records need to be sorted
+            if (model.getLimitHiVc() != null) {
+                return new HeapSortedRecordSource(rs,
+                        cc.compile(HeapSortedRecordSource.class, m, indices),
+                        model.getLimitHiVc(),
+                        configuration.getDbSortDataPage());
+            }
+
             return new RBTreeSortedRecordSource(rs,
                     cc.compile(RBTreeSortedRecordSource.class, m, indices),
                     configuration.getDbSortKeyPage(),
-                    configuration.getDbSortDataPage());
+                    configuration.getDbSortDataPage(),
+                    configuration.getDbSortBudget());
         } else {
             return rs;
         }
@@ -1874,8 +2095,25 @@ public class QueryCompiler {
                 }
             }
 
-            if (sampleBy == null) {
-                rs = new AggregatedRecordSource(rs, groupKeyColumns, af, configuration.getDbAggregatePage());
+            if (sampleBy == null && virtualColumns == null && rs instanceof ParallelJournalSource) {
+                // aggregators are stateful, each worker gets its own copy
+                ParallelJournalSource pjs = (ParallelJournalSource) rs;
+                int workers = pjs.getRowSources().size();
+                ObjList<ObjList<AggregatorFunction>> parallelAggregators = new ObjList<>(workers);
+                parallelAggregators.add(af);
+                for (int k = 1; k < workers; k++) {
+                    ObjList<AggregatorFunction> copy = new ObjList<>(asz);
+                    for (int i = 0; i < asz; i++) {
+                        QueryColumn qc = aggregators.get(i);
+                        VirtualColumn vc = virtualColumnBuilder.createVirtualColumn(model, qc.getAst(), rs.getMetadata());
+                        vc.setName(qc.getAlias());
+                        copy.add((AggregatorFunction) vc);
+                    }
+                    parallelAggregators.add(copy);
+                }
+                rs = new ParallelAggregatedRecordSource(pjs.getPartitionSource(), pjs.getRowSources(), groupKeyColumns, parallelAggregators, configuration.getDbAggregatePage(), configuration.getDbMapBudget());
+            } else if (sampleBy == null) {
+                rs = new AggregatedRecordSource(rs, groupKeyColumns, af, configuration.getDbAggregatePage(), configuration.getDbMapBudget());
             } else {
                 TimestampSampler sampler = SamplerFactory.from(sampleBy.token);
                 if (sampler == null) {
@@ -38,6 +38,8 @@ import com.questdb.ql.model.ExprNode;
 import com.questdb.ql.model.IntrinsicModel;
 import com.questdb.ql.model.IntrinsicValue;
 import com.questdb.std.*;
+import com.questdb.store.ColumnType;
+import com.questdb.store.ZoneMap;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.util.ArrayDeque;
@@ -48,6 +50,7 @@ final class QueryFilterAnalyser {
     private final ArrayDeque<ExprNode> stack = new ArrayDeque<>();
     private final FlyweightCharSequence quoteEraser = new FlyweightCharSequence();
     private final ObjList<ExprNode> keyNodes = new ObjList<>();
+    private final ObjList<ExprNode> extraKeyNodes = new ObjList<>();
     private final ObjList<ExprNode> timestampNodes = new ObjList<>();
     private final ObjectPool<IntrinsicModel> models = new ObjectPool<>(IntrinsicModel.FACTORY, 8);
     private final CharSequenceHashSet tempKeys = new CharSequenceHashSet();
@@ -94,24 +97,29 @@ final class QueryFilterAnalyser {
                             }
 
                             boolean newColumn = true;
+                            String value = Chars.equals("null", b.token) ? null : Chars.stripQuotes(b.token);
                             // check if we already have indexed column and it is of worse selectivity
                             if (model.keyColumn != null
                                     && (newColumn = !model.keyColumn.equals(a.token))
                                     && meta.getBucketCount() <= m.getColumn(model.keyColumn).getBucketCount()) {
+                                // symbol keys are exact, so index of this column can narrow down key column rows
+                                if (meta.getType() == ColumnType.SYMBOL) {
+                                    model.extraKeyColumns.add(a.token);
+                                    model.extraKeyValues.add(Chars.toString(value));
+                                    extraKeyNodes.add(node);
+                                    node.intrinsicValue = IntrinsicValue.TRUE;
+                                    return true;
+                                }
                                 return false;
                             }
 
-                            String value = Chars.equals("null", b.token) ? null : Chars.stripQuotes(b.token);
                             if (newColumn) {
+                                replaceKeyColumn(model, m);
                                 model.keyColumn = a.token;
                                 model.keyValues.clear();
                                 model.keyValuePositions.clear();
                                 model.keyValues.add(value);
                                 model.keyValuePositions.add(b.position);
-                                for (int n = 0, k = keyNodes.size(); n < k; n++) {
-                                    keyNodes.getQuick(n).intrinsicValue = IntrinsicValue.UNDEFINED;
-                                }
-                                keyNodes.clear();
                             } else {
                                 // compute overlap of values
                                 // if values do overlap, keep only our value
@@ -261,17 +269,14 @@ final class QueryFilterAnalyser {
                 throw QueryError.$(node.position, "Multiple lambda expressions not supported");
             }
 
+            // revert previously processed nodes
+            replaceKeyColumn(model, meta);
+
             model.keyValues.clear();
             model.keyValuePositions.clear();
             model.keyValues.add(Chars.stripQuotes(node.rhs.token));
             model.keyValuePositions.add(node.position);
             model.keyValuesIsLambda = true;
-
-            // revert previously processed nodes
-            for (int n = 0, k = keyNodes.size(); n < k; n++) {
-                keyNodes.getQuick(n).intrinsicValue = IntrinsicValue.UNDEFINED;
-            }
-            keyNodes.clear();
             model.keyColumn = col;
             keyNodes.add(node);
             node.intrinsicValue = IntrinsicValue.TRUE;
@@ -360,14 +365,11 @@ final class QueryFilterAnalyser {
             // clear values if this is new column
             // and reset intrinsic values on nodes associated with old column
             if (newColumn) {
+                replaceKeyColumn(model, meta);
                 model.keyValues.clear();
                 model.keyValuePositions.clear();
                 model.keyValues.addAll(tempKeys);
                 model.keyValuePositions.addAll(tempPos);
-                for (int n = 0, k = keyNodes.size(); n < k; n++) {
-                    keyNodes.getQuick(n).intrinsicValue = IntrinsicValue.UNDEFINED;
-                }
-                keyNodes.clear();
                 model.keyColumn = col;
 
                 keyNodes.add(node);
@@ -386,6 +388,117 @@ final class QueryFilterAnalyser {
         return false;
     }
 
+    /**
+     * Collects value range of numeric column compared to numeric constant. Zone map can only
+     * tell which blocks of rows definitely do not match, so node is never removed from filter.
+     *
+     * @return always false
+     */
+    private boolean analyzeZone(IntrinsicModel model, ExprNode node, RecordMetadata m) {
+        if (node.paramCount != 2 || node.lhs == null || node.rhs == null) {
+            return false;
+        }
+
+        ExprNode col;
+        ExprNode val;
+        String op = node.token;
+
+        if (node.lhs.type == ExprNode.NodeType.LITERAL && node.rhs.type == ExprNode.NodeType.CONSTANT) {
+            col = node.lhs;
+            val = node.rhs;
+        } else if (node.rhs.type == ExprNode.NodeType.LITERAL && node.lhs.type == ExprNode.NodeType.CONSTANT) {
+            col = node.rhs;
+            val = node.lhs;
+            // constant is on the left, mirror operator
+            switch (op) {
+                case ">":
+                    op = "<";
+                    break;
+                case ">=":
+                    op = "<=";
+                    break;
+                case "<":
+                    op = ">";
+                    break;
+                case "<=":
+                    op = ">=";
+                    break;
+                default:
+                    break;
+            }
+        } else {
+            return false;
+        }
+
+        int index = m.getColumnIndexQuiet(col.token);
+        if (index == -1 || index == m.getTimestampIndex()) {
+            return false;
+        }
+
+        long lo = Long.MIN_VALUE;
+        long hi = Long.MAX_VALUE;
+
+        try {
+            switch (m.getColumnQuick(index).getType()) {
+                case INT:
+                case LONG:
+                case DATE:
+                    long v = Numbers.parseLong(val.token);
+                    switch (op) {
+                        case ">":
+                            if (v == Long.MAX_VALUE) {
+                                return false;
+                            }
+                            lo = v + 1;
+                            break;
+                        case ">=":
+                            lo = v;
+                            break;
+                        case "<":
+                            if (v == Long.MIN_VALUE) {
+                                return false;
+                            }
+                            hi = v - 1;
+                            break;
+                        case "<=":
+                            hi = v;
+                            break;
+                        default:
+                            lo = hi = v;
+                            break;
+                    }
+                    break;
+                case DOUBLE:
+                    double d = Numbers.parseDouble(val.token);
+                    if (d != d) {
+                        return false;
+                    }
+                    // strict comparisons are widened to inclusive
+                    switch (op) {
+                        case ">":
+                        case ">=":
+                            lo = ZoneMap.toSortableLong(d);
+                            break;
+                        case "<":
+                        case "<=":
+                            hi = ZoneMap.toSortableLong(d);
+                            break;
+                        default:
+                            lo = hi = ZoneMap.toSortableLong(d);
+                            break;
+                    }
+                    break;
+                default:
+                    return false;
+            }
+        } catch (NumericException ignore) {
+            return false;
+        }
+
+        model.overlapZone(index, lo, hi);
+        return false;
+    }
+
     private ExprNode collapseIntrinsicNodes(ExprNode node) {
         if (node == null || node.intrinsicValue == IntrinsicValue.TRUE) {
             return null;
@@ -413,6 +526,7 @@ final class QueryFilterAnalyser {
     IntrinsicModel extract(ExprNode node, RecordMetadata m, String preferredKeyColumn) throws ParserException {
         this.stack.clear();
         this.keyNodes.clear();
+        this.extraKeyNodes.clear();
         this.timestampNodes.clear();
         int timestampIndex = m.getTimestampIndex();
         this.timestamp = timestampIndex == -1 ? null : m.getColumnName(timestampIndex);
@@ -445,6 +559,7 @@ final class QueryFilterAnalyser {
                 node = stack.poll();
             }
         }
+        removeExtraKeys(model, m);
         model.filter = collapseIntrinsicNodes(root);
         return model;
     }
@@ -585,20 +700,41 @@ final class QueryFilterAnalyser {
             case "in":
                 return analyzeIn(model, node, m);
             case ">":
-                return analyzeGreater(model, node, 1);
+                return analyzeGreater(model, node, 1) || analyzeZone(model, node, m);
             case ">=":
-                return analyzeGreater(model, node, 0);
+                return analyzeGreater(model, node, 0) || analyzeZone(model, node, m);
             case "<":
-                return analyzeLess(model, node, 1);
+                return analyzeLess(model, node, 1) || analyzeZone(model, node, m);
             case "<=":
-                return analyzeLess(model, node, 0);
+                return analyzeLess(model, node, 0) || analyzeZone(model, node, m);
             case "=":
-                return analyzeEquals(model, node, m);
+                return analyzeEquals(model, node, m) || analyzeZone(model, node, m);
             default:
                 return false;
         }
     }
 
+    /**
+     * Extra keys are only intersected with single value of symbol key column. Any other key column
+     * sends their nodes back to filter.
+     */
+    private void removeExtraKeys(IntrinsicModel model, RecordMetadata m) {
+        if (extraKeyNodes.size() == 0
+                || (model.keyColumn != null
+                && !model.keyValuesIsLambda
+                && model.keyValues.size() == 1
+                && m.getColumn(model.keyColumn).getType() == ColumnType.SYMBOL)) {
+            return;
+        }
+
+        for (int n = 0, k = extraKeyNodes.size(); n < k; n++) {
+            extraKeyNodes.getQuick(n).intrinsicValue = IntrinsicValue.UNDEFINED;
+        }
+        extraKeyNodes.clear();
+        model.extraKeyColumns.clear();
+        model.extraKeyValues.clear();
+    }
+
     private void replaceAllWithOverlap(IntrinsicModel model) {
         tempK.clear();
         tempP.clear();
@@ -618,6 +754,28 @@ final class QueryFilterAnalyser {
         }
     }
 
+    /**
+     * Key column is about to be replaced by more selective one. Single value of symbol key column still narrows
+     * down the rows, so it becomes extra key. Nodes of any other key column go back to filter.
+     */
+    private void replaceKeyColumn(IntrinsicModel model, RecordMetadata m) {
+        if (model.keyColumn != null
+                && !model.keyValuesIsLambda
+                && model.keyValues.size() == 1
+                && m.getColumn(model.keyColumn).getType() == ColumnType.SYMBOL) {
+            model.extraKeyColumns.add(model.keyColumn);
+            model.extraKeyValues.add(Chars.toString(model.keyValues.get(0)));
+            for (int n = 0, k = keyNodes.size(); n < k; n++) {
+                extraKeyNodes.add(keyNodes.getQuick(n));
+            }
+        } else {
+            for (int n = 0, k = keyNodes.size(); n < k; n++) {
+                keyNodes.getQuick(n).intrinsicValue = IntrinsicValue.UNDEFINED;
+            }
+        }
+        keyNodes.clear();
+    }
+
     void reset() {
         this.models.clear();
     }
@@ -34,8 +34,8 @@ import com.questdb.query.api.QueryHeadBuilder;
 import com.questdb.std.IntList;
 import com.questdb.std.LongList;
 import com.questdb.std.ObjList;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.IndexCursor;
-import com.questdb.store.KVIndex;
 import com.questdb.store.SymbolTable;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -76,7 +76,7 @@ public class QueryHeadBuilderImpl<T> implements QueryHeadBuilder<T> {
         //noinspection ConstantConditions
         return journal.iteratePartitionsDesc(
                 new UnorderedResultSetBuilder<T>(interval) {
-                    private final KVIndex filterKVIndexes[] = new KVIndex[filterSymbolKeys.size()];
+                    private final ColumnIndex filterKVIndexes[] = new ColumnIndex[filterSymbolKeys.size()];
                     private final LongList filterSymbolRows[] = new LongList[filterSymbolKeys.size()];
                     private IntList keys = zone1Keys;
                     private IntList remainingKeys = zone2Keys;
@@ -89,7 +89,7 @@ public class QueryHeadBuilderImpl<T> implements QueryHeadBuilder<T> {
 
                     @Override
                     public void read(long lo, long hi) throws JournalException {
-                        KVIndex index = partition.getIndexForColumn(symbolColumnIndex);
+                        ColumnIndex index = partition.getIndexForColumn(symbolColumnIndex);
 
                         boolean filterOk = true;
                         for (int i = 0; i < filterSymbols.size(); i++) {
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.std;
+
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
+
+/**
+ * Off-heap blocked Bloom filter of int hash codes. All bits of a hash code are set within single
+ * block of cache line size, so that adding and checking hash code touches one cache line.
+ * Filter never reports false negatives, false positive rate is about 1% at capacity.
+ */
+public class BloomFilter extends DirectMemoryStructure implements Mutable {
+    private static final int BLOCK_SIZE = 64;
+    private static final int BLOCK_BITS = BLOCK_SIZE * 8;
+    private static final int BITS_PER_KEY = 10;
+    private static final int PROBES = 6;
+    private long start;
+    private long blockCount;
+    private int blockMask;
+
+    public BloomFilter() {
+        of(0);
+    }
+
+    public void add(int hash) {
+        long h = mix(hash);
+        long block = start + ((int) (h >>> 32) & blockMask) * (long) BLOCK_SIZE;
+        int a = (int) h;
+        int step = (a >>> 16) | 1;
+        for (int i = 0; i < PROBES; i++) {
+            int bit = (a + i * step) & (BLOCK_BITS - 1);
+            long p = block + ((bit >>> 6) << 3);
+            Unsafe.getUnsafe().putLong(p, Unsafe.getUnsafe().getLong(p) | (1L << (bit & 63)));
+        }
+    }
+
+    @Override
+    public void clear() {
+        Unsafe.getUnsafe().setMemory(start, blockCount * BLOCK_SIZE, (byte) 0);
+    }
+
+    public boolean mightContain(int hash) {
+        long h = mix(hash);
+        long block = start + ((int) (h >>> 32) & blockMask) * (long) BLOCK_SIZE;
+        int a = (int) h;
+        int step = (a >>> 16) | 1;
+        for (int i = 0; i < PROBES; i++) {
+            int bit = (a + i * step) & (BLOCK_BITS - 1);
+            if ((Unsafe.getUnsafe().getLong(block + ((bit >>> 6) << 3)) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clears filter and sizes it for given number of keys. Memory is only reallocated when filter grows.
+     *
+     * @param keyCount number of keys to be added
+     */
+    public void of(int keyCount) {
+        long n = Numbers.ceilPow2(Math.max(1, (int) (((long) keyCount * BITS_PER_KEY + BLOCK_BITS - 1) / BLOCK_BITS)));
+        if (address == 0 || n > blockCount) {
+            free();
+            address = Unsafe.getUnsafe().allocateMemory(n * BLOCK_SIZE + BLOCK_SIZE);
+            start = (address + BLOCK_SIZE - 1) & -BLOCK_SIZE;
+            blockCount = n;
+        }
+        blockMask = (int) n - 1;
+        Unsafe.getUnsafe().setMemory(start, n * BLOCK_SIZE, (byte) 0);
+    }
+
+    private static long mix(int hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        h ^= h >>> 32;
+        return h;
+    }
+}
@@ -64,6 +64,7 @@ public class IntIntHashMap implements Mutable {
 
     public final void clear() {
         Arrays.fill(values, noEntryValue);
+        free = (int) (values.length * loadFactor);
     }
 
     public int get(int key) {
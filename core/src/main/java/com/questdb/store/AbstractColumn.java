@@ -24,9 +24,12 @@
 package com.questdb.store;
 
 import com.questdb.ex.JournalException;
+import com.questdb.std.ObjList;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 public abstract class AbstractColumn implements Closeable {
     final MemoryFile mappedFile;
@@ -36,10 +39,18 @@ public abstract class AbstractColumn implements Closeable {
         this.mappedFile = storage;
     }
 
+    public void advise(int advice) {
+        mappedFile.advise(advice);
+    }
+
     public void close() {
         mappedFile.close();
     }
 
+    public void collectDirty(ObjList<MemoryFile> files) {
+        mappedFile.collectDirty(files);
+    }
+
     public void commit() {
         if (txAppendOffset != -1) {
             mappedFile.setAppendOffset(txAppendOffset);
@@ -64,6 +75,10 @@ public abstract class AbstractColumn implements Closeable {
 
     public abstract long getOffset(long localRowID);
 
+    public boolean isRegion() {
+        return mappedFile.isRegion();
+    }
+
     public void preCommit(long appendOffset) {
         txAppendOffset = appendOffset;
     }
@@ -75,5 +90,9 @@ public abstract class AbstractColumn implements Closeable {
         return this.getClass().getName() + "[file=" + mappedFile + ", size=" + size() + ']';
     }
 
+    public long transferTo(long offset, long count, WritableByteChannel target) throws IOException {
+        return mappedFile.transferTo(offset, count, target);
+    }
+
     public abstract void truncate(long size);
 }
@@ -0,0 +1,738 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.misc.ByteBuffers;
+import com.questdb.misc.Files;
+import com.questdb.misc.Unsafe;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+
+import java.io.File;
+
+/**
+ * Compressed bitmap alternative to {@link KVIndex} for columns with few distinct keys. Values of each key are
+ * split into chunks of 65536 consecutive row ids. Sparse chunks are kept as sorted arrays of 16-bit offsets
+ * and dense chunks as 8KB bitmaps, so that low cardinality columns take a fraction of KVIndex space and
+ * values of several keys, or keys of several indexes, can be combined a chunk at a time by
+ * {@link BitmapIndexCursor}.
+ * <p>
+ * Key file is versioned on commit the same way as KVIndex key file, so that readers pinned to older
+ * transaction see consistent value counts. Values must be added in ascending order for every key.
+ */
+public class BitmapIndex implements ColumnIndex {
+
+    /*
+        key file is [long reserved, long keyBlockSizeOffset] followed by key blocks, one per transaction
+        struct keyBlock {
+            long keyBlockSize
+            long maxValue
+            struct entry {
+                long headOffset
+                long tailOffset
+                long valueCount
+                long reserved
+            }
+        }
+
+        value file is a heap of containers, linked into a list for every key in ascending chunk order
+        struct container {
+            long prevOffset
+            long nextOffset
+            int chunk
+            int capacity        // number of shorts in array container, 0 for bitmap container
+            int cardinality
+            int reserved
+            short values[capacity] or long bits[1024]
+        }
+
+        Containers are never modified once they are replaced by their larger copy, which is what
+        readers of older transactions rely on. Containers do not cross page boundaries of value file.
+    */
+
+    static final int CHUNK_BITS = 16;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int BITMAP_WORDS = CHUNK_SIZE >>> 6;
+    private static final int ENTRY_SIZE = 32;
+    private static final int HEADER_SIZE = 32;
+    private static final int BITMAP_SIZE = BITMAP_WORDS * 8;
+    private static final int MIN_ARRAY_CAPACITY = 16;
+    // array container of this many values takes as much space as bitmap container
+    private static final int MAX_ARRAY_CAPACITY = BITMAP_SIZE / 2;
+    private static final int MIN_PAGE_BITS = 16;
+    private final RevCursor revCursor = new RevCursor();
+    private final FwdCursor fwdCursor = new FwdCursor();
+    private final MemoryFile kData;
+    private final MemoryFile rData;
+    private final long keyBlockAddressOffset;
+    private long firstEntryOffset;
+    private long keyBlockSize;
+    private long keyBlockSizeOffset;
+    private long maxValue;
+    private boolean startTx = true;
+
+    public BitmapIndex(File baseName, long keyCountHint, int txCountHint, JournalMode mode, long txAddress) throws JournalException {
+        int keyCount = (int) Math.min(Integer.MAX_VALUE, Math.max(keyCountHint, 1));
+        this.kData = new MemoryFile(new File(baseName.getParentFile(), baseName.getName() + ".bk"), ByteBuffers.getBitHint(ENTRY_SIZE, keyCount * txCountHint), mode);
+        this.keyBlockAddressOffset = 8;
+
+        if (kData.getAppendOffset() > 0) {
+            this.keyBlockSizeOffset = txAddress == 0 ? getLong(kData, keyBlockAddressOffset) : txAddress;
+            this.keyBlockSize = getLong(kData, keyBlockSizeOffset);
+            this.maxValue = getLong(kData, keyBlockSizeOffset + 8);
+        } else if (mode == JournalMode.APPEND || mode == JournalMode.BULK_APPEND) {
+            this.keyBlockSizeOffset = 16;
+            this.keyBlockSize = 0;
+            this.maxValue = 0;
+            putLong(kData, 0, 0);
+            putLong(kData, keyBlockAddressOffset, keyBlockSizeOffset);
+            putLong(kData, keyBlockSizeOffset, keyBlockSize);
+            putLong(kData, keyBlockSizeOffset + 8, maxValue);
+            kData.setAppendOffset(8 + 8 + 8 + 8);
+        } else {
+            throw new JournalException("Cannot open uninitialized index in read-only mode");
+        }
+
+        this.firstEntryOffset = keyBlockSizeOffset + 16;
+        // pages must not be smaller than the largest container
+        this.rData = new MemoryFile(new File(baseName.getParentFile(), baseName.getName() + ".bv"),
+                Math.max(MIN_PAGE_BITS, ByteBuffers.getBitHint(HEADER_SIZE + BITMAP_SIZE, keyCount)), mode);
+        // containers of a key are chained across the file, read ahead would be wasted
+        this.rData.advise(Files.ADVICE_RANDOM);
+    }
+
+    public static void delete(File base) {
+        Files.delete(new File(base.getParentFile(), base.getName() + ".bk"));
+        Files.delete(new File(base.getParentFile(), base.getName() + ".bv"));
+    }
+
+    public static boolean exists(File base) {
+        return new File(base.getParentFile(), base.getName() + ".bk").exists();
+    }
+
+    /**
+     * Adds value to index. Values of a key must be added in ascending order.
+     *
+     * @param key   value of key
+     * @param value value
+     */
+    @Override
+    public void add(int key, long value) {
+
+        if (startTx) {
+            tx();
+        }
+
+        long keyOffset = getKeyOffset(key);
+
+        if (keyOffset >= firstEntryOffset + keyBlockSize) {
+            long oldSize = keyBlockSize;
+            keyBlockSize = keyOffset + ENTRY_SIZE - firstEntryOffset;
+            // zero out entries of keys we skipped, same as KVIndex does
+            if (keyBlockSize - oldSize > ENTRY_SIZE) {
+                Unsafe.getUnsafe().setMemory(
+                        kData.addressOf(
+                                firstEntryOffset + oldSize
+                                , (int) (keyBlockSize - oldSize - ENTRY_SIZE)
+                        )
+                        , keyBlockSize - oldSize - ENTRY_SIZE
+                        , (byte) 0
+                );
+            }
+            Unsafe.getUnsafe().setMemory(kData.addressOf(keyOffset, ENTRY_SIZE), ENTRY_SIZE, (byte) 0);
+        }
+
+        long address = kData.addressOf(keyOffset, ENTRY_SIZE);
+        long tail = Unsafe.getUnsafe().getLong(address + 8);
+        int chunk = (int) (value >>> CHUNK_BITS);
+        int low = (int) (value & (CHUNK_SIZE - 1));
+
+        if (tail == 0 || getInt(rData, tail + 16) < chunk) {
+            tail = link(address, allocate(chunk, MIN_ARRAY_CAPACITY, tail));
+        } else if (getInt(rData, tail + 16) > chunk) {
+            throw new JournalRuntimeException("Index values must be ascending: %d", value);
+        }
+
+        int capacity = getInt(rData, tail + 20);
+        int cardinality = getInt(rData, tail + 24);
+
+        if (capacity > 0) {
+            if (cardinality > 0 && (getShort(rData, tail + HEADER_SIZE + ((cardinality - 1) << 1)) & 0xffff) >= low) {
+                throw new JournalRuntimeException("Index values must be ascending: %d", value);
+            }
+
+            if (cardinality == capacity) {
+                tail = link(address, capacity < MAX_ARRAY_CAPACITY ? grow(tail, capacity << 1) : toBitmap(tail));
+                capacity = getInt(rData, tail + 20);
+            }
+        }
+
+        if (capacity > 0) {
+            Unsafe.getUnsafe().putShort(rData.addressOf(tail + HEADER_SIZE + (cardinality << 1), 2), (short) low);
+        } else {
+            long a = rData.addressOf(tail + HEADER_SIZE + ((low >>> 6) << 3), 8);
+            Unsafe.getUnsafe().putLong(a, Unsafe.getUnsafe().getLong(a) | (1L << low));
+        }
+        putInt(rData, tail + 24, cardinality + 1);
+        Unsafe.getUnsafe().putLong(address + 16, Unsafe.getUnsafe().getLong(address + 16) + 1);
+
+        if (maxValue <= value) {
+            maxValue = value + 1;
+        }
+    }
+
+    /**
+     * Closes underlying files.
+     */
+    @Override
+    public void close() {
+        rData.close();
+        kData.close();
+    }
+
+    @Override
+    public void collectDirty(ObjList<MemoryFile> files) {
+        kData.collectDirty(files);
+        rData.collectDirty(files);
+    }
+
+    @Override
+    public void commit() {
+        if (!startTx) {
+            putLong(kData, keyBlockSizeOffset, keyBlockSize);
+            putLong(kData, keyBlockSizeOffset + 8, maxValue);
+            kData.setAppendOffset(firstEntryOffset + keyBlockSize);
+            putLong(kData, keyBlockAddressOffset, keyBlockSizeOffset);
+            startTx = true;
+        }
+    }
+
+    @Override
+    public void compact() throws JournalException {
+        kData.compact();
+        rData.compact();
+    }
+
+    @Override
+    public boolean contains(int key) {
+        return getValueCount(key) > 0;
+    }
+
+    @Override
+    public IndexCursor cursor(int key) {
+        return revCursor.setKey(key);
+    }
+
+    @Override
+    public void force() {
+        kData.force();
+        rData.force();
+    }
+
+    @Override
+    public IndexCursor fwdCursor(int key) {
+        return fwdCursor.setKey(key);
+    }
+
+    @Override
+    public long getTxAddress() {
+        return keyBlockSizeOffset;
+    }
+
+    @Override
+    public void setTxAddress(long txAddress) {
+        if (txAddress == 0) {
+            refresh();
+        } else {
+            this.keyBlockSizeOffset = txAddress;
+            this.keyBlockSize = getLong(kData, keyBlockSizeOffset);
+            this.maxValue = getLong(kData, keyBlockSizeOffset + 8);
+            this.firstEntryOffset = keyBlockSizeOffset + 16;
+        }
+    }
+
+    @Override
+    public int getValueCount(int key) {
+        long keyOffset = getKeyOffset(key);
+        if (key < -1 || keyOffset >= firstEntryOffset + keyBlockSize) {
+            return 0;
+        }
+        return (int) getLong(kData, keyOffset + 16);
+    }
+
+    @Override
+    public LongList getValues(int key) {
+        LongList result = new LongList();
+        getValues(key, result);
+        return result;
+    }
+
+    @Override
+    public void getValues(int key, LongList values) {
+        if (key < 0) {
+            return;
+        }
+
+        values.clear();
+        IndexCursor cursor = newFwdCursor(key);
+        values.ensureCapacity((int) cursor.size());
+        while (cursor.hasNext()) {
+            values.add(cursor.next());
+        }
+    }
+
+    @Override
+    public IndexCursor newFwdCursor(int key) {
+        return new FwdCursor().setKey(key);
+    }
+
+    /**
+     * Size of index is in fact maximum of all row IDs. This is useful to keep it in same units of measure as
+     * size of columns.
+     *
+     * @return max of all row IDs in index.
+     */
+    @Override
+    public long size() {
+        return maxValue;
+    }
+
+    @Override
+    public void truncate(long size) {
+        if (startTx) {
+            tx();
+        }
+
+        for (long offset = firstEntryOffset, hi = firstEntryOffset + keyBlockSize; offset < hi; offset += ENTRY_SIZE) {
+            long address = kData.addressOf(offset, ENTRY_SIZE);
+            long container = Unsafe.getUnsafe().getLong(address + 8);
+            long count = Unsafe.getUnsafe().getLong(address + 16);
+
+            while (container != 0) {
+                long limit = size - ((long) getInt(rData, container + 16) << CHUNK_BITS);
+                if (limit >= CHUNK_SIZE) {
+                    break;
+                }
+
+                int cardinality = getInt(rData, container + 24);
+                int remaining = limit > 0 ? truncateContainer(container, (int) limit, cardinality) : 0;
+                count -= cardinality - remaining;
+
+                if (remaining > 0) {
+                    putInt(rData, container + 24, remaining);
+                    break;
+                }
+                container = getLong(rData, container);
+            }
+
+            if (container == 0) {
+                Unsafe.getUnsafe().putLong(address, 0);
+            } else {
+                putLong(rData, container + 8, 0);
+            }
+            Unsafe.getUnsafe().putLong(address + 8, container);
+            Unsafe.getUnsafe().putLong(address + 16, count);
+        }
+
+        if (maxValue > size) {
+            maxValue = size;
+        }
+        commit();
+    }
+
+    static int nextSetBit(long address, int from) {
+        int w = from >>> 6;
+        long word = Unsafe.getUnsafe().getLong(address + (w << 3)) & (-1L << from);
+        while (word == 0) {
+            if (++w == BITMAP_WORDS) {
+                return -1;
+            }
+            word = Unsafe.getUnsafe().getLong(address + (w << 3));
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    static int prevSetBit(long address, int from) {
+        int w = from >>> 6;
+        long word = Unsafe.getUnsafe().getLong(address + (w << 3)) & (-1L >>> (63 - (from & 63)));
+        while (word == 0) {
+            if (--w < 0) {
+                return -1;
+            }
+            word = Unsafe.getUnsafe().getLong(address + (w << 3));
+        }
+        return (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+    }
+
+    int chunkOf(long container) {
+        return getInt(rData, container + 16);
+    }
+
+    /**
+     * First container of key visible to current transaction.
+     *
+     * @param key value of key
+     * @return offset of container or 0 when key has no values
+     */
+    long headOf(int key) {
+        long keyOffset = getKeyOffset(key);
+        if (key < -1 || keyOffset >= firstEntryOffset + keyBlockSize) {
+            return 0;
+        }
+        long address = kData.addressOf(keyOffset, ENTRY_SIZE);
+        return Unsafe.getUnsafe().getLong(address + 16) > 0 ? Unsafe.getUnsafe().getLong(address) : 0;
+    }
+
+    /**
+     * Next container of the same key, which is visible to current transaction.
+     *
+     * @param container offset of container
+     * @return offset of next container or 0 if there isn't one
+     */
+    long nextOf(long container) {
+        long next = getLong(rData, container + 8);
+        return next == 0 || ((long) chunkOf(next) << CHUNK_BITS) >= maxValue ? 0 : next;
+    }
+
+    /**
+     * Sets bits of values in container to words. Values added after current transaction are left out.
+     *
+     * @param container offset of container
+     * @param words     bitmap of chunk
+     */
+    void or(long container, long[] words) {
+        long limit = maxValue - ((long) chunkOf(container) << CHUNK_BITS);
+        int capacity = getInt(rData, container + 20);
+        int cardinality = getInt(rData, container + 24);
+
+        if (capacity > 0) {
+            long address = rData.addressOf(container + HEADER_SIZE, capacity << 1);
+            for (int i = 0; i < cardinality; i++) {
+                int v = Unsafe.getUnsafe().getShort(address + (i << 1)) & 0xffff;
+                if (v >= limit) {
+                    break;
+                }
+                words[v >>> 6] |= 1L << v;
+            }
+        } else {
+            long address = rData.addressOf(container + HEADER_SIZE, BITMAP_SIZE);
+            int n = limit < CHUNK_SIZE ? (int) ((limit + 63) >>> 6) : BITMAP_WORDS;
+            for (int i = 0; i < n; i++) {
+                long word = Unsafe.getUnsafe().getLong(address + (i << 3));
+                if (i == n - 1 && limit < CHUNK_SIZE && (limit & 63) != 0) {
+                    word &= (1L << limit) - 1;
+                }
+                words[i] |= word;
+            }
+        }
+    }
+
+    private static int getInt(MemoryFile storage, long offset) {
+        return Unsafe.getUnsafe().getInt(storage.addressOf(offset, 4));
+    }
+
+    private static long getLong(MemoryFile storage, long offset) {
+        return Unsafe.getUnsafe().getLong(storage.addressOf(offset, 8));
+    }
+
+    private static short getShort(MemoryFile storage, long offset) {
+        return Unsafe.getUnsafe().getShort(storage.addressOf(offset, 2));
+    }
+
+    private static void putInt(MemoryFile storage, long offset, int value) {
+        Unsafe.getUnsafe().putInt(storage.addressOf(offset, 4), value);
+    }
+
+    private static void putLong(MemoryFile storage, long offset, long value) {
+        Unsafe.getUnsafe().putLong(storage.addressOf(offset, 8), value);
+    }
+
+    private long allocate(int chunk, int capacity, long prev) {
+        int size = HEADER_SIZE + (capacity > 0 ? capacity << 1 : BITMAP_SIZE);
+        long offset = rData.getAppendOffset();
+        if (offset == 0) {
+            // zero offset stands for "no container"
+            offset = HEADER_SIZE;
+        } else if ((offset >>> MIN_PAGE_BITS) != ((offset + size - 1) >>> MIN_PAGE_BITS)) {
+            offset = ((offset >>> MIN_PAGE_BITS) + 1) << MIN_PAGE_BITS;
+        }
+        rData.setAppendOffset(offset + size);
+
+        long address = rData.addressOf(offset, size);
+        Unsafe.getUnsafe().putLong(address, prev);
+        Unsafe.getUnsafe().putLong(address + 8, 0);
+        Unsafe.getUnsafe().putInt(address + 16, chunk);
+        Unsafe.getUnsafe().putInt(address + 20, capacity);
+        Unsafe.getUnsafe().putInt(address + 24, 0);
+        Unsafe.getUnsafe().putInt(address + 28, 0);
+        if (capacity == 0) {
+            Unsafe.getUnsafe().setMemory(address + HEADER_SIZE, BITMAP_SIZE, (byte) 0);
+        }
+        return offset;
+    }
+
+    private long getKeyOffset(long key) {
+        return firstEntryOffset + (key + 1) * ENTRY_SIZE;
+    }
+
+    private long grow(long container, int capacity) {
+        int cardinality = getInt(rData, container + 24);
+        long c = allocate(chunkOf(container), capacity, getLong(rData, container));
+        // new container is at higher or the same page, resolving it second keeps both pages mapped in bulk mode
+        long src = rData.addressOf(container + HEADER_SIZE, cardinality << 1);
+        long dst = rData.addressOf(c + HEADER_SIZE, cardinality << 1);
+        Unsafe.getUnsafe().copyMemory(src, dst, cardinality << 1);
+        putInt(rData, c + 24, cardinality);
+        return c;
+    }
+
+    /**
+     * Makes container the tail of key list in place of its predecessor's successor.
+     *
+     * @param address   address of key entry
+     * @param container offset of new tail container
+     * @return offset of container
+     */
+    private long link(long address, long container) {
+        long prev = getLong(rData, container);
+        if (prev == 0) {
+            Unsafe.getUnsafe().putLong(address, container);
+        } else {
+            putLong(rData, prev + 8, container);
+        }
+        Unsafe.getUnsafe().putLong(address + 8, container);
+        return container;
+    }
+
+    private void refresh() {
+        commit();
+        this.keyBlockSizeOffset = getLong(kData, keyBlockAddressOffset);
+        this.keyBlockSize = getLong(kData, keyBlockSizeOffset);
+        this.maxValue = getLong(kData, keyBlockSizeOffset + 8);
+        this.firstEntryOffset = keyBlockSizeOffset + 16;
+    }
+
+    private long toBitmap(long container) {
+        int cardinality = getInt(rData, container + 24);
+        long c = allocate(chunkOf(container), 0, getLong(rData, container));
+        long src = rData.addressOf(container + HEADER_SIZE, cardinality << 1);
+        long dst = rData.addressOf(c + HEADER_SIZE, BITMAP_SIZE);
+        for (int i = 0; i < cardinality; i++) {
+            int v = Unsafe.getUnsafe().getShort(src + (i << 1)) & 0xffff;
+            long a = dst + ((v >>> 6) << 3);
+            Unsafe.getUnsafe().putLong(a, Unsafe.getUnsafe().getLong(a) | (1L << v));
+        }
+        putInt(rData, c + 24, cardinality);
+        return c;
+    }
+
+    /**
+     * Removes values at and above limit from container.
+     *
+     * @return number of values left in container
+     */
+    private int truncateContainer(long container, int limit, int cardinality) {
+        int capacity = getInt(rData, container + 20);
+        if (capacity > 0) {
+            long address = rData.addressOf(container + HEADER_SIZE, capacity << 1);
+            int n = cardinality;
+            while (n > 0 && (Unsafe.getUnsafe().getShort(address + ((n - 1) << 1)) & 0xffff) >= limit) {
+                n--;
+            }
+            return n;
+        }
+
+        long address = rData.addressOf(container + HEADER_SIZE, BITMAP_SIZE);
+        int n = cardinality;
+        for (int w = limit >>> 6; w < BITMAP_WORDS; w++) {
+            long a = address + (w << 3);
+            long word = Unsafe.getUnsafe().getLong(a);
+            long keep = w == limit >>> 6 ? word & ((1L << limit) - 1) : 0;
+            n -= Long.bitCount(word) - Long.bitCount(keep);
+            Unsafe.getUnsafe().putLong(a, keep);
+        }
+        return n;
+    }
+
+    private void tx() {
+        if (startTx) {
+            this.keyBlockSizeOffset = kData.getAppendOffset();
+            this.firstEntryOffset = keyBlockSizeOffset + 16;
+
+            long srcOffset = getLong(kData, keyBlockAddressOffset);
+            long dstOffset = this.keyBlockSizeOffset;
+            int size = (int) (this.keyBlockSize + 8 + 8);
+
+            while (size > 0) {
+                long src = kData.addressOf(srcOffset, 1);
+                int srcLen = kData.pageRemaining(srcOffset);
+
+                long dst = kData.addressOf(dstOffset, 1);
+                int dstLen = kData.pageRemaining(dstOffset);
+
+                int len = size < (srcLen < dstLen ? srcLen : dstLen) ? size : (srcLen < dstLen ? srcLen : dstLen);
+
+                Unsafe.getUnsafe().copyMemory(src, dst, len);
+                size -= len;
+                srcOffset += len;
+                dstOffset += len;
+            }
+            keyBlockSize = dstOffset - firstEntryOffset;
+        }
+        startTx = false;
+    }
+
+    private abstract class AbstractCursor implements IndexCursor {
+        long size;
+        long remaining;
+        long next;
+        long prev;
+        long base;
+        long address;
+        int capacity;
+        int cardinality;
+        int pos;
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        void enter(long container) {
+            long a = rData.addressOf(container, HEADER_SIZE);
+            this.prev = Unsafe.getUnsafe().getLong(a);
+            this.next = Unsafe.getUnsafe().getLong(a + 8);
+            this.base = ((long) Unsafe.getUnsafe().getInt(a + 16)) << CHUNK_BITS;
+            this.capacity = Unsafe.getUnsafe().getInt(a + 20);
+            this.cardinality = Unsafe.getUnsafe().getInt(a + 24);
+            this.address = rData.addressOf(container + HEADER_SIZE, capacity > 0 ? capacity << 1 : BITMAP_SIZE);
+        }
+
+        long entry(int key) {
+            this.size = this.remaining = 0;
+            long keyOffset = getKeyOffset(key);
+            if (keyOffset >= firstEntryOffset + keyBlockSize) {
+                return 0;
+            }
+            long a = kData.addressOf(keyOffset, ENTRY_SIZE);
+            this.size = this.remaining = Unsafe.getUnsafe().getLong(a + 16);
+            return a;
+        }
+    }
+
+    private class FwdCursor extends AbstractCursor {
+
+        @Override
+        public long next() {
+            while (true) {
+                if (capacity > 0) {
+                    if (pos < cardinality) {
+                        remaining--;
+                        return base | (Unsafe.getUnsafe().getShort(address + (pos++ << 1)) & 0xffff);
+                    }
+                } else if (pos < CHUNK_SIZE) {
+                    int bit = nextSetBit(address, pos);
+                    if (bit > -1) {
+                        pos = bit + 1;
+                        remaining--;
+                        return base | bit;
+                    }
+                }
+                enter(next);
+                pos = 0;
+            }
+        }
+
+        FwdCursor setKey(int key) {
+            if (key < -1) {
+                this.size = this.remaining = 0;
+                return this;
+            }
+
+            long a = entry(key);
+            if (remaining > 0) {
+                enter(Unsafe.getUnsafe().getLong(a));
+                pos = 0;
+            }
+            return this;
+        }
+    }
+
+    private class RevCursor extends AbstractCursor {
+        private long limit;
+
+        @Override
+        public long next() {
+            while (true) {
+                if (capacity > 0) {
+                    while (pos > -1) {
+                        long v = base | (Unsafe.getUnsafe().getShort(address + (pos-- << 1)) & 0xffff);
+                        if (v < limit) {
+                            remaining--;
+                            return v;
+                        }
+                    }
+                } else {
+                    while (pos > -1) {
+                        int bit = prevSetBit(address, pos);
+                        if (bit < 0) {
+                            break;
+                        }
+                        pos = bit - 1;
+                        if ((base | bit) < limit) {
+                            remaining--;
+                            return base | bit;
+                        }
+                    }
+                }
+                enter(prev);
+                pos = capacity > 0 ? cardinality - 1 : CHUNK_SIZE - 1;
+            }
+        }
+
+        RevCursor setKey(int key) {
+            if (key < 0) {
+                this.size = this.remaining = 0;
+                return this;
+            }
+
+            long a = entry(key);
+            if (remaining > 0) {
+                this.limit = maxValue;
+                enter(Unsafe.getUnsafe().getLong(a + 8));
+                pos = capacity > 0 ? cardinality - 1 : CHUNK_SIZE - 1;
+            }
+            return this;
+        }
+    }
+}
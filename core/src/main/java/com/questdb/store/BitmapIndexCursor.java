@@ -0,0 +1,214 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+
+import java.util.Arrays;
+
+/**
+ * Ascending cursor over row ids, which match any of the keys of every term. Term is a list of keys of
+ * one {@link BitmapIndex}, so that single term is OR across keys and several terms, which usually come
+ * from indexes of different columns of the same partition, are AND-ed together. Terms are evaluated
+ * one chunk of 65536 row ids at a time and chunks that are missing from any of the terms are skipped
+ * without being read.
+ * <p>
+ * Size of cursor is exact for single term and is an upper bound when there are several.
+ */
+public class BitmapIndexCursor implements IndexCursor {
+    private final ObjList<BitmapIndex> indexes = new ObjList<>();
+    private final ObjList<LongList> containers = new ObjList<>();
+    private final long[] words = new long[BitmapIndex.BITMAP_WORDS];
+    private final long[] scratch = new long[BitmapIndex.BITMAP_WORDS];
+    private int termCount;
+    private int chunk;
+    private long base;
+    private int pos;
+    private long size;
+    private long value;
+    private boolean hasNext;
+
+    public BitmapIndexCursor and(BitmapIndex index, IntList keys) {
+        LongList heads = containers.getQuiet(termCount);
+        if (heads == null) {
+            containers.extendAndSet(termCount, heads = new LongList());
+        } else {
+            heads.clear();
+        }
+
+        long count = 0;
+        for (int i = 0, n = keys.size(); i < n; i++) {
+            int key = keys.getQuick(i);
+            long c = index.headOf(key);
+            if (c != 0) {
+                heads.add(c);
+                count += index.getValueCount(key);
+            }
+        }
+
+        indexes.extendAndSet(termCount, index);
+        size = termCount++ == 0 || count < size ? count : size;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (hasNext) {
+            return true;
+        }
+
+        while (true) {
+            if (pos < BitmapIndex.CHUNK_SIZE) {
+                int bit = nextSetBit(pos);
+                if (bit > -1) {
+                    value = base | bit;
+                    pos = bit + 1;
+                    return hasNext = true;
+                }
+                pos = BitmapIndex.CHUNK_SIZE;
+            }
+
+            if (!load()) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public long next() {
+        hasNext = false;
+        return value;
+    }
+
+    public BitmapIndexCursor of(BitmapIndex index, IntList keys) {
+        this.termCount = 0;
+        this.chunk = 0;
+        this.pos = BitmapIndex.CHUNK_SIZE;
+        this.hasNext = false;
+        return and(index, keys);
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    private void fill(int term, long[] words, int chunk) {
+        Arrays.fill(words, 0);
+        BitmapIndex index = indexes.getQuick(term);
+        LongList heads = containers.getQuick(term);
+        for (int i = 0, n = heads.size(); i < n; i++) {
+            long c = heads.getQuick(i);
+            if (index.chunkOf(c) == chunk) {
+                index.or(c, words);
+            }
+        }
+    }
+
+    /**
+     * Computes bitmap of the next chunk present in all terms.
+     *
+     * @return false when there are no more chunks
+     */
+    private boolean load() {
+        int c = chunk;
+        while (true) {
+            int max = c;
+            for (int t = 0; t < termCount; t++) {
+                int tc = seek(t, c);
+                if (tc < 0) {
+                    return false;
+                }
+                if (tc > max) {
+                    max = tc;
+                }
+            }
+
+            if (max == c) {
+                break;
+            }
+            c = max;
+        }
+
+        fill(0, words, c);
+        for (int t = 1; t < termCount; t++) {
+            fill(t, scratch, c);
+            for (int i = 0; i < BitmapIndex.BITMAP_WORDS; i++) {
+                words[i] &= scratch[i];
+            }
+        }
+
+        this.chunk = c + 1;
+        this.base = ((long) c) << BitmapIndex.CHUNK_BITS;
+        this.pos = 0;
+        return true;
+    }
+
+    private int nextSetBit(int from) {
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == BitmapIndex.BITMAP_WORDS) {
+                return -1;
+            }
+            word = words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Moves containers of term to chunks at or after given one. Keys that run out of containers are dropped.
+     *
+     * @return lowest chunk of term or -1 if term is exhausted
+     */
+    private int seek(int term, int chunk) {
+        BitmapIndex index = indexes.getQuick(term);
+        LongList heads = containers.getQuick(term);
+        int min = -1;
+        int i = 0;
+        while (i < heads.size()) {
+            long c = heads.getQuick(i);
+            int cc = index.chunkOf(c);
+            while (cc < chunk && (c = index.nextOf(c)) != 0) {
+                cc = index.chunkOf(c);
+            }
+
+            if (c == 0) {
+                int last = heads.size() - 1;
+                heads.setQuick(i, heads.getQuick(last));
+                heads.setPos(last);
+            } else {
+                heads.setQuick(i, c);
+                if (min < 0 || cc < min) {
+                    min = cc;
+                }
+                i++;
+            }
+        }
+        return min;
+    }
+}
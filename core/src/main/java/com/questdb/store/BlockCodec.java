@@ -0,0 +1,289 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.misc.Unsafe;
+import com.questdb.std.IntIntHashMap;
+
+/**
+ * Encoders and decoders of {@link CompressedColumn} blocks. Instances keep bit
+ * stream state between calls and are not thread safe.
+ */
+final class BlockCodec {
+    private static final byte RLE = 0;
+    private static final byte DICTIONARY = 1;
+    private final IntIntHashMap codes = new IntIntHashMap();
+    private final int[] dictionary = new int[CompressedColumn.BLOCK_SIZE];
+    private long ptr;
+    private long bits;
+    private int bitCount;
+
+    /**
+     * @param count number of values in block
+     * @return upper bound of encoded block size for any of the codecs
+     */
+    static int maxEncodedSize(int count) {
+        return count * 10 + 16;
+    }
+
+    void decodeDoubles(long address, double[] values, int count) {
+        ptr = address;
+        bitCount = 0;
+        long prev = Unsafe.getUnsafe().getLong(ptr);
+        ptr += 8;
+        values[0] = Double.longBitsToDouble(prev);
+
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            if (readBits(1) != 0) {
+                if (readBits(1) != 0) {
+                    leading = (int) readBits(5);
+                    trailing = 64 - leading - (int) readBits(6) - 1;
+                }
+                prev ^= readBits(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(prev);
+        }
+    }
+
+    void decodeInts(long address, int[] values, int count) {
+        ptr = address;
+        if (Unsafe.getUnsafe().getByte(ptr++) == RLE) {
+            int i = 0;
+            while (i < count) {
+                int value = (int) getVarLong();
+                for (int n = (int) getVarLong(); n > 0; n--) {
+                    values[i++] = value;
+                }
+            }
+        } else {
+            int size = (int) getVarLong();
+            for (int k = 0; k < size; k++) {
+                dictionary[k] = (int) getVarLong();
+            }
+            int width = widthOf(size);
+            bitCount = 0;
+            for (int i = 0; i < count; i++) {
+                values[i] = dictionary[(int) readBits(width)];
+            }
+        }
+    }
+
+    void decodeLongs(long address, long[] values, int count) {
+        ptr = address;
+        long value = Unsafe.getUnsafe().getLong(ptr);
+        ptr += 8;
+        values[0] = value;
+
+        long delta = 0;
+        for (int i = 1; i < count; i++) {
+            delta += getVarLong();
+            values[i] = value += delta;
+        }
+    }
+
+    /**
+     * Gorilla encoding: every value is XOR-ed with previous one. Zero XOR is encoded as single bit,
+     * otherwise meaningful bits of XOR are written either within window of previous value or
+     * prefixed by new window (5 bits of leading zeroes and 6 bits of length).
+     */
+    int encodeDoubles(double[] values, int count, long address) {
+        ptr = address;
+        bitCount = 0;
+        long prev = Double.doubleToRawLongBits(values[0]);
+        Unsafe.getUnsafe().putLong(ptr, prev);
+        ptr += 8;
+
+        int leading = -1;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            long value = Double.doubleToRawLongBits(values[i]);
+            long xor = value ^ prev;
+            prev = value;
+
+            if (xor == 0) {
+                writeBits(0, 1);
+                continue;
+            }
+
+            int lz = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int tz = Long.numberOfTrailingZeros(xor);
+            if (leading != -1 && lz >= leading && tz >= trailing) {
+                writeBits(2, 2);
+                writeBits(xor >>> trailing, 64 - leading - trailing);
+            } else {
+                leading = lz;
+                trailing = tz;
+                int len = 64 - lz - tz;
+                writeBits(3, 2);
+                writeBits(lz, 5);
+                writeBits(len - 1, 6);
+                writeBits(xor >>> tz, len);
+            }
+        }
+        flushBits();
+        return (int) (ptr - address);
+    }
+
+    /**
+     * Run length or dictionary encoding, whichever is smaller. Dictionary codes
+     * are bit packed using minimum width to represent dictionary size.
+     */
+    int encodeInts(int[] values, int count, long address) {
+        codes.clear();
+        int size = 0;
+        long rleLen = 0;
+        long dictionaryLen = 0;
+        for (int i = 0; i < count; ) {
+            int value = values[i];
+            int j = i + 1;
+            while (j < count && values[j] == value) {
+                j++;
+            }
+            rleLen += varLongSize(value) + varLongSize(j - i);
+            if (codes.get(value) == -1) {
+                codes.put(value, size);
+                dictionary[size++] = value;
+                dictionaryLen += varLongSize(value);
+            }
+            i = j;
+        }
+        int width = widthOf(size);
+        dictionaryLen += varLongSize(size) + ((long) count * width + 7) / 8;
+
+        ptr = address;
+        if (rleLen <= dictionaryLen) {
+            Unsafe.getUnsafe().putByte(ptr++, RLE);
+            for (int i = 0; i < count; ) {
+                int value = values[i];
+                int j = i + 1;
+                while (j < count && values[j] == value) {
+                    j++;
+                }
+                putVarLong(value);
+                putVarLong(j - i);
+                i = j;
+            }
+        } else {
+            Unsafe.getUnsafe().putByte(ptr++, DICTIONARY);
+            putVarLong(size);
+            for (int k = 0; k < size; k++) {
+                putVarLong(dictionary[k]);
+            }
+            bitCount = 0;
+            for (int i = 0; i < count; i++) {
+                writeBits(codes.get(values[i]), width);
+            }
+            flushBits();
+        }
+        return (int) (ptr - address);
+    }
+
+    /**
+     * Delta-of-delta encoding, first value is written as is and the rest as
+     * zigzag varints. Regular timestamps take single byte per value.
+     */
+    int encodeLongs(long[] values, int count, long address) {
+        ptr = address;
+        long prev = values[0];
+        Unsafe.getUnsafe().putLong(ptr, prev);
+        ptr += 8;
+
+        long prevDelta = 0;
+        for (int i = 1; i < count; i++) {
+            long delta = values[i] - prev;
+            putVarLong(delta - prevDelta);
+            prevDelta = delta;
+            prev = values[i];
+        }
+        return (int) (ptr - address);
+    }
+
+    private static int varLongSize(long value) {
+        long v = (value << 1) ^ (value >> 63);
+        return (70 - Long.numberOfLeadingZeros(v | 1)) / 7;
+    }
+
+    private static int widthOf(int size) {
+        return size < 2 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    private void flushBits() {
+        if (bitCount > 0) {
+            Unsafe.getUnsafe().putByte(ptr++, (byte) (bits << (8 - bitCount)));
+            bitCount = 0;
+        }
+    }
+
+    private long getVarLong() {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = Unsafe.getUnsafe().getByte(ptr++);
+            v |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private void putVarLong(long value) {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7fL) != 0) {
+            Unsafe.getUnsafe().putByte(ptr++, (byte) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        Unsafe.getUnsafe().putByte(ptr++, (byte) v);
+    }
+
+    private long readBits(int n) {
+        if (n > 32) {
+            long hi = readBits(n - 32);
+            return (hi << 32) | readBits(32);
+        }
+
+        while (bitCount < n) {
+            bits = (bits << 8) | (Unsafe.getUnsafe().getByte(ptr++) & 0xff);
+            bitCount += 8;
+        }
+        bitCount -= n;
+        return (bits >>> bitCount) & ((1L << n) - 1);
+    }
+
+    private void writeBits(long value, int n) {
+        if (n > 32) {
+            writeBits(value >>> 32, n - 32);
+            n = 32;
+        }
+
+        bits = (bits << n) | (value & ((1L << n) - 1));
+        bitCount += n;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            Unsafe.getUnsafe().putByte(ptr++, (byte) (bits >>> bitCount));
+        }
+    }
+}
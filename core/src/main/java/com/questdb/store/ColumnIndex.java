@@ -0,0 +1,90 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.ex.JournalException;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+
+import java.io.Closeable;
+
+/**
+ * Mapping of integer keys to ascending row ids of a partition column. Keys start at -1, which is
+ * where null values of symbol columns are indexed.
+ */
+public interface ColumnIndex extends Closeable {
+
+    void add(int key, long value);
+
+    @Override
+    void close();
+
+    /**
+     * Adds index files written to since previous call to list of files to sync.
+     *
+     * @param files list to add files to
+     */
+    void collectDirty(ObjList<MemoryFile> files);
+
+    void commit();
+
+    void compact() throws JournalException;
+
+    boolean contains(int key);
+
+    /**
+     * Cursor over values of key, newest first. Cursor instance is shared between calls.
+     *
+     * @param key value of key
+     * @return cursor
+     */
+    IndexCursor cursor(int key);
+
+    void force();
+
+    /**
+     * Cursor over values of key, oldest first. Cursor instance is shared between calls.
+     *
+     * @param key value of key
+     * @return cursor
+     */
+    IndexCursor fwdCursor(int key);
+
+    long getTxAddress();
+
+    void setTxAddress(long txAddress);
+
+    int getValueCount(int key);
+
+    LongList getValues(int key);
+
+    void getValues(int key, LongList values);
+
+    IndexCursor newFwdCursor(int key);
+
+    long size();
+
+    void truncate(long size);
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.misc.Unsafe;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Read-only fixed width column stored as sequence of independently encoded blocks of
+ * 2^{@link #BLOCK_BITS} rows. Columns of sealed partitions are rewritten in this format
+ * by {@link com.questdb.PartitionCompactor}. Codec depends on column type:
+ * <pre>
+ *     LONG, DATE:   delta-of-delta, zigzag varints
+ *     DOUBLE:       XOR with previous value (Gorilla)
+ *     INT, SYMBOL:  run length or dictionary, whichever is smaller for the block
+ * </pre>
+ * File layout:
+ * <pre>
+ *     row count (8 bytes) | block end offsets (8 bytes each) | blocks
+ * </pre>
+ * Block is decoded on first access to any of its rows and subsequent rows are served from
+ * decoded copy, which suits sequential and block-wise scans. Random access pays for
+ * decoding whole block.
+ * <p>
+ * Column cannot be appended to or read as raw buffer, e.g. by replication. It can only be truncated
+ * entirely, which happens when journal is truncated and partition directory is removed.
+ */
+public class CompressedColumn extends FixedColumn {
+    public static final int BLOCK_BITS = 12;
+    public static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    public static final String FILE_SUFFIX = ".z";
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private final BlockCodec codec = new BlockCodec();
+    private final ColumnType type;
+    private final long dataOffset;
+    private final long[] longs;
+    private final double[] doubles;
+    private final int[] ints;
+    private long rowCount;
+    private long block = -1;
+
+    public CompressedColumn(MemoryFile mappedFile, ColumnType type, int width) {
+        super(mappedFile, width);
+        this.type = type;
+        this.rowCount = mappedFile.getAppendOffset() > 0 ? Unsafe.getUnsafe().getLong(mappedFile.addressOf(0, 8)) : 0;
+        this.dataOffset = 8 + blockCount(rowCount) * 8;
+        this.longs = type == ColumnType.LONG || type == ColumnType.DATE ? new long[BLOCK_SIZE] : null;
+        this.doubles = type == ColumnType.DOUBLE ? new double[BLOCK_SIZE] : null;
+        this.ints = type == ColumnType.INT || type == ColumnType.SYMBOL ? new int[BLOCK_SIZE] : null;
+    }
+
+    /**
+     * Writes all rows of source column into empty memory file.
+     *
+     * @param src  column to compress
+     * @param type type of source column, must be supported
+     * @param dst  destination file
+     */
+    public static void compress(FixedColumn src, ColumnType type, MemoryFile dst) {
+        final BlockCodec codec = new BlockCodec();
+        final long rows = src.size();
+        final long blocks = blockCount(rows);
+        long[] longs = null;
+        double[] doubles = null;
+        int[] ints = null;
+        switch (type) {
+            case DOUBLE:
+                doubles = new double[BLOCK_SIZE];
+                break;
+            case INT:
+            case SYMBOL:
+                ints = new int[BLOCK_SIZE];
+                break;
+            default:
+                longs = new long[BLOCK_SIZE];
+                break;
+        }
+
+        long buf = Unsafe.getUnsafe().allocateMemory(BlockCodec.maxEncodedSize(BLOCK_SIZE));
+        try {
+            Unsafe.getUnsafe().putLong(dst.addressOf(0, 8), rows);
+            long offset = 8 + blocks * 8;
+            for (long b = 0; b < blocks; b++) {
+                long lo = b << BLOCK_BITS;
+                int n = (int) Math.min(BLOCK_SIZE, rows - lo);
+                int len;
+                switch (type) {
+                    case DOUBLE:
+                        for (int i = 0; i < n; i++) {
+                            doubles[i] = src.getDouble(lo + i);
+                        }
+                        len = codec.encodeDoubles(doubles, n, buf);
+                        break;
+                    case INT:
+                    case SYMBOL:
+                        for (int i = 0; i < n; i++) {
+                            ints[i] = src.getInt(lo + i);
+                        }
+                        len = codec.encodeInts(ints, n, buf);
+                        break;
+                    default:
+                        for (int i = 0; i < n; i++) {
+                            longs[i] = src.getLong(lo + i);
+                        }
+                        len = codec.encodeLongs(longs, n, buf);
+                        break;
+                }
+                Unsafe.getUnsafe().copyMemory(buf, dst.addressOf(offset, len), len);
+                offset += len;
+                Unsafe.getUnsafe().putLong(dst.addressOf(8 + b * 8, 8), offset);
+            }
+            dst.setAppendOffset(offset);
+        } finally {
+            Unsafe.getUnsafe().freeMemory(buf);
+        }
+    }
+
+    public static boolean isSupported(ColumnType type) {
+        switch (type) {
+            case INT:
+            case LONG:
+            case DATE:
+            case DOUBLE:
+            case SYMBOL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void commit() {
+        // nothing is ever appended
+    }
+
+    @Override
+    public void compact() {
+        // file is written to exact size
+    }
+
+    @Override
+    public ByteBuffer getBuffer(long offset, int size) {
+        throw new JournalRuntimeException("Compressed column cannot be read as raw buffer: %s", mappedFile);
+    }
+
+    @Override
+    public void copy(Object obj, long offset) {
+        throw readOnly();
+    }
+
+    @Override
+    public double getDouble(long localRowID) {
+        return doubles[decode(localRowID)];
+    }
+
+    @Override
+    public int getInt(long localRowID) {
+        return Unsafe.arrayGet(ints, decode(localRowID));
+    }
+
+    @Override
+    public long getLong(long localRowID) {
+        return Unsafe.arrayGet(longs, decode(localRowID));
+    }
+
+    @Override
+    public long size() {
+        return rowCount;
+    }
+
+    @Override
+    public long transferTo(long offset, long count, WritableByteChannel target) {
+        throw new JournalRuntimeException("Compressed column cannot be read as raw buffer: %s", mappedFile);
+    }
+
+    @Override
+    public void truncate(long size) {
+        if (size <= 0) {
+            rowCount = 0;
+            block = -1;
+        } else if (size < rowCount) {
+            throw new JournalRuntimeException("Compressed column cannot be truncated: %s", mappedFile);
+        }
+    }
+
+    @Override
+    public void putDouble(double value) {
+        throw readOnly();
+    }
+
+    @Override
+    public long putInt(int value) {
+        throw readOnly();
+    }
+
+    @Override
+    public long putLong(long value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void putNull() {
+        throw readOnly();
+    }
+
+    private static long blockCount(long rows) {
+        return (rows + BLOCK_MASK) >>> BLOCK_BITS;
+    }
+
+    private int decode(long localRowID) {
+        long b = localRowID >>> BLOCK_BITS;
+        if (b != block) {
+            decodeBlock(b);
+        }
+        return (int) (localRowID & BLOCK_MASK);
+    }
+
+    private void decodeBlock(long b) {
+        long lo = b == 0 ? dataOffset : Unsafe.getUnsafe().getLong(mappedFile.addressOf(b * 8, 8));
+        long hi = Unsafe.getUnsafe().getLong(mappedFile.addressOf(8 + b * 8, 8));
+        int n = (int) Math.min(BLOCK_SIZE, rowCount - (b << BLOCK_BITS));
+        long address = mappedFile.addressOf(lo, (int) (hi - lo));
+
+        switch (type) {
+            case DOUBLE:
+                codec.decodeDoubles(address, doubles, n);
+                break;
+            case INT:
+            case SYMBOL:
+                codec.decodeInts(address, ints, n);
+                break;
+            default:
+                codec.decodeLongs(address, longs, n);
+                break;
+        }
+        block = b;
+    }
+
+    private JournalRuntimeException readOnly() {
+        return new JournalRuntimeException("Compressed column is read-only: %s", mappedFile);
+    }
+}
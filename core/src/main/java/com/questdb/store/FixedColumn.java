@@ -33,6 +33,20 @@ public class FixedColumn extends AbstractColumn {
         this.width = width;
     }
 
+    /**
+     * Appends rows of column of the same width. Bytes are copied between mapped pages.
+     *
+     * @param src column to copy rows from
+     * @param lo  first row to copy
+     * @param hi  row to copy up to, exclusive
+     */
+    public void append(FixedColumn src, long lo, long hi) {
+        long offset = mappedFile.getAppendOffset();
+        long len = (hi - lo) * width;
+        mappedFile.copy(src.mappedFile, src.getOffset(lo), offset, len);
+        preCommit(offset + len);
+    }
+
     public long bsearchEdge(long val, BSearchType type) {
         return bsearchEdge(val, type, 0, size() - 1);
     }
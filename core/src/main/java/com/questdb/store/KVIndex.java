@@ -31,11 +31,11 @@ import com.questdb.misc.Files;
 import com.questdb.misc.Numbers;
 import com.questdb.misc.Unsafe;
 import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
 
-import java.io.Closeable;
 import java.io.File;
 
-public class KVIndex implements Closeable {
+public class KVIndex implements ColumnIndex {
 
     /*
         storage for row count and offset
@@ -52,7 +52,7 @@ public class KVIndex implements Closeable {
 
     private static final int ENTRY_SIZE = 32;
     private final RevIndexCursor cachedCursor = new RevIndexCursor();
-    private final FwdIndexCursor fwdIndexCursor = new FwdIndexCursor();
+    private final FwdIndexCursor fwdIndexCursor = new FwdIndexCursor(this);
     private final int rowBlockSize;
     private final int rowBlockLen;
     private final MemoryFile kData;
@@ -100,6 +100,8 @@ public class KVIndex implements Closeable {
         this.firstEntryOffset = keyBlockSizeOffset + 16;
         this.rowBlockSize = rowBlockLen * 8 + 16;
         this.rData = new MemoryFile(new File(baseName.getParentFile(), baseName.getName() + ".r"), ByteBuffers.getBitHint(rowBlockSize, keyCount), mode);
+        // row blocks of a key are scattered across the file, read ahead would be wasted
+        this.rData.advise(Files.ADVICE_RANDOM);
     }
 
     public static void delete(File base) {
@@ -163,6 +165,11 @@ public class KVIndex implements Closeable {
         kData.close();
     }
 
+    public void collectDirty(ObjList<MemoryFile> files) {
+        kData.collectDirty(files);
+        rData.collectDirty(files);
+    }
+
     public void commit() {
         if (!startTx) {
             putLong(kData, keyBlockSizeOffset, keyBlockSize); // 8
@@ -221,6 +228,52 @@ public class KVIndex implements Closeable {
         }
     }
 
+    /**
+     * Collects addresses of row blocks of key, oldest first. Values can then be read by position with
+     * {@link #getValueAt(LongList, int)}, which unlike {@link #getValueQuick(int, int)} does not walk
+     * row blocks on every read.
+     *
+     * @param key    value of key
+     * @param blocks list to copy block addresses to
+     * @return number of values associated with key
+     */
+    public int getValueBlocks(int key, LongList blocks) {
+        blocks.clear();
+        if (key < -1) {
+            return 0;
+        }
+
+        long keyOffset = getKeyOffset(key);
+        if (keyOffset >= firstEntryOffset + keyBlockSize) {
+            return 0;
+        }
+
+        long addr = kData.addressOf(keyOffset, ENTRY_SIZE);
+        long rowCount = Unsafe.getUnsafe().getLong(addr + 8);
+        if (rowCount == 0) {
+            return 0;
+        }
+
+        long address = rData.addressOf(Unsafe.getUnsafe().getLong(addr + 16) - rowBlockSize, rowBlockSize);
+        blocks.add(address);
+        for (long n = rowBlockLen; n < rowCount; n += rowBlockLen) {
+            address = rData.addressOf(Unsafe.getUnsafe().getLong(address + (rowBlockLen << 3)) - rowBlockSize, rowBlockSize);
+            blocks.add(address);
+        }
+        return (int) rowCount;
+    }
+
+    /**
+     * Reads value by its position among values of key.
+     *
+     * @param blocks row block addresses collected by {@link #getValueBlocks(int, LongList)}
+     * @param i      position of value, oldest first
+     * @return value
+     */
+    public long getValueAt(LongList blocks, int i) {
+        return Unsafe.getUnsafe().getLong(blocks.getQuick(i >>> bits) + ((i & mask) << 3));
+    }
+
     /**
      * Counts values for a key. Uses case for this method is best illustrated by this code examples:
      * <pre>
@@ -362,9 +415,7 @@ public class KVIndex implements Closeable {
     }
 
     public FwdIndexCursor newFwdCursor(int key) {
-        FwdIndexCursor cursor = new FwdIndexCursor();
-        cursor.setKey(key);
-        return cursor;
+        return new FwdIndexCursor(this).setKey(key);
     }
 
     /**
@@ -554,12 +605,46 @@ public class KVIndex implements Closeable {
         }
     }
 
-    private class FwdIndexCursor implements IndexCursor {
+    /**
+     * Forward cursor, which can be moved between instances of index, so that query keeps
+     * one cursor per key for all partitions it visits.
+     */
+    public static class FwdIndexCursor implements IndexCursor {
+        private KVIndex index;
         private long rowCount;
         private long size;
         private long address;
 
-        public FwdIndexCursor setKey(int key) {
+        public FwdIndexCursor() {
+        }
+
+        private FwdIndexCursor(KVIndex index) {
+            this.index = index;
+        }
+
+        public boolean hasNext() {
+            return this.rowCount < size;
+        }
+
+        public long next() {
+            int r = (int) (rowCount++ & index.mask);
+            long v = Unsafe.getUnsafe().getLong(address + (r << 3));
+            if (r == index.mask && rowCount < size) {
+                this.address = index.rData.addressOf(Unsafe.getUnsafe().getLong(address + (index.rowBlockLen << 3)) - index.rowBlockSize, index.rowBlockSize);
+            }
+            return v;
+        }
+
+        public FwdIndexCursor of(KVIndex index, int key) {
+            this.index = index;
+            return setKey(key);
+        }
+
+        public long size() {
+            return size;
+        }
+
+        private FwdIndexCursor setKey(int key) {
             this.rowCount = 0;
             this.size = 0;
 
@@ -567,12 +652,12 @@ public class KVIndex implements Closeable {
                 return this;
             }
 
-            long keyOffset = getKeyOffset(key);
-            if (keyOffset >= firstEntryOffset + keyBlockSize) {
+            long keyOffset = index.getKeyOffset(key);
+            if (keyOffset >= index.firstEntryOffset + index.keyBlockSize) {
                 return this;
             }
 
-            long addr = kData.addressOf(keyOffset, ENTRY_SIZE);
+            long addr = index.kData.addressOf(keyOffset, ENTRY_SIZE);
             this.size = Unsafe.getUnsafe().getLong(addr + 8);
 
             if (size == 0) {
@@ -580,26 +665,8 @@ public class KVIndex implements Closeable {
             }
 
             this.rowCount = 0;
-            this.address = rData.addressOf(Unsafe.getUnsafe().getLong(addr + 16) - rowBlockSize, rowBlockSize);
+            this.address = index.rData.addressOf(Unsafe.getUnsafe().getLong(addr + 16) - index.rowBlockSize, index.rowBlockSize);
             return this;
         }
-
-        public boolean hasNext() {
-            return this.rowCount < size;
-        }
-
-        public long next() {
-            int r = (int) (rowCount++ & mask);
-            long v = Unsafe.getUnsafe().getLong(address + (r << 3));
-            if (r == mask && rowCount < size) {
-                this.address = rData.addressOf(Unsafe.getUnsafe().getLong(address + (rowBlockLen << 3)) - rowBlockSize, rowBlockSize);
-            }
-            return v;
-        }
-
-
-        public long size() {
-            return size;
-        }
     }
 }
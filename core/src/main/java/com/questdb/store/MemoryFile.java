@@ -31,12 +31,16 @@ import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
 import com.questdb.misc.*;
 import com.questdb.std.ObjList;
+import com.questdb.std.Path;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.io.*;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 
 @SuppressFBWarnings({"LII_LIST_INDEXED_ITERATING", "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS", "EXS_EXCEPTION_SOFTENING_HAS_CHECKED"})
 public class MemoryFile implements Closeable {
@@ -45,8 +49,11 @@ public class MemoryFile implements Closeable {
     // reserve first 8 bytes in the file for storing pointer to logical end of file
     // so the actual data begins from "DATA_OFFSET"
     private final static int DATA_OFFSET = 8;
+    // columns paged in 2MB or larger chunks are worth backing with huge pages
+    private final static int HUGE_PAGE_BIT_HINT = 21;
     private final File file;
     private final JournalMode mode;
+    private final boolean regionRequested;
     private int bitHint;
     private FileChannel channel;
     private MappedByteBuffer offsetBuffer;
@@ -58,10 +65,32 @@ public class MemoryFile implements Closeable {
     private long cachedAppendOffset = -1;
     private long cachedAddress;
     private long offsetDirectAddr;
+    private int accessAdvice = Files.ADVICE_NORMAL;
+    // single region mapping of whole file, fd is -1 when file is mapped as buffers
+    private long regionFd = -1;
+    private long regionBase;
+    private long regionSize;
+    private long regionAddress;
+    private long regionLimit;
+    // file has been accessed for write since writer last collected it for sync
+    private boolean dirty = false;
 
     public MemoryFile(File file, int bitHint, JournalMode mode) throws JournalException {
+        this(file, bitHint, mode, false);
+    }
+
+    /**
+     * Creates memory file, which optionally maps whole file as single region rather than
+     * as set of buffers. Region mode reduces {@link #addressOf(long, int)} to bounds check and addition,
+     * and never creates stitch buffers. Writers map region on first access, as buffers are mapped,
+     * and grow it by doubling. Region may move when it
+     * grows, so addresses returned by {@link #addressOf(long, int)} must not be retained past next call.
+     * When native mapping is not available file falls back to buffers transparently.
+     */
+    public MemoryFile(File file, int bitHint, JournalMode mode, boolean region) throws JournalException {
         this.file = file;
         this.mode = mode;
+        this.regionRequested = region;
         if (bitHint < 2) {
             LOG.info().$("BitHint is too small for ").$(file).$();
         }
@@ -72,6 +101,14 @@ public class MemoryFile implements Closeable {
     }
 
     public long addressOf(long offset, int size) {
+        if (regionFd != -1) {
+            dirty = true;
+            if (offset + size > regionLimit) {
+                mapRegion(offset + size);
+            }
+            return regionAddress + offset;
+        }
+
         if (offset > cachedBufferLo && offset + size < cachedBufferHi) {
             return cachedAddress + offset - cachedBufferLo - 1;
         } else {
@@ -79,13 +116,59 @@ public class MemoryFile implements Closeable {
         }
     }
 
+    /**
+     * Passes access hint to OS. Sequential, random and normal hints describe access pattern, they apply to
+     * pages mapped already and to pages mapped from now on. Will-need hint starts reading whole file
+     * into page cache ahead of use, dont-need hint releases mapped pages and drops file from page cache,
+     * so that finished scan does not push out data other readers use.
+     */
+    public void advise(int advice) {
+        switch (advice) {
+            case Files.ADVICE_WILLNEED:
+            case Files.ADVICE_DONTNEED:
+                try (Path path = new Path(file.getAbsolutePath())) {
+                    Files.advise(path, 0, 0, advice);
+                }
+                break;
+            default:
+                accessAdvice = advice;
+                break;
+        }
+
+        for (int i = 0, k = buffers.size(); i < k; i++) {
+            MappedByteBuffer b = buffers.getQuick(i);
+            if (b != null) {
+                Files.advise(ByteBuffers.getAddress(b), b.limit(), advice);
+            }
+        }
+
+        if (regionBase != 0) {
+            Files.advise(regionBase, regionSize, advice);
+        }
+    }
+
+    /**
+     * Adds this file to list of files to sync when it has been written to since previous call. Writes
+     * made through cached buffer do not mark file, so cache is dropped and next write marks file again.
+     * Must be called from thread that writes to file.
+     *
+     * @param files list to add file to
+     */
+    public void collectDirty(ObjList<MemoryFile> files) {
+        if (dirty && mode != JournalMode.READ && mode != JournalMode.BULK_READ) {
+            files.add(this);
+            dirty = false;
+            cachedBufferLo = cachedBufferHi = -1;
+        }
+    }
+
     @Override
-    public void close() {
+    public synchronized void close() {
         unmap();
         this.channel = Misc.free(channel);
     }
 
-    public void compact() throws JournalException {
+    public synchronized void compact() throws JournalException {
         close();
         try {
             openInternal("rw");
@@ -109,9 +192,22 @@ public class MemoryFile implements Closeable {
         Files.delete(file);
     }
 
-    public void force() {
+    /**
+     * Flushes mapped pages to disk. Can be called from thread other than one writing to file, mapping changes
+     * are synchronized with this method. Once file is closed its unmapped pages remain in page cache, they are
+     * then flushed via file descriptor.
+     */
+    public synchronized void force() {
+        if (offsetBuffer == null) {
+            forceClosed();
+            return;
+        }
+
         int stitchesSize = stitches.size();
         offsetBuffer.force();
+        if (regionBase != 0 && !Files.msync(regionBase, regionSize)) {
+            throw new JournalRuntimeException("Could not sync %s", file.getAbsolutePath());
+        }
         for (int i = 0, k = buffers.size(); i < k; i++) {
             MappedByteBuffer b = buffers.getQuick(i);
             if (b != null) {
@@ -139,6 +235,7 @@ public class MemoryFile implements Closeable {
     }
 
     public void setAppendOffset(long offset) {
+        dirty = true;
         Unsafe.getUnsafe().putLong(offsetDirectAddr, cachedAppendOffset = offset);
     }
 
@@ -154,11 +251,29 @@ public class MemoryFile implements Closeable {
         return cachedBuffer;
     }
 
+    public boolean isRegion() {
+        return regionFd != -1;
+    }
+
     @Override
     public String toString() {
         return this.getClass().getName() + "[file=" + file + ", appendOffset=" + getAppendOffset() + ']';
     }
 
+    /**
+     * Sends file range straight from page cache to target channel. For socket and file targets
+     * this is sendfile() on Linux, so bytes never travel through Java heap or mapped buffers.
+     *
+     * @param offset data offset, same as in getBuffer()
+     * @param count  maximum number of bytes to send
+     * @param target channel to send bytes to
+     * @return number of bytes actually sent, which can be less than count
+     * @throws IOException when target channel fails
+     */
+    public long transferTo(long offset, long count, WritableByteChannel target) throws IOException {
+        return channel.transferTo(offset + DATA_OFFSET, count, target);
+    }
+
     private long allocateAddress(long offset, int size) {
         cachedBuffer = getBufferInternal(offset, size);
         cachedBufferLo = offset - cachedBuffer.position() - 1;
@@ -167,10 +282,13 @@ public class MemoryFile implements Closeable {
         return cachedAddress + cachedBuffer.position();
     }
 
-    private MappedByteBuffer createMappedBuffer(int index, int bufferSize, long bufferOffset) {
+    private synchronized MappedByteBuffer createMappedBuffer(int index, int bufferSize, long bufferOffset) {
         MappedByteBuffer buffer;
         buffer = mapBufferInternal(bufferOffset, bufferSize);
         assert bufferSize > 0;
+        if (accessAdvice != Files.ADVICE_NORMAL) {
+            Files.advise(ByteBuffers.getAddress(buffer), buffer.limit(), accessAdvice);
+        }
         buffers.extendAndSet(index, buffer);
         switch (mode) {
             case BULK_READ:
@@ -200,7 +318,7 @@ public class MemoryFile implements Closeable {
         return buffer;
     }
 
-    private MappedByteBuffer createStitchBuffer(int size, int index, long stitchOffset) {
+    private synchronized MappedByteBuffer createStitchBuffer(int size, int index, long stitchOffset) {
         ByteBufferWrapper bufferWrapper = stitches.getQuiet(index);
         if (bufferWrapper != null) {
             // if we already have a stitch for this buffer
@@ -223,6 +341,7 @@ public class MemoryFile implements Closeable {
     }
 
     private MappedByteBuffer getBufferInternal(long offset, int size) {
+        dirty = true;
 
         int bufferSize = 1 << bitHint;
         int index = (int) (offset >>> bitHint);
@@ -233,7 +352,7 @@ public class MemoryFile implements Closeable {
 
         // this may occur when journal is refreshed.
         if (buffer != null && buffer.limit() < bufferPos) {
-            buffer = ByteBuffers.release(buffer);
+            buffer = release(index);
         }
 
         if (buffer == null) {
@@ -250,6 +369,16 @@ public class MemoryFile implements Closeable {
         return buffer;
     }
 
+    private void forceClosed() {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            ch.force(false);
+        } catch (NoSuchFileException ignore) {
+            // file has been removed, there is nothing to sync
+        } catch (IOException e) {
+            throw new JournalRuntimeException("Could not sync %s", e, file.getAbsolutePath());
+        }
+    }
+
     private String getFullFileName() {
         return this.file.getAbsolutePath();
     }
@@ -284,6 +413,65 @@ public class MemoryFile implements Closeable {
         }
     }
 
+    private synchronized void mapRegion(long required) {
+        long size;
+        int m;
+        switch (mode) {
+            case READ:
+            case BULK_READ:
+                // reader maps whatever writer has committed to file so far
+                try {
+                    size = channel.size();
+                } catch (IOException e) {
+                    throw new JournalRuntimeException("Could not get size of %s", e, file.getAbsolutePath());
+                }
+                if (size < required + DATA_OFFSET) {
+                    throw new JournalRuntimeException("Offset %d is beyond end of %s", required, file.getAbsolutePath());
+                }
+                m = Files.MAP_RO;
+                break;
+            default:
+                // grow by doubling, in increments of page hint
+                long page = 1L << bitHint;
+                size = Math.max(required + DATA_OFFSET, regionSize * 2);
+                if (regionBase == 0) {
+                    // first mapping covers whole file and must not cut it short
+                    try {
+                        size = Math.max(size, channel.size());
+                    } catch (IOException e) {
+                        throw new JournalRuntimeException("Could not get size of %s", e, file.getAbsolutePath());
+                    }
+                }
+                size = (size + page - 1) & ~(page - 1);
+                if (!Files.truncate(regionFd, size)) {
+                    throw new JournalRuntimeException("Could not extend %s to %d bytes", file.getAbsolutePath(), size);
+                }
+                m = Files.MAP_RW;
+                break;
+        }
+
+        boolean hugePages = bitHint >= HUGE_PAGE_BIT_HINT;
+        long base;
+        if (regionBase == 0) {
+            base = Files.mmap(regionFd, size, 0, m, hugePages);
+        } else {
+            base = Files.mremap(regionFd, regionBase, regionSize, size, 0, m, hugePages);
+        }
+
+        if (base == -1) {
+            throw new JournalRuntimeException("Could not map %d bytes of %s", size, file.getAbsolutePath());
+        }
+
+        if (accessAdvice != Files.ADVICE_NORMAL) {
+            Files.advise(base, size, accessAdvice);
+        }
+
+        regionBase = base;
+        regionSize = size;
+        regionAddress = base + DATA_OFFSET;
+        regionLimit = size - DATA_OFFSET;
+    }
+
     private void open() throws JournalException {
         String m;
         switch (mode) {
@@ -296,6 +484,9 @@ public class MemoryFile implements Closeable {
                 break;
         }
         openInternal(m);
+        if (regionRequested) {
+            openRegion();
+        }
     }
 
     private void openInternal(String mode) throws JournalException {
@@ -339,7 +530,76 @@ public class MemoryFile implements Closeable {
         }
     }
 
+    private void openRegion() throws JournalException {
+        long fd;
+        try (Path path = new Path(file.getAbsolutePath())) {
+            switch (mode) {
+                case READ:
+                case BULK_READ:
+                    fd = Files.openRO(path);
+                    break;
+                default:
+                    fd = Files.openRW(path);
+                    break;
+            }
+        }
+
+        if (fd < 0) {
+            throw new JournalException("Could not open %s", file.getAbsolutePath());
+        }
+
+        regionFd = fd;
+        long fileSize = size();
+        try {
+            switch (mode) {
+                case READ:
+                case BULK_READ:
+                    // empty file is mapped on first access
+                    if (fileSize > DATA_OFFSET) {
+                        mapRegion(fileSize - DATA_OFFSET);
+                    }
+                    break;
+                default:
+                    // region is mapped on first access, opening file must not grow it,
+                    // otherwise compacted file would be extended right away
+                    if (!Files.isMmapSupported()) {
+                        throw new JournalRuntimeException("Native mapping is not supported");
+                    }
+                    break;
+            }
+        } catch (JournalRuntimeException e) {
+            // native mapping is not available on this platform
+            LOG.info().$("Falling back to buffers for ").$(file).$(": ").$(e.getMessage()).$();
+            unmapRegion();
+        }
+    }
+
+    /**
+     * Copies bytes of other file into this file page by page, neither file is read into heap.
+     *
+     * @param src       file to copy from
+     * @param srcOffset data offset in source file
+     * @param offset    data offset in this file
+     * @param len       number of bytes to copy
+     */
+    void copy(MemoryFile src, long srcOffset, long offset, long len) {
+        while (len > 0) {
+            long from = src.addressOf(srcOffset, 1);
+            int n = src.pageRemaining(srcOffset);
+            long to = addressOf(offset, 1);
+            n = (int) Math.min(Math.min(n, pageRemaining(offset)), len);
+            Unsafe.getUnsafe().copyMemory(from, to, n);
+            srcOffset += n;
+            offset += n;
+            len -= n;
+        }
+    }
+
     int pageRemaining(long offset) {
+        if (regionFd != -1) {
+            return offset < regionLimit ? (int) Math.min(Integer.MAX_VALUE, regionLimit - offset) : 0;
+        }
+
         if (offset > cachedBufferLo && offset < cachedBufferHi) {
             return (int) (cachedBufferHi - offset - 1);
         } else {
@@ -347,6 +607,10 @@ public class MemoryFile implements Closeable {
         }
     }
 
+    private synchronized MappedByteBuffer release(int index) {
+        return ByteBuffers.release(buffers.getAndSetQuick(index, null));
+    }
+
     private long size() throws JournalException {
         try {
             return channel.size();
@@ -375,5 +639,18 @@ public class MemoryFile implements Closeable {
 
         offsetBuffer = ByteBuffers.release(offsetBuffer);
         assert offsetBuffer == null;
+        unmapRegion();
+    }
+
+    private void unmapRegion() {
+        if (regionBase != 0) {
+            Files.munmap(regionBase, regionSize);
+            regionBase = regionAddress = regionSize = regionLimit = 0;
+        }
+
+        if (regionFd != -1) {
+            Files.close(regionFd);
+            regionFd = -1;
+        }
     }
 }
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
+
+import java.io.Closeable;
+
+/**
+ * Size bounded cache of symbol keys and values, which can be shared by symbol tables of many journals.
+ * Each table registers with cache to obtain owner id that tells its entries apart from entries of other tables.
+ * Owner ids are never reused, so table that is closed or has its keys invalidated simply stops using its id.
+ * Entries of such id can no longer be hit, they lose reference bit on first pass of clock hand and are
+ * overwritten as their sets fill up. This keeps closing a table independent of cache capacity.
+ * <p>
+ * Entries are kept off-heap in sets of eight, set is chosen by hash of owner and key or value.
+ * When set is full an entry is evicted using CLOCK algorithm within the set, so cache never holds
+ * more entries than its capacity.
+ * <p>
+ * Value to key entries store hash of value only and candidate key is confirmed against symbol table data,
+ * which is already mapped into memory. Key to value entries keep reference to String to save on
+ * materializing same value over and over again.
+ * <p>
+ * Cache is not thread-safe, it is meant to be shared by journals of the same caching factory.
+ */
+public class SymbolCache implements Closeable {
+    private static final int WAY_BITS = 3;
+    private static final int WAYS = 1 << WAY_BITS;
+    private static final int WAY_MASK = WAYS - 1;
+    private static final int ENTRY_BITS = 4;
+    private static final int OWNER_OFFSET = 0;
+    private static final int KEY_OFFSET = 4;
+    private static final int HASH_OFFSET = 8;
+    private static final int REF_OFFSET = 12;
+    private final int capacity;
+    private final int bucketMask;
+    private final String[] values;
+    private long keyEntries;
+    private long keyHands;
+    private long valueEntries;
+    private long valueHands;
+    private int lastOwner = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    public SymbolCache(int capacity) {
+        this.capacity = Math.max(WAYS, Numbers.ceilPow2(capacity));
+        this.bucketMask = (this.capacity >> WAY_BITS) - 1;
+        this.values = new String[this.capacity];
+        this.keyEntries = allocate((long) this.capacity << ENTRY_BITS);
+        this.keyHands = allocate(this.capacity >> WAY_BITS);
+        this.valueEntries = allocate((long) this.capacity << ENTRY_BITS);
+        this.valueHands = allocate(this.capacity >> WAY_BITS);
+    }
+
+    @Override
+    public void close() {
+        if (keyEntries != 0) {
+            Unsafe.getUnsafe().freeMemory(keyEntries);
+            Unsafe.getUnsafe().freeMemory(keyHands);
+            Unsafe.getUnsafe().freeMemory(valueEntries);
+            Unsafe.getUnsafe().freeMemory(valueHands);
+            keyEntries = keyHands = valueEntries = valueHands = 0;
+            for (int i = 0; i < capacity; i++) {
+                values[i] = null;
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void resetCounters() {
+        hits = 0;
+        misses = 0;
+    }
+
+    private static long allocate(long size) {
+        long address = Unsafe.getUnsafe().allocateMemory(size);
+        Unsafe.getUnsafe().setMemory(address, size, (byte) 0);
+        return address;
+    }
+
+    private static long entry(long entries, int index) {
+        return entries + ((long) index << ENTRY_BITS);
+    }
+
+    private int bucket(int owner, int hash) {
+        int h = hash * 0x9E3779B9 + owner * 0x85EBCA6B;
+        return ((h ^ (h >>> 16)) & bucketMask) << WAY_BITS;
+    }
+
+    /**
+     * Finds slot to place new entry into. Slots are checked starting from clock hand of the set,
+     * recently used entries get their reference bit cleared and are given second chance.
+     *
+     * @return index of slot to be overwritten
+     */
+    private int evict(long entries, long hands, int bucket) {
+        long h = hands + (bucket >> WAY_BITS);
+        int hand = Unsafe.getUnsafe().getByte(h);
+        while (true) {
+            long e = entry(entries, bucket + hand);
+            if (Unsafe.getUnsafe().getInt(e + OWNER_OFFSET) != 0 && Unsafe.getUnsafe().getInt(e + REF_OFFSET) != 0) {
+                Unsafe.getUnsafe().putInt(e + REF_OFFSET, 0);
+                hand = (hand + 1) & WAY_MASK;
+            } else {
+                Unsafe.getUnsafe().putByte(h, (byte) ((hand + 1) & WAY_MASK));
+                return bucket + hand;
+            }
+        }
+    }
+
+    int getKey(int owner, CharSequence value, int hash, VariableColumn data) {
+        int bucket = bucket(owner, hash);
+        for (int i = 0; i < WAYS; i++) {
+            long e = entry(keyEntries, bucket + i);
+            if (Unsafe.getUnsafe().getInt(e + OWNER_OFFSET) == owner && Unsafe.getUnsafe().getInt(e + HASH_OFFSET) == hash) {
+                int key = Unsafe.getUnsafe().getInt(e + KEY_OFFSET);
+                if (data.cmpStr(key, value)) {
+                    Unsafe.getUnsafe().putInt(e + REF_OFFSET, 1);
+                    hits++;
+                    return key;
+                }
+            }
+        }
+        misses++;
+        return SymbolTable.VALUE_NOT_FOUND;
+    }
+
+    String getValue(int owner, int key) {
+        int bucket = bucket(owner, key);
+        for (int i = 0; i < WAYS; i++) {
+            long e = entry(valueEntries, bucket + i);
+            if (Unsafe.getUnsafe().getInt(e + OWNER_OFFSET) == owner && Unsafe.getUnsafe().getInt(e + KEY_OFFSET) == key) {
+                Unsafe.getUnsafe().putInt(e + REF_OFFSET, 1);
+                hits++;
+                return values[bucket + i];
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    void putKey(int owner, int hash, int key) {
+        int index = evict(keyEntries, keyHands, bucket(owner, hash));
+        long e = entry(keyEntries, index);
+        Unsafe.getUnsafe().putInt(e + OWNER_OFFSET, owner);
+        Unsafe.getUnsafe().putInt(e + KEY_OFFSET, key);
+        Unsafe.getUnsafe().putInt(e + HASH_OFFSET, hash);
+        Unsafe.getUnsafe().putInt(e + REF_OFFSET, 1);
+    }
+
+    void putValue(int owner, int key, String value) {
+        int index = evict(valueEntries, valueHands, bucket(owner, key));
+        long e = entry(valueEntries, index);
+        Unsafe.getUnsafe().putInt(e + OWNER_OFFSET, owner);
+        Unsafe.getUnsafe().putInt(e + KEY_OFFSET, key);
+        Unsafe.getUnsafe().putInt(e + REF_OFFSET, 1);
+        values[index] = value;
+    }
+
+    int register() {
+        return ++lastOwner;
+    }
+}
@@ -28,11 +28,13 @@ import com.questdb.ex.JournalException;
 import com.questdb.ex.JournalInvalidSymbolValueException;
 import com.questdb.ex.JournalRuntimeException;
 import com.questdb.misc.ByteBuffers;
+import com.questdb.misc.Chars;
 import com.questdb.misc.Hash;
 import com.questdb.misc.Misc;
 import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
 import com.questdb.std.AbstractImmutableIterator;
-import com.questdb.std.CharSequenceIntHashMap;
+import com.questdb.std.IntList;
 import com.questdb.std.ObjList;
 
 import java.io.Closeable;
@@ -46,22 +48,36 @@ public class SymbolTable implements Closeable {
     private static final String INDEX_FILE_SUFFIX = ".symi";
     private static final String HASH_INDEX_FILE_SUFFIX = ".symr";
     private static final double CACHE_LOAD_FACTOR = 0.2;
+    // private cache is sized after distinct count hint within these bounds,
+    // keys past the bound resolve via hash index and mapped data
+    private static final int MIN_CACHE_CAPACITY = 1 << 10;
+    private static final int MAX_CACHE_CAPACITY = 1 << 20;
+    private static final int MIN_BATCH_SLOTS = 16;
     private final int hashKeyCount;
     private final String column;
-    private final CharSequenceIntHashMap valueCache;
-    private final ObjList<String> keyCache;
-    private final boolean noCache;
+    private final SymbolCache cache;
+    private final boolean ownCache;
     private final Iter iter = new Iter();
+    private final ObjList<CharSequence> batch = new ObjList<>();
     private VariableColumn data;
     private KVIndex index;
     private int size;
+    private int cacheOwner;
+    private long batchSlots = 0;
+    private int batchMask = -1;
 
     public SymbolTable(int keyCount, int avgStringSize, int txCountHint, File directory, String column, JournalMode mode, int size, long indexTxAddress, boolean noCache) throws JournalException {
+        this(keyCount, avgStringSize, txCountHint, directory, column, mode, size, indexTxAddress, noCache, null);
+    }
+
+    /**
+     * @param sharedCache cache shared with other symbol tables, when null and caching is enabled table creates its own cache
+     */
+    public SymbolTable(int keyCount, int avgStringSize, int txCountHint, File directory, String column, JournalMode mode, int size, long indexTxAddress, boolean noCache, SymbolCache sharedCache) throws JournalException {
         // number of hash keys stored in index
         // assume it is 20% of stated capacity
         this.hashKeyCount = Numbers.ceilPow2(Math.max(2, (int) (keyCount * CACHE_LOAD_FACTOR))) - 1;
         this.column = column;
-        this.noCache = noCache;
         JournalMode m;
 
         switch (mode) {
@@ -83,8 +99,18 @@ public class SymbolTable implements Closeable {
         this.size = size;
 
         this.index = new KVIndex(new File(directory, column + HASH_INDEX_FILE_SUFFIX), this.hashKeyCount, keyCount, txCountHint, mode, indexTxAddress);
-        this.valueCache = new CharSequenceIntHashMap(noCache ? 0 : keyCount, 0.5, VALUE_NOT_FOUND);
-        this.keyCache = new ObjList<>(noCache ? 0 : keyCount);
+        if (noCache) {
+            this.cache = null;
+            this.ownCache = false;
+        } else if (sharedCache != null) {
+            this.cache = sharedCache;
+            this.ownCache = false;
+            this.cacheOwner = cache.register();
+        } else {
+            this.cache = new SymbolCache(Math.min(Math.max(keyCount, MIN_CACHE_CAPACITY), MAX_CACHE_CAPACITY));
+            this.ownCache = true;
+            this.cacheOwner = cache.register();
+        }
     }
 
     public void alignSize() {
@@ -92,6 +118,10 @@ public class SymbolTable implements Closeable {
     }
 
     public void applyTx(int size, long indexTxAddress) {
+        if (size < this.size) {
+            // keys past new size are about to be reused by other values
+            clearCache();
+        }
         this.size = size;
         this.index.setTxAddress(indexTxAddress);
     }
@@ -99,6 +129,19 @@ public class SymbolTable implements Closeable {
     public void close() {
         data = Misc.free(data);
         index = Misc.free(index);
+        if (batchSlots != 0) {
+            Unsafe.getUnsafe().freeMemory(batchSlots);
+            batchSlots = 0;
+        }
+        if (ownCache) {
+            Misc.free(cache);
+        }
+        cacheOwner = 0;
+    }
+
+    public void collectDirty(ObjList<MemoryFile> files) {
+        data.collectDirty(files);
+        index.collectDirty(files);
     }
 
     public void commit() {
@@ -124,6 +167,10 @@ public class SymbolTable implements Closeable {
         return data;
     }
 
+    public SymbolCache getCache() {
+        return cache;
+    }
+
     public long getIndexTxAddress() {
         return index.getTxAddress();
     }
@@ -133,8 +180,8 @@ public class SymbolTable implements Closeable {
             return VALUE_IS_NULL;
         }
 
-        if (!noCache) {
-            int key = valueCache.get(value);
+        if (cache != null) {
+            int key = cache.getKey(cacheOwner, value, Chars.hashCode(value), data);
             if (key != VALUE_NOT_FOUND) {
                 return key;
             }
@@ -144,11 +191,12 @@ public class SymbolTable implements Closeable {
     }
 
     public SymbolTable preLoad() {
-        for (int key = 0, size = (int) data.size(); key < size; key++) {
-            String value = data.getStr(key);
-            valueCache.putIfAbsent(value, key);
-            keyCache.add(value);
-
+        if (cache != null) {
+            for (int key = 0, size = (int) Math.min(data.size(), cache.getCapacity()); key < size; key++) {
+                String value = data.getStr(key);
+                cacheKey(key, value);
+                cache.putValue(cacheOwner, key, value);
+            }
         }
         return this;
     }
@@ -160,11 +208,58 @@ public class SymbolTable implements Closeable {
             data.commit();
             index.add(hashKey(value), key);
             size++;
-            cache(key, value.toString());
+            cacheKey(key, value);
         }
         return key;
     }
 
+    /**
+     * Resolves keys of all values in one go. Values that are not in the table yet are de-duplicated
+     * among themselves in off-heap hash, appended to data file and committed once for the whole batch,
+     * which is considerably cheaper than calling {@link #put(CharSequence)} for every new value.
+     * New values are not materialized as Strings, they are cached only when looked up later.
+     *
+     * @param values values to resolve, elements can be flyweight char sequences as long as they are distinct instances,
+     *               null values resolve to VALUE_IS_NULL
+     * @param keys   list to receive keys in the same order as values
+     */
+    public void put(ObjList<? extends CharSequence> values, IntList keys) {
+        keys.clear();
+        batch.clear();
+
+        int n = values.size();
+        if (n == 0) {
+            return;
+        }
+
+        int mask = ensureBatchSlots(n);
+        Unsafe.getUnsafe().setMemory(batchSlots, (mask + 1) * 4L, (byte) 0);
+
+        for (int i = 0; i < n; i++) {
+            CharSequence value = values.getQuick(i);
+            int key = getQuick(value);
+            if (key == VALUE_NOT_FOUND) {
+                key = size + batchKey(value, mask);
+            }
+            keys.add(key);
+        }
+
+        int count = batch.size();
+        if (count == 0) {
+            return;
+        }
+
+        int key = (int) data.putStr(batch);
+        data.commit();
+        for (int i = 0; i < count; i++) {
+            CharSequence value = batch.getQuick(i);
+            index.add(hashKey(value), key + i);
+            cacheKey(key + i, value);
+        }
+        size += count;
+        batch.clear();
+    }
+
     public int size() {
         return size;
     }
@@ -197,9 +292,13 @@ public class SymbolTable implements Closeable {
         }
 
         if (key < size) {
-            String value = key < keyCache.size() ? keyCache.getQuick(key) : null;
+            if (cache == null) {
+                return data.getStr(key);
+            }
+
+            String value = cache.getValue(cacheOwner, key);
             if (value == null) {
-                cache(key, value = data.getStr(key));
+                cache.putValue(cacheOwner, key, value = data.getStr(key));
             }
             return value;
         }
@@ -217,18 +316,55 @@ public class SymbolTable implements Closeable {
         return iter;
     }
 
-    private void cache(int key, String value) {
-        if (noCache) {
-            return;
+    /**
+     * Looks value up among new values of current batch and adds it there when it is not found.
+     * Hash slots hold positions in batch list offset by one, so that zeroed memory stands for empty slot.
+     *
+     * @return position of value in batch list
+     */
+    private int batchKey(CharSequence value, int mask) {
+        int slot = Chars.hashCode(value) & mask;
+        while (true) {
+            long address = batchSlots + slot * 4L;
+            int pos = Unsafe.getUnsafe().getInt(address) - 1;
+            if (pos == -1) {
+                pos = batch.size();
+                batch.add(value);
+                Unsafe.getUnsafe().putInt(address, pos + 1);
+                return pos;
+            }
+
+            if (Chars.equals(batch.getQuick(pos), value)) {
+                return pos;
+            }
+            slot = (slot + 1) & mask;
         }
+    }
 
-        valueCache.put(value, key);
-        keyCache.extendAndSet(key, value);
+    private void cacheKey(int key, CharSequence value) {
+        if (cache != null) {
+            cache.putKey(cacheOwner, Chars.hashCode(value), key);
+        }
     }
 
     private void clearCache() {
-        valueCache.clear();
-        keyCache.clear();
+        if (cache != null) {
+            // entries of old owner can no longer be hit and are evicted as cache fills up
+            cacheOwner = cache.register();
+        }
+    }
+
+    private int ensureBatchSlots(int count) {
+        // keep load factor of batch hash at or below 0.5
+        int capacity = Math.max(MIN_BATCH_SLOTS, Numbers.ceilPow2(count) * 2);
+        if (capacity - 1 > batchMask) {
+            if (batchSlots != 0) {
+                Unsafe.getUnsafe().freeMemory(batchSlots);
+            }
+            batchSlots = Unsafe.getUnsafe().allocateMemory(capacity * 4L);
+            batchMask = capacity - 1;
+        }
+        return capacity - 1;
     }
 
     private int get0(CharSequence value) {
@@ -242,7 +378,7 @@ public class SymbolTable implements Closeable {
         while (cursor.hasNext()) {
             int key;
             if (data.cmpStr((key = (int) cursor.next()), value)) {
-                cache(key, value.toString());
+                cacheKey(key, value);
                 return key;
             }
         }
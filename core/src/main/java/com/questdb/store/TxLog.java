@@ -28,6 +28,7 @@ import com.questdb.ex.JournalException;
 import com.questdb.misc.ByteBuffers;
 import com.questdb.misc.Rnd;
 import com.questdb.misc.Unsafe;
+import com.questdb.std.ObjList;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.io.Closeable;
@@ -52,27 +53,12 @@ public class TxLog implements Closeable {
         hb.close();
     }
 
-    @SuppressFBWarnings({"PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS"})
-    public long findAddress(long txn, long txPin) {
-        long address = getCurrentTxAddress();
-        long curr;
-        do {
-            hb.setPos(address);
-            long prev = hb.getLong();
-            curr = hb.getLong();
-            if (txn == curr) {
-                if (txPin == hb.getLong()) {
-                    return address;
-                } else {
-                    return -1;
-                }
-            }
-            address = prev;
-            // exploit the fact that txn is decrementing as we walk the list
-            // we can stop looking if txn > curr
-        } while (txn < curr && address > 0);
+    public void collectDirty(ObjList<MemoryFile> files) {
+        hb.collectDirty(files);
+    }
 
-        return -1;
+    public long findAddress(long txn, long txPin) {
+        return findAddress(getCurrentTxAddress(), txn, txPin);
     }
 
     public void force() {
@@ -116,6 +102,22 @@ public class TxLog implements Closeable {
         return result;
     }
 
+    /**
+     * Reads transaction with given txn and pin and makes it current, the same way {@link #head(Tx)}
+     * does for the latest transaction. Transaction log is searched from its latest entry, so this
+     * log can move both forward and backward.
+     *
+     * @return false when transaction is not found in the log
+     */
+    public boolean head(long txn, long txPin, Tx tx) {
+        long address = findAddress(readCurrentTxAddress(), txn, txPin);
+        if (address == -1) {
+            return false;
+        }
+        read(headAddress = currentAddress = address, tx);
+        return true;
+    }
+
     public boolean isEmpty() {
         return hb.getAppendOffset() < 10 || readCurrentTxAddress() < 1;
     }
@@ -203,4 +205,26 @@ public class TxLog implements Closeable {
 
         currentAddress = address;
     }
+
+    @SuppressFBWarnings({"PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS"})
+    private long findAddress(long address, long txn, long txPin) {
+        long curr;
+        do {
+            hb.setPos(address);
+            long prev = hb.getLong();
+            curr = hb.getLong();
+            if (txn == curr) {
+                if (txPin == hb.getLong()) {
+                    return address;
+                } else {
+                    return -1;
+                }
+            }
+            address = prev;
+            // exploit the fact that txn is decrementing as we walk the list
+            // we can stop looking if txn > curr
+        } while (txn < curr && address > 0);
+
+        return -1;
+    }
 }
@@ -30,6 +30,7 @@ import com.questdb.misc.Unsafe;
 import com.questdb.std.CharSink;
 import com.questdb.std.DirectCharSequence;
 import com.questdb.std.DirectInputStream;
+import com.questdb.std.ObjList;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.io.IOException;
@@ -54,12 +55,24 @@ public class VariableColumn extends AbstractColumn {
         this.indexColumn = new FixedColumn(indexFile, 8);
     }
 
+    @Override
+    public void advise(int advice) {
+        super.advise(advice);
+        indexColumn.advise(advice);
+    }
+
     @Override
     public void close() {
         indexColumn.close();
         super.close();
     }
 
+    @Override
+    public void collectDirty(ObjList<MemoryFile> files) {
+        super.collectDirty(files);
+        indexColumn.collectDirty(files);
+    }
+
     @Override
     public void commit() {
         if (binOut.offset != -1) {
@@ -104,6 +117,30 @@ public class VariableColumn extends AbstractColumn {
         indexColumn.truncate(size);
     }
 
+    /**
+     * Appends rows of other column. Values are stored back to back, so data of all rows is copied
+     * between mapped pages in one go and only offsets of rows are rewritten.
+     *
+     * @param src column to copy rows from
+     * @param lo  first row to copy
+     * @param hi  row to copy up to, exclusive
+     */
+    public void append(VariableColumn src, long lo, long hi) {
+        long srcLo = src.getOffset(lo);
+        long srcHi = hi < src.size() ? src.getOffset(hi) : src.getOffset();
+        long offset = getOffset();
+        long indexOffset = indexColumn.getOffset();
+
+        mappedFile.copy(src.mappedFile, srcLo, offset, srcHi - srcLo);
+        for (long r = lo; r < hi; r++) {
+            Unsafe.getUnsafe().putLong(indexColumn.mappedFile.addressOf(indexOffset, 8), src.getOffset(r) - srcLo + offset);
+            indexOffset += 8;
+        }
+
+        preCommit(offset + srcHi - srcLo);
+        indexColumn.preCommit(indexOffset);
+    }
+
     public boolean cmpStr(long localRowID, CharSequence value) {
 
         if (value == null) {
@@ -306,6 +343,37 @@ public class VariableColumn extends AbstractColumn {
         }
     }
 
+    /**
+     * Appends all values of the list and moves append offsets of data and index files once
+     * for the whole list, so that column needs to be committed only once afterwards.
+     *
+     * @param values values to append, null elements are stored as nulls
+     * @return local row id of first appended value
+     */
+    public long putStr(ObjList<? extends CharSequence> values) {
+        long offset = getOffset();
+        long indexOffset = indexColumn.getOffset();
+        long rowID = indexOffset / 8;
+
+        for (int i = 0, n = values.size(); i < n; i++) {
+            CharSequence value = values.getQuick(i);
+            Unsafe.getUnsafe().putLong(indexColumn.mappedFile.addressOf(indexOffset, 8), offset);
+            indexOffset += 8;
+            if (value == null) {
+                Unsafe.getUnsafe().putInt(mappedFile.addressOf(offset, 4), NULL_LEN);
+                offset += 4;
+            } else {
+                int len = value.length() * 2 + 4;
+                Chars.put(mappedFile.addressOf(offset, len), value);
+                offset += len;
+            }
+        }
+
+        preCommit(offset);
+        indexColumn.preCommit(indexOffset);
+        return rowID;
+    }
+
     private long commitAppend(long offset, int size) {
         preCommit(offset + size);
         return indexColumn.putLong(offset);
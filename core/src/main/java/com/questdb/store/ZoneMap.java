@@ -0,0 +1,358 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.ex.JournalException;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
+import com.questdb.std.ObjList;
+
+import java.io.Closeable;
+
+/**
+ * Min/max and null count summary of fixed width numeric column. Summary is kept for
+ * whole partition and for every block of 2^{@link #BLOCK_BITS} rows. Entries are
+ * stored in memory file next to column data:
+ * <pre>
+ *     entry 0:      partition summary
+ *     entry 1..n:   block summaries
+ *
+ *     entry: min (8 bytes) | max (8 bytes) | null count (8 bytes) | row count (8 bytes) | version (8 bytes)
+ * </pre>
+ * Null values do not contribute to min and max. Double values are stored as sortable
+ * longs, see {@link #toSortableLong(double)}, so that both long and double summaries
+ * are compared as signed longs.
+ * <p>
+ * Summary is maintained incrementally, rows are never re-read unless column is truncated.
+ * Rows beyond {@link #getRowCount()} are not summarised and cannot be skipped.
+ * <p>
+ * Readers map the file while writer updates entries in place. Writer makes version of entry odd
+ * while it stores entry and even again after, reader, which sees odd or changed version, does not
+ * trust entry. Entry, which does not cover all rows reader can see, is not trusted either.
+ */
+public class ZoneMap implements Closeable {
+    public static final int BLOCK_BITS = 14;
+    public static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int ENTRY_SIZE = 40;
+    private static final int O_MAX = 8;
+    private static final int O_NULLS = 16;
+    private static final int O_ROWS = 24;
+    private static final int O_VERSION = 32;
+    private final MemoryFile mappedFile;
+    private final ColumnType type;
+    private long min;
+    private long max;
+    private long nulls;
+    private long rows;
+
+    public ZoneMap(MemoryFile mappedFile, ColumnType type) {
+        this.mappedFile = mappedFile;
+        this.type = type;
+    }
+
+    public static boolean isSupported(ColumnType type) {
+        switch (type) {
+            case INT:
+            case LONG:
+            case DATE:
+            case DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Converts double into long, which preserves ordering of double values
+     * when compared as signed long. Negative zero is treated as positive zero.
+     *
+     * @param value double value, not NaN
+     * @return sortable long
+     */
+    public static long toSortableLong(double value) {
+        long bits = Double.doubleToRawLongBits(value + 0.0);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    @Override
+    public void close() {
+        mappedFile.close();
+    }
+
+    public void collectDirty(ObjList<MemoryFile> files) {
+        mappedFile.collectDirty(files);
+    }
+
+    public void compact() throws JournalException {
+        mappedFile.compact();
+    }
+
+    public void force() {
+        mappedFile.force();
+    }
+
+    public long getBlockCount() {
+        long n = entryCount() - 1;
+        return n < 0 ? 0 : n;
+    }
+
+    public long getMax(long block) {
+        return Unsafe.getUnsafe().getLong(address(block) + O_MAX);
+    }
+
+    public long getMin(long block) {
+        return Unsafe.getUnsafe().getLong(address(block));
+    }
+
+    public long getNullCount(long block) {
+        return Unsafe.getUnsafe().getLong(address(block) + O_NULLS);
+    }
+
+    /**
+     * @return number of rows covered by summary
+     */
+    public long getRowCount() {
+        return entryCount() > 0 ? getRowCount(-1) : 0;
+    }
+
+    public long getRowCount(long block) {
+        return Unsafe.getUnsafe().getLong(address(block) + O_ROWS);
+    }
+
+    /**
+     * Checks if any value in block can fall into [lo, hi] range. Range is inclusive
+     * and must be expressed in the same units as summary, e.g. sortable longs for double columns.
+     *
+     * @param block block number or -1 for whole partition
+     * @param lo    range low boundary
+     * @param hi    range high boundary
+     * @param rowHi last row of block or partition reader can see
+     * @return false when none of non-null values are within range
+     */
+    public boolean mayContain(long block, long lo, long hi, long rowHi) {
+        if (block + 1 >= entryCount()) {
+            return true;
+        }
+
+        long addr = address(block);
+        long version = Unsafe.getUnsafe().getLongVolatile(null, addr + O_VERSION);
+        if ((version & 1) != 0) {
+            // writer is updating entry
+            return true;
+        }
+
+        long n = Unsafe.getUnsafe().getLongVolatile(null, addr + O_ROWS);
+        long nc = Unsafe.getUnsafe().getLongVolatile(null, addr + O_NULLS);
+        long mn = Unsafe.getUnsafe().getLongVolatile(null, addr);
+        long mx = Unsafe.getUnsafe().getLongVolatile(null, addr + O_MAX);
+
+        if (Unsafe.getUnsafe().getLongVolatile(null, addr + O_VERSION) != version
+                || rowHi - (block < 0 ? 0 : block << BLOCK_BITS) >= n) {
+            return true;
+        }
+        return nc < n && mn <= hi && mx >= lo;
+    }
+
+    @Override
+    public String toString() {
+        return "ZoneMap{file=" + mappedFile + ", rows=" + getRowCount() + '}';
+    }
+
+    /**
+     * Brings summary in line with column size. New rows are added to summary,
+     * when column has shrunk the last block is recalculated from column data.
+     *
+     * @param column column being summarised
+     */
+    public void update(FixedColumn column) {
+        long size = column.size();
+        long summarised = getRowCount();
+
+        if (size == summarised) {
+            return;
+        }
+
+        if (size < summarised) {
+            truncate(column, size);
+            return;
+        }
+
+        long partitionMin;
+        long partitionMax;
+        long partitionNulls;
+        if (summarised == 0) {
+            partitionMin = Long.MAX_VALUE;
+            partitionMax = Long.MIN_VALUE;
+            partitionNulls = 0;
+        } else {
+            partitionMin = getMin(-1);
+            partitionMax = getMax(-1);
+            partitionNulls = getNullCount(-1);
+        }
+
+        for (long block = summarised >>> BLOCK_BITS, last = (size - 1) >>> BLOCK_BITS; block <= last; block++) {
+            long lo = Math.max(summarised, block << BLOCK_BITS);
+            long hi = Math.min(size, (block + 1) << BLOCK_BITS);
+            if (lo == block << BLOCK_BITS) {
+                resetBlock();
+            } else {
+                loadBlock(block);
+            }
+            long blockNulls = nulls;
+            scan(column, lo, hi);
+            storeBlock(block);
+
+            partitionMin = Math.min(partitionMin, min);
+            partitionMax = Math.max(partitionMax, max);
+            partitionNulls += nulls - blockNulls;
+        }
+        storePartition(partitionMin, partitionMax, partitionNulls, size);
+    }
+
+    private long address(long block) {
+        return mappedFile.addressOf((block + 1) * ENTRY_SIZE, ENTRY_SIZE);
+    }
+
+    private long entryCount() {
+        long offset = mappedFile.getAppendOffset();
+        return offset < 0 ? 0 : offset / ENTRY_SIZE;
+    }
+
+    private void loadBlock(long block) {
+        long addr = address(block);
+        min = Unsafe.getUnsafe().getLong(addr);
+        max = Unsafe.getUnsafe().getLong(addr + O_MAX);
+        nulls = Unsafe.getUnsafe().getLong(addr + O_NULLS);
+        rows = Unsafe.getUnsafe().getLong(addr + O_ROWS);
+    }
+
+    private void resetBlock() {
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+        nulls = 0;
+        rows = 0;
+    }
+
+    private void scan(FixedColumn column, long lo, long hi) {
+        long mn = min;
+        long mx = max;
+        long nc = nulls;
+        switch (type) {
+            case INT:
+                for (long r = lo; r < hi; r++) {
+                    int v = column.getInt(r);
+                    if (v == Numbers.INT_NaN) {
+                        nc++;
+                    } else {
+                        mn = Math.min(mn, v);
+                        mx = Math.max(mx, v);
+                    }
+                }
+                break;
+            case DOUBLE:
+                for (long r = lo; r < hi; r++) {
+                    double v = column.getDouble(r);
+                    if (v != v) {
+                        nc++;
+                    } else {
+                        long s = toSortableLong(v);
+                        mn = Math.min(mn, s);
+                        mx = Math.max(mx, s);
+                    }
+                }
+                break;
+            default:
+                for (long r = lo; r < hi; r++) {
+                    long v = column.getLong(r);
+                    if (v == Numbers.LONG_NaN) {
+                        nc++;
+                    } else {
+                        mn = Math.min(mn, v);
+                        mx = Math.max(mx, v);
+                    }
+                }
+                break;
+        }
+        min = mn;
+        max = mx;
+        nulls = nc;
+        rows += hi - lo;
+    }
+
+    private void storeBlock(long block) {
+        storeEntry(address(block), min, max, nulls, rows);
+        long offset = (block + 2) * ENTRY_SIZE;
+        if (offset > mappedFile.getAppendOffset()) {
+            mappedFile.setAppendOffset(offset);
+        }
+    }
+
+    private void storeEntry(long addr, long min, long max, long nulls, long rows) {
+        long version = Unsafe.getUnsafe().getLong(addr + O_VERSION);
+        Unsafe.getUnsafe().putLongVolatile(null, addr + O_VERSION, version + 1);
+        Unsafe.getUnsafe().putLongVolatile(null, addr, min);
+        Unsafe.getUnsafe().putLongVolatile(null, addr + O_MAX, max);
+        Unsafe.getUnsafe().putLongVolatile(null, addr + O_NULLS, nulls);
+        Unsafe.getUnsafe().putLongVolatile(null, addr + O_ROWS, rows);
+        Unsafe.getUnsafe().putLongVolatile(null, addr + O_VERSION, version + 2);
+    }
+
+    private void storePartition(long min, long max, long nulls, long rows) {
+        storeEntry(address(-1), min, max, nulls, rows);
+        if (mappedFile.getAppendOffset() < ENTRY_SIZE) {
+            mappedFile.setAppendOffset(ENTRY_SIZE);
+        }
+    }
+
+    private void truncate(FixedColumn column, long size) {
+        long blocks = (size + BLOCK_SIZE - 1) >>> BLOCK_BITS;
+        long partitionMin = Long.MAX_VALUE;
+        long partitionMax = Long.MIN_VALUE;
+        long partitionNulls = 0;
+
+        for (long block = 0; block < blocks; block++) {
+            long lo = block << BLOCK_BITS;
+            long hi = Math.min(size, lo + BLOCK_SIZE);
+            if (hi - lo < getRowCount(block)) {
+                resetBlock();
+                scan(column, lo, hi);
+                storeBlock(block);
+            } else {
+                loadBlock(block);
+            }
+            partitionMin = Math.min(partitionMin, min);
+            partitionMax = Math.max(partitionMax, max);
+            partitionNulls += nulls;
+        }
+
+        // dropped entries will be reused, readers, which still see them, must not trust them
+        for (long block = blocks, n = getBlockCount(); block < n; block++) {
+            storeEntry(address(block), Long.MAX_VALUE, Long.MIN_VALUE, 0, 0);
+        }
+
+        storePartition(partitionMin, partitionMax, partitionNulls, size);
+        mappedFile.setAppendOffset((blocks + 1) * ENTRY_SIZE);
+    }
+}
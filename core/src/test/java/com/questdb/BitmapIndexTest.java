@@ -0,0 +1,412 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb;
+
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.ex.NumericException;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.io.RecordSourcePrinter;
+import com.questdb.io.sink.StringSink;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.impl.JournalPartitionSource;
+import com.questdb.ql.impl.JournalSource;
+import com.questdb.ql.impl.NoOpCancellationHandler;
+import com.questdb.ql.impl.latest.KvIndexSymListLookupRowSource;
+import com.questdb.std.CharSequenceHashSet;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.store.BitmapIndex;
+import com.questdb.store.BitmapIndexCursor;
+import com.questdb.store.IndexCursor;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+public class BitmapIndexTest extends AbstractTest {
+    private static final int keyCount = 8;
+    private File indexFile;
+
+    @Before
+    public void setUp() {
+        indexFile = new File(factory.getConfiguration().getJournalBase(), "bitmap-index-test");
+    }
+
+    @Test
+    public void testAndOr() throws Exception {
+        File other = new File(factory.getConfiguration().getJournalBase(), "bitmap-index-test2");
+        int rows = 300000;
+        int a[] = new int[rows];
+        int b[] = new int[rows];
+        try (BitmapIndex ia = new BitmapIndex(indexFile, keyCount, 1, JournalMode.APPEND, 0);
+             BitmapIndex ib = new BitmapIndex(other, keyCount, 1, JournalMode.APPEND, 0)) {
+            Rnd rnd = new Rnd();
+            for (int i = 0; i < rows; i++) {
+                // skewed keys give both bitmap and array containers, some chunks have no key 7 at all
+                ia.add(a[i] = skewedKey(rnd, i), i);
+                ib.add(b[i] = rnd.nextPositiveInt() % 3, i);
+            }
+            ia.commit();
+            ib.commit();
+
+            IntList keysA = new IntList();
+            keysA.add(1);
+            keysA.add(7);
+            IntList keysB = new IntList();
+            keysB.add(2);
+
+            BitmapIndexCursor cursor = new BitmapIndexCursor();
+
+            LongList expected = new LongList();
+            for (int i = 0; i < rows; i++) {
+                if (a[i] == 1 || a[i] == 7) {
+                    expected.add(i);
+                }
+            }
+            assertCursor(expected, cursor.of(ia, keysA));
+            Assert.assertEquals(expected.size(), cursor.size());
+
+            expected.clear();
+            for (int i = 0; i < rows; i++) {
+                if ((a[i] == 1 || a[i] == 7) && b[i] == 2) {
+                    expected.add(i);
+                }
+            }
+            assertCursor(expected, cursor.of(ia, keysA).and(ib, keysB));
+            Assert.assertTrue(cursor.size() >= expected.size());
+
+            // values added after commit are not visible to cursor
+            ia.add(7, rows);
+            ib.add(2, rows);
+            try (BitmapIndex ra = new BitmapIndex(indexFile, keyCount, 1, JournalMode.READ, 0);
+                 BitmapIndex rb = new BitmapIndex(other, keyCount, 1, JournalMode.READ, 0)) {
+                assertCursor(expected, cursor.of(ra, keysA).and(rb, keysB));
+            }
+        }
+    }
+
+    @Test
+    public void testCursors() throws Exception {
+        LongList expected[] = new LongList[keyCount + 1];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = new LongList();
+        }
+
+        try (BitmapIndex index = new BitmapIndex(indexFile, keyCount, 1, JournalMode.APPEND, 0)) {
+            Rnd rnd = new Rnd();
+            for (int i = 0; i < 200000; i++) {
+                int key = skewedKey(rnd, i) - 1;
+                index.add(key, i);
+                expected[key + 1].add(i);
+            }
+            index.commit();
+
+            for (int k = -1; k < keyCount; k++) {
+                assertKey(expected[k + 1], index, k);
+            }
+        }
+
+        try (BitmapIndex index = new BitmapIndex(indexFile, keyCount, 1, JournalMode.READ, 0)) {
+            Assert.assertEquals(200000, index.size());
+            for (int k = -1; k < keyCount; k++) {
+                assertKey(expected[k + 1], index, k);
+            }
+            Assert.assertFalse(index.contains(keyCount + 10));
+            Assert.assertFalse(index.fwdCursor(keyCount + 10).hasNext());
+            Assert.assertFalse(index.cursor(keyCount + 10).hasNext());
+        }
+    }
+
+    @Test
+    public void testIndexTx() throws Exception {
+        try (BitmapIndex index = new BitmapIndex(indexFile, keyCount, 1, JournalMode.APPEND, 0);
+             BitmapIndex reader = new BitmapIndex(indexFile, keyCount, 1, JournalMode.READ, 0)) {
+            for (int i = 0; i < 100; i++) {
+                index.add(i % 2, i);
+            }
+
+            Assert.assertEquals(100, index.size());
+            Assert.assertEquals(50, index.getValueCount(0));
+            Assert.assertEquals(0, reader.size());
+            Assert.assertFalse(reader.contains(0));
+
+            index.commit();
+            reader.setTxAddress(index.getTxAddress());
+
+            // uncommitted values go into the same containers that reader is looking at
+            for (int i = 100; i < 5000; i++) {
+                index.add(i % 2, i);
+            }
+
+            Assert.assertEquals(100, reader.size());
+            Assert.assertEquals(50, reader.getValueCount(0));
+            Assert.assertEquals(50, reader.getValues(1).size());
+            Assert.assertEquals(98, reader.cursor(0).next());
+            Assert.assertEquals(1, reader.fwdCursor(1).next());
+
+            try (BitmapIndex reader2 = new BitmapIndex(indexFile, keyCount, 1, JournalMode.READ, reader.getTxAddress())) {
+                Assert.assertEquals(100, reader2.size());
+                Assert.assertEquals(99, reader2.cursor(1).next());
+                Assert.assertEquals(50, reader2.getValues(1).size());
+            }
+
+            index.commit();
+
+            try (BitmapIndex reader2 = new BitmapIndex(indexFile, keyCount, 1, JournalMode.READ, index.getTxAddress())) {
+                Assert.assertEquals(5000, reader2.size());
+                Assert.assertEquals(2500, reader2.getValueCount(0));
+                Assert.assertEquals(4999, reader2.cursor(1).next());
+            }
+        }
+    }
+
+    @Test
+    public void testIntersectQueries() throws Exception {
+        createJournal("tab", true);
+        createJournal("ref", false);
+
+        StringSink sink = new StringSink();
+        compiler.compileSource(factory, "ref where sym = 'C' and ex = 'y'").toSink(sink);
+        Assert.assertTrue(sink.toString().contains("KvIndexSymIntersectRowSource"));
+        Assert.assertFalse(sink.toString().contains("FilteredRowSource"));
+
+        assertIntersect("sym = 'C' and ex = 'y'");
+        assertIntersect("ex = 'z' and sym = 'D'");
+        assertIntersect("sym = null and ex = 'x'");
+        assertIntersect("sym = 'A' and ex = 'Q'");
+        assertIntersect("timestamp > '2015-03-12T00:10:00.000Z' and sym = 'B' and ex = 'x' and i > 100");
+    }
+
+    @Test
+    public void testJournalQueries() throws Exception {
+        createJournal("tab", true);
+        createJournal("ref", false);
+
+        Assert.assertTrue(factory.reader("tab").getMetadata().getColumnQuick(0).bitmapIndex);
+        Assert.assertTrue(new File(factory.getConfiguration().getJournalBase(), "tab/default/sym.bk").exists());
+
+        StringSink sink = new StringSink();
+        compiler.compileSource(factory, "tab where sym in ('A', 'D')").toSink(sink);
+        Assert.assertTrue(sink.toString().contains("KvIndexSymListLookupRowSource"));
+
+        assertQuery("where sym = 'C'");
+        assertQuery("where sym in ('A', 'D')");
+        assertQuery("where sym in ('B', 'C', 'D', 'Z')");
+        assertQuery("where sym in ('A', 'D') and ex = 'y'");
+        assertQuery("where sym = null");
+        assertQuery("latest by sym where sym in ('B', 'C')");
+        assertQuery("where timestamp > '2015-03-12T00:10:00.000Z' and sym in ('A', 'D')");
+    }
+
+    @Test
+    public void testListLookupOverKVIndex() throws Exception {
+        createJournal("ref", false);
+
+        CharSequenceHashSet values = new CharSequenceHashSet();
+        values.add("A");
+        values.add("D");
+        values.add("Z");
+        RecordSource rs = new JournalSource(
+                new JournalPartitionSource(factory.reader("ref").getMetadata(), true),
+                new KvIndexSymListLookupRowSource("sym", values)
+        );
+
+        String expected = print("ref where sym in ('A', 'D', 'Z')");
+        Assert.assertTrue(expected.length() > 0);
+        StringSink sink = new StringSink();
+        RecordSourcePrinter printer = new RecordSourcePrinter(sink);
+        printer.printCursor(rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE), false);
+        TestUtils.assertEquals(expected, sink);
+
+        // second run starts from reset cursors
+        sink.clear();
+        rs.reset();
+        printer.printCursor(rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE), false);
+        TestUtils.assertEquals(expected, sink);
+    }
+
+    @Test
+    public void testOutOfOrder() throws JournalException {
+        try (BitmapIndex index = new BitmapIndex(indexFile, keyCount, 1, JournalMode.APPEND, 0)) {
+            index.add(0, 10);
+            index.add(0, 20);
+            try {
+                index.add(0, 15);
+                Assert.fail();
+            } catch (JournalRuntimeException ignore) {
+                // expected
+            }
+            index.add(1, 15);
+            Assert.assertEquals(21, index.size());
+        }
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        LongList expected[] = new LongList[keyCount + 1];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = new LongList();
+        }
+
+        int limit = 150000;
+        try (BitmapIndex index = new BitmapIndex(indexFile, keyCount, 1, JournalMode.APPEND, 0)) {
+            Rnd rnd = new Rnd();
+            for (int i = 0; i < 200000; i++) {
+                int key = skewedKey(rnd, i) - 1;
+                index.add(key, i);
+                if (i < limit) {
+                    expected[key + 1].add(i);
+                }
+            }
+            index.commit();
+
+            index.truncate(limit);
+            Assert.assertEquals(limit, index.size());
+            for (int k = -1; k < keyCount; k++) {
+                assertKey(expected[k + 1], index, k);
+            }
+
+            for (int i = limit; i < limit + 1000; i++) {
+                index.add(3, i);
+                expected[4].add(i);
+            }
+            index.commit();
+            assertKey(expected[4], index, 3);
+
+            index.truncate(0);
+            Assert.assertEquals(0, index.size());
+            for (int k = -1; k < keyCount; k++) {
+                Assert.assertFalse(index.contains(k));
+            }
+
+            index.add(-1, 10);
+            Assert.assertEquals(11, index.size());
+        }
+    }
+
+    private static void assertCursor(LongList expected, IndexCursor cursor) {
+        int i = 0;
+        while (cursor.hasNext()) {
+            Assert.assertTrue(i < expected.size());
+            Assert.assertEquals(expected.getQuick(i++), cursor.next());
+        }
+        Assert.assertEquals(expected.size(), i);
+    }
+
+    private static void assertKey(LongList expected, BitmapIndex index, int key) {
+        Assert.assertEquals(expected.size(), index.getValueCount(key));
+        assertCursor(expected, index.fwdCursor(key));
+        assertCursor(expected, index.newFwdCursor(key));
+
+        if (key > -1) {
+            IndexCursor cursor = index.cursor(key);
+            Assert.assertEquals(expected.size(), cursor.size());
+            for (int i = expected.size() - 1; i > -1; i--) {
+                Assert.assertTrue(cursor.hasNext());
+                Assert.assertEquals(expected.getQuick(i), cursor.next());
+            }
+            Assert.assertFalse(cursor.hasNext());
+
+            LongList values = new LongList();
+            index.getValues(key, values);
+            Assert.assertEquals(expected.size(), values.size());
+            for (int i = 0, n = expected.size(); i < n; i++) {
+                Assert.assertEquals(expected.getQuick(i), values.getQuick(i));
+            }
+        }
+    }
+
+    private static int skewedKey(Rnd rnd, int row) {
+        int r = rnd.nextPositiveInt() % 100;
+        if (r < 60) {
+            return 1;
+        }
+        if (r < 90) {
+            return 2 + r % 3;
+        }
+        // rare key only appears in some chunks
+        if (r < 92 && (row >>> 16) % 2 == 0) {
+            return 7;
+        }
+        return 5 + r % 2;
+    }
+
+    private void assertIntersect(String where) throws Exception {
+        // limit keeps filter out of row source, so expected rows are matched one at a time
+        String expected = print("(ref limit 1000000) where " + where);
+        TestUtils.assertEquals(expected, print("ref where " + where));
+        TestUtils.assertEquals(expected, print("tab where " + where));
+    }
+
+    private void assertQuery(String query) throws Exception {
+        String expected = print("ref " + query);
+        Assert.assertTrue(expected.length() > 0);
+        TestUtils.assertEquals(expected, print("tab " + query));
+    }
+
+    private void createJournal(String name, final boolean bitmap) throws JournalException, NumericException {
+        try (JournalWriter w = factory.writer(new JournalStructure(name) {{
+            if (bitmap) {
+                $sym("sym").bitmapIndex();
+                $sym("ex").bitmapIndex();
+            } else {
+                $sym("sym").index();
+                $sym("ex").index();
+            }
+            $int("i");
+            $ts();
+        }})) {
+            String syms[] = {"A", "B", "C", "D", null};
+            String ex[] = {"x", "y", "z"};
+            Rnd rnd = new Rnd();
+            long ts = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+            for (int i = 0; i < 150000; i++) {
+                JournalEntryWriter ew = w.entryWriter(ts += 10);
+                int r = rnd.nextPositiveInt() % 100;
+                ew.putSym(0, syms[r < 50 ? 0 : r < 97 ? 1 + r % 2 : 3 + r % 2]);
+                ew.putSym(1, ex[rnd.nextPositiveInt() % ex.length]);
+                ew.putInt(2, i);
+                ew.append();
+                if (i % 40000 == 0) {
+                    w.commit();
+                }
+            }
+            w.commit();
+        }
+    }
+
+    private String print(String query) throws Exception {
+        StringSink sink = new StringSink();
+        RecordSource rs = compiler.compileSource(factory, query);
+        new RecordSourcePrinter(sink).printCursor(rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE), false);
+        return sink.toString();
+    }
+}
@@ -28,8 +28,10 @@ import com.questdb.ex.NumericException;
 import com.questdb.misc.ByteBuffers;
 import com.questdb.misc.Dates;
 import com.questdb.misc.Files;
+import com.questdb.misc.Unsafe;
 import com.questdb.std.DirectCharSequence;
 import com.questdb.std.Path;
+import com.questdb.store.MemoryFile;
 import com.questdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.Rule;
@@ -47,6 +49,37 @@ public class FilesTest {
     @Rule
     public final TemporaryFolder temporaryFolder = new TemporaryFolder();
 
+    @Test
+    public void testAdvise() throws Exception {
+        File f = temporaryFolder.newFile();
+        MemoryFile mf = new MemoryFile(f, 12, JournalMode.APPEND);
+        try {
+            // spread values over several pages
+            long offset = 0;
+            for (int i = 0; i < 10000; i++) {
+                Unsafe.getUnsafe().putLong(mf.addressOf(offset, 8), i);
+                offset += 8;
+            }
+            mf.setAppendOffset(offset);
+            mf.force();
+
+            int advices[] = {Files.ADVICE_SEQUENTIAL, Files.ADVICE_WILLNEED, Files.ADVICE_DONTNEED, Files.ADVICE_RANDOM, Files.ADVICE_NORMAL};
+            for (int a : advices) {
+                mf.advise(a);
+                // hints must not change content
+                for (int i = 0; i < 10000; i++) {
+                    Assert.assertEquals(i, Unsafe.getUnsafe().getLong(mf.addressOf(i * 8, 8)));
+                }
+            }
+        } finally {
+            mf.close();
+        }
+
+        try (Path path = new Path("/x/yz/1/2/3")) {
+            Assert.assertFalse(Files.advise(path, 0, 0, Files.ADVICE_DONTNEED));
+        }
+    }
+
     @Test
     public void testDeleteDir() throws Exception {
         File r = temporaryFolder.newFolder("to_delete");
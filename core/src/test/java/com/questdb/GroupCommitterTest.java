@@ -0,0 +1,149 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb;
+
+import com.questdb.ex.JournalException;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.std.ObjList;
+import com.questdb.store.MemoryFile;
+import com.questdb.store.TxListener;
+import com.questdb.test.tools.AbstractTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GroupCommitterTest extends AbstractTest {
+
+    @Test
+    public void testCoalesceSyncs() throws Exception {
+        File dir = new File(factory.getConfiguration().getJournalBase(), "group");
+        Assert.assertTrue(dir.mkdirs());
+
+        try (MemoryFile file = new MemoryFile(new File(dir, "a.d"), 12, JournalMode.APPEND)) {
+            ObjList<MemoryFile> files = new ObjList<>();
+            try (GroupCommitter committer = new GroupCommitter(dir)) {
+                long sequence = -1;
+                for (int i = 0; i < 1000; i++) {
+                    file.setAppendOffset(i);
+                    files.clear();
+                    file.collectDirty(files);
+                    Assert.assertEquals(1, files.size());
+                    sequence = committer.submit(files);
+                }
+                Assert.assertEquals(999, sequence);
+                committer.await(sequence);
+                Assert.assertEquals(999, committer.getDurableSequence());
+                Assert.assertTrue(committer.getFlushCount() > 0);
+                Assert.assertTrue(committer.getFlushCount() < 1000);
+            }
+
+            // file, which has not been written to, is not synced again
+            files.clear();
+            file.collectDirty(files);
+            Assert.assertEquals(0, files.size());
+        }
+    }
+
+    @Test
+    public void testFailureIsPerSequence() throws Exception {
+        File dir = new File(factory.getConfiguration().getJournalBase(), "group");
+        Assert.assertTrue(dir.mkdirs());
+
+        // closed file is synced via path, which is a directory and cannot be opened for writing
+        File path = new File(dir, "b.d");
+        MemoryFile bad = new MemoryFile(path, 12, JournalMode.APPEND);
+        bad.close();
+        Assert.assertTrue(path.delete());
+        Assert.assertTrue(path.mkdir());
+
+        try (MemoryFile good = new MemoryFile(new File(dir, "a.d"), 12, JournalMode.APPEND)) {
+            ObjList<MemoryFile> files = new ObjList<>();
+            try (GroupCommitter committer = new GroupCommitter(dir)) {
+                files.add(bad);
+                long sequence = committer.submit(files);
+                try {
+                    committer.await(sequence);
+                    Assert.fail();
+                } catch (JournalException ignore) {
+                    // expected
+                }
+                Assert.assertEquals(-1, committer.getDurableSequence());
+
+                // failed file is retried and removed file is skipped
+                Assert.assertTrue(path.delete());
+                files.clear();
+                files.add(good);
+                sequence = committer.submit(files);
+                committer.await(sequence);
+                Assert.assertEquals(sequence, committer.getDurableSequence());
+            }
+        }
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        final AtomicInteger commits = new AtomicInteger();
+        long ts = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+        try (JournalWriter w = factory.writer(new JournalStructure("tab") {{
+            $int("i");
+            $ts();
+            partitionBy(PartitionType.DAY);
+        }})) {
+            w.setGroupCommit(true);
+            w.setTxListener(new TxListener() {
+                @Override
+                public void onCommit() {
+                    commits.incrementAndGet();
+                }
+
+                @Override
+                public void onError() {
+                }
+            });
+
+            long sequence = -1;
+            for (int i = 0; i < 1000; i++) {
+                JournalEntryWriter ew = w.entryWriter(ts += 600000);
+                ew.putInt(0, i);
+                ew.append();
+                sequence = w.commitAsync();
+            }
+            w.awaitDurable(sequence);
+            // transactions are visible before they are durable
+            Assert.assertEquals(1000, factory.reader("tab").size());
+
+            JournalEntryWriter ew = w.entryWriter(ts + 600000);
+            ew.putInt(0, 1000);
+            ew.append();
+            w.commitDurable();
+            Assert.assertEquals(1001, factory.reader("tab").size());
+        }
+
+        Assert.assertTrue(commits.get() > 0);
+        Assert.assertTrue(commits.get() <= 1001);
+    }
+}
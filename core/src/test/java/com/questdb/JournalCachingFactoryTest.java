@@ -24,9 +24,11 @@
 package com.questdb;
 
 import com.questdb.factory.JournalCachingFactory;
+import com.questdb.factory.configuration.JournalMetadata;
 import com.questdb.misc.Files;
 import com.questdb.model.Quote;
 import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -63,4 +65,52 @@ public class JournalCachingFactoryTest extends AbstractTest {
         cachingFactory.close();
         Files.delete(cachingFactory.getConfiguration().getJournalBase());
     }
+
+    @Test
+    public void testSharedSymbolCache() throws Exception {
+        try (JournalWriter<Quote> w = factory.writer(Quote.class)) {
+            TestUtils.generateQuoteData(w, 1000);
+        }
+
+        try (JournalCachingFactory cachingFactory = new JournalCachingFactory(factory.getConfiguration(), 1024)) {
+            Journal<Quote> reader = cachingFactory.reader(Quote.class);
+            Journal<Quote> bulkReader = cachingFactory.bulkReader(Quote.class);
+            Assert.assertSame(cachingFactory.getSymbolCache(), reader.getSymbolTable("sym").getCache());
+            Assert.assertSame(cachingFactory.getSymbolCache(), bulkReader.getSymbolTable("sym").getCache());
+
+            for (Quote q : reader) {
+                Assert.assertNotNull(q.getSym());
+            }
+            for (Quote q : bulkReader) {
+                Assert.assertNotNull(q.getSym());
+            }
+            Assert.assertTrue(cachingFactory.getSymbolCache().getHits() > 0);
+            Assert.assertTrue(cachingFactory.getSymbolCache().getMisses() > 0);
+        }
+    }
+
+    @Test
+    public void testWorkerReaders() throws Exception {
+        try (JournalWriter<Quote> w = factory.writer(Quote.class)) {
+            TestUtils.generateQuoteData(w, 100);
+        }
+
+        try (JournalCachingFactory cachingFactory = new JournalCachingFactory(factory.getConfiguration())) {
+            JournalMetadata metadata = cachingFactory.getOrCreateMetadata(new JournalKey<>(Quote.class));
+            Journal reader = cachingFactory.reader(Quote.class);
+            Journal w1 = cachingFactory.workerReader(metadata);
+            Journal w2 = cachingFactory.workerReader(metadata);
+
+            // leased readers are not shared
+            Assert.assertNotSame(reader, w1);
+            Assert.assertNotSame(w1, w2);
+            Assert.assertNotSame(cachingFactory.getSymbolCache(), w1.getSymbolTable("sym").getCache());
+
+            // closed reader goes back to factory and is leased again
+            w1.close();
+            Assert.assertTrue(w1.isOpen());
+            Assert.assertSame(w1, cachingFactory.workerReader(metadata));
+            Assert.assertNotSame(w2, cachingFactory.workerReader(metadata));
+        }
+    }
 }
@@ -30,6 +30,11 @@ import com.questdb.factory.JournalReaderFactory;
 import com.questdb.factory.configuration.JournalConfiguration;
 import com.questdb.misc.Files;
 import com.questdb.model.Quote;
+import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.impl.AllRowSource;
+import com.questdb.ql.impl.JournalPartitionSource;
+import com.questdb.ql.impl.JournalSource;
 import com.questdb.test.tools.AbstractTest;
 import com.questdb.test.tools.TestUtils;
 import org.junit.Assert;
@@ -190,6 +195,74 @@ public class JournalFactoryPoolTest extends AbstractTest {
         }
     }
 
+    @Test
+    public void testQueryResetStaysOnLeasedTransaction() throws Exception {
+        JournalConfiguration configuration = factory.getConfiguration();
+        try {
+            final JournalFactoryPool pool = new JournalFactoryPool(configuration, 2);
+
+            JournalWriter<Quote> w = factory.writer(Quote.class);
+            TestUtils.generateQuoteData(w, 100);
+            w.commit();
+
+            RecordSource rs = new JournalSource(new JournalPartitionSource(w.getMetadata(), false), new AllRowSource());
+            JournalReaderFactory rf = pool.get();
+            Assert.assertEquals(100, count(rs.prepareCursor(rf)));
+
+            // second pass of same lease must not see commit made in between
+            TestUtils.generateQuoteData(w, 100, w.getMaxTimestamp());
+            w.commit();
+            rs.reset();
+            Assert.assertEquals(100, count(rs.prepareCursor(rf)));
+            rf.close();
+
+            rf = pool.get();
+            rs.reset();
+            Assert.assertEquals(200, count(rs.prepareCursor(rf)));
+            rf.close();
+
+            w.close();
+            pool.close();
+        } finally {
+            Files.delete(configuration.getJournalBase());
+        }
+    }
+
+    @Test
+    public void testReadersPinnedUntilReturned() throws Exception {
+        JournalConfiguration configuration = factory.getConfiguration();
+        try {
+            final JournalFactoryPool pool = new JournalFactoryPool(configuration, 2);
+
+            JournalWriter<Quote> w = factory.writer(Quote.class);
+            TestUtils.generateQuoteData(w, 100);
+            w.commit();
+
+            JournalReaderFactory rf = pool.get();
+            Journal<Quote> r = rf.reader(Quote.class);
+            Assert.assertEquals(100, r.size());
+
+            // commits do not show until factory is returned
+            TestUtils.generateQuoteData(w, 100, w.getMaxTimestamp());
+            w.commit();
+            Assert.assertEquals(100, rf.reader(Quote.class).size());
+            rf.close();
+
+            // same factory comes back on last committed transaction
+            rf = pool.get();
+            Assert.assertEquals(1, pool.getOpenCount());
+            Assert.assertSame(r, rf.reader(Quote.class));
+            Assert.assertEquals(200, r.size());
+            Assert.assertEquals(w.getTxn(), r.getTxn());
+            rf.close();
+
+            w.close();
+            pool.close();
+        } finally {
+            Files.delete(configuration.getJournalBase());
+        }
+    }
+
     @Test(expected = InterruptedException.class)
     public void testThrowsAfterPoolClosed() throws Exception {
         JournalConfiguration configuration = factory.getConfiguration();
@@ -201,4 +274,13 @@ public class JournalFactoryPoolTest extends AbstractTest {
             Files.delete(configuration.getJournalBase());
         }
     }
+
+    private static int count(RecordCursor cursor) {
+        int count = 0;
+        while (cursor.hasNext()) {
+            cursor.next();
+            count++;
+        }
+        return count;
+    }
 }
@@ -191,6 +191,36 @@ public class JournalRefreshTest extends AbstractTest {
         Assert.assertEquals(8, r.size());
     }
 
+    @Test
+    public void testRefreshToTxn() throws Exception {
+        TestUtils.generateQuoteData(rw, 100, Dates.parseDateTime("2013-09-04T10:00:00.000Z"));
+        rw.commit();
+
+        Journal<Quote> master = factory.reader(Quote.class);
+        Assert.assertEquals(100, master.size());
+
+        TestUtils.generateQuoteData(rw, 50, rw.getMaxTimestamp());
+        rw.commit();
+
+        Journal<Quote> r = factory.reader(Quote.class);
+        Assert.assertEquals(150, r.size());
+
+        r.refresh(master.getTxn(), master.getTxPin());
+        Assert.assertEquals(100, r.size());
+        Assert.assertEquals(master.getTxn(), r.getTxn());
+        TestUtils.assertDataEquals(master, r);
+
+        Assert.assertTrue(r.refresh());
+        Assert.assertEquals(150, r.size());
+
+        try {
+            r.refresh(master.getTxn(), master.getTxPin() + 1);
+            Assert.fail();
+        } catch (JournalException e) {
+            Assert.assertTrue(e.getMessage().contains("not found"));
+        }
+    }
+
     @Test
     public void testTruncateRefresh() throws Exception {
         TestUtils.generateQuoteData(rw, 1000, Dates.parseDateTime("2013-09-04T10:00:00.000Z"));
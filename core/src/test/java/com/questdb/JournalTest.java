@@ -53,6 +53,36 @@ public class JournalTest extends AbstractTest {
         w.getAppendPartition(Dates.parseDateTime("2012-01-10T10:00:00.000Z"));
     }
 
+    @Test
+    public void testAppendBatch() throws Exception {
+        String syms[] = {"AGK.L", "BP.L", null, "TLW.L"};
+        Rnd rnd = new Rnd();
+        long ts = Dates.parseDateTime("2013-10-05T10:00:00.000Z");
+        Quote quotes[] = new Quote[200];
+        for (int i = 0; i < quotes.length; i++) {
+            quotes[i] = new Quote()
+                    .setTimestamp(ts += 60000)
+                    .setSym(syms[rnd.nextPositiveInt() % syms.length])
+                    .setEx(i % 2 == 0 ? "LXE" : "SK")
+                    .setBid(rnd.nextDouble());
+        }
+
+        try (JournalWriter<Quote> w = factory.writer(Quote.class)) {
+            w.append(quotes);
+            w.append(quotes[0].setTimestamp(ts + 60000).setSym("RRS.L"));
+            w.commit();
+            Assert.assertEquals(4, w.getSymbolTable("sym").size());
+            Assert.assertEquals(2, w.getSymbolTable("ex").size());
+        }
+
+        Journal<Quote> r = factory.reader(Quote.class);
+        Assert.assertEquals(quotes.length + 1, r.size());
+        for (int i = 1; i < quotes.length; i++) {
+            Assert.assertEquals(quotes[i], r.read(i));
+        }
+        Assert.assertEquals("RRS.L", r.read(quotes.length).getSym());
+    }
+
     @Test
     public void testAppendBreak() throws Exception {
         Rnd random = new Rnd(System.nanoTime(), System.currentTimeMillis());
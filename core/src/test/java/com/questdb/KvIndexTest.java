@@ -64,6 +64,28 @@ public class KvIndexTest extends AbstractTest {
         }
     }
 
+    @Test
+    public void testGetValueAt() throws Exception {
+        long expected[][] = {
+                {0, 3, 5, 6, 8, 10, 12, 14, 16, 22},
+                {1, 2, 3, 4, 6, 8, 9, 11, 16, 21, 33}
+        };
+        try (KVIndex index = new KVIndex(indexFile, 10, 60, 1, JournalMode.APPEND, 0)) {
+            putValues(expected, index);
+
+            LongList blocks = new LongList();
+            for (int i = 0; i < expected.length; i++) {
+                Assert.assertEquals(expected[i].length, index.getValueBlocks(i, blocks));
+                Assert.assertTrue(blocks.size() > 1);
+                for (int k = 0; k < expected[i].length; k++) {
+                    Assert.assertEquals(expected[i][k], index.getValueAt(blocks, k));
+                }
+            }
+            Assert.assertEquals(0, index.getValueBlocks(5, blocks));
+            Assert.assertEquals(0, blocks.size());
+        }
+    }
+
     @Test
     public void testGetValueQuick() throws Exception {
         long expected[][] = {
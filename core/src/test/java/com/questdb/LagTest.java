@@ -25,8 +25,11 @@ package com.questdb;
 
 import com.questdb.ex.JournalException;
 import com.questdb.ex.NumericException;
+import com.questdb.factory.configuration.JournalMetadataBuilder;
 import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
 import com.questdb.model.Quote;
+import com.questdb.model.TestEntity;
 import com.questdb.test.tools.AbstractTest;
 import com.questdb.test.tools.TestData;
 import org.junit.Assert;
@@ -36,7 +39,11 @@ import org.junit.Test;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class LagTest extends AbstractTest {
 
@@ -209,6 +216,171 @@ public class LagTest extends AbstractTest {
         rw.purgeTempPartitions();
     }
 
+    @Test
+    public void testOutOfOrderAppend() throws Exception {
+        Comparator<Quote> comparator = rw.getTimestampComparator();
+        try (JournalWriter<Quote> ref = factory.writer(Quote.class, "ref")) {
+            Rnd rnd = new Rnd();
+            long ts = Dates.parseDateTime("2013-03-10T00:00:00.000Z");
+            // minute apart rows make lag swell and split every couple of batches
+            for (int batch = 0, row = 0; batch < 50; batch++) {
+                List<Quote> data = new ArrayList<>();
+                for (int i = 0; i < 100; i++, row++) {
+                    // every fifth row is up to an hour late, seconds keep timestamps unique
+                    long late = rnd.nextPositiveInt() % 5 == 0 ? (rnd.nextPositiveInt() % 60) * 60000L : 0;
+                    data.add(new Quote().setSym("S" + row).setBid(rnd.nextDouble()).setTimestamp(ts + row * 60000L - late + (row % 60) * 1000L));
+                }
+                rw.appendOutOfOrder(data);
+                rw.commit();
+
+                Collections.sort(data, comparator);
+                ref.mergeAppend(data);
+                ref.commit();
+            }
+
+            Assert.assertEquals(ref.size(), rw.size());
+            Iterator<Quote> expected = ref.iterator();
+            for (Quote q : rw) {
+                Assert.assertEquals(expected.next(), q);
+            }
+        }
+    }
+
+    @Test
+    public void testOutOfOrderAppendInPlace() throws Exception {
+        List<Quote> data = new ArrayList<>();
+        data.add(new Quote().setSym("S1").setTimestamp(Dates.toMillis(2013, 1, 10, 10, 0)));
+        rw.mergeAppend(data);
+        rw.commit();
+
+        // rows of current transaction can be spliced
+        data.clear();
+        data.add(new Quote().setSym("S3").setTimestamp(Dates.toMillis(2013, 1, 10, 12, 0)));
+        data.add(new Quote().setSym("S5").setTimestamp(Dates.toMillis(2013, 1, 10, 14, 0)));
+        rw.mergeAppend(data);
+        String lagName = rw.getIrregularPartition().getName();
+
+        data.clear();
+        data.add(new Quote().setSym("S6").setTimestamp(Dates.toMillis(2013, 1, 10, 15, 0)));
+        data.add(new Quote().setSym("S4").setTimestamp(Dates.toMillis(2013, 1, 10, 13, 0)));
+        data.add(new Quote().setSym("S2").setTimestamp(Dates.toMillis(2013, 1, 10, 11, 0)));
+        rw.appendOutOfOrder(data);
+        rw.commit();
+
+        // lag has been spliced in place rather than copied into new partition
+        Assert.assertEquals(1, rw.getSpliceCount());
+        Assert.assertEquals(lagName, rw.getIrregularPartition().getName());
+
+        String expected[] = {"S1", "S2", "S3", "S4", "S5", "S6"};
+        int i = 0;
+        for (Quote q : rw) {
+            Assert.assertEquals(expected[i++], q.getSym());
+        }
+        Assert.assertEquals(6, i);
+
+        try (Journal<Quote> r = factory.reader(Quote.class)) {
+            Assert.assertEquals(6, r.size());
+            // symbol index has been truncated and rebuilt for spliced rows
+            Assert.assertEquals(1, r.query().all().withKeys("S4").asResultSet().size());
+            Assert.assertEquals(1, r.query().all().withKeys("S3").asResultSet().size());
+        }
+    }
+
+    @Test
+    public void testOutOfOrderAppendRollback() throws Exception {
+        List<Quote> data = new ArrayList<>();
+        data.add(new Quote().setSym("S1").setTimestamp(Dates.toMillis(2013, 1, 10, 10, 0)));
+        data.add(new Quote().setSym("S3").setTimestamp(Dates.toMillis(2013, 1, 10, 12, 0)));
+        data.add(new Quote().setSym("S5").setTimestamp(Dates.toMillis(2013, 1, 10, 14, 0)));
+        rw.mergeAppend(data);
+        rw.commit();
+
+        String lagName = rw.getIrregularPartition().getName();
+        try (Journal<Quote> r = factory.reader(Quote.class)) {
+            Assert.assertEquals(3, r.size());
+
+            data.clear();
+            data.add(new Quote().setSym("S6").setTimestamp(Dates.toMillis(2013, 1, 10, 15, 0)));
+            data.add(new Quote().setSym("S4").setTimestamp(Dates.toMillis(2013, 1, 10, 13, 0)));
+            data.add(new Quote().setSym("S2").setTimestamp(Dates.toMillis(2013, 1, 10, 11, 0)));
+            rw.appendOutOfOrder(data);
+
+            // committed rows are spliced into copy of lag
+            Assert.assertEquals(1, rw.getSpliceCount());
+            Assert.assertNotEquals(lagName, rw.getIrregularPartition().getName());
+
+            // committed rows are intact for reader before writer commits or rolls back
+            String expected[] = {"S1", "S3", "S5"};
+            int i = 0;
+            for (Quote q : r) {
+                Assert.assertEquals(expected[i++], q.getSym());
+            }
+            Assert.assertEquals(3, i);
+
+            rw.rollback();
+            Assert.assertEquals(lagName, rw.getIrregularPartition().getName());
+
+            i = 0;
+            for (Quote q : rw) {
+                Assert.assertEquals(expected[i++], q.getSym());
+            }
+            Assert.assertEquals(3, i);
+            Assert.assertEquals(1, rw.query().all().withKeys("S3").asResultSet().size());
+        }
+    }
+
+    @Test
+    public void testOutOfOrderAppendStrings() throws Exception {
+        try (JournalWriter<TestEntity> w = factory.writer(entityStructure("o3"));
+             JournalWriter<TestEntity> ref = factory.writer(entityStructure("o3-ref"))) {
+            Rnd rnd = new Rnd();
+            long ts = Dates.parseDateTime("2013-03-10T00:00:00.000Z");
+            for (int batch = 0, row = 0; batch < 30; batch++) {
+                List<TestEntity> data = new ArrayList<>();
+                for (int i = 0; i < 50; i++, row++) {
+                    // every fourth row is up to half an hour late
+                    long late = rnd.nextPositiveInt() % 4 == 0 ? (rnd.nextPositiveInt() % 60) * 30000L : 0;
+                    data.add(new TestEntity()
+                            .setSym(rnd.nextString(1))
+                            .setBStr(rnd.nextPositiveInt() % 10 == 0 ? null : rnd.nextString(rnd.nextPositiveInt() % 20))
+                            .setDStr(rnd.nextString(3))
+                            .setAnInt(row)
+                            .setTimestamp(ts + row * 30000L - late + (row % 30) * 1000L));
+                }
+                w.appendOutOfOrder(data);
+
+                Collections.sort(data, ref.getTimestampComparator());
+                ref.mergeAppend(data);
+
+                // both uncommitted and committed lag rows are spliced
+                if (batch % 3 == 2) {
+                    w.commit();
+                    ref.commit();
+                }
+            }
+            w.commit();
+            ref.commit();
+
+            Assert.assertTrue(w.getSpliceCount() > 0);
+            Assert.assertEquals(ref.size(), w.size());
+            Iterator<TestEntity> expected = ref.iterator();
+            for (TestEntity e : w) {
+                TestEntity x = expected.next();
+                Assert.assertEquals(x.getTimestamp(), e.getTimestamp());
+                Assert.assertEquals(x.getAnInt(), e.getAnInt());
+                Assert.assertEquals(x.getSym(), e.getSym());
+                Assert.assertEquals(x.getBStr(), e.getBStr());
+                Assert.assertEquals(x.getDStr(), e.getDStr());
+            }
+
+            try (Journal r = factory.reader(w.getMetadata())) {
+                for (String sym : new String[]{"B", "C", "D"}) {
+                    Assert.assertEquals(ref.query().all().withKeys(sym).asResultSet().size(), r.query().all().withKeys(sym).asResultSet().size());
+                }
+            }
+        }
+    }
+
     @Test
     public void testOpenWithLag() throws JournalException, NumericException {
 
@@ -225,4 +397,16 @@ public class LagTest extends AbstractTest {
         Assert.assertEquals(2, rw.getPartitionCount());
         Assert.assertEquals(partition, rw.getPartition(1, true));
     }
+
+    private static JournalMetadataBuilder<TestEntity> entityStructure(String location) {
+        JournalMetadataBuilder<TestEntity> b = new JournalMetadataBuilder<>(TestEntity.class)
+                .location(location)
+                .partitionBy(PartitionType.MONTH)
+                .lag(12, TimeUnit.HOURS)
+                .keyColumn("sym");
+        b.$sym("sym").index().valueCountHint(26);
+        b.$str("dStr").index();
+        b.$ts();
+        return b;
+    }
 }
@@ -0,0 +1,288 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb;
+
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.io.RecordSourcePrinter;
+import com.questdb.io.sink.StringSink;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.store.TxListener;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.Arrays;
+
+public class PartitionCompactorTest extends AbstractTest {
+
+    private static final String[] QUERIES = {
+            "%s",
+            "%s where d > 0.5 and sym = 'B'",
+            "%s where sym = 'C'",
+            "%s where timestamp = '2015-03-13T10;2h'",
+            "%s where i > 10 and l < 0",
+            "%s latest by sym"
+    };
+    private final StringSink sink = new StringSink();
+    private final RecordSourcePrinter printer = new RecordSourcePrinter(sink);
+
+    @Test
+    public void testAppendAfterCompaction() throws Exception {
+        long ts = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+        try (JournalWriter tab = writer("tab"); JournalWriter ref = writer("ref")) {
+            tab.setCompressSealedPartitions(true);
+            for (int i = 0; i < 4; i++) {
+                append(tab, new Rnd(), ts, 5000);
+                append(ref, new Rnd(), ts, 5000);
+                ts += 5000 * 300000L;
+            }
+        }
+        assertCompressed("tab", true);
+        assertQueries();
+
+        // reopened writer appends to last partition and compresses partition it leaves behind
+        try (JournalWriter tab = writer("tab"); JournalWriter ref = writer("ref")) {
+            tab.setCompressSealedPartitions(true);
+            append(tab, new Rnd(), ts, 10000);
+            append(ref, new Rnd(), ts, 10000);
+        }
+        assertCompressed("tab", true);
+        assertQueries();
+    }
+
+    @Test
+    public void testCompactSealedPartitions() throws Exception {
+        long ts = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+        try (JournalWriter tab = writer("tab"); JournalWriter ref = writer("ref")) {
+            append(tab, new Rnd(), ts, 25000);
+            append(ref, new Rnd(), ts, 25000);
+            assertCompressed("tab", false);
+
+            // partitions that are already sealed are queued when compression is enabled
+            tab.setCompressSealedPartitions(true);
+        }
+        assertCompressed("tab", true);
+        assertQueries();
+    }
+
+    @Test
+    public void testCompactOpenForWriting() throws Exception {
+        long ts = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+        try (JournalWriter tab = writer("tab")) {
+            append(tab, new Rnd(), ts, 10000);
+            try (PartitionCompactor compactor = new PartitionCompactor(factory.getConfiguration().createMetadata(new JournalKey<>("tab")))) {
+                compactor.compact(partitionDirs("tab")[0]);
+                Assert.fail();
+            } catch (JournalException e) {
+                Assert.assertTrue(e.getMessage().contains("open for APPEND"));
+            }
+        }
+        Assert.assertFalse(new File(partitionDirs("tab")[0], "l.z").exists());
+    }
+
+    @Test
+    public void testCompactSynchronously() throws Exception {
+        long ts = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+        try (JournalWriter tab = writer("tab")) {
+            append(tab, new Rnd(), ts, 10000);
+        }
+
+        File[] partitions = partitionDirs("tab");
+        try (PartitionCompactor compactor = new PartitionCompactor(factory.getConfiguration().createMetadata(new JournalKey<>("tab")))) {
+            // timestamp, sym, i, l and d
+            Assert.assertEquals(5, compactor.compact(partitions[0]));
+            Assert.assertEquals(0, compactor.compact(partitions[0]));
+        }
+        Assert.assertFalse(new File(partitions[0], "l.d").exists());
+        Assert.assertTrue(new File(partitions[0], "s.d").exists());
+    }
+
+    @Test
+    public void testPublish() throws Exception {
+        TxListener listener = new TxListener() {
+            @Override
+            public void onCommit() {
+            }
+
+            @Override
+            public void onError() {
+            }
+        };
+
+        long ts = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+        try (JournalWriter tab = writer("tab")) {
+            tab.setTxListener(listener);
+            try {
+                tab.setCompressSealedPartitions(true);
+                Assert.fail();
+            } catch (JournalException e) {
+                Assert.assertTrue(e.getMessage().contains("published"));
+            }
+            tab.setTxListener(null);
+
+            tab.setCompressSealedPartitions(true);
+            append(tab, new Rnd(), ts, 25000);
+            tab.setCompressSealedPartitions(false);
+            try {
+                tab.setTxListener(listener);
+                Assert.fail();
+            } catch (JournalRuntimeException e) {
+                Assert.assertTrue(e.getMessage().contains("compressed partitions"));
+            }
+        }
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        long ts = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+        try (JournalWriter tab = writer("tab")) {
+            tab.setCompressSealedPartitions(true);
+            append(tab, new Rnd(), ts, 1000);
+            long txn = tab.getTxn();
+            long txPin = tab.getTxPin();
+
+            append(tab, new Rnd(), ts + 1000 * 300000L, 25000);
+            long lastTxn = tab.getTxn();
+            long lastTxPin = tab.getTxPin();
+            append(tab, new Rnd(), ts + 26000 * 300000L, 100);
+
+            // rows of compressed partition stay put
+            try {
+                tab.rollback(txn, txPin);
+                Assert.fail();
+            } catch (JournalException e) {
+                Assert.assertTrue(e.getMessage().contains("compressed partition"));
+            }
+            Assert.assertEquals(26100, tab.size());
+
+            // last partition is not compressed
+            tab.rollback(lastTxn, lastTxPin);
+            Assert.assertEquals(26000, tab.size());
+        }
+        Assert.assertEquals(26000, factory.reader("tab").size());
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        long ts = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+        try (JournalWriter tab = writer("tab")) {
+            tab.setCompressSealedPartitions(true);
+            append(tab, new Rnd(), ts, 25000);
+            tab.truncate();
+            append(tab, new Rnd(), ts, 100);
+        }
+
+        File[] partitions = partitionDirs("tab");
+        Assert.assertEquals(1, partitions.length);
+        Assert.assertFalse(new File(partitions[0], "l.z").exists());
+        Assert.assertEquals(100, factory.reader("tab").size());
+    }
+
+    @Test
+    public void testWriterCompact() throws Exception {
+        long ts = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+        try (JournalWriter tab = writer("tab"); JournalWriter ref = writer("ref")) {
+            tab.setCompressSealedPartitions(true);
+            append(tab, new Rnd(), ts, 25000);
+            append(ref, new Rnd(), ts, 25000);
+
+            // waits for queued partitions, column files they replaced must not reappear
+            tab.setCompressSealedPartitions(false);
+            tab.compact();
+            ref.compact();
+        }
+        assertCompressed("tab", true);
+        assertQueries();
+    }
+
+    private static void append(JournalWriter w, Rnd rnd, long ts, int count) throws Exception {
+        String syms[] = {"A", "B", "C", null};
+        for (int i = 0; i < count; i++) {
+            JournalEntryWriter ew = w.entryWriter(ts += 300000);
+            ew.putSym(0, syms[rnd.nextPositiveInt() % syms.length]);
+            ew.putInt(1, rnd.nextPositiveInt() % 10 == 0 ? Integer.MIN_VALUE : rnd.nextInt() % 20);
+            ew.putLong(2, rnd.nextPositiveInt() % 10 == 0 ? Long.MIN_VALUE : rnd.nextLong() % 20);
+            ew.putDouble(3, rnd.nextPositiveInt() % 10 == 0 ? Double.NaN : rnd.nextDouble());
+            ew.putStr(4, rnd.nextString(5));
+            ew.append();
+        }
+        w.commit();
+    }
+
+    private void assertCompressed(String name, boolean compressed) throws Exception {
+        File[] partitions = partitionDirs(name);
+        Assert.assertTrue(partitions.length > 1);
+        for (int i = 0; i < partitions.length; i++) {
+            // last partition is never compressed
+            boolean expected = compressed && i < partitions.length - 1;
+            Assert.assertEquals(expected, new File(partitions[i], "l.z").exists());
+            Assert.assertEquals(expected, new File(partitions[i], "timestamp.z").exists());
+            Assert.assertEquals(!expected, new File(partitions[i], "d.d").exists());
+            Assert.assertFalse(new File(partitions[i], "s.z").exists());
+        }
+    }
+
+    private void assertQueries() throws Exception {
+        for (String q : QUERIES) {
+            TestUtils.assertEquals(print(String.format(q, "ref")), print(String.format(q, "tab")));
+        }
+    }
+
+    private File[] partitionDirs(String name) {
+        File[] dirs = new File(factory.getConfiguration().getJournalBase(), name).listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return f.isDirectory();
+            }
+        });
+        Assert.assertNotNull(dirs);
+        Arrays.sort(dirs);
+        return dirs;
+    }
+
+    private String print(String query) throws Exception {
+        sink.clear();
+        printer.printCursor(compiler.compile(factory, query), false);
+        return sink.toString();
+    }
+
+    private JournalWriter writer(String name) throws Exception {
+        return factory.writer(new JournalStructure(name) {{
+            $sym("sym").index();
+            $int("i");
+            $long("l");
+            $double("d");
+            $str("s");
+            $ts();
+            partitionBy(PartitionType.MONTH);
+        }});
+    }
+}
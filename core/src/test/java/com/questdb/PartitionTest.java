@@ -25,14 +25,19 @@ package com.questdb;
 
 import com.questdb.ex.JournalException;
 import com.questdb.ex.NumericException;
+import com.questdb.factory.configuration.JournalStructure;
 import com.questdb.misc.Dates;
 import com.questdb.misc.Interval;
 import com.questdb.model.Quote;
 import com.questdb.store.BSearchType;
 import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class PartitionTest extends AbstractTest {
 
     @Test
@@ -88,6 +93,104 @@ public class PartitionTest extends AbstractTest {
         Assert.assertEquals(-1, result);
     }
 
+    @Test
+    public void testParallelIndexRebuild() throws Exception {
+        try (JournalWriter<Quote> w = factory.writer(Quote.class)) {
+            w.setColumnParallelism(4);
+            TestUtils.generateQuoteData(w, 20000, Dates.parseDateTime("2013-10-05T10:00:00.000Z"), 1000);
+            // columns and both symbol indexes are forced by pool threads
+            w.commitDurable();
+            w.rebuildIndexes();
+            assertIndexes(w);
+            Assert.assertEquals(4, w.getColumnParallelism());
+        }
+
+        try (Journal<Quote> r = factory.reader(Quote.class)) {
+            assertIndexes(r);
+        }
+    }
+
+    @Test
+    public void testParallelCommit() throws Exception {
+        JournalWriter<?>[] writers = new JournalWriter[3];
+        try {
+            for (int i = 0; i < writers.length; i++) {
+                JournalWriter<Quote> w = factory.writer(Quote.class, "quote" + i);
+                writers[i] = w.setColumnParallelism(4);
+                TestUtils.generateQuoteData(w, 20000, Dates.parseDateTime("2013-10-05T10:00:00.000Z"), 1000);
+                w.commitDurable();
+            }
+
+            // writers run their column tasks on one shared pool
+            int threads = 0;
+            for (Thread t : Thread.getAllStackTraces().keySet()) {
+                if (t.getName().startsWith("questdb-journal-columns")) {
+                    threads++;
+                }
+            }
+            Assert.assertTrue(threads > 0);
+            Assert.assertTrue(threads <= Runtime.getRuntime().availableProcessors());
+
+            for (int i = 0; i < writers.length; i++) {
+                Partition<?> p = writers[i].getPartition(writers[i].getPartitionCount() - 1, true);
+                for (int k = 0, n = writers[i].getMetadata().getColumnCount(); k < n; k++) {
+                    if (p.getZoneMap(k) != null) {
+                        Assert.assertEquals(p.size(), p.getZoneMap(k).getRowCount());
+                    }
+                }
+            }
+        } finally {
+            for (int i = 0; i < writers.length; i++) {
+                if (writers[i] != null) {
+                    writers[i].close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRegionMapping() throws Exception {
+        assertColumnMapping("region", true);
+        assertColumnMapping("buffers", false);
+    }
+
+    private static void assertIndexes(Journal<Quote> journal) throws JournalException {
+        Map<String, Integer> syms = new HashMap<>();
+        Map<String, Integer> exs = new HashMap<>();
+        for (Quote q : journal) {
+            syms.put(q.getSym(), syms.containsKey(q.getSym()) ? syms.get(q.getSym()) + 1 : 1);
+            exs.put(q.getEx(), exs.containsKey(q.getEx()) ? exs.get(q.getEx()) + 1 : 1);
+        }
+        Assert.assertTrue(syms.size() > 1);
+        for (Map.Entry<String, Integer> e : syms.entrySet()) {
+            Assert.assertEquals((int) e.getValue(), journal.query().all().withKeys(e.getKey()).asResultSet().size());
+        }
+        for (Map.Entry<String, Integer> e : exs.entrySet()) {
+            Assert.assertEquals((int) e.getValue(), journal.query().all().withSymValues("ex", e.getKey()).asResultSet().size());
+        }
+    }
+
+    private void assertColumnMapping(String location, boolean region) throws JournalException {
+        try (JournalWriter w = factory.writer(new JournalStructure(location).$long("x").$ts().regionMapping(region))) {
+            for (int i = 0; i < 100000; i++) {
+                JournalEntryWriter ew = w.entryWriter(i);
+                ew.putLong(0, i);
+                ew.append();
+            }
+            w.commit();
+            Assert.assertEquals(region, w.getPartition(0, true).fixCol(0).isRegion());
+
+            try (Journal r = factory.reader(w.getMetadata())) {
+                Partition p = r.getPartition(0, true);
+                Assert.assertEquals(region, p.fixCol(0).isRegion());
+                Assert.assertEquals(100000, p.size());
+                for (int i = 0; i < 100000; i++) {
+                    Assert.assertEquals(i, p.fixCol(0).getLong(i));
+                }
+            }
+        }
+    }
+
     private <T> Partition<T> getPartitionForTimestamp(Journal<T> journal, long timestamp) throws JournalException {
         int sz = journal.getPartitionCount();
         for (int i = 0; i < sz; i++) {
@@ -27,19 +27,42 @@ import com.questdb.ex.JournalException;
 import com.questdb.ex.NumericException;
 import com.questdb.ex.ParserException;
 import com.questdb.factory.JournalCachingFactory;
+import com.questdb.factory.configuration.ColumnMetadata;
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
 import com.questdb.misc.Dates;
 import com.questdb.misc.Interval;
+import com.questdb.misc.Rnd;
 import com.questdb.model.Quote;
+import com.questdb.net.ha.JournalClient;
+import com.questdb.net.ha.JournalServer;
+import com.questdb.net.ha.config.ClientConfig;
+import com.questdb.net.ha.config.ServerConfig;
 import com.questdb.net.http.ServerConfiguration;
 import com.questdb.ql.Record;
 import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.impl.NoOpCancellationHandler;
+import com.questdb.ql.impl.filter.FilterCompiler;
+import com.questdb.ql.ops.AndOperator;
+import com.questdb.ql.ops.Function;
+import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.ql.ops.col.DoubleRecordSourceColumn;
+import com.questdb.ql.ops.col.IntRecordSourceColumn;
+import com.questdb.ql.ops.col.SymRecordSourceColumn;
+import com.questdb.ql.ops.constant.DoubleConstant;
+import com.questdb.ql.ops.constant.IntConstant;
+import com.questdb.ql.ops.constant.StrConstant;
+import com.questdb.ql.ops.eq.SymEqualsOperator;
+import com.questdb.ql.ops.gt.DoubleGreaterThanOperator;
+import com.questdb.ql.ops.lt.IntLessThanOperator;
 import com.questdb.ql.parser.QueryCompiler;
 import com.questdb.query.api.QueryAllBuilder;
 import com.questdb.query.api.QueryHeadBuilder;
 import com.questdb.std.LongList;
+import com.questdb.store.CompressedColumn;
 import com.questdb.store.KVIndex;
+import com.questdb.store.TxListener;
 import com.questdb.test.tools.AbstractTest;
 import com.questdb.test.tools.TestUtils;
 import org.junit.Assert;
@@ -47,14 +70,16 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.File;
-import java.util.Iterator;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class PerformanceTest extends AbstractTest {
 
     private static final int TEST_DATA_SIZE = 1000000;
     private static final Log LOG = LogFactory.getLog(PerformanceTest.class);
     private static boolean enabled = false;
+    private long checksum;
 
     @BeforeClass
     public static void setUp() {
@@ -109,6 +134,119 @@ public class PerformanceTest extends AbstractTest {
         cf.close();
     }
 
+    @Test
+    public void testCompiledFilter() throws Exception {
+        JournalWriter<Quote> w = factory.writer(Quote.class, "quote", TEST_DATA_SIZE);
+        TestUtils.generateQuoteData(w, TEST_DATA_SIZE, Dates.parseDateTime("2013-10-05T10:00:00.000Z"), 1000);
+        w.commit();
+
+        QueryCompiler compiler = new QueryCompiler(new ServerConfiguration());
+        RecordSource rs = compiler.compileSource(factory, "quote");
+
+        // same as "quote where bid > 0.5 and askSize < 500 and sym = 'LLOY.L'"
+        Function bid = DoubleGreaterThanOperator.FACTORY.newInstance();
+        bid.setArg(0, new DoubleRecordSourceColumn(rs.getMetadata().getColumnIndex("bid")));
+        bid.setArg(1, new DoubleConstant(0.5));
+
+        Function askSize = IntLessThanOperator.FACTORY.newInstance();
+        askSize.setArg(0, new IntRecordSourceColumn(rs.getMetadata().getColumnIndex("askSize")));
+        askSize.setArg(1, new IntConstant(500));
+
+        Function sym = SymEqualsOperator.FACTORY.newInstance();
+        sym.setArg(0, new SymRecordSourceColumn(rs.getMetadata().getColumnIndex("sym")));
+        sym.setArg(1, new StrConstant("LLOY.L"));
+
+        Function and = AndOperator.FACTORY.newInstance();
+        and.setArg(0, bid);
+        and.setArg(1, askSize);
+
+        Function filter = AndOperator.FACTORY.newInstance();
+        filter.setArg(0, and);
+        filter.setArg(1, sym);
+
+        VirtualColumn compiled = new FilterCompiler().compile(PerformanceTest.class, filter);
+        Assert.assertNotSame(filter, compiled);
+
+        int count = 10;
+        long interpreted = 0;
+        long generated = 0;
+        for (int i = -count; i < count; i++) {
+            long t = System.nanoTime();
+            int n1 = scan(rs, filter);
+            if (i >= 0) {
+                interpreted += System.nanoTime() - t;
+            }
+
+            t = System.nanoTime();
+            int n2 = scan(rs, compiled);
+            if (i >= 0) {
+                generated += System.nanoTime() - t;
+            }
+            Assert.assertEquals(n1, n2);
+        }
+        LOG.info().$("interpreted filter (1M): ").$(TimeUnit.NANOSECONDS.toMillis(interpreted / count)).$("ms").$();
+        LOG.info().$("compiled filter (1M): ").$(TimeUnit.NANOSECONDS.toMillis(generated / count)).$("ms").$();
+        if (enabled) {
+            Assert.assertTrue("Compiled filter must be faster than interpreted", generated < interpreted);
+        }
+    }
+
+    @Test
+    public void testCompressedPartitionScan() throws Exception {
+        JournalWriter<Quote> w = factory.writer(Quote.class, "quote", TEST_DATA_SIZE);
+        // ten second increment spreads rows over four monthly partitions
+        TestUtils.generateQuoteData(w, TEST_DATA_SIZE, Dates.parseDateTime("2013-10-05T10:00:00.000Z"), 10000);
+        w.commit();
+
+        int count = 10;
+        long raw = 0;
+        for (int i = -count; i < count; i++) {
+            long t = System.nanoTime();
+            scanColumns();
+            if (i >= 0) {
+                raw += System.nanoTime() - t;
+            }
+        }
+        long expected = checksum;
+
+        long rawBytes = 0;
+        long compressedBytes = 0;
+        long t = System.nanoTime();
+        try (PartitionCompactor compactor = new PartitionCompactor(w.getMetadata())) {
+            for (int i = 0, n = w.getPartitionCount() - 1; i < n; i++) {
+                Partition<Quote> p = w.getPartition(i, true);
+                compactor.compact(p.getPartitionDir());
+                for (int k = 0, c = w.getMetadata().getColumnCount(); k < c; k++) {
+                    ColumnMetadata m = w.getMetadata().getColumnQuick(k);
+                    File f = new File(p.getPartitionDir(), m.name + CompressedColumn.FILE_SUFFIX);
+                    if (f.exists()) {
+                        rawBytes += p.size() * m.size;
+                        compressedBytes += f.length();
+                    }
+                }
+            }
+        }
+        t = System.nanoTime() - t;
+        LOG.info().$("compaction of sealed partitions: ").$(TimeUnit.NANOSECONDS.toMillis(t)).$("ms").$();
+        LOG.info().$("compression ratio: ").$((double) rawBytes / compressedBytes).$(" (").$(rawBytes).$(" -> ").$(compressedBytes).$(" bytes)").$();
+
+        long compressed = 0;
+        for (int i = -count; i < count; i++) {
+            t = System.nanoTime();
+            scanColumns();
+            if (i >= 0) {
+                compressed += System.nanoTime() - t;
+            }
+            Assert.assertEquals(expected, checksum);
+        }
+        LOG.info().$("raw partition scan (1M): ").$(TimeUnit.NANOSECONDS.toMillis(raw / count)).$("ms").$();
+        LOG.info().$("compressed partition scan (1M): ").$(TimeUnit.NANOSECONDS.toMillis(compressed / count)).$("ms").$();
+        if (enabled) {
+            // random prices and sizes of test data leave little for XOR and dictionary encoding
+            Assert.assertTrue("Compression ratio must be over 1.5: " + rawBytes + " -> " + compressedBytes, compressedBytes * 3 < rawBytes * 2);
+        }
+    }
+
     @Test
     public void testIndexAppendAndReadSpeed() throws JournalException {
         File indexFile = new File(factory.getConfiguration().getJournalBase(), "index-test");
@@ -246,4 +384,176 @@ public class PerformanceTest extends AbstractTest {
             LOG.info().$("journal.query().head().withKeys() (query+read) latency: ").$((System.nanoTime() - t) / count).$("ns").$();
         }
     }
+
+    /**
+     * Compares lag merge, which rewrites lag partition, with out-of-order append, which splices it. Writers commit
+     * every few batches, so that late rows overlap both committed lag rows, which are copied on write, and rows
+     * of current transaction, which are spliced in place. Share of late rows is set by "questdb.perf.o3.percent"
+     * system property, 10% by default, and number of batches per commit by "questdb.perf.o3.commit", 5 by default.
+     */
+    @Test
+    public void testOutOfOrderAppend() throws Exception {
+        int percent = Integer.getInteger("questdb.perf.o3.percent", 10);
+        int commitBatches = Integer.getInteger("questdb.perf.o3.commit", 5);
+        int batchSize = 1000;
+        int batchCount = TEST_DATA_SIZE / batchSize / 10;
+
+        List<List<Quote>> batches = new ArrayList<>(batchCount);
+        Rnd rnd = new Rnd();
+        long ts = Dates.parseDateTime("2013-10-05T10:00:00.000Z");
+        // batches, which overlap rows appended before them, are merged by splicing lag
+        int overlaps = 0;
+        long max = Long.MIN_VALUE;
+        for (int b = 0, row = 0; b < batchCount; b++) {
+            List<Quote> batch = new ArrayList<>(batchSize);
+            long min = Long.MAX_VALUE;
+            long batchMax = Long.MIN_VALUE;
+            for (int i = 0; i < batchSize; i++, row++) {
+                // late rows are up to five minutes behind, lag covers hours, so it never swells
+                long late = rnd.nextPositiveInt() % 100 < percent ? rnd.nextPositiveInt() % 300000 : 0;
+                long timestamp = ts + row * 100L - late;
+                batch.add(new Quote().setSym("LLOY.L").setBid(rnd.nextDouble()).setAsk(rnd.nextDouble()).setTimestamp(timestamp));
+                min = Math.min(min, timestamp);
+                batchMax = Math.max(batchMax, timestamp);
+            }
+            if (min <= max) {
+                overlaps++;
+            }
+            max = Math.max(max, batchMax);
+            batches.add(batch);
+        }
+
+        long merge;
+        try (JournalWriter<Quote> w = factory.writer(Quote.class, "quote-merge")) {
+            long t = System.nanoTime();
+            for (int b = 0; b < batchCount; b++) {
+                List<Quote> batch = new ArrayList<>(batches.get(b));
+                Collections.sort(batch, w.getTimestampComparator());
+                w.mergeAppend(batch);
+                if (b % commitBatches == commitBatches - 1) {
+                    w.commit();
+                }
+            }
+            w.commit();
+            merge = System.nanoTime() - t;
+        }
+
+        long o3;
+        try (JournalWriter<Quote> w = factory.writer(Quote.class, "quote-o3")) {
+            long t = System.nanoTime();
+            for (int b = 0; b < batchCount; b++) {
+                w.appendOutOfOrder(batches.get(b));
+                if (b % commitBatches == commitBatches - 1) {
+                    w.commit();
+                }
+            }
+            w.commit();
+            o3 = System.nanoTime() - t;
+            Assert.assertEquals(batchCount * batchSize, w.size());
+            Assert.assertTrue(overlaps > 0);
+            Assert.assertEquals(overlaps, w.getSpliceCount());
+        }
+
+        LOG.info().$("lag merge of ").$(batchCount).$(" batches, ").$(percent).$("% late rows: ").$(TimeUnit.NANOSECONDS.toMillis(merge)).$("ms").$();
+        LOG.info().$("out-of-order append of ").$(batchCount).$(" batches, ").$(percent).$("% late rows, ").$(overlaps).$(" splices: ").$(TimeUnit.NANOSECONDS.toMillis(o3)).$("ms").$();
+        if (enabled) {
+            Assert.assertTrue("Out-of-order append must be faster than lag merge", o3 < merge);
+        }
+    }
+
+    /**
+     * Measures time from writer commit to replica commit, one row per commit, with server agents
+     * parked on commit events and with agents spinning in low latency mode. Number of commits is
+     * set by "questdb.perf.replication.commits" system property, 100 by default.
+     */
+    @Test
+    public void testReplicationLatency() throws Exception {
+        int count = Integer.getInteger("questdb.perf.replication.commits", 100);
+        long parked[] = replicationLatencies(false, count);
+        long spinning[] = replicationLatencies(true, count);
+        logPercentiles("parked", parked);
+        logPercentiles("spinning", spinning);
+        if (enabled) {
+            Assert.assertTrue("Spinning agent must not be slower than parked one", spinning[count / 2] <= parked[count / 2]);
+        }
+    }
+
+    private static void logPercentiles(String mode, long sortedNanos[]) {
+        int n = sortedNanos.length;
+        LOG.info().$("replication latency, ").$(mode).$(" agent, ").$(n).$(" commits [us]: p50=").$(sortedNanos[n / 2] / 1000)
+                .$(", p90=").$(sortedNanos[(int) (n * 0.9)] / 1000)
+                .$(", p99=").$(sortedNanos[(int) (n * 0.99)] / 1000)
+                .$(", max=").$(sortedNanos[n - 1] / 1000).$();
+    }
+
+    private long[] replicationLatencies(final boolean lowLatency, int count) throws Exception {
+        String name = lowLatency ? "quote-spinning" : "quote-parked";
+        JournalServer server = new JournalServer(new ServerConfig() {{
+            setHeartbeatFrequency(100);
+            setEnableMultiCast(false);
+            setLowLatency(lowLatency);
+        }}, factory);
+        JournalClient client = new JournalClient(new ClientConfig("localhost") {{
+            setEnableMultiCast(false);
+        }}, factory);
+
+        long latencies[] = new long[count];
+        try (JournalWriter<Quote> remote = factory.writer(Quote.class, name)) {
+            server.publish(remote);
+            server.start();
+
+            final AtomicLong commits = new AtomicLong();
+            client.subscribe(Quote.class, name, name + "-replica", new TxListener() {
+                @Override
+                public void onCommit() {
+                    commits.incrementAndGet();
+                }
+
+                @Override
+                public void onError() {
+                }
+            });
+            client.start();
+
+            Quote quote = new Quote().setSym("LLOY.L");
+            long ts = Dates.parseDateTime("2013-10-05T10:00:00.000Z");
+            for (int i = 0; i < count; i++) {
+                remote.append(quote.setTimestamp(ts + i));
+                long t = System.nanoTime();
+                remote.commit();
+                while (commits.get() == i) {
+                    if (System.nanoTime() - t > TimeUnit.SECONDS.toNanos(5)) {
+                        Assert.fail("Commit " + i + " did not replicate");
+                    }
+                }
+                latencies[i] = System.nanoTime() - t;
+            }
+        } finally {
+            client.halt();
+            server.halt();
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private void scanColumns() throws Exception {
+        long sum = 0;
+        for (Record r : compiler.compile(factory, "quote")) {
+            sum += r.getLong(0) + r.getInt(1) + r.getInt(4) + r.getInt(5) + r.getInt(6) + r.getInt(7);
+            sum += Double.doubleToRawLongBits(r.getDouble(2)) ^ Double.doubleToRawLongBits(r.getDouble(3));
+        }
+        checksum = sum;
+    }
+
+    private int scan(RecordSource rs, VirtualColumn filter) throws JournalException {
+        RecordCursor cursor = rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE);
+        filter.prepare(cursor.getStorageFacade());
+        int n = 0;
+        while (cursor.hasNext()) {
+            if (filter.getBool(cursor.next())) {
+                n++;
+            }
+        }
+        return n;
+    }
 }
@@ -25,6 +25,9 @@ package com.questdb;
 
 import com.questdb.ex.JournalException;
 import com.questdb.ex.JournalInvalidSymbolValueException;
+import com.questdb.misc.Rnd;
+import com.questdb.std.IntList;
+import com.questdb.std.ObjList;
 import com.questdb.store.SymbolTable;
 import com.questdb.test.tools.AbstractTest;
 import com.questdb.test.tools.TestUtils;
@@ -44,6 +47,74 @@ public class SymbolTableTest extends AbstractTest {
         }
     }
 
+    @Test
+    public void testBatchPut() throws Exception {
+        createTestTable(new String[]{"A", "B"});
+
+        ObjList<CharSequence> values = new ObjList<>();
+        values.add("C");
+        values.add(null);
+        values.add("A");
+        values.add(new StringBuilder("C"));
+        values.add("D");
+        values.add("B");
+        values.add(new StringBuilder("D"));
+
+        IntList keys = new IntList();
+        tab.put(values, keys);
+        tab.commit();
+
+        int expected[] = {2, -1, 0, 2, 3, 1, 3};
+        Assert.assertEquals(expected.length, keys.size());
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], keys.getQuick(i));
+        }
+        Assert.assertEquals(4, tab.size());
+
+        // single value put has to carry on after batch
+        Assert.assertEquals(4, tab.put("E"));
+        tab.commit();
+
+        String data[] = {"A", "B", "C", "D", "E"};
+        try (SymbolTable tab = getReader()) {
+            Assert.assertEquals(data.length, tab.size());
+            for (int i = 0; i < data.length; i++) {
+                Assert.assertEquals(data[i], tab.value(i));
+                Assert.assertEquals(i, tab.getQuick(data[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testBatchPutLarge() throws Exception {
+        createTestTable(createData());
+
+        ObjList<CharSequence> values = new ObjList<>();
+        IntList keys = new IntList();
+        Rnd rnd = new Rnd();
+        int batchSize = 64;
+        for (int k = 0; k < 50; k++) {
+            values.clear();
+            for (int i = 0; i < batchSize; i++) {
+                values.add("TEST" + rnd.nextPositiveInt() % 3000);
+            }
+            tab.put(values, keys);
+            for (int i = 0; i < batchSize; i++) {
+                TestUtils.assertEquals(values.getQuick(i), tab.value(keys.getQuick(i)));
+            }
+            // grow batch to make off-heap hash re-allocate
+            batchSize += 64;
+        }
+        tab.commit();
+
+        try (SymbolTable tab = getReader()) {
+            Assert.assertEquals(this.tab.size(), tab.size());
+            for (int i = 0; i < tab.size(); i++) {
+                Assert.assertEquals(i, tab.getQuick(tab.value(i)));
+            }
+        }
+    }
+
     @Test
     public void testCachePreLoad() throws Exception {
         String data[] = createData();
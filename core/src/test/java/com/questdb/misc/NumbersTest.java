@@ -48,6 +48,18 @@ public class NumbersTest {
         Assert.assertEquals(32, Numbers.ceilPow2(17));
     }
 
+    @Test
+    public void testCompareDouble() throws Exception {
+        Assert.assertEquals(0, Numbers.compare(2.5, 2.5));
+        Assert.assertEquals(0, Numbers.compare(1.0, 1.0));
+        Assert.assertEquals(0, Numbers.compare(Double.NaN, Double.NaN));
+        Assert.assertEquals(-1, Numbers.compare(1.0, 2.5));
+        Assert.assertEquals(1, Numbers.compare(2.5, 1.0));
+        // NaN is ordered before any number
+        Assert.assertEquals(-1, Numbers.compare(Double.NaN, 1.0));
+        Assert.assertEquals(1, Numbers.compare(1.0, Double.NaN));
+    }
+
     @Test
     public void testFormatByte() throws Exception {
         for (int i = 0; i < 1000; i++) {
@@ -366,6 +378,24 @@ public class NumbersTest {
         Assert.assertEquals(5 * 1024, Numbers.parseIntSize("5k"));
     }
 
+    @Test
+    public void testParseLongSize() throws Exception {
+        Assert.assertEquals(4L * 1024 * 1024 * 1024, Numbers.parseLongSize("4G"));
+        Assert.assertEquals(3L * 1024 * 1024, Numbers.parseLongSize("3m"));
+        Assert.assertEquals(5 * 1024, Numbers.parseLongSize("5k"));
+        Assert.assertEquals(123, Numbers.parseLongSize("123"));
+    }
+
+    @Test(expected = NumericException.class)
+    public void testParseLongSizeFail() throws Exception {
+        Numbers.parseLongSize("5Gb");
+    }
+
+    @Test(expected = NumericException.class)
+    public void testParseLongSizeOverflow() throws Exception {
+        Numbers.parseLongSize("9223372036854775807K");
+    }
+
     @Test
     public void testParseSizeMb() throws Exception {
         Assert.assertEquals(5 * 1024 * 1024, Numbers.parseIntSize("5M"));
@@ -23,6 +23,7 @@
 
 package com.questdb.mp;
 
+import com.questdb.ex.TimeoutException;
 import com.questdb.std.ObjectFactory;
 import org.junit.Assert;
 import org.junit.Test;
@@ -30,6 +31,8 @@ import org.junit.Test;
 import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 public class ConcurrentTest {
 
@@ -329,6 +332,42 @@ public class ConcurrentTest {
         }
     }
 
+    @Test
+    public void testTimeoutYieldingWait() throws Exception {
+        int cycle = 16;
+        final RingQueue<Event> queue = new RingQueue<>(Event.FACTORY, cycle);
+        final SPSequence pubSeq = new SPSequence(cycle);
+        SCSequence subSeq = new SCSequence(new TimeoutYieldingWaitStrategy(50, TimeUnit.MILLISECONDS));
+        pubSeq.followedBy(subSeq);
+        subSeq.followedBy(pubSeq);
+
+        try {
+            subSeq.waitForNext();
+            Assert.fail();
+        } catch (TimeoutException ignore) {
+        }
+
+        new Thread() {
+            @Override
+            public void run() {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                long cursor = pubSeq.next();
+                queue.get(cursor).value = 42;
+                pubSeq.done(cursor);
+            }
+        }.start();
+
+        long cursor = subSeq.waitForNext();
+        Assert.assertEquals(42, queue.get(cursor).value);
+        subSeq.done(cursor);
+
+        try {
+            subSeq.waitForNext();
+            Assert.fail();
+        } catch (TimeoutException ignore) {
+        }
+    }
+
     private static void publishEOE(RingQueue<Event> queue, Sequence sequence) {
         long cursor = sequence.nextBully();
         queue.get(cursor).value = Integer.MIN_VALUE;
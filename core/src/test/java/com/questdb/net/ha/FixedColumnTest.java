@@ -33,6 +33,8 @@ import org.junit.*;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 
 public class FixedColumnTest {
 
@@ -244,4 +246,43 @@ public class FixedColumnTest {
         Assert.assertFalse(producer.hasContent());
         Assert.assertEquals(col1.size(), col2.size());
     }
+
+    @Test
+    public void testTransferToFileChannel() throws Exception {
+        FixedColumn col1 = new FixedColumn(file, 4);
+        FixedColumn col2 = new FixedColumn(file2, 4);
+
+        FixedColumnDeltaProducer producer = new FixedColumnDeltaProducer(col1);
+        ChannelConsumer consumer = new FixedColumnDeltaConsumer(col2);
+
+        int max = 1500000;
+
+        for (int i = 0; i < max; i++) {
+            col1.putInt(max - i);
+            col1.commit();
+        }
+
+        for (int i = 0; i < max - 500000; i++) {
+            col2.putInt(max - i);
+            col2.commit();
+        }
+
+        producer.configure(col2.size(), col1.size());
+        Assert.assertTrue(producer.hasContent());
+
+        // file channel target takes zero-copy path
+        try (FileChannel fc = new RandomAccessFile(new File(temporaryFolder.getRoot(), "delta"), "rw").getChannel()) {
+            producer.write(fc);
+            Assert.assertEquals(8 + 500000 * 4, fc.size());
+            fc.position(0);
+            consumer.read(fc);
+        }
+        col2.commit();
+
+        Assert.assertEquals(col1.size(), col2.size());
+
+        for (int i = 0; i < max; i++) {
+            Assert.assertEquals(max - i, col2.getInt(i));
+        }
+    }
 }
@@ -24,6 +24,7 @@
 package com.questdb.net.ha;
 
 import com.questdb.Journal;
+import com.questdb.JournalKey;
 import com.questdb.JournalWriter;
 import com.questdb.ex.JournalNetworkException;
 import com.questdb.model.Quote;
@@ -94,6 +95,50 @@ public class IntegrationTest extends AbstractTest {
      *
      * @throws Exception
      */
+    @Test
+    public void testCompressedReplication() throws Exception {
+        server = new JournalServer(new ServerConfig() {{
+            setHeartbeatFrequency(TimeUnit.MILLISECONDS.toMillis(100));
+            setEnableMultiCast(false);
+            setCompressionLevel(1);
+        }}, factory);
+        client = new JournalClient(new ClientConfig("localhost") {{
+            setCompressionLevel(6);
+        }}, factory);
+
+        int size = 100000;
+        JournalWriter<Quote> remote = factory.writer(Quote.class, "remote", 2 * size);
+        server.publish(remote);
+        server.start();
+
+        final AtomicInteger counter = new AtomicInteger();
+        client.subscribe(Quote.class, "remote", "local", 2 * size, new TxListener() {
+            @Override
+            public void onCommit() {
+                counter.incrementAndGet();
+            }
+
+            @Override
+            public void onError() {
+
+            }
+        });
+        client.start();
+
+        TestUtils.generateQuoteData(remote, size);
+        TestUtils.assertCounter(counter, 1, 2, TimeUnit.SECONDS);
+
+        TestUtils.generateQuoteData(remote, size, remote.getMaxTimestamp());
+        remote.commit();
+        TestUtils.assertCounter(counter, 2, 2, TimeUnit.SECONDS);
+
+        client.halt();
+        server.halt();
+
+        Journal<Quote> local = factory.reader(Quote.class, "local");
+        TestUtils.assertDataEquals(remote, local);
+    }
+
     @Test
     public void testOutOfSyncClient() throws Exception {
         int size = 10000;
@@ -230,6 +275,103 @@ public class IntegrationTest extends AbstractTest {
         server.halt();
     }
 
+    @Test
+    public void testPipelinedJournalsSync() throws Exception {
+        client = new JournalClient(new ClientConfig("localhost") {{
+            setChannelCount(2);
+        }}, factory);
+
+        int bulkSize = 200000;
+        int size = 100;
+        JournalWriter<Quote> remote1 = factory.writer(Quote.class, "remote1", bulkSize);
+        JournalWriter<TestEntity> remote2 = factory.writer(TestEntity.class, "remote2", size);
+        server.publish(remote1);
+        server.publish(remote2);
+        server.start();
+
+        final CountDownLatch latch = new CountDownLatch(2);
+        TxListener listener = new TxListener() {
+            @Override
+            public void onCommit() {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError() {
+
+            }
+        };
+        client.subscribe(Quote.class, "remote1", "local1", bulkSize, listener);
+        client.subscribe(TestEntity.class, "remote2", "local2", size, listener);
+        client.start();
+
+        // each journal gets its own connection
+        Assert.assertEquals(2, server.getConnectedClients());
+        Assert.assertTrue(client.isRunning());
+
+        TestUtils.generateQuoteData(remote1, bulkSize);
+        TestUtils.generateTestEntityData(remote2, size);
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        client.halt();
+        Assert.assertFalse(client.isRunning());
+        server.halt();
+
+        TestUtils.assertDataEquals(remote1, factory.reader(Quote.class, "local1"));
+        Assert.assertEquals(size, factory.reader(TestEntity.class, "local2").size());
+    }
+
+    @Test
+    public void testPipelinedWritersSync() throws Exception {
+        client = new JournalClient(new ClientConfig("localhost") {{
+            setChannelCount(2);
+        }}, factory);
+
+        int bulkSize = 200000;
+        int size = 100;
+        JournalWriter<Quote> remote1 = factory.writer(Quote.class, "remote1", bulkSize);
+        JournalWriter<TestEntity> remote2 = factory.writer(TestEntity.class, "remote2", size);
+        server.publish(remote1);
+        server.publish(remote2);
+        server.start();
+
+        final CountDownLatch latch = new CountDownLatch(2);
+        TxListener listener = new TxListener() {
+            @Override
+            public void onCommit() {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError() {
+
+            }
+        };
+
+        // peers must replicate into these writers rather than open their own
+        JournalWriter<Quote> local1 = factory.writer(Quote.class, "local1", bulkSize);
+        JournalWriter<TestEntity> local2 = factory.writer(TestEntity.class, "local2", size);
+        client.subscribe(new JournalKey<>(Quote.class, "remote1"), local1, listener);
+        client.subscribe(new JournalKey<>(TestEntity.class, "remote2"), local2, listener);
+        client.start();
+
+        Assert.assertEquals(2, server.getConnectedClients());
+
+        TestUtils.generateQuoteData(remote1, bulkSize);
+        TestUtils.generateTestEntityData(remote2, size);
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(bulkSize, local1.size());
+        Assert.assertEquals(size, local2.size());
+
+        client.halt();
+        server.halt();
+
+        TestUtils.assertDataEquals(remote1, factory.reader(Quote.class, "local1"));
+        Assert.assertEquals(size, factory.reader(TestEntity.class, "local2").size());
+    }
+
     @Test
     public void testServerIdleStartStop() throws Exception {
         JournalWriter<Quote> remote = factory.writer(Quote.class, "remote");
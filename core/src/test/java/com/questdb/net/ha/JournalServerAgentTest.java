@@ -37,8 +37,10 @@ import com.questdb.net.ha.model.IndexedJournalKey;
 import com.questdb.net.ha.producer.JournalClientStateProducer;
 import com.questdb.net.ha.protocol.CommandConsumer;
 import com.questdb.net.ha.protocol.CommandProducer;
+import com.questdb.net.ha.protocol.Version;
 import com.questdb.net.ha.protocol.commands.CharSequenceResponseConsumer;
 import com.questdb.net.ha.protocol.commands.IntResponseConsumer;
+import com.questdb.net.ha.protocol.commands.IntResponseProducer;
 import com.questdb.net.ha.protocol.commands.SetKeyRequestProducer;
 import com.questdb.test.tools.AbstractTest;
 import com.questdb.test.tools.TestUtils;
@@ -57,6 +59,7 @@ public class JournalServerAgentTest extends AbstractTest {
     private final CharSequenceResponseConsumer charSequenceResponseConsumer = new CharSequenceResponseConsumer();
     private final JournalClientStateProducer journalClientStateProducer = new JournalClientStateProducer();
     private final IntResponseConsumer intResponseConsumer = new IntResponseConsumer();
+    private final IntResponseProducer intResponseProducer = new IntResponseProducer();
     private MockByteChannel channel;
     private JournalWriter<Quote> quoteWriter;
     private JournalWriter<Trade> tradeWriter;
@@ -86,6 +89,70 @@ public class JournalServerAgentTest extends AbstractTest {
         hugeBufferConsumer.free();
     }
 
+    @Test
+    public void testCompressedInteraction() throws Exception {
+        JournalWriter<Quote> origin = factory.writer(Quote.class, "origin");
+        TestUtils.generateQuoteData(origin, 200);
+
+        server.getConfig().setCompressionLevel(6);
+        server.start();
+        JournalWriter<Quote> quoteClientWriter = factory.writer(Quote.class, "client");
+        JournalDeltaConsumer quoteDeltaConsumer = new JournalDeltaConsumer(quoteClientWriter);
+
+        // clients that predate compression are still welcome
+        commandProducer.write(channel, Command.PROTOCOL_VERSION);
+        intResponseProducer.write(channel, Version.PROTOCOL_VERSION_UNCOMPRESSED);
+        agent.process(channel);
+        charSequenceResponseConsumer.read(channel);
+        TestUtils.assertEquals("OK", charSequenceResponseConsumer.getValue());
+
+        commandProducer.write(channel, Command.PROTOCOL_VERSION);
+        intResponseProducer.write(channel, Version.PROTOCOL_VERSION);
+        agent.process(channel);
+        charSequenceResponseConsumer.read(channel);
+        TestUtils.assertEquals("OK", charSequenceResponseConsumer.getValue());
+
+        // server caps requested level
+        commandProducer.write(channel, Command.COMPRESSION);
+        intResponseProducer.write(channel, 9);
+        agent.process(channel);
+        Assert.assertEquals(6, intResponseConsumer.getValue(channel));
+
+        commandProducer.write(channel, Command.SET_KEY_CMD);
+        setKeyRequestProducer.write(channel, new IndexedJournalKey(0, quoteWriter.getKey()));
+        agent.process(channel);
+        charSequenceResponseConsumer.read(channel);
+        TestUtils.assertEquals("OK", charSequenceResponseConsumer.getValue());
+        hugeBufferConsumer.read(channel);
+
+        commandProducer.write(channel, Command.DELTA_REQUEST_CMD);
+        journalClientStateProducer.write(channel, new IndexedJournal(0, quoteClientWriter));
+        agent.process(channel);
+        charSequenceResponseConsumer.read(channel);
+        TestUtils.assertEquals("OK", charSequenceResponseConsumer.getValue());
+
+        quoteWriter.append(origin.query().all().asResultSet());
+        quoteWriter.commit();
+
+        commandProducer.write(channel, Command.CLIENT_READY_CMD);
+        agent.process(channel);
+
+        commandConsumer.read(channel);
+        Assert.assertEquals(Command.JOURNAL_DELTA_CMD, commandConsumer.getValue());
+        Assert.assertEquals(0, intResponseConsumer.getValue(channel));
+
+        try (InflatingReadableByteChannel inflater = new InflatingReadableByteChannel()) {
+            quoteDeltaConsumer.read(inflater.of(channel));
+        }
+        Assert.assertEquals(200, quoteClientWriter.size());
+        TestUtils.assertDataEquals(origin, quoteClientWriter);
+
+        commandConsumer.read(channel);
+        Assert.assertEquals(Command.SERVER_READY_CMD, commandConsumer.getValue());
+
+        server.halt();
+    }
+
     @Test
     public void testIncrementalInteraction() throws Exception {
         JournalWriter<Quote> origin = factory.writer(Quote.class, "origin");
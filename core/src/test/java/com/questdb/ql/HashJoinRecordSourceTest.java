@@ -30,6 +30,8 @@ import com.questdb.factory.configuration.JournalConfigurationBuilder;
 import com.questdb.io.RecordSourcePrinter;
 import com.questdb.io.sink.StringSink;
 import com.questdb.misc.Files;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Rnd;
 import com.questdb.model.Album;
 import com.questdb.model.Band;
 import com.questdb.model.Quote;
@@ -45,6 +47,8 @@ import com.questdb.test.tools.JournalTestFactory;
 import com.questdb.test.tools.TestUtils;
 import org.junit.*;
 
+import java.util.Arrays;
+
 public class HashJoinRecordSourceTest {
     @Rule
     public final JournalTestFactory factory;
@@ -101,7 +105,9 @@ public class HashJoinRecordSourceTest {
                         false,
                         4 * 1024 * 1024,
                         4 * 1024 * 1024,
-                        1024 * 1024
+                        1024 * 1024,
+                        0,
+                        false
                 ),
                 new ObjList<CharSequence>() {{
                     add("genre");
@@ -136,7 +142,9 @@ public class HashJoinRecordSourceTest {
                 false,
                 4 * 1024 * 1024,
                 4 * 1024 * 1024,
-                1024 * 1024
+                1024 * 1024,
+                0,
+                false
         );
 
         long t = System.currentTimeMillis();
@@ -186,7 +194,9 @@ public class HashJoinRecordSourceTest {
                         false,
                         4 * 1024 * 1024,
                         4 * 1024 * 1024,
-                        1024 * 1024
+                        1024 * 1024,
+                        0,
+                        false
                 ),
                 new ObjList<CharSequence>() {{
                     add("genre");
@@ -231,7 +241,9 @@ public class HashJoinRecordSourceTest {
                         true,
                         4 * 1024 * 1024,
                         4 * 1024 * 1024,
-                        1024 * 1024
+                        1024 * 1024,
+                        0,
+                        false
                 ),
                 new ObjList<CharSequence>() {{
                     add("genre");
@@ -247,4 +259,80 @@ public class HashJoinRecordSourceTest {
                 "rock\thttp://new.band1.com\n" +
                 "\thttp://new.band5.com\n", sink.toString());
     }
+
+    @Test
+    public void testInnerHashJoinOverMemoryBudget() throws Exception {
+        generateBandsAndAlbums();
+
+        // partitions do not fit 256 bytes either and are split again
+        String expected = sortedJoin(0, false);
+        Assert.assertEquals(expected, sortedJoin(256, false));
+        Assert.assertEquals(expected, sortedJoin(4096, false));
+    }
+
+    @Test
+    public void testOuterHashJoinOverMemoryBudget() throws Exception {
+        generateBandsAndAlbums();
+
+        // hash table of 500 keys and 3000 row ids does not fit 4Kb and has to be joined in several passes
+        Assert.assertEquals(sortedJoin(0, true), sortedJoin(4096, true));
+    }
+
+    @Test
+    public void testOrderedHashJoinOverMemoryBudget() throws Exception {
+        generateBandsAndAlbums();
+
+        // partitioned join merges partitions back in order of master records
+        Assert.assertEquals(join(0, false, true), join(256, false, true));
+        Assert.assertEquals(join(0, true, true), join(4096, true, true));
+    }
+
+    private void generateBandsAndAlbums() throws Exception {
+        Rnd rnd = new Rnd();
+        for (int i = 0; i < 2000; i++) {
+            bw.append(new Band().setName("band" + rnd.nextPositiveInt() % 600).setType("jazz").setUrl("http://band" + i + ".com"));
+        }
+        bw.commit();
+
+        for (int i = 0; i < 3000; i++) {
+            aw.append(new Album().setName("album" + i).setBand("band" + rnd.nextPositiveInt() % 500).setGenre("genre" + i));
+        }
+        aw.commit();
+    }
+
+    private String join(int memoryBudget, boolean outer, boolean ordered) throws Exception {
+        StringSink sink = new StringSink();
+        RecordSourcePrinter p = new RecordSourcePrinter(sink);
+        RecordSource joinResult = new SelectedColumnsRecordSource(
+                new HashJoinRecordSource(
+                        new JournalSource(new JournalPartitionSource(bw.getMetadata(), false), new AllRowSource()),
+                        new IntList() {{
+                            add(bw.getMetadata().getColumnIndex("name"));
+                        }},
+                        new JournalSource(new JournalPartitionSource(aw.getMetadata(), false), new AllRowSource()),
+                        new IntList() {{
+                            add(aw.getMetadata().getColumnIndex("band"));
+                        }},
+                        outer,
+                        4 * 1024 * 1024,
+                        4 * 1024 * 1024,
+                        1024 * 1024,
+                        memoryBudget,
+                        ordered
+                ),
+                new ObjList<CharSequence>() {{
+                    add("genre");
+                    add("url");
+                }}
+        );
+        p.printCursor(joinResult.prepareCursor(factory, NoOpCancellationHandler.INSTANCE));
+        Misc.free(joinResult);
+        return sink.toString();
+    }
+
+    private String sortedJoin(int memoryBudget, boolean outer) throws Exception {
+        String lines[] = join(memoryBudget, outer, false).split("\n");
+        Arrays.sort(lines);
+        return String.join("\n", (CharSequence[]) lines);
+    }
 }
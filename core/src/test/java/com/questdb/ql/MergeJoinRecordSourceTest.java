@@ -0,0 +1,152 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.ql.impl.NoOpCancellationHandler;
+import com.questdb.ql.impl.NoRowidSource;
+import com.questdb.ql.impl.join.MergeJoinRecordSource;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MergeJoinRecordSourceTest extends AbstractOptimiserTest {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // "dup" duplicates timestamp in column that is not designated, so hash join can be used as reference
+        try (JournalWriter w = factory.bulkWriter(new JournalStructure("ta")
+                .$int("x")
+                .$str("str")
+                .$date("dup")
+                .$ts()
+                .$())) {
+            Rnd rnd = new Rnd();
+            long ts = Dates.toMillis(2016, 3, 12, 0, 0);
+            for (int i = 0; i < 3000; i++) {
+                ts += (rnd.nextPositiveInt() % 3) * 1000;
+                JournalEntryWriter ew = w.entryWriter(ts);
+                ew.putInt(0, i);
+                ew.putStr(1, rnd.nextChars(3));
+                ew.putDate(2, ts);
+                ew.append();
+            }
+            w.commit();
+        }
+
+        try (JournalWriter w = factory.bulkWriter(new JournalStructure("tb")
+                .$sym("sym")
+                .$double("y")
+                .$date("dup")
+                .$ts()
+                .$())) {
+            Rnd rnd = new Rnd(7, 11);
+            String syms[] = {"AA", "BB", "CC"};
+            long ts = Dates.toMillis(2016, 3, 12, 0, 0);
+            for (int i = 0; i < 3000; i++) {
+                ts += (rnd.nextPositiveInt() % 4) * 1000;
+                JournalEntryWriter ew = w.entryWriter(ts);
+                ew.putSym(0, syms[rnd.nextPositiveInt() % syms.length]);
+                ew.putDouble(1, rnd.nextDouble());
+                ew.putDate(2, ts);
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testFilteredJoin() throws Exception {
+        assertJoin("ta join tb on ta.timestamp = tb.timestamp where tb.sym = 'BB' and x > 100",
+                "ta join tb on ta.dup = tb.dup where tb.sym = 'BB' and x > 100");
+    }
+
+    @Test
+    public void testInnerJoin() throws Exception {
+        assertJoin("ta join tb on ta.timestamp = tb.timestamp", "ta join tb on ta.dup = tb.dup");
+    }
+
+    @Test
+    public void testMasterOutOfOrder() throws Exception {
+        // hash join that can partition its input to fit memory budget does not keep timestamp order of "ta"
+        sink.clear();
+        compiler.compileSource(factory, "ta join tb on ta.dup = tb.dup join tb c on ta.timestamp = c.timestamp order by x").toSink(sink);
+        Assert.assertFalse(sink.toString().contains("MergeJoinRecordSource"));
+
+        // without sort, hash join has to keep the order and merge join follows
+        sink.clear();
+        compiler.compileSource(factory, "ta join tb on ta.dup = tb.dup join tb c on ta.timestamp = c.timestamp").toSink(sink);
+        Assert.assertTrue(sink.toString().contains("MergeJoinRecordSource"));
+    }
+
+    @Test
+    public void testNoRowIdSlave() throws Exception {
+        String expected = print(compiler.compileSource(factory, "ta outer join tb on ta.dup = tb.dup"));
+        RecordSource master = compiler.compileSource(factory, "ta");
+        RecordSource slave = new NoRowidSource().of(compiler.compileSource(factory, "tb"));
+        String actual = print(new MergeJoinRecordSource(master, 3, slave, 3, true, 128, 128));
+        TestUtils.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testOuterJoin() throws Exception {
+        assertJoin("ta outer join tb on ta.timestamp = tb.timestamp", "ta outer join tb on ta.dup = tb.dup");
+    }
+
+    @Test
+    public void testReversedJoin() throws Exception {
+        assertJoin("tb outer join ta on tb.timestamp = ta.timestamp", "tb outer join ta on tb.dup = ta.dup");
+    }
+
+    @Test
+    public void testSubqueryIsHashed() throws Exception {
+        sink.clear();
+        compiler.compileSource(factory, "ta join (tb order by y) b on ta.timestamp = b.timestamp").toSink(sink);
+        Assert.assertTrue(sink.toString().contains("HashJoinRecordSource"));
+        Assert.assertFalse(sink.toString().contains("MergeJoinRecordSource"));
+    }
+
+    private void assertJoin(String query, String hashQuery) throws Exception {
+        RecordSource rs = compiler.compileSource(factory, query);
+        sink.clear();
+        rs.toSink(sink);
+        Assert.assertTrue(sink.toString().contains("MergeJoinRecordSource"));
+
+        String expected = print(compiler.compileSource(factory, hashQuery));
+        Assert.assertTrue(expected.length() > 0);
+        TestUtils.assertEquals(expected, print(rs));
+    }
+
+    private String print(RecordSource rs) throws Exception {
+        sink.clear();
+        printer.printCursor(rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE), false);
+        return sink.toString();
+    }
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.io.RecordSourcePrinter;
+import com.questdb.io.sink.StringSink;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Numbers;
+import com.questdb.ql.PartitionCursor;
+import com.questdb.ql.PartitionSlice;
+import com.questdb.ql.RecordSource;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.store.ZoneMap;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZoneMapPartitionSourceTest extends AbstractTest {
+
+    private static final int ROWS = 100000;
+    private final StringSink sink = new StringSink();
+    private final RecordSourcePrinter printer = new RecordSourcePrinter(sink);
+    private JournalWriter w;
+
+    @Before
+    public void setUp() throws Exception {
+        w = factory.writer(new JournalStructure("zm") {{
+            $long("seq");
+            $int("qty");
+            $double("price");
+            $ts();
+        }});
+
+        for (int i = 0; i < ROWS; i++) {
+            JournalEntryWriter ew = w.entryWriter(i);
+            ew.putLong(0, i);
+            // first block of qty is all nulls
+            ew.putInt(1, i < ZoneMap.BLOCK_SIZE ? Numbers.INT_NaN : i % 100);
+            ew.putDouble(2, i == 77777 ? -0.0 : (i % 1000) / 10.0);
+            ew.append();
+        }
+        w.commit();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        w = Misc.free(w);
+    }
+
+    @Test
+    public void testContradiction() throws Exception {
+        assertQuery("zm where seq > 10 and seq < 5");
+    }
+
+    @Test
+    public void testNullBlocks() throws Exception {
+        Assert.assertEquals(ROWS - ZoneMap.BLOCK_SIZE, countRows(1, 0, 1000));
+        assertQuery("zm where qty < 1000");
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        sink.clear();
+        compiler.compileSource(factory, "zm where seq > 10 and price < 5").toSink(sink);
+        Assert.assertTrue(sink.toString().contains("\"op\":\"ZoneMapPartitionSource\""));
+
+        sink.clear();
+        compiler.compileSource(factory, "zm where seq > 10 or price < 5").toSink(sink);
+        Assert.assertFalse(sink.toString().contains("ZoneMapPartitionSource"));
+    }
+
+    @Test
+    public void testQueries() throws Exception {
+        assertQuery("zm where seq >= 99990");
+        assertQuery("zm where 99990 < seq");
+        assertQuery("zm where seq > 50000 and seq < 50010 and qty = 3");
+        assertQuery("zm where seq = 20000");
+        assertQuery("zm where price = 0 and seq > 77000");
+        assertQuery("zm where price > 99.85");
+        assertQuery("zm where price < -1");
+        assertQuery("zm where seq < 10 or seq > 99995");
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        JournalEntryWriter ew = w.entryWriter(ROWS);
+        ew.putLong(0, 1000000);
+        ew.putInt(1, 0);
+        ew.putDouble(2, 0);
+        ew.append();
+        // summarise uncommitted row, rollback has to take it out again
+        w.getPartition(0, true).commitColumns();
+        Assert.assertEquals(ROWS - 6 * ZoneMap.BLOCK_SIZE, countRows(0, 1000000, Long.MAX_VALUE));
+        w.rollback();
+
+        Assert.assertEquals(0, countRows(0, 1000000, Long.MAX_VALUE));
+
+        ew = w.entryWriter(ROWS);
+        ew.putLong(0, 2000000);
+        ew.putInt(1, 0);
+        ew.putDouble(2, 0);
+        ew.append();
+        w.commit();
+
+        Assert.assertEquals(ROWS + 1 - 6 * ZoneMap.BLOCK_SIZE, countRows(0, 1000000, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testSkipBlocks() throws Exception {
+        Assert.assertEquals(ROWS - 5 * ZoneMap.BLOCK_SIZE, countRows(0, 90000, Long.MAX_VALUE));
+        Assert.assertEquals(ZoneMap.BLOCK_SIZE, countRows(0, 20000, 20000));
+        Assert.assertEquals(0, countRows(0, ROWS, Long.MAX_VALUE));
+    }
+
+    private void assertQuery(String query) throws Exception {
+        // limit prevents filter from being pushed down to journal scan
+        String expected = print(compiler.compileSource(factory, "(zm limit 1000000) where" + query.substring(8)));
+        RecordSource rs = compiler.compileSource(factory, query);
+        TestUtils.assertEquals(expected, print(rs));
+    }
+
+    private long countRows(int column, long lo, long hi) throws Exception {
+        IntList columns = new IntList();
+        columns.add(column);
+        LongList los = new LongList();
+        los.add(lo);
+        LongList his = new LongList();
+        his.add(hi);
+
+        PartitionCursor cursor = new ZoneMapPartitionSource(new JournalPartitionSource(w.getMetadata(), true), columns, los, his).prepareCursor(factory);
+        long count = 0;
+        while (cursor.hasNext()) {
+            PartitionSlice slice = cursor.next();
+            count += slice.hi - slice.lo + 1;
+        }
+        return count;
+    }
+
+    private String print(RecordSource rs) throws Exception {
+        sink.clear();
+        printer.printCursor(rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE), false);
+        return sink.toString();
+    }
+}
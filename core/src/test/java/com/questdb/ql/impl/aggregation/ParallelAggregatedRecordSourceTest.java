@@ -0,0 +1,178 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.aggregation;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionType;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.io.RecordSourcePrinter;
+import com.questdb.io.sink.StringSink;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Rnd;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.impl.NoOpCancellationHandler;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class ParallelAggregatedRecordSourceTest extends AbstractTest {
+
+    private final StringSink sink = new StringSink();
+    private final RecordSourcePrinter printer = new RecordSourcePrinter(sink);
+    private final QueryCompiler parallelCompiler = new QueryCompiler(new ServerConfiguration() {{
+        setDbScanWorkers(4);
+    }});
+
+    @Before
+    public void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("tab") {{
+            $sym("sym").index().valueCountHint(16);
+            $double("price");
+            $int("qty");
+            $long("amt");
+            $ts();
+            partitionBy(PartitionType.DAY);
+        }})) {
+            Rnd rnd = new Rnd();
+            String syms[] = new String[16];
+            for (int i = 0; i < syms.length; i++) {
+                syms[i] = "S" + i;
+            }
+
+            long t = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+            for (int i = 0; i < 100000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t += 30000);
+                ew.putSym(0, syms[rnd.nextPositiveInt() % syms.length]);
+                // values are exactly representable to keep double sums independent of merge order
+                ew.putDouble(1, (rnd.nextInt() & 1023) * 0.5);
+                ew.putInt(2, rnd.nextInt() & 1023);
+                ew.putLong(3, rnd.nextLong() & 0xffffff);
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testAllAggregates() throws Exception {
+        assertParallel("select sym, sum(price), sum(qty), sum(amt), count(), count(price), min(price), max(price), min(qty), max(qty), min(amt), max(amt), first(price), last(price), first(qty), last(qty), avg(qty) from tab");
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        assertParallel("select sym, count(), sum(qty), last(amt) from tab where qty > 100 and price < 300");
+    }
+
+    @Test
+    public void testIntervalAndKey() throws Exception {
+        assertParallel("select sym, count(), first(amt), last(amt), max(price) from tab where timestamp = '2015-03-13;2d' and sym in ('S1', 'S5')");
+    }
+
+    @Test
+    public void testMapBudget() throws Exception {
+        String query = "select sym, qty, count(), sum(amt), first(price), last(price) from tab";
+        String expected = print(compiler.compileSource(factory, query));
+        QueryCompiler budgetCompiler = new QueryCompiler(new ServerConfiguration() {{
+            setDbScanWorkers(4);
+            setDbMapBudget(64 * 1024);
+        }});
+        RecordSource rs = budgetCompiler.compileSource(factory, query);
+        try {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString().contains("{\"op\":\"ParallelAggregatedRecordSource\",\"workers\":4"));
+            // each partial map outgrows its share of budget and is spilled
+            TestUtils.assertEquals(expected, print(rs));
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    @Test
+    public void testNoKeys() throws Exception {
+        assertParallel("select sum(qty), min(price), max(amt), first(qty), last(qty) from tab");
+    }
+
+    @Test
+    public void testNoParallelAggregationWithSampleBy() throws Exception {
+        RecordSource rs = parallelCompiler.compileSource(factory, "select sym, sum(qty) from tab sample by 1d");
+        try {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertFalse(sink.toString().contains("ParallelAggregatedRecordSource"));
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        String query = "select sym, count(), sum(qty) from tab";
+        String expected = print(compiler.compileSource(factory, query));
+        RecordSource rs = parallelCompiler.compileSource(factory, query);
+        try {
+            TestUtils.assertEquals(expected, print(rs));
+            rs.reset();
+            TestUtils.assertEquals(expected, print(rs));
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    @Test
+    public void testVwap() throws Exception {
+        assertParallel("select sym, vwap(price, qty) from tab");
+    }
+
+    private void assertParallel(String query) throws Exception {
+        String expected = print(compiler.compileSource(factory, query));
+        RecordSource rs = parallelCompiler.compileSource(factory, query);
+        try {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString().contains("{\"op\":\"ParallelAggregatedRecordSource\",\"workers\":4"));
+            TestUtils.assertEquals(expected, print(rs));
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    // partial maps are merged in worker order, so group order differs from sequential aggregation
+    private String print(RecordSource rs) throws Exception {
+        sink.clear();
+        printer.printCursor(rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE), false);
+        String lines[] = sink.toString().split("\n");
+        Arrays.sort(lines);
+        return String.join("\n", (CharSequence[]) lines);
+    }
+}
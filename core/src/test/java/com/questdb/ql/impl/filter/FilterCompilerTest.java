@@ -0,0 +1,224 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.filter;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.ex.ParserException;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.io.RecordSourcePrinter;
+import com.questdb.io.sink.StringSink;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.ql.Record;
+import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.impl.NoOpCancellationHandler;
+import com.questdb.ql.ops.*;
+import com.questdb.ql.ops.col.*;
+import com.questdb.ql.ops.constant.DoubleConstant;
+import com.questdb.ql.ops.constant.IntConstant;
+import com.questdb.ql.ops.constant.LongConstant;
+import com.questdb.ql.ops.constant.StrConstant;
+import com.questdb.ql.ops.eq.*;
+import com.questdb.ql.ops.gt.DoubleGreaterThanOperator;
+import com.questdb.ql.ops.gt.IntGreaterThanOperator;
+import com.questdb.ql.ops.gt.LongGreaterThanOperator;
+import com.questdb.ql.ops.gte.IntGreaterOrEqualOperator;
+import com.questdb.ql.ops.lt.DoubleLessThanOperator;
+import com.questdb.ql.ops.lt.IntLessThanOperator;
+import com.questdb.ql.ops.lt.LongLessThanOperator;
+import com.questdb.ql.ops.lte.IntLessOrEqualOperator;
+import com.questdb.ql.ops.lte.LongLessOrEqualOperator;
+import com.questdb.ql.ops.neq.*;
+import com.questdb.std.ObjectFactory;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FilterCompilerTest extends AbstractTest {
+
+    private static final VirtualColumn SYM = new SymRecordSourceColumn(0);
+    private static final VirtualColumn I = new IntRecordSourceColumn(1);
+    private static final VirtualColumn L = new LongRecordSourceColumn(2);
+    private static final VirtualColumn D = new DoubleRecordSourceColumn(3);
+    private final FilterCompiler fc = new FilterCompiler();
+    private final StringSink sink = new StringSink();
+    private final RecordSourcePrinter printer = new RecordSourcePrinter(sink);
+
+    @Before
+    public void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("tab") {{
+            $sym("sym");
+            $int("i");
+            $long("l");
+            $double("d");
+            $ts();
+        }})) {
+            String syms[] = {"A", "B", "C", null};
+            Rnd rnd = new Rnd();
+            long ts = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+            for (int i = 0; i < 1000; i++) {
+                JournalEntryWriter ew = w.entryWriter(ts += 1000);
+                ew.putSym(0, syms[rnd.nextPositiveInt() % syms.length]);
+                ew.putInt(1, rnd.nextPositiveInt() % 10 == 0 ? Integer.MIN_VALUE : rnd.nextInt() % 20);
+                ew.putLong(2, rnd.nextPositiveInt() % 10 == 0 ? Long.MIN_VALUE : rnd.nextLong() % 20);
+                ew.putDouble(3, rnd.nextPositiveInt() % 10 == 0 ? Double.NaN : rnd.nextDouble());
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testAndOrNot() throws Exception {
+        assertCompiled(op(AndOperator.FACTORY, op(IntGreaterThanOperator.FACTORY, I, new IntConstant(5)), op(DoubleLessThanOperator.FACTORY, D, new DoubleConstant(0.5))));
+        assertCompiled(op(OrOperator.FACTORY, op(IntGreaterThanOperator.FACTORY, I, new IntConstant(5)), op(DoubleLessThanOperator.FACTORY, D, new DoubleConstant(0.5))));
+        assertCompiled(not(op(IntGreaterThanOperator.FACTORY, I, new IntConstant(5))));
+        assertCompiled(
+                op(AndOperator.FACTORY,
+                        not(op(OrOperator.FACTORY, op(LongLessThanOperator.FACTORY, L, new LongConstant(0)), op(DoubleNotEqualsNanOperator.FACTORY, D, new DoubleConstant(Double.NaN)))),
+                        op(OrOperator.FACTORY,
+                                op(AndOperator.FACTORY, op(SymEqualsOperator.FACTORY, SYM, new StrConstant("B")), op(IntLessOrEqualOperator.FACTORY, I, new IntConstant(0))),
+                                not(op(AndOperator.FACTORY, op(SymNotEqualsOperator.FACTORY, SYM, new StrConstant("A")), op(IntEqualsNaNOperator.FACTORY, I, new DoubleConstant(Double.NaN))))
+                        )
+                )
+        );
+    }
+
+    @Test
+    public void testDouble() throws Exception {
+        assertCompiled(op(DoubleGreaterThanOperator.FACTORY, D, new DoubleConstant(0.5)));
+        assertCompiled(op(DoubleLessThanOperator.FACTORY, D, new DoubleConstant(0.5)));
+        assertCompiled(op(DoubleLessThanOperator.FACTORY, new IntConstant(0), D));
+        assertCompiled(op(DoubleEqualsOperator.FACTORY, D, new DoubleConstant(Double.NaN)));
+        assertCompiled(op(DoubleNotEqualsOperator.FACTORY, D, new DoubleConstant(Double.NaN)));
+        assertCompiled(op(DoubleEqualsNanOperator.FACTORY, D, new DoubleConstant(Double.NaN)));
+        assertCompiled(op(DoubleNotEqualsNanOperator.FACTORY, D, new DoubleConstant(Double.NaN)));
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        VirtualColumn regex = op(SymRegexOperator.FACTORY, SYM, new StrConstant("A"));
+        Assert.assertSame(regex, fc.compile(FilterCompilerTest.class, regex));
+
+        VirtualColumn and = op(AndOperator.FACTORY, op(IntGreaterThanOperator.FACTORY, I, new IntConstant(5)), regex);
+        Assert.assertSame(and, fc.compile(FilterCompilerTest.class, and));
+
+        VirtualColumn mixed = op(DoubleGreaterThanOperator.FACTORY, I, new DoubleConstant(0.5));
+        Assert.assertSame(mixed, fc.compile(FilterCompilerTest.class, mixed));
+    }
+
+    @Test
+    public void testInt() throws Exception {
+        assertCompiled(op(IntEqualsOperator.FACTORY, I, new IntConstant(5)));
+        assertCompiled(op(IntNotEqualsOperator.FACTORY, I, new IntConstant(5)));
+        assertCompiled(op(IntGreaterThanOperator.FACTORY, I, new IntConstant(-5)));
+        assertCompiled(op(IntGreaterOrEqualOperator.FACTORY, I, new IntConstant(100000)));
+        assertCompiled(op(IntLessThanOperator.FACTORY, I, new IntConstant(5)));
+        assertCompiled(op(IntLessOrEqualOperator.FACTORY, I, new IntConstant(5)));
+        assertCompiled(op(IntLessThanOperator.FACTORY, new IntConstant(5), I));
+        assertCompiled(op(IntGreaterThanOperator.FACTORY, I, new IntConstant(Integer.MIN_VALUE)));
+        assertCompiled(op(IntNotEqualsOperator.FACTORY, I, new IntConstant(Integer.MIN_VALUE)));
+        assertCompiled(op(IntEqualsNaNOperator.FACTORY, I, new DoubleConstant(Double.NaN)));
+        assertCompiled(op(IntNotEqualsNaNOperator.FACTORY, I, new DoubleConstant(Double.NaN)));
+    }
+
+    @Test
+    public void testLong() throws Exception {
+        assertCompiled(op(LongEqualsOperator.FACTORY, L, new LongConstant(5)));
+        assertCompiled(op(LongNotEqualsOperator.FACTORY, L, new IntConstant(5)));
+        assertCompiled(op(LongGreaterThanOperator.FACTORY, L, new LongConstant(-3)));
+        assertCompiled(op(LongLessThanOperator.FACTORY, L, new LongConstant(3)));
+        assertCompiled(op(LongLessOrEqualOperator.FACTORY, new LongConstant(3), L));
+        assertCompiled(op(LongLessThanOperator.FACTORY, L, new LongConstant(Long.MIN_VALUE)));
+        assertCompiled(op(LongEqualsNaNOperator.FACTORY, L, new DoubleConstant(Double.NaN)));
+        assertCompiled(op(LongNotEqualsNaNOperator.FACTORY, L, new DoubleConstant(Double.NaN)));
+    }
+
+    @Test
+    public void testParameter() throws Exception {
+        String expected = print("tab where i > 5");
+        RecordSource rs = compiler.compileSource(factory, "(tab limit 1000000) where i > :min");
+        rs.getParam(":min").set(5);
+        sink.clear();
+        printer.printCursor(rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE), false);
+        TestUtils.assertEquals(expected, sink);
+    }
+
+    @Test
+    public void testPostFilterQuery() throws Exception {
+        String query = "(tab limit 1000000) where i > 5 and d < 0.5 or sym = 'C'";
+        String expected = print("tab where i > 5 and d < 0.5 or sym = 'C'");
+        TestUtils.assertEquals(expected, print(query));
+    }
+
+    @Test
+    public void testSym() throws Exception {
+        assertCompiled(op(SymEqualsOperator.FACTORY, SYM, new StrConstant("A")));
+        assertCompiled(op(SymNotEqualsOperator.FACTORY, SYM, new StrConstant("A")));
+        assertCompiled(op(SymEqualsROperator.FACTORY, new StrConstant("B"), SYM));
+        assertCompiled(op(SymNotEqualsROperator.FACTORY, new StrConstant("B"), SYM));
+        assertCompiled(op(SymEqualsOperator.FACTORY, SYM, new StrConstant(null)));
+        assertCompiled(op(SymNotEqualsOperator.FACTORY, SYM, new StrConstant(null)));
+        assertCompiled(op(SymEqualsOperator.FACTORY, SYM, new StrConstant("Z")));
+    }
+
+    private static VirtualColumn not(VirtualColumn value) throws ParserException {
+        Function f = NotOperator.FACTORY.newInstance();
+        f.setArg(0, value);
+        return f;
+    }
+
+    private static VirtualColumn op(ObjectFactory<Function> factory, VirtualColumn lhs, VirtualColumn rhs) throws ParserException {
+        Function f = factory.newInstance();
+        f.setArg(0, lhs);
+        f.setArg(1, rhs);
+        return f;
+    }
+
+    private void assertCompiled(VirtualColumn filter) throws Exception {
+        VirtualColumn compiled = fc.compile(FilterCompilerTest.class, filter);
+        Assert.assertTrue(compiled instanceof CompiledFilter);
+
+        RecordSource rs = compiler.compileSource(factory, "tab");
+        RecordCursor cursor = rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE);
+        filter.prepare(cursor.getStorageFacade());
+        compiled.prepare(cursor.getStorageFacade());
+
+        while (cursor.hasNext()) {
+            Record r = cursor.next();
+            Assert.assertEquals("row " + r.getRowId(), filter.getBool(r), compiled.getBool(r));
+        }
+    }
+
+    private String print(String query) throws Exception {
+        sink.clear();
+        printer.printCursor(compiler.compileSource(factory, query).prepareCursor(factory, NoOpCancellationHandler.INSTANCE), false);
+        return sink.toString();
+    }
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.map;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionType;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.io.RecordSourcePrinter;
+import com.questdb.io.sink.StringSink;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Rnd;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.impl.NoOpCancellationHandler;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class MultiMapSpillTest extends AbstractTest {
+
+    private final StringSink sink = new StringSink();
+    private final RecordSourcePrinter printer = new RecordSourcePrinter(sink);
+    private final QueryCompiler spillingCompiler = new QueryCompiler(new ServerConfiguration() {{
+        setDbMapBudget(16 * 1024);
+    }});
+
+    @Before
+    public void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("tab") {{
+            $str("id");
+            $int("grp");
+            $double("price");
+            $long("qty");
+            $ts();
+            partitionBy(PartitionType.MONTH);
+        }})) {
+            Rnd rnd = new Rnd();
+            long t = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+            for (int i = 0; i < 50000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t += 60000);
+                ew.putStr(0, "id" + rnd.nextPositiveInt() % 5000);
+                ew.putInt(1, rnd.nextInt() & 7);
+                ew.putDouble(2, (rnd.nextInt() & 1023) * 0.25);
+                ew.putLong(3, rnd.nextLong() & 0xffff);
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testAggregates() throws Exception {
+        assertSpill("select id, count(), sum(qty), min(price), max(price), first(qty), last(qty), avg(price) from tab");
+    }
+
+    @Test
+    public void testCompositeKey() throws Exception {
+        assertSpill("select id, grp, count(), sum(price), last(price) from tab");
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        String query = "select id, count(), first(price), last(qty) from tab where grp > 2";
+        String expected = print(compiler.compileSource(factory, query));
+        RecordSource rs = spillingCompiler.compileSource(factory, query);
+        try {
+            TestUtils.assertEquals(expected, print(rs));
+            rs.reset();
+            TestUtils.assertEquals(expected, print(rs));
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    private void assertSpill(String query) throws Exception {
+        String expected = print(compiler.compileSource(factory, query));
+        RecordSource rs = spillingCompiler.compileSource(factory, query);
+        try {
+            TestUtils.assertEquals(expected, print(rs));
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    // spilled partitions are emitted one after another, which changes order of groups
+    private String print(RecordSource rs) throws Exception {
+        sink.clear();
+        printer.printCursor(rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE), false);
+        String lines[] = sink.toString().split("\n");
+        Arrays.sort(lines);
+        return String.join("\n", (CharSequence[]) lines);
+    }
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.parallel;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionType;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.io.RecordSourcePrinter;
+import com.questdb.io.sink.StringSink;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Rnd;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.impl.NoOpCancellationHandler;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelJournalSourceTest extends AbstractTest {
+
+    private final StringSink sink = new StringSink();
+    private final RecordSourcePrinter printer = new RecordSourcePrinter(sink);
+    private final QueryCompiler parallelCompiler = new QueryCompiler(new ServerConfiguration() {{
+        setDbScanWorkers(4);
+    }});
+
+    @Before
+    public void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("tab") {{
+            $sym("sym").index().valueCountHint(16);
+            $str("id");
+            $double("price");
+            $int("qty");
+            $ts();
+            partitionBy(PartitionType.DAY);
+        }})) {
+            Rnd rnd = new Rnd();
+            String syms[] = new String[16];
+            for (int i = 0; i < syms.length; i++) {
+                syms[i] = "S" + i;
+            }
+
+            long t = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+            for (int i = 0; i < 100000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t += 30000);
+                ew.putSym(0, syms[rnd.nextPositiveInt() % syms.length]);
+                ew.putStr(1, rnd.nextString(6));
+                ew.putDouble(2, rnd.nextDouble());
+                ew.putInt(3, rnd.nextInt() & 1023);
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        assertParallel("tab where price > 0.5 and qty < 100", true);
+    }
+
+    @Test
+    public void testIndexedKeyAndFilter() throws Exception {
+        assertParallel("tab where sym = 'S3' and qty > 512", true);
+    }
+
+    @Test
+    public void testIntervalAndFilter() throws Exception {
+        assertParallel("tab where timestamp = '2015-03-13;2d' and sym ~ '1' and qty < 10", true);
+    }
+
+    @Test
+    public void testNoParallelScanWithoutFilter() throws Exception {
+        RecordSource rs = parallelCompiler.compileSource(factory, "tab");
+        Assert.assertFalse(rs instanceof ParallelJournalSource);
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        String expected = print(compiler.compileSource(factory, "tab where qty = 15"));
+        RecordSource rs = parallelCompiler.compileSource(factory, "tab where qty = 15");
+        try {
+            Assert.assertTrue(rs instanceof ParallelJournalSource);
+            // abandon scan half way
+            rs.prepareCursor(factory).hasNext();
+            rs.reset();
+            TestUtils.assertEquals(expected, print(rs));
+            rs.reset();
+            TestUtils.assertEquals(expected, print(rs));
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    @Test
+    public void testUnorderedWithOrderBy() throws Exception {
+        assertParallel("select sym, id, price from tab where qty < 100 order by id, price", false);
+    }
+
+    private void assertParallel(String query, boolean ordered) throws Exception {
+        String expected = print(compiler.compileSource(factory, query));
+        RecordSource rs = parallelCompiler.compileSource(factory, query);
+        try {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString().contains("{\"op\":\"ParallelJournalSource\",\"workers\":4,\"ordered\":" + ordered));
+            TestUtils.assertEquals(expected, print(rs));
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    private String print(RecordSource rs) throws Exception {
+        sink.clear();
+        printer.printCursor(rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE), false);
+        return sink.toString();
+    }
+}
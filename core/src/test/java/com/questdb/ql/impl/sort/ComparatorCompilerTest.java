@@ -94,7 +94,7 @@ public class ComparatorCompilerTest extends AbstractOptimiserTest {
         }
         RecordSource rs = compiler.compileSource(factory, "xyz");
         RecordComparator rc = cc.compile(ComparatorCompilerTest.class, rs.getMetadata(), indices);
-        RBTreeSortedRecordSource map = new RBTreeSortedRecordSource(rs, rc, 1024 * 1024, 4 * 1024 * 1024);
+        RBTreeSortedRecordSource map = new RBTreeSortedRecordSource(rs, rc, 1024 * 1024, 4 * 1024 * 1024, 0);
 
         sink.clear();
         printer.printCursor(map.prepareCursor(factory, NoOpCancellationHandler.INSTANCE));
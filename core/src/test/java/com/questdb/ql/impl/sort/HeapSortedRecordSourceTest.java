@@ -0,0 +1,97 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.std.IntList;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.impl.NoOpCancellationHandler;
+import com.questdb.ql.ops.constant.LongConstant;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class HeapSortedRecordSourceTest extends AbstractOptimiserTest {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        TestUtils.generateTradeData(factory, "tab", 20000);
+    }
+
+    @Test
+    public void testDescendingInput() throws Exception {
+        // every record replaces root of heap, which exercises storage compaction
+        assertTop("tab order by timestamp desc", 0, 100);
+    }
+
+    @Test
+    public void testEmptyLimit() throws Exception {
+        assertTop("tab order by price", 0, 0);
+    }
+
+    @Test
+    public void testEqualKeys() throws Exception {
+        assertTop("tab order by grp", 0, 1500);
+    }
+
+    @Test
+    public void testLimitAboveRowCount() throws Exception {
+        assertTop("tab order by str desc, price", 0, 50000);
+    }
+
+    @Test
+    public void testLimitRange() throws Exception {
+        assertTop("tab order by sym, grp desc", 500, 520);
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        RecordSource src = compiler.compileSource(factory, "tab");
+        IntList indices = new IntList();
+        indices.add(src.getMetadata().getColumnIndex("price") + 1);
+        RecordSource rs = new HeapSortedRecordSource(src, new ComparatorCompiler().compile(HeapSortedRecordSource.class, src.getMetadata(), indices), new LongConstant(10), 1024 * 1024);
+        sink.clear();
+        rs.toSink(sink);
+        Assert.assertTrue(sink.toString().startsWith("{\"op\":\"HeapSortedRecordSource\",\"limit\":10,\"src\":"));
+    }
+
+    @Test
+    public void testStrings() throws Exception {
+        assertTop("select str, price from tab order by str", 0, 300);
+    }
+
+    private void assertTop(String query, int lo, int hi) throws Exception {
+        RecordSource rs = compiler.compileSource(factory, query);
+        sink.clear();
+        printer.printCursor(rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE), false);
+        String lines[] = sink.toString().split("\n");
+        StringBuilder expected = new StringBuilder();
+        for (int i = lo; i < hi && i < lines.length; i++) {
+            expected.append(lines[i]).append('\n');
+        }
+        assertThat(expected.toString(), query + " limit " + lo + "," + hi);
+    }
+}
@@ -29,14 +29,20 @@ import com.questdb.ex.ParserException;
 import com.questdb.factory.configuration.JournalStructure;
 import com.questdb.misc.Dates;
 import com.questdb.misc.Rnd;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.impl.NoOpCancellationHandler;
 import com.questdb.ql.parser.AbstractOptimiserTest;
 import com.questdb.ql.parser.QueryError;
+import com.questdb.std.IntList;
+import com.questdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 public class RBTreeSortedRecordSourceTest extends AbstractOptimiserTest {
 
+    private final ComparatorCompiler cc = new ComparatorCompiler();
+
     @BeforeClass
     public static void setUp() throws Exception {
         try (JournalWriter w = factory.bulkWriter(new JournalStructure("xyz")
@@ -85,6 +91,8 @@ public class RBTreeSortedRecordSourceTest extends AbstractOptimiserTest {
             }
             w.commit();
         }
+
+        TestUtils.generateTradeData(factory, "tab", 20000);
     }
 
     @Test
@@ -379,6 +387,31 @@ public class RBTreeSortedRecordSourceTest extends AbstractOptimiserTest {
                 "select ts, sum(count) from (select round(d/100) r, count() count, last(timestamp) ts from timeseries order by ts) timestamp(ts) sample by 1h");
     }
 
+    @Test
+    public void testSpillByRowId() throws Exception {
+        assertSpill("tab", true, "price");
+    }
+
+    @Test
+    public void testSpillByRowIdEqualKeys() throws Exception {
+        assertSpill("tab", true, "grp");
+    }
+
+    @Test
+    public void testSpillRecords() throws Exception {
+        assertSpill("select str, count() c, sum(price) s from tab", false, "-c", "str");
+    }
+
+    @Test
+    public void testSpillStrings() throws Exception {
+        assertSpill("select str, count() c, sum(price) s from tab", false, "-str");
+    }
+
+    @Test
+    public void testSpillSymbolsAndStrings() throws Exception {
+        assertSpill("tab", true, "sym", "-str", "timestamp");
+    }
+
     @Test
     public void testStrSort() throws Exception {
         final String expected = "1125579207\tBB\n" +
@@ -485,4 +518,34 @@ public class RBTreeSortedRecordSourceTest extends AbstractOptimiserTest {
         assertThat(expected, "xyz order by str");
     }
 
+    private void assertSpill(String query, boolean byRowId, String... columns) throws Exception {
+        RecordSource src = compiler.compileSource(factory, query);
+        Assert.assertEquals(byRowId, src.supportsRowIdAccess());
+
+        // negative column index means descending order of sort
+        IntList indices = new IntList();
+        for (int i = 0; i < columns.length; i++) {
+            String c = columns[i];
+            if (c.charAt(0) == '-') {
+                indices.add(-src.getMetadata().getColumnIndex(c.substring(1)) - 1);
+            } else {
+                indices.add(src.getMetadata().getColumnIndex(c) + 1);
+            }
+        }
+
+        RecordComparator comparator = cc.compile(RBTreeSortedRecordSourceTest.class, src.getMetadata(), indices);
+        String expected = print(new RBTreeSortedRecordSource(src, comparator, 4096, 4096, 0));
+        String actual = print(new RBTreeSortedRecordSource(compiler.compileSource(factory, query), comparator, 4096, 4096, 64 * 1024));
+        TestUtils.assertEquals(expected, actual);
+    }
+
+    private String print(RBTreeSortedRecordSource rs) throws Exception {
+        try {
+            sink.clear();
+            printer.printCursor(rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE), false);
+            return sink.toString();
+        } finally {
+            rs.close();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.ops.vector;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.io.RecordSourcePrinter;
+import com.questdb.io.sink.StringSink;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.impl.NoOpCancellationHandler;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VectorFiltersTest extends AbstractTest {
+
+    private final StringSink sink = new StringSink();
+    private final RecordSourcePrinter printer = new RecordSourcePrinter(sink);
+
+    @Before
+    public void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("tab") {{
+            $sym("sym");
+            $int("i");
+            $long("l");
+            $double("d");
+            $ts();
+        }})) {
+            String syms[] = {"A", "B", "C", null};
+            Rnd rnd = new Rnd();
+            long ts = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+            // odd row count to leave partial block at the end
+            for (int i = 0; i < 3001; i++) {
+                JournalEntryWriter ew = w.entryWriter(ts += 1000);
+                ew.putSym(0, syms[rnd.nextPositiveInt() % syms.length]);
+                ew.putInt(1, rnd.nextPositiveInt() % 10 == 0 ? Integer.MIN_VALUE : rnd.nextInt() % 20);
+                ew.putLong(2, rnd.nextPositiveInt() % 10 == 0 ? Long.MIN_VALUE : rnd.nextLong() % 20);
+                ew.putDouble(3, rnd.nextPositiveInt() % 10 == 0 ? Double.NaN : rnd.nextDouble());
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testAndOrNot() throws Exception {
+        assertFilter("i > 10 and d < 0.5");
+        assertFilter("i > 10 or d < 0.5");
+        assertFilter("not(i > 10)");
+        assertFilter("not(i > 10 or d != null) and sym = 'C'");
+    }
+
+    @Test
+    public void testDouble() throws Exception {
+        assertFilter("d > 0.5");
+        assertFilter("d >= 0.5");
+        assertFilter("d < 0.5");
+        assertFilter("d <= 0.5");
+        assertFilter("d != 0.5");
+        assertFilter("0.5 >= d");
+        assertFilter("d = null");
+        assertFilter("d != null");
+        assertFilter("i > 10.5");
+        assertFilter("l <= 0.5");
+    }
+
+    @Test
+    public void testInt() throws Exception {
+        assertFilter("i > 10");
+        assertFilter("i >= 10");
+        assertFilter("i < 10");
+        assertFilter("i <= 10");
+        assertFilter("i = 10");
+        assertFilter("i != 10");
+        assertFilter("10 < i");
+        assertFilter("10 >= i");
+        assertFilter("i = null");
+        assertFilter("i != null");
+    }
+
+    @Test
+    public void testLong() throws Exception {
+        assertFilter("l > 10");
+        assertFilter("l < 10");
+        assertFilter("l = 5");
+        assertFilter("l != 5");
+        assertFilter("-3 > l");
+        assertFilter("l = null");
+        assertFilter("l != null");
+    }
+
+    @Test
+    public void testMixedWithRowFilter() throws Exception {
+        assertFilter("i > 10 and sym ~ 'B'");
+        assertFilter("sym ~ 'B' or l < 0");
+        assertFilter("not(sym ~ 'A') and d > 0.1");
+    }
+
+    @Test
+    public void testRowFilterOnly() throws Exception {
+        assertFilter("sym ~ 'B' and sym ~ 'A'");
+    }
+
+    @Test
+    public void testSym() throws Exception {
+        assertFilter("sym = 'A'");
+        assertFilter("sym != 'A'");
+        assertFilter("'B' = sym");
+        assertFilter("sym = null");
+        assertFilter("sym != null");
+        assertFilter("sym = 'Z'");
+    }
+
+    private void assertFilter(String filter) throws Exception {
+        // limit keeps filter out of journal scan, so reference is evaluated one record at a time
+        String expected = print("(tab limit 1000000) where " + filter, false);
+        String actual = print("tab where " + filter, true);
+        TestUtils.assertEquals(expected, actual);
+    }
+
+    private String print(String query, boolean rowFilter) throws Exception {
+        RecordSource rs = compiler.compileSource(factory, query);
+        sink.clear();
+        rs.toSink(sink);
+        Assert.assertEquals(rowFilter, sink.toString().contains("FilteredRowSource"));
+
+        sink.clear();
+        printer.printCursor(rs.prepareCursor(factory, NoOpCancellationHandler.INSTANCE), false);
+        return sink.toString();
+    }
+}
@@ -640,7 +640,9 @@ public class JoinQueryTest extends AbstractOptimiserTest {
                 false,
                 4 * 1024 * 1024,
                 4 * 1024 * 1024,
-                1024 * 1024
+                1024 * 1024,
+                0,
+                false
         );
         sink.clear();
         printer.printCursor(r.prepareCursor(factory, NoOpCancellationHandler.INSTANCE));
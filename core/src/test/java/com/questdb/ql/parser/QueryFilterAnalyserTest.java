@@ -138,17 +138,29 @@ public class QueryFilterAnalyserTest extends AbstractTest {
     @Test
     public void testEqualsChoiceOfColumns() throws Exception {
         IntrinsicModel m = modelOf("sym = 'X' and ex = 'Y'");
-        assertFilter(m, "'Y'ex=");
+        Assert.assertNull(m.filter);
         Assert.assertEquals("sym", m.keyColumn);
         Assert.assertEquals("[X]", m.keyValues.toString());
+        Assert.assertEquals("[ex]", m.extraKeyColumns.toString());
+        Assert.assertEquals("[Y]", m.extraKeyValues.toString());
     }
 
     @Test
     public void testEqualsChoiceOfColumns2() throws Exception {
         IntrinsicModel m = modelOf("ex = 'Y' and sym = 'X'");
-        assertFilter(m, "'Y'ex=");
+        Assert.assertNull(m.filter);
         Assert.assertEquals("sym", m.keyColumn);
         Assert.assertEquals("[X]", m.keyValues.toString());
+        Assert.assertEquals("[ex]", m.extraKeyColumns.toString());
+        Assert.assertEquals("[Y]", m.extraKeyValues.toString());
+    }
+
+    @Test
+    public void testEqualsChoiceOfColumnsMultipleValues() throws Exception {
+        IntrinsicModel m = modelOf("sym in ('X', 'Z') and ex = 'Y'");
+        assertFilter(m, "'Y'ex=");
+        Assert.assertEquals("sym", m.keyColumn);
+        Assert.assertEquals(0, m.extraKeyColumns.size());
     }
 
     @Test
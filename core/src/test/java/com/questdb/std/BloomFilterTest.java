@@ -0,0 +1,89 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.std;
+
+import com.questdb.misc.Rnd;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testEmpty() throws Exception {
+        try (BloomFilter filter = new BloomFilter()) {
+            Rnd rnd = new Rnd();
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertFalse(filter.mightContain(rnd.nextInt()));
+            }
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() throws Exception {
+        int n = 100000;
+        IntHashSet keys = new IntHashSet(n);
+        try (BloomFilter filter = new BloomFilter()) {
+            filter.of(n);
+            Rnd rnd = new Rnd();
+            for (int i = 0; i < n; i++) {
+                int hash = rnd.nextPositiveInt();
+                keys.add(hash);
+                filter.add(hash);
+            }
+
+            int falsePositives = 0;
+            int misses = 0;
+            for (int i = 0; i < n; i++) {
+                int hash = rnd.nextPositiveInt();
+                if (!keys.contains(hash)) {
+                    misses++;
+                    if (filter.mightContain(hash)) {
+                        falsePositives++;
+                    }
+                }
+            }
+            Assert.assertTrue("false positives: " + falsePositives, falsePositives < misses / 50);
+        }
+    }
+
+    @Test
+    public void testNoFalseNegatives() throws Exception {
+        try (BloomFilter filter = new BloomFilter()) {
+            filter.of(1000);
+            for (int i = 0; i < 1000; i++) {
+                filter.add(i * 31);
+            }
+
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertTrue(filter.mightContain(i * 31));
+            }
+
+            // filter is cleared when sized again
+            filter.of(10);
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertFalse(filter.mightContain(i * 31));
+            }
+        }
+    }
+}
@@ -95,6 +95,41 @@ public class ColumnTest {
         }
     }
 
+    @Test
+    public void testRegionColumn() throws JournalException {
+        // small page hint makes region grow and move several times
+        try (FixedColumn w = new FixedColumn(new MemoryFile(dataFile, 12, JournalMode.APPEND, true), 8)) {
+            Assert.assertTrue(w.mappedFile.isRegion());
+            try (FixedColumn r = new FixedColumn(new MemoryFile(dataFile, 12, JournalMode.READ, true), 8)) {
+                Assert.assertTrue(r.mappedFile.isRegion());
+                for (int i = 0; i < 100000; i++) {
+                    w.putLong(i);
+                    w.commit();
+                    if (i % 1000 == 0) {
+                        // reader remaps as file grows
+                        Assert.assertEquals(i, r.getLong(i));
+                    }
+                }
+
+                for (int i = 0; i < 100000; i++) {
+                    Assert.assertEquals(i, w.getLong(i));
+                }
+                w.force();
+            }
+            w.compact();
+            // reopened writer does not grow compacted file until it is accessed
+            Assert.assertEquals(100000 * 8 + 8, dataFile.length());
+            Assert.assertEquals(99999, w.getLong(99999));
+        }
+
+        try (FixedColumn r = new FixedColumn(new MemoryFile(dataFile, 12, JournalMode.READ, true), 8)) {
+            Assert.assertEquals(100000, r.size());
+            for (int i = 0; i < 100000; i++) {
+                Assert.assertEquals(i, r.getLong(i));
+            }
+        }
+    }
+
     @Test
     public void testTruncate() throws JournalException {
 
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.misc.Rnd;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class CompressedColumnTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private final Rnd rnd = new Rnd();
+    private File dataFile;
+    private File compressedFile;
+
+    @Before
+    public void setUp() {
+        dataFile = new File(temporaryFolder.getRoot(), "col.d");
+        compressedFile = new File(temporaryFolder.getRoot(), "col.z");
+    }
+
+    @Test
+    public void testDoubles() throws Exception {
+        int count = 3 * CompressedColumn.BLOCK_SIZE + 17;
+        try (FixedColumn col = new FixedColumn(new MemoryFile(dataFile, 16, JournalMode.APPEND), 8)) {
+            double price = 100;
+            for (int i = 0; i < count; i++) {
+                switch (rnd.nextPositiveInt() % 10) {
+                    case 0:
+                        col.putDouble(Double.NaN);
+                        break;
+                    case 1:
+                        col.putDouble(-0.0);
+                        break;
+                    case 2:
+                        col.putDouble(rnd.nextDouble() * Double.MAX_VALUE);
+                        break;
+                    default:
+                        col.putDouble(price += (rnd.nextPositiveInt() % 5 - 2) * 0.25);
+                        break;
+                }
+                col.commit();
+            }
+        }
+
+        try (FixedColumn expected = open(8); CompressedColumn actual = compress(ColumnType.DOUBLE, 8)) {
+            Assert.assertEquals(count, actual.size());
+            for (int i = 0; i < count; i++) {
+                Assert.assertEquals(Double.doubleToRawLongBits(expected.getDouble(i)), Double.doubleToRawLongBits(actual.getDouble(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testInts() throws Exception {
+        int count = 2 * CompressedColumn.BLOCK_SIZE + 5;
+        try (FixedColumn col = new FixedColumn(new MemoryFile(dataFile, 16, JournalMode.APPEND), 4)) {
+            for (int i = 0; i < count; i++) {
+                if (i < CompressedColumn.BLOCK_SIZE) {
+                    // long runs favour run length encoding
+                    col.putInt(i / 100 % 2 == 0 ? Integer.MIN_VALUE : i / 100);
+                } else if (i < 2 * CompressedColumn.BLOCK_SIZE) {
+                    // few distinct values in random order favour dictionary
+                    col.putInt(rnd.nextPositiveInt() % 7 - 3);
+                } else {
+                    col.putInt(rnd.nextInt());
+                }
+                col.commit();
+            }
+        }
+
+        try (FixedColumn expected = open(4); CompressedColumn actual = compress(ColumnType.INT, 4)) {
+            Assert.assertEquals(count, actual.size());
+            // random access across blocks
+            for (int i = count - 1; i > -1; i--) {
+                Assert.assertEquals(expected.getInt(i), actual.getInt(i));
+            }
+            Assert.assertTrue(compressedFile.length() < dataFile.length() / 2);
+        }
+    }
+
+    @Test
+    public void testLongs() throws Exception {
+        int count = 5 * CompressedColumn.BLOCK_SIZE - 1;
+        try (FixedColumn col = new FixedColumn(new MemoryFile(dataFile, 16, JournalMode.APPEND), 8)) {
+            for (int i = 0; i < count; i++) {
+                switch (rnd.nextPositiveInt() % 20) {
+                    case 0:
+                        col.putLong(Long.MIN_VALUE);
+                        break;
+                    case 1:
+                        col.putLong(Long.MAX_VALUE);
+                        break;
+                    default:
+                        col.putLong(rnd.nextLong() % 1000);
+                        break;
+                }
+                col.commit();
+            }
+        }
+
+        try (FixedColumn expected = open(8); CompressedColumn actual = compress(ColumnType.LONG, 8)) {
+            Assert.assertEquals(count, actual.size());
+            for (int i = 0; i < count; i++) {
+                Assert.assertEquals(expected.getLong(i), actual.getLong(i));
+            }
+        }
+    }
+
+    @Test
+    public void testReadOnly() throws Exception {
+        try (FixedColumn col = new FixedColumn(new MemoryFile(dataFile, 16, JournalMode.APPEND), 8)) {
+            col.putLong(10);
+            col.commit();
+        }
+
+        try (CompressedColumn actual = compress(ColumnType.LONG, 8)) {
+            try {
+                actual.putLong(20);
+                Assert.fail();
+            } catch (JournalRuntimeException ignore) {
+            }
+
+            try {
+                actual.getBuffer(0, 8);
+                Assert.fail();
+            } catch (JournalRuntimeException ignore) {
+            }
+            Assert.assertEquals(10, actual.getLong(0));
+        }
+    }
+
+    @Test
+    public void testTimestamps() throws Exception {
+        int count = 2 * CompressedColumn.BLOCK_SIZE + 100;
+        long ts = 1420070400000L;
+        try (FixedColumn col = new FixedColumn(new MemoryFile(dataFile, 16, JournalMode.APPEND), 8)) {
+            for (int i = 0; i < count; i++) {
+                col.putLong(ts += rnd.nextPositiveInt() % 10 == 0 ? 1001 : 1000);
+                col.commit();
+            }
+        }
+
+        try (FixedColumn expected = open(8); CompressedColumn actual = compress(ColumnType.DATE, 8)) {
+            Assert.assertEquals(count, actual.size());
+            for (int i = 0; i < count; i++) {
+                Assert.assertEquals(expected.getLong(i), actual.getLong(i));
+            }
+            Assert.assertEquals(count / 2, actual.bsearchEdge(expected.getLong(count / 2), BSearchType.OLDER_OR_SAME));
+            // regular timestamps take about a byte
+            Assert.assertTrue(compressedFile.length() < count * 2);
+        }
+    }
+
+    private CompressedColumn compress(ColumnType type, int width) throws JournalException {
+        try (FixedColumn src = open(width)) {
+            MemoryFile dst = new MemoryFile(compressedFile, 16, JournalMode.APPEND);
+            try {
+                CompressedColumn.compress(src, type, dst);
+                dst.compact();
+            } finally {
+                dst.close();
+            }
+        }
+        return new CompressedColumn(new MemoryFile(compressedFile, 16, JournalMode.READ), type, width);
+    }
+
+    private FixedColumn open(int width) throws JournalException {
+        return new FixedColumn(new MemoryFile(dataFile, 16, JournalMode.READ), width);
+    }
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SymbolCacheTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testEviction() throws Exception {
+        try (SymbolCache cache = new SymbolCache(64)) {
+            try (SymbolTable tab = createTable("a", cache)) {
+                put(tab, "A", 1000);
+
+                // all lookups are correct even though only fraction of values fits in cache
+                for (int k = 0; k < 2; k++) {
+                    for (int i = 0; i < 1000; i++) {
+                        Assert.assertEquals(i, tab.getQuick("A" + i));
+                        Assert.assertEquals("A" + i, tab.value(i));
+                    }
+                }
+                Assert.assertTrue(cache.getMisses() > 0);
+                Assert.assertEquals(64, cache.getCapacity());
+            }
+        }
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        try (SymbolCache cache = new SymbolCache(1024)) {
+            try (SymbolTable tab = createTable("a", cache)) {
+                put(tab, "A", 10);
+                cache.resetCounters();
+
+                for (int i = 0; i < 10; i++) {
+                    Assert.assertEquals(i, tab.getQuick("A" + i));
+                }
+                Assert.assertEquals(10, cache.getHits());
+                Assert.assertEquals(0, cache.getMisses());
+
+                // first access to values misses, second hits
+                for (int k = 0; k < 2; k++) {
+                    for (int i = 0; i < 10; i++) {
+                        Assert.assertEquals("A" + i, tab.value(i));
+                    }
+                }
+                Assert.assertEquals(20, cache.getHits());
+                Assert.assertEquals(10, cache.getMisses());
+
+                Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, tab.getQuick("B"));
+                Assert.assertEquals(11, cache.getMisses());
+            }
+        }
+    }
+
+    @Test
+    public void testSharedByTables() throws Exception {
+        try (SymbolCache cache = new SymbolCache(1024)) {
+            try (SymbolTable a = createTable("a", cache); SymbolTable b = createTable("b", cache)) {
+                // same values map to different keys in each table
+                put(a, "X", 10);
+                put(b, "Y", 5);
+                put(b, "X", 10);
+                for (int i = 0; i < 10; i++) {
+                    Assert.assertEquals(i, a.getQuick("X" + i));
+                    Assert.assertEquals(i + 5, b.getQuick("X" + i));
+                    Assert.assertEquals("X" + i, a.value(i));
+                    Assert.assertEquals("X" + i, b.value(i + 5));
+                }
+
+                b.truncate();
+                Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, b.getQuick("X1"));
+                Assert.assertEquals(0, b.put("X5"));
+                Assert.assertEquals("X5", b.value(0));
+                Assert.assertEquals(4, a.getQuick("X4"));
+                Assert.assertEquals("X4", a.value(4));
+            }
+        }
+    }
+
+    private SymbolTable createTable(String name, SymbolCache cache) throws JournalException {
+        return new SymbolTable(16, 8, 1, temporaryFolder.getRoot(), name, JournalMode.APPEND, 0, 0, false, cache);
+    }
+
+    private void put(SymbolTable tab, String prefix, int count) {
+        for (int i = 0; i < count; i++) {
+            tab.put(prefix + i);
+        }
+        tab.commit();
+    }
+}
@@ -29,8 +29,10 @@ import com.questdb.JournalWriter;
 import com.questdb.Partition;
 import com.questdb.ex.JournalException;
 import com.questdb.ex.NumericException;
+import com.questdb.factory.JournalFactory;
 import com.questdb.factory.configuration.ColumnMetadata;
 import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.factory.configuration.JournalStructure;
 import com.questdb.iter.JournalIterator;
 import com.questdb.misc.*;
 import com.questdb.model.Quote;
@@ -42,8 +44,8 @@ import com.questdb.ql.model.ExprNode;
 import com.questdb.query.ResultSet;
 import com.questdb.std.IntList;
 import com.questdb.std.LongList;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.ColumnType;
-import com.questdb.store.KVIndex;
 import com.questdb.store.SymbolTable;
 import org.junit.Assert;
 
@@ -144,8 +146,8 @@ public final class TestUtils {
 
             for (int k = 0; k < expected.getMetadata().getColumnCount(); k++) {
                 if (expected.getMetadata().getColumn(k).indexed) {
-                    KVIndex ei = ep.getIndexForColumn(k);
-                    KVIndex ai = ap.getIndexForColumn(k);
+                    ColumnIndex ei = ep.getIndexForColumn(k);
+                    ColumnIndex ai = ap.getIndexForColumn(k);
 
                     int count = colKeyCount.getQuick(k);
 
@@ -378,6 +380,33 @@ public final class TestUtils {
         }
     }
 
+    /**
+     * Creates journal of sym, str, grp, price and timestamp columns, one row per second. Every fiftieth
+     * string is null, symbols and groups repeat, so that sorts see equal keys.
+     */
+    public static void generateTradeData(JournalFactory factory, String name, int count) throws JournalException {
+        try (JournalWriter w = factory.bulkWriter(new JournalStructure(name)
+                .$sym("sym")
+                .$str("str")
+                .$int("grp")
+                .$double("price")
+                .$ts()
+                .$())) {
+            Rnd rnd = new Rnd();
+            String syms[] = {"AA", "BB", "CC", "DD", "EE"};
+            long ts = Dates.toMillis(2016, 3, 12, 0, 0);
+            for (int i = 0; i < count; i++) {
+                JournalEntryWriter ew = w.entryWriter(ts += 1000);
+                ew.putSym(0, syms[rnd.nextPositiveInt() % syms.length]);
+                ew.putStr(1, rnd.nextPositiveInt() % 50 == 0 ? null : rnd.nextChars(3));
+                ew.putInt(2, rnd.nextPositiveInt() % 10);
+                ew.putDouble(3, rnd.nextDouble());
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
     public static void generateTestEntityData(JournalWriter<TestEntity> w, int count, long timetamp, int increment) throws JournalException {
         String symbols[] = {"AGK.L", "BP.L", "TLW.L", "ABF.L", "LLOY.L", "BT-A.L", "WTB.L", "RRS.L", "ADM.L", "GKN.L", "HSBA.L", null};
         Rnd r = new Rnd();